@@ -0,0 +1,201 @@
+package prob;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws from a fixed discrete distribution in constant time with Walker's 
+ * alias method, tables built by Vose's O(n) construction
+ * 
+ * Each of the n columns holds probability mass 1/n, split between its own 
+ * category and at most one alias. A draw picks a column and one uniform 
+ * decides between the two:
+ * 
+ * u = U[0, n), i = floor(u), draw i if u - i < probability[i], else alias[i]
+ * 
+ * so the cost per draw does not grow with the number of categories, unlike 
+ * a scan of the cumulative probabilities.
+ * 
+ * http://en.wikipedia.org/wiki/Alias_method
+ * Vose, A linear algorithm for generating random numbers with a given distribution (1991)
+ */
+public class AliasSampler
+{
+	/**
+	 * draws per leaf task in {@link #parallelSample(int[], SplittableRandom)}
+	 */
+	protected final static int LEAF_DRAWS = 1 << 16;
+	
+	protected final double [] probability;
+	protected final int [] alias;
+	
+	/**
+	 * @param weights non-negative, need not sum to one
+	 */
+	public AliasSampler(double [] weights)
+	{
+		int n = weights.length;
+		if (n == 0)
+		{
+			throw new IllegalArgumentException("Need at least one category");
+		}
+		double total = 0;
+		for (double w : weights)
+		{
+			if (!(w >= 0) || Double.isInfinite(w))
+			{
+				throw new IllegalArgumentException("Weights must be finite and non-negative: " + w);
+			}
+			total += w;
+		}
+		if (total == 0)
+		{
+			throw new IllegalArgumentException("Weights sum to zero");
+		}
+		this.probability = new double[n];
+		this.alias = new int[n];
+		
+		// scaled so the average column is 1, worklists as int stacks
+		double [] scaled = new double[n];
+		int [] small = new int[n];
+		int [] large = new int[n];
+		int numSmall = 0, numLarge = 0;
+		for (int i = 0; i < n; i++)
+		{
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1.0)
+			{
+				small[numSmall++] = i;
+			}
+			else
+			{
+				large[numLarge++] = i;
+			}
+		}
+		while (numSmall > 0 && numLarge > 0)
+		{
+			int less = small[--numSmall];
+			int more = large[--numLarge];
+			probability[less] = scaled[less];
+			alias[less] = more;
+			// the large category pays for the small one's shortfall
+			scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+			if (scaled[more] < 1.0)
+			{
+				small[numSmall++] = more;
+			}
+			else
+			{
+				large[numLarge++] = more;
+			}
+		}
+		// whatever is left is 1 up to rounding
+		while (numLarge > 0)
+		{
+			int i = large[--numLarge];
+			probability[i] = 1.0;
+			alias[i] = i;
+		}
+		while (numSmall > 0)
+		{
+			int i = small[--numSmall];
+			probability[i] = 1.0;
+			alias[i] = i;
+		}
+	}
+	
+	public int numCategories()
+	{
+		return probability.length;
+	}
+	
+	/**
+	 * @param random
+	 * @return a category
+	 */
+	public int sample(SplittableRandom random)
+	{
+		double u = random.nextDouble() * probability.length;
+		int i = (int) u;
+		return (u - i < probability[i]) ? i : alias[i];
+	}
+	
+	/**
+	 * @param out receives categories
+	 * @param offset
+	 * @param length number of draws
+	 * @param random
+	 */
+	public void sample(int [] out, int offset, int length, SplittableRandom random)
+	{
+		if (offset < 0 || length < 0 || offset > out.length - length)
+		{
+			throw new IndexOutOfBoundsException(
+					"offset " + offset + ", length " + length + ", array length " + out.length);
+		}
+		double [] probability = this.probability;
+		int [] alias = this.alias;
+		int n = probability.length;
+		for (int k = offset; k < offset + length; k++)
+		{
+			double u = random.nextDouble() * n;
+			int i = (int) u;
+			out[k] = (u - i < probability[i]) ? i : alias[i];
+		}
+	}
+	
+	/**
+	 * Fill an array on the common fork-join pool, each block with its own 
+	 * stream split from random. The result depends only on random's state, 
+	 * not on scheduling.
+	 * 
+	 * @param out receives categories
+	 * @param random
+	 */
+	public void parallelSample(int [] out, SplittableRandom random)
+	{
+		parallelSample(out, random, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param out receives categories
+	 * @param random
+	 * @param pool
+	 */
+	public void parallelSample(int [] out, SplittableRandom random, ForkJoinPool pool)
+	{
+		pool.invoke(new SampleTask(out, 0, out.length, random));
+	}
+	
+	protected final class SampleTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final int [] out;
+		protected final int from;
+		protected final int to;
+		protected final SplittableRandom random;
+		
+		protected SampleTask(int [] out, int from, int to, SplittableRandom random)
+		{
+			this.out = out;
+			this.from = from;
+			this.to = to;
+			this.random = random;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from <= LEAF_DRAWS)
+			{
+				sample(out, from, to - from, random);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new SampleTask(out, from, middle, random.split()), 
+					new SampleTask(out, middle, to, random));
+		}
+	}
+}
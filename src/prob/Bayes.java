@@ -20,10 +20,21 @@ public class Bayes
 {
 	
 	
-	public final static double pAGivenB(double a, double b)
+	/**
+	 * Conditional probability from a joint and a marginal
+	 * 
+	 * p(A | B) = p(A and B) / p(B)
+	 * 
+	 * Chained evidence is better accumulated with {@link Evidence}, 
+	 * which stays in log space and normalizes once.
+	 * 
+	 * @param aAndB p(A and B)
+	 * @param b p(B)
+	 * @return p(A | B)
+	 */
+	public final static double pAGivenB(double aAndB, double b)
 	{
-		// can this be normalized? 
-		return 0;
+		return aAndB / b;
 	}
 	
 	
@@ -40,4 +51,169 @@ public class Bayes
 	{
 		return numOccurances/totalOccurances;
 	}
+	
+	
+	/**
+	 * Posterior of a binary hypothesis given a positive observation
+	 * 
+	 * p(A | B) = p(B | A) p(A) / (p(B | A) p(A) + p(B | ~A) p(~A))
+	 * 
+	 * @param prior p(A), e.g. prevalence
+	 * @param likelihood p(B | A), e.g. test sensitivity
+	 * @param falsePositive p(B | ~A), e.g. 1 - test specificity
+	 * @return p(A | B)
+	 */
+	public final static double posterior(
+			double prior, double likelihood, double falsePositive)
+	{
+		double truePositive = prior * likelihood;
+		return truePositive / (truePositive + (1.0-prior)*falsePositive);
+	}
+	
+	/**
+	 * Exact form of {@link #pAGivenB(double, double)}
+	 * 
+	 * @param aAndB p(A and B)
+	 * @param b p(B)
+	 * @return p(A | B)
+	 */
+	public final static Rational pAGivenB(Rational aAndB, Rational b)
+	{
+		return aAndB.divide(b);
+	}
+	
+	/**
+	 * Exact form of {@link #observationToProbability(double, double)}, 
+	 * 40 of 100 is 2/5 rather than the nearest double to 0.4
+	 * 
+	 * @param numOccurances
+	 * @param totalOccurances
+	 * @return
+	 */
+	public final static Rational exactProbability(
+			long numOccurances, long totalOccurances)
+	{
+		return Rational.valueOf(numOccurances, totalOccurances);
+	}
+	
+	/**
+	 * Exact form of {@link #posterior(double, double, double)}
+	 * 
+	 * With long terms p = a/b, l = c/d, f = e/h it is one fraction
+	 * 
+	 * p(A | B) = a c h / (a c h + (b - a) e d)
+	 * 
+	 * reduced by a single gcd, and the step by step form is only needed once 
+	 * the products overflow.
+	 * 
+	 * @param prior p(A), e.g. prevalence
+	 * @param likelihood p(B | A), e.g. test sensitivity
+	 * @param falsePositive p(B | ~A), e.g. 1 - test specificity
+	 * @return p(A | B)
+	 */
+	public final static Rational posterior(
+			Rational prior, Rational likelihood, Rational falsePositive)
+	{
+		if (!prior.isBig() && !likelihood.isBig() && !falsePositive.isBig())
+		{
+			try
+			{
+				long truePositive = Math.multiplyExact(
+						Math.multiplyExact(prior.numerator, likelihood.numerator), falsePositive.denominator);
+				long falsePositives = Math.multiplyExact(Math.multiplyExact(
+						Math.subtractExact(prior.denominator, prior.numerator), falsePositive.numerator), 
+						likelihood.denominator);
+				long total = Math.addExact(truePositive, falsePositives);
+				// p(B) = 0 is left to the step by step form to reject
+				if (total != 0)
+				{
+					return Rational.valueOf(truePositive, total);
+				}
+			}
+			catch (ArithmeticException overflow)
+			{
+				// fall through to the step by step form
+			}
+		}
+		Rational truePositive = prior.multiply(likelihood);
+		return truePositive.divide(truePositive.add(prior.complement().multiply(falsePositive)));
+	}
+	
+	/**
+	 * Batch form of {@link #posterior(double, double, double)}, one subject 
+	 * per element. Nothing is allocated and the loop body is straight-line 
+	 * arithmetic so the JIT is free to unroll and vectorize it.
+	 * 
+	 * @param priors p(A) per subject
+	 * @param priorsOffset
+	 * @param likelihoods p(B | A) per subject
+	 * @param likelihoodsOffset
+	 * @param falsePositives p(B | ~A) per subject
+	 * @param falsePositivesOffset
+	 * @param out receives p(A | B) per subject
+	 * @param outOffset
+	 * @param length number of subjects
+	 */
+	public final static void posteriors(
+			double [] priors, int priorsOffset,
+			double [] likelihoods, int likelihoodsOffset,
+			double [] falsePositives, int falsePositivesOffset,
+			double [] out, int outOffset, 
+			int length)
+	{
+		checkRange(priors, priorsOffset, length);
+		checkRange(likelihoods, likelihoodsOffset, length);
+		checkRange(falsePositives, falsePositivesOffset, length);
+		checkRange(out, outOffset, length);
+		
+		for (int i = 0; i < length; i++)
+		{
+			double prior = priors[priorsOffset+i];
+			double truePositive = prior * likelihoods[likelihoodsOffset+i];
+			double falsePositive = (1.0-prior) * falsePositives[falsePositivesOffset+i];
+			out[outOffset+i] = truePositive / (truePositive + falsePositive);
+		}
+	}
+	
+	/**
+	 * Batch form of {@link #posterior(double, double, double)} where every 
+	 * subject is screened with the same test, only the prior varies.
+	 * 
+	 * @param priors p(A) per subject
+	 * @param priorsOffset
+	 * @param likelihood p(B | A) of the test
+	 * @param falsePositive p(B | ~A) of the test
+	 * @param out receives p(A | B) per subject
+	 * @param outOffset
+	 * @param length number of subjects
+	 */
+	public final static void posteriors(
+			double [] priors, int priorsOffset,
+			double likelihood, double falsePositive,
+			double [] out, int outOffset, 
+			int length)
+	{
+		checkRange(priors, priorsOffset, length);
+		checkRange(out, outOffset, length);
+		
+		for (int i = 0; i < length; i++)
+		{
+			double prior = priors[priorsOffset+i];
+			double truePositive = prior * likelihood;
+			out[outOffset+i] = truePositive / (truePositive + (1.0-prior)*falsePositive);
+		}
+	}
+	
+	/**
+	 * Validate an (offset, length) window up front so the hot loops above 
+	 * carry no per-element checks of their own
+	 */
+	final static void checkRange(double [] array, int offset, int length)
+	{
+		if (offset < 0 || length < 0 || offset > array.length - length)
+		{
+			throw new IndexOutOfBoundsException(
+					"offset " + offset + ", length " + length + ", array length " + array.length);
+		}
+	}
 }
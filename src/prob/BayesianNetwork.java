@@ -0,0 +1,173 @@
+package prob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Bayesian network of discrete variables, each with a conditional 
+ * probability table given its parents
+ * 
+ * p(X1, ..., Xn) = p(X1 | parents(X1)) ... p(Xn | parents(Xn))
+ * 
+ * Variables are numbered in the order they are added, and a variable's 
+ * parents must already exist, so the network is acyclic by construction. 
+ * Queries are answered by {@link VariableElimination}.
+ * 
+ * http://en.wikipedia.org/wiki/Bayesian_network
+ */
+public class BayesianNetwork
+{
+	/**
+	 * evidence value for a variable that has not been observed
+	 */
+	public final static int UNOBSERVED = -1;
+	
+	protected final List<String> names = new ArrayList<String>();
+	protected final List<int[]> parents = new ArrayList<int[]>();
+	protected final List<Factor> cpts = new ArrayList<Factor>();
+	protected int [] cardinalities = new int[0];
+	
+	/**
+	 * bumped on every change, so inference caches know to drop their contents
+	 */
+	protected int version;
+	
+	/**
+	 * @param name
+	 * @param cardinality number of values the variable takes
+	 * @param parentIds ids of existing variables
+	 * @return id of the new variable
+	 */
+	public int addVariable(String name, int cardinality, int... parentIds)
+	{
+		int id = names.size();
+		if (cardinality <= 0)
+		{
+			throw new IllegalArgumentException("Cardinality must be positive: " + cardinality);
+		}
+		for (int parent : parentIds)
+		{
+			if (parent < 0 || parent >= id)
+			{
+				throw new IllegalArgumentException("Unknown parent: " + parent);
+			}
+		}
+		names.add(name);
+		parents.add(parentIds.clone());
+		cardinalities = Arrays.copyOf(cardinalities, id+1);
+		cardinalities[id] = cardinality;
+		
+		// uniform until set
+		Factor cpt = cptFactor(id, null);
+		Arrays.fill(cpt.values, 1.0 / cardinality);
+		cpts.add(cpt);
+		version++;
+		return id;
+	}
+	
+	/**
+	 * Set p(variable | parents)
+	 * 
+	 * One row per assignment of the parents, in the order they were given and 
+	 * the last varying fastest, each row a distribution over the variable.
+	 * 
+	 * @param variable
+	 * @param probabilities
+	 */
+	public void setCpt(int variable, double... probabilities)
+	{
+		Factor cpt = cptFactor(variable, probabilities.clone());
+		int card = cardinalities[variable];
+		for (int row = 0; row < cpt.values.length; row += card)
+		{
+			double sum = 0;
+			for (int i = row; i < row+card; i++)
+			{
+				if (cpt.values[i] < 0)
+				{
+					throw new IllegalArgumentException("Negative probability in row " + row/card);
+				}
+				sum += cpt.values[i];
+			}
+			if (Math.abs(sum - 1.0) > 1.0E-9)
+			{
+				throw new IllegalArgumentException("Row " + row/card + " sums to " + sum);
+			}
+		}
+		cpts.set(variable, cpt);
+		version++;
+	}
+	
+	protected Factor cptFactor(int variable, double [] values)
+	{
+		int [] ps = parents.get(variable);
+		int [] vars = new int[ps.length+1];
+		int [] cards = new int[ps.length+1];
+		for (int i = 0; i < ps.length; i++)
+		{
+			vars[i] = ps[i];
+			cards[i] = cardinalities[ps[i]];
+		}
+		vars[ps.length] = variable;
+		cards[ps.length] = cardinalities[variable];
+		if (values == null)
+		{
+			values = new double[JointDistribution.size(cards)];
+		}
+		return new Factor(vars, cards, values);
+	}
+	
+	/**
+	 * @param name
+	 * @return id of the named variable, -1 if none
+	 */
+	public int variable(String name)
+	{
+		return names.indexOf(name);
+	}
+	
+	public String name(int variable)
+	{
+		return names.get(variable);
+	}
+	
+	public int numVariables()
+	{
+		return names.size();
+	}
+	
+	public int cardinality(int variable)
+	{
+		return cardinalities[variable];
+	}
+	
+	public int [] parents(int variable)
+	{
+		return parents.get(variable).clone();
+	}
+	
+	/**
+	 * @param variable
+	 * @return p(variable | parents) as a factor over (parents..., variable)
+	 */
+	public Factor cpt(int variable)
+	{
+		return cpts.get(variable);
+	}
+	
+	/**
+	 * @return a fresh evidence array with every variable unobserved
+	 */
+	public int [] noEvidence()
+	{
+		int [] evidence = new int[numVariables()];
+		Arrays.fill(evidence, UNOBSERVED);
+		return evidence;
+	}
+	
+	public int version()
+	{
+		return version;
+	}
+}
@@ -0,0 +1,128 @@
+package prob;
+
+/**
+ * Beta posterior over a rate, such as prevalence or test sensitivity, 
+ * updated from binomial counts
+ * 
+ * Beta(alpha, beta) prior + k successes in n trials 
+ * = Beta(alpha + k, beta + n - k) posterior
+ * 
+ * so each batch of observations is two additions. Uniform Beta(1, 1) is the 
+ * usual uninformed start, where {@link Bayes#observationToProbability(double, double)} 
+ * is the posterior mode.
+ * 
+ * http://en.wikipedia.org/wiki/Beta-binomial_distribution
+ */
+public class BetaBinomial
+{
+	protected double alpha;
+	protected double beta;
+	
+	/**
+	 * @param alpha prior pseudo-count of successes, > 0
+	 * @param beta prior pseudo-count of failures, > 0
+	 */
+	public BetaBinomial(double alpha, double beta)
+	{
+		if (!(alpha > 0 && beta > 0))
+		{
+			throw new IllegalArgumentException("Need alpha, beta > 0: " + alpha + ", " + beta);
+		}
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+	
+	/**
+	 * @param successes
+	 * @param failures
+	 * @return this
+	 */
+	public BetaBinomial update(long successes, long failures)
+	{
+		if (successes < 0 || failures < 0)
+		{
+			throw new IllegalArgumentException("Counts must be non-negative");
+		}
+		alpha += successes;
+		beta += failures;
+		return this;
+	}
+	
+	public double alpha()
+	{
+		return alpha;
+	}
+	
+	public double beta()
+	{
+		return beta;
+	}
+	
+	/**
+	 * @return alpha / (alpha + beta), also the probability the next trial succeeds
+	 */
+	public double mean()
+	{
+		return alpha / (alpha + beta);
+	}
+	
+	/**
+	 * @return alpha beta / ((alpha + beta)^2 (alpha + beta + 1))
+	 */
+	public double variance()
+	{
+		double sum = alpha + beta;
+		return alpha * beta / (sum * sum * (sum + 1));
+	}
+	
+	/**
+	 * @param p
+	 * @return the rate below which the posterior puts probability p
+	 */
+	public double quantile(double p)
+	{
+		return SpecialFunctions.inverseRegularizedBeta(p, alpha, beta);
+	}
+	
+	/**
+	 * Equal tailed credible interval
+	 * 
+	 * @param level e.g. 0.95
+	 * @return {lower, upper}
+	 */
+	public double [] credibleInterval(double level)
+	{
+		double tail = 0.5 * (1 - level);
+		return new double[]{quantile(tail), quantile(1 - tail)};
+	}
+	
+	/**
+	 * Posterior predictive, the beta-binomial distribution
+	 * 
+	 * P(k of n) = (n choose k) B(k + alpha, n - k + beta) / B(alpha, beta)
+	 * 
+	 * @param k successes
+	 * @param n future trials
+	 * @return log P(k of n | data)
+	 */
+	public double logPredictive(long k, long n)
+	{
+		if (k < 0 || k > n)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+		return LogFactorial.logChoose(n, k) 
+			+ SpecialFunctions.logBeta(k + alpha, n - k + beta) 
+			- SpecialFunctions.logBeta(alpha, beta);
+	}
+	
+	/**
+	 * @param k successes
+	 * @param n future trials
+	 * @return P(k of n | data)
+	 */
+	public double predictive(long k, long n)
+	{
+		return Math.exp(logPredictive(k, n));
+	}
+}
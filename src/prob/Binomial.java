@@ -0,0 +1,256 @@
+package prob;
+
+import java.util.SplittableRandom;
+
+/**
+ * Probability of k successes in n independent trials
+ * 
+ * P(k of n) = (n choose k) p^k (1 - p)^(n - k)
+ * 
+ * Computed in log space from {@link LogFactorial}, so n can run into the 
+ * millions without overflowing the coefficient or underflowing the powers. 
+ * The cdf is the regularized incomplete beta, not a sum over k.
+ * 
+ * Sampling costs O(1) expected time whatever n, by inversion for small 
+ * means and Hormann's BTRD rejection otherwise.
+ * 
+ * http://en.wikipedia.org/wiki/Binomial_distribution
+ * Hormann, The generation of binomial random variates (1993)
+ */
+public class Binomial
+{
+	/**
+	 * @param k successes
+	 * @param n trials
+	 * @param p probability of success
+	 * @return log P(X = k)
+	 */
+	public final static double logPmf(long k, long n, double p)
+	{
+		if (k < 0 || k > n)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+		if (p == 0)
+		{
+			return (k == 0) ? 0 : Double.NEGATIVE_INFINITY;
+		}
+		if (p == 1)
+		{
+			return (k == n) ? 0 : Double.NEGATIVE_INFINITY;
+		}
+		return LogFactorial.logChoose(n, k) + k * Math.log(p) + (n - k) * Math.log1p(-p);
+	}
+	
+	/**
+	 * @param k successes
+	 * @param n trials
+	 * @param p probability of success
+	 * @return P(X = k)
+	 */
+	public final static double pmf(long k, long n, double p)
+	{
+		return Math.exp(logPmf(k, n, p));
+	}
+	
+	/**
+	 * P(X <= k) = I_(1-p)(n - k, k + 1)
+	 * 
+	 * @param k successes
+	 * @param n trials
+	 * @param p probability of success
+	 * @return P(X <= k)
+	 */
+	public final static double cdf(long k, long n, double p)
+	{
+		if (k < 0)
+		{
+			return 0;
+		}
+		if (k >= n)
+		{
+			return 1;
+		}
+		return SpecialFunctions.regularizedBeta(1.0 - p, n - k, k + 1.0);
+	}
+	
+	/**
+	 * @param k successes
+	 * @param n trials
+	 * @param p probability of success
+	 * @return P(X > k)
+	 */
+	public final static double survival(long k, long n, double p)
+	{
+		if (k < 0)
+		{
+			return 1;
+		}
+		if (k >= n)
+		{
+			return 0;
+		}
+		return SpecialFunctions.regularizedBeta(p, k + 1.0, n - k);
+	}
+	
+	/**
+	 * n p below which inversion beats rejection
+	 */
+	protected final static double INVERSION_MEAN = 10;
+	
+	/**
+	 * @param n trials
+	 * @param p probability of success
+	 * @param random
+	 * @return a draw of the number of successes
+	 */
+	public final static long sample(long n, double p, SplittableRandom random)
+	{
+		if (n < 0 || !(p >= 0 && p <= 1))
+		{
+			throw new IllegalArgumentException("Need n >= 0 and p in [0, 1]: " + n + ", " + p);
+		}
+		if (p > 0.5)
+		{
+			return n - sample(n, 1.0 - p, random);
+		}
+		if (n == 0 || p == 0)
+		{
+			return 0;
+		}
+		if (n * p < INVERSION_MEAN)
+		{
+			return inversion(n, p, random);
+		}
+		return btrd(n, p, random);
+	}
+	
+	/**
+	 * Walk up the cdf from 0 using P(k) = P(k-1) ((n+1) s / k - s), s = p / q
+	 */
+	protected final static long inversion(long n, double p, SplittableRandom random)
+	{
+		double q = 1.0 - p;
+		double s = p / q;
+		double a = (n + 1) * s;
+		double first = Math.exp(n * Math.log1p(-p));
+		while (true)
+		{
+			double u = random.nextDouble();
+			double r = first;
+			long k = 0;
+			while (u > r)
+			{
+				u -= r;
+				k++;
+				if (k > n)
+				{
+					// rounding left u past the last term, draw again
+					break;
+				}
+				r *= a / k - s;
+			}
+			if (k <= n)
+			{
+				return k;
+			}
+		}
+	}
+	
+	/**
+	 * Transformed rejection with decomposition, p <= 0.5 and n p >= 10
+	 * 
+	 * The final acceptance test compares against the exact log pmf ratio 
+	 * rather than Stirling corrections.
+	 */
+	protected final static long btrd(long n, double p, SplittableRandom random)
+	{
+		double q = 1.0 - p;
+		long m = (long) ((n + 1) * p);
+		double r = p / q;
+		double nr = (n + 1) * r;
+		double npq = n * p * q;
+		double spq = Math.sqrt(npq);
+		double b = 1.15 + 2.53 * spq;
+		double a = -0.0873 + 0.0248 * b + 0.01 * p;
+		double c = n * p + 0.5;
+		double alpha = (2.83 + 5.1 / b) * spq;
+		double vr = 0.92 - 4.2 / b;
+		double urvr = 0.86 * vr;
+		double logPmfM = Double.NaN;
+		while (true)
+		{
+			double v = random.nextDouble();
+			double u;
+			if (v <= urvr)
+			{
+				// inside the triangle, accept at once
+				u = v / vr - 0.43;
+				return (long) Math.floor((2 * a / (0.5 - Math.abs(u)) + b) * u + c);
+			}
+			if (v >= vr)
+			{
+				u = random.nextDouble() - 0.5;
+			}
+			else
+			{
+				u = v / vr - 0.93;
+				u = Math.signum(u) * 0.5 - u;
+				v = random.nextDouble() * vr;
+			}
+			double us = 0.5 - Math.abs(u);
+			double kd = Math.floor((2 * a / us + b) * u + c);
+			if (kd < 0 || kd > n)
+			{
+				continue;
+			}
+			long k = (long) kd;
+			v = v * alpha / (a / (us * us) + b);
+			long km = Math.abs(k - m);
+			if (km <= 15)
+			{
+				// f(k) / f(m) by the recurrence
+				double f = 1;
+				if (m < k)
+				{
+					for (long i = m + 1; i <= k; i++)
+					{
+						f *= nr / i - r;
+					}
+				}
+				else
+				{
+					for (long i = k + 1; i <= m; i++)
+					{
+						v *= nr / i - r;
+					}
+				}
+				if (v <= f)
+				{
+					return k;
+				}
+				continue;
+			}
+			// squeeze on log f(k) / f(m)
+			v = Math.log(v);
+			double rho = (km / npq) * (((km / 3.0 + 0.625) * km + 1.0 / 6.0) / npq + 0.5);
+			double t = -km * (double) km / (2 * npq);
+			if (v < t - rho)
+			{
+				return k;
+			}
+			if (v > t + rho)
+			{
+				continue;
+			}
+			if (Double.isNaN(logPmfM))
+			{
+				logPmfM = logPmf(m, n, p);
+			}
+			if (v <= logPmf(k, n, p) - logPmfM)
+			{
+				return k;
+			}
+		}
+	}
+}
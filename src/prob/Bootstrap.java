@@ -0,0 +1,365 @@
+package prob;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Bootstrap intervals for statistics of categorical counts, such as the
+ * 40 of 100 behind {@link Bayes#observationToProbability(double, double)} or
+ * a posterior computed from a contingency table
+ *
+ * Records that fall in the same category are interchangeable, so resampling
+ * n records with replacement is one multinomial draw over the categories,
+ * see {@link Multinomial#sample(long, double[], SplittableRandom, long[])}.
+ * Each resample then costs O(categories) however many records there are.
+ *
+ * Resamples are split over the fork-join pool. Every leaf has its own
+ * random stream split from the seed, and reuses one count buffer for all
+ * its resamples.
+ *
+ * http://en.wikipedia.org/wiki/Bootstrapping_(statistics)
+ * Efron, Better bootstrap confidence intervals (1987)
+ */
+public class Bootstrap
+{
+	/**
+	 * A statistic of the category counts
+	 */
+	public interface Statistic
+	{
+		/**
+		 * @param counts records per category, only valid during the call
+		 * @return
+		 */
+		double evaluate(long [] counts);
+	}
+	
+	/**
+	 * @param category
+	 * @return the proportion of records in a category
+	 */
+	public final static Statistic proportion(final int category)
+	{
+		return new Statistic()
+		{
+			public double evaluate(long [] counts)
+			{
+				long total = 0;
+				for (long c : counts)
+				{
+					total += c;
+				}
+				return Bayes.observationToProbability(counts[category], total);
+			}
+		};
+	}
+	
+	/**
+	 * resamples per leaf task
+	 */
+	protected final static int LEAF_RESAMPLES = 256;
+	
+	protected final ForkJoinPool pool;
+	
+	/**
+	 * Use the common pool, one worker per core
+	 */
+	public Bootstrap()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public Bootstrap(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * @param counts records per category
+	 * @param statistic
+	 * @param resamples number of bootstrap replicates, e.g. 2000
+	 * @param seed
+	 * @return the statistic's replicates, ready for intervals
+	 */
+	public Result run(long [] counts, Statistic statistic, int resamples, long seed)
+	{
+		long n = 0;
+		for (long c : counts)
+		{
+			if (c < 0)
+			{
+				throw new IllegalArgumentException("Negative count: " + c);
+			}
+			n += c;
+		}
+		if (n == 0 || resamples < 1)
+		{
+			throw new IllegalArgumentException("Need records and resamples: " + n + ", " + resamples);
+		}
+		double [] probs = new double[counts.length];
+		for (int i = 0; i < counts.length; i++)
+		{
+			probs[i] = counts[i] / (double) n;
+		}
+		long start = Metrics.start();
+		double [] replicates = new double[resamples];
+		pool.invoke(new ResampleTask(statistic, n, probs, replicates, 0, resamples,
+				new SplittableRandom(seed)));
+		Arrays.sort(replicates);
+		Metrics.stop(Metrics.SAMPLING, start);
+		return new Result(counts.clone(), statistic, statistic.evaluate(counts.clone()), replicates);
+	}
+	
+	protected final static class ResampleTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final Statistic statistic;
+		protected final long n;
+		protected final double [] probs;
+		protected final double [] replicates;
+		protected final int from;
+		protected final int to;
+		protected final SplittableRandom random;
+		
+		protected ResampleTask(Statistic statistic, long n, double [] probs, double [] replicates,
+				int from, int to, SplittableRandom random)
+		{
+			this.statistic = statistic;
+			this.n = n;
+			this.probs = probs;
+			this.replicates = replicates;
+			this.from = from;
+			this.to = to;
+			this.random = random;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from > LEAF_RESAMPLES)
+			{
+				int middle = (from + to) >>> 1;
+				ResampleTask left = new ResampleTask(statistic, n, probs, replicates, from, middle, random.split());
+				ResampleTask right = new ResampleTask(statistic, n, probs, replicates, middle, to, random);
+				left.fork();
+				right.compute();
+				left.join();
+				return;
+			}
+			long [] counts = new long[probs.length];
+			for (int i = from; i < to; i++)
+			{
+				Multinomial.sample(n, probs, random, counts);
+				replicates[i] = statistic.evaluate(counts);
+			}
+		}
+	}
+	
+	/**
+	 * Sorted bootstrap replicates of a statistic
+	 */
+	public static class Result
+	{
+		protected final long [] counts;
+		protected final Statistic statistic;
+		protected final double estimate;
+		protected final double [] replicates;
+		
+		protected Result(long [] counts, Statistic statistic, double estimate, double [] replicates)
+		{
+			this.counts = counts;
+			this.statistic = statistic;
+			this.estimate = estimate;
+			this.replicates = replicates;
+		}
+		
+		/**
+		 * @return the statistic of the observed counts
+		 */
+		public double estimate()
+		{
+			return estimate;
+		}
+		
+		public int resamples()
+		{
+			return replicates.length;
+		}
+		
+		/**
+		 * @return standard deviation of the replicates
+		 */
+		public double standardError()
+		{
+			double mean = 0;
+			for (double r : replicates)
+			{
+				mean += r;
+			}
+			mean /= replicates.length;
+			double sum = 0;
+			for (double r : replicates)
+			{
+				sum += (r - mean) * (r - mean);
+			}
+			return Math.sqrt(sum / (replicates.length - 1));
+		}
+		
+		/**
+		 * @param q in [0, 1]
+		 * @return the q quantile of the replicates, interpolated
+		 */
+		public double quantile(double q)
+		{
+			double position = q * (replicates.length - 1);
+			int lower = (int) Math.floor(position);
+			if (lower >= replicates.length - 1)
+			{
+				return replicates[replicates.length - 1];
+			}
+			if (lower < 0)
+			{
+				return replicates[0];
+			}
+			double fraction = position - lower;
+			return replicates[lower] + fraction * (replicates[lower + 1] - replicates[lower]);
+		}
+		
+		/**
+		 * @param confidence e.g. 0.95
+		 * @return {lower, upper} percentile interval
+		 */
+		public double [] percentile(double confidence)
+		{
+			double tail = (1.0 - confidence) / 2;
+			return new double[]{quantile(tail), quantile(1.0 - tail)};
+		}
+		
+		/**
+		 * Bias correction z0 = Phi^-1(fraction of replicates below the estimate),
+		 * ties counted half
+		 *
+		 * @return z0
+		 */
+		public double biasCorrection()
+		{
+			int below = lowerBound(replicates, estimate);
+			int notAbove = upperBound(replicates, estimate);
+			double fraction = (below + notAbove) / (2.0 * replicates.length);
+			// all on one side, clamp to what the replicates can resolve
+			double floor = 0.5 / replicates.length;
+			fraction = Math.max(floor, Math.min(1.0 - floor, fraction));
+			return SpecialFunctions.normalQuantile(fraction);
+		}
+		
+		/**
+		 * Jackknife acceleration. Deleting any record of category k gives the
+		 * same statistic theta_k, so the n deletions are one per category
+		 * weighted by its count.
+		 *
+		 * a = sum n_k (mean - theta_k)^3 / (6 (sum n_k (mean - theta_k)^2)^(3/2))
+		 *
+		 * @return a
+		 */
+		public double acceleration()
+		{
+			long [] deleted = counts.clone();
+			double [] theta = new double[counts.length];
+			double n = 0, mean = 0;
+			for (int k = 0; k < counts.length; k++)
+			{
+				if (counts[k] == 0)
+				{
+					continue;
+				}
+				deleted[k]--;
+				theta[k] = statistic.evaluate(deleted);
+				deleted[k]++;
+				n += counts[k];
+				mean += counts[k] * theta[k];
+			}
+			mean /= n;
+			double squares = 0, cubes = 0;
+			for (int k = 0; k < counts.length; k++)
+			{
+				if (counts[k] == 0)
+				{
+					continue;
+				}
+				double d = mean - theta[k];
+				squares += counts[k] * d * d;
+				cubes += counts[k] * d * d * d;
+			}
+			if (squares == 0)
+			{
+				return 0;
+			}
+			return cubes / (6 * Math.pow(squares, 1.5));
+		}
+		
+		/**
+		 * Bias corrected and accelerated interval
+		 *
+		 * alpha_i = Phi(z0 + (z0 + z_i) / (1 - a (z0 + z_i)))
+		 *
+		 * @param confidence e.g. 0.95
+		 * @return {lower, upper}
+		 */
+		public double [] bca(double confidence)
+		{
+			double z0 = biasCorrection();
+			double a = acceleration();
+			double z = SpecialFunctions.normalQuantile((1.0 + confidence) / 2);
+			double lower = z0 + (z0 - z) / (1 - a * (z0 - z));
+			double upper = z0 + (z0 + z) / (1 - a * (z0 + z));
+			return new double[]{
+					quantile(SpecialFunctions.normalCdf(lower)),
+					quantile(SpecialFunctions.normalCdf(upper))};
+		}
+	}
+	
+	/**
+	 * @return index of the first element >= value
+	 */
+	protected final static int lowerBound(double [] sorted, double value)
+	{
+		int low = 0, high = sorted.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < value)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * @return index of the first element > value
+	 */
+	protected final static int upperBound(double [] sorted, double value)
+	{
+		int low = 0, high = sorted.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] <= value)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,157 @@
+package prob;
+
+/**
+ * Running statistics of one Markov chain, for convergence diagnostics 
+ * without keeping the samples
+ * 
+ * Per dimension it keeps Welford's running mean and variance of the samples, 
+ * and of the means of consecutive batches of samples. The batch means give 
+ * the variance of the sample mean under autocorrelation, and with it the 
+ * effective sample size
+ * 
+ * ESS = n s^2 / (b s_b^2)
+ * 
+ * for n samples of variance s^2 in batches of b whose means have variance 
+ * s_b^2.
+ * 
+ * http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Welford's_online_algorithm
+ */
+public class ChainStatistics
+{
+	protected final int dimension;
+	protected final int batchSize;
+	
+	protected long n;
+	protected final double [] mean;
+	protected final double [] m2;
+	
+	protected int inBatch;
+	protected final double [] batchSum;
+	protected long batches;
+	protected final double [] batchMean;
+	protected final double [] batchM2;
+	
+	/**
+	 * @param dimension
+	 * @param batchSize samples per batch, around sqrt of the run length
+	 */
+	public ChainStatistics(int dimension, int batchSize)
+	{
+		if (batchSize <= 0)
+		{
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+		this.dimension = dimension;
+		this.batchSize = batchSize;
+		this.mean = new double[dimension];
+		this.m2 = new double[dimension];
+		this.batchSum = new double[dimension];
+		this.batchMean = new double[dimension];
+		this.batchM2 = new double[dimension];
+	}
+	
+	/**
+	 * @param x one sample
+	 */
+	public void add(double [] x)
+	{
+		n++;
+		for (int d = 0; d < dimension; d++)
+		{
+			double delta = x[d] - mean[d];
+			mean[d] += delta / n;
+			m2[d] += delta * (x[d] - mean[d]);
+			batchSum[d] += x[d];
+		}
+		if (++inBatch == batchSize)
+		{
+			batches++;
+			for (int d = 0; d < dimension; d++)
+			{
+				double value = batchSum[d] / batchSize;
+				double delta = value - batchMean[d];
+				batchMean[d] += delta / batches;
+				batchM2[d] += delta * (value - batchMean[d]);
+				batchSum[d] = 0;
+			}
+			inBatch = 0;
+		}
+	}
+	
+	public long count()
+	{
+		return n;
+	}
+	
+	public double mean(int d)
+	{
+		return mean[d];
+	}
+	
+	/**
+	 * @param d
+	 * @return sample variance
+	 */
+	public double variance(int d)
+	{
+		return (n > 1) ? m2[d] / (n - 1) : Double.NaN;
+	}
+	
+	/**
+	 * @param d
+	 * @return effective number of independent samples, by batch means
+	 */
+	public double effectiveSampleSize(int d)
+	{
+		if (batches < 2)
+		{
+			return Double.NaN;
+		}
+		double batchVariance = batchM2[d] / (batches - 1);
+		if (batchVariance == 0)
+		{
+			return n;
+		}
+		return Math.min(n, n * variance(d) / (batchSize * batchVariance));
+	}
+	
+	/**
+	 * Gelman-Rubin potential scale reduction across chains of equal length
+	 * 
+	 * R = sqrt(((n-1)/n W + B/n) / W)
+	 * 
+	 * for mean within-chain variance W and between-chain variance of means B/n
+	 * 
+	 * http://en.wikipedia.org/wiki/Gelman-Rubin_statistic
+	 * 
+	 * @param chains
+	 * @param d
+	 * @return close to 1 once the chains agree
+	 */
+	public final static double rHat(ChainStatistics [] chains, int d)
+	{
+		int m = chains.length;
+		if (m < 2)
+		{
+			return Double.NaN;
+		}
+		double n = chains[0].n;
+		double grand = 0, within = 0;
+		for (ChainStatistics chain : chains)
+		{
+			grand += chain.mean[d];
+			within += chain.variance(d);
+		}
+		grand /= m;
+		within /= m;
+		double between = 0;
+		for (ChainStatistics chain : chains)
+		{
+			between += (chain.mean[d] - grand) * (chain.mean[d] - grand);
+		}
+		// B/n, the variance of the chain means
+		between /= (m - 1);
+		double pooled = (n - 1) / n * within + between;
+		return Math.sqrt(pooled / within);
+	}
+}
@@ -0,0 +1,159 @@
+package prob;
+
+/**
+ * Dirichlet posterior over category probabilities, such as the colour mix of 
+ * a brand of sweets, updated from multinomial counts
+ * 
+ * Dirichlet(alpha) prior + counts c = Dirichlet(alpha + c) posterior
+ * 
+ * Each category's marginal is Beta(alpha_i, alpha_0 - alpha_i), which gives 
+ * its variance and credible interval.
+ * 
+ * http://en.wikipedia.org/wiki/Dirichlet-multinomial_distribution
+ */
+public class DirichletMultinomial
+{
+	protected final double [] alpha;
+	protected double total;
+	
+	/**
+	 * @param alpha prior pseudo-count per category, each > 0
+	 */
+	public DirichletMultinomial(double... alpha)
+	{
+		this.alpha = alpha.clone();
+		for (double a : alpha)
+		{
+			if (!(a > 0))
+			{
+				throw new IllegalArgumentException("Need every alpha > 0: " + a);
+			}
+			total += a;
+		}
+	}
+	
+	/**
+	 * @param counts per category
+	 * @return this
+	 */
+	public DirichletMultinomial update(long [] counts)
+	{
+		if (counts.length != alpha.length)
+		{
+			throw new IllegalArgumentException("Need a count per category");
+		}
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (counts[i] < 0)
+			{
+				throw new IllegalArgumentException("Counts must be non-negative");
+			}
+		}
+		for (int i = 0; i < counts.length; i++)
+		{
+			alpha[i] += counts[i];
+			total += counts[i];
+		}
+		return this;
+	}
+	
+	/**
+	 * @param category
+	 * @param count
+	 * @return this
+	 */
+	public DirichletMultinomial update(int category, long count)
+	{
+		if (count < 0)
+		{
+			throw new IllegalArgumentException("Count must be non-negative");
+		}
+		alpha[category] += count;
+		total += count;
+		return this;
+	}
+	
+	public int size()
+	{
+		return alpha.length;
+	}
+	
+	public double alpha(int category)
+	{
+		return alpha[category];
+	}
+	
+	/**
+	 * @param category
+	 * @return alpha_i / alpha_0, also the probability the next draw is this category
+	 */
+	public double mean(int category)
+	{
+		return alpha[category] / total;
+	}
+	
+	/**
+	 * @param category
+	 * @return alpha_i (alpha_0 - alpha_i) / (alpha_0^2 (alpha_0 + 1))
+	 */
+	public double variance(int category)
+	{
+		double a = alpha[category];
+		return a * (total - a) / (total * total * (total + 1));
+	}
+	
+	/**
+	 * Equal tailed credible interval of one category's probability
+	 * 
+	 * @param category
+	 * @param level e.g. 0.95
+	 * @return {lower, upper}, {1, 1} for a lone category which is certain
+	 */
+	public double [] credibleInterval(int category, double level)
+	{
+		if (alpha.length == 1)
+		{
+			return new double[]{1, 1};
+		}
+		double tail = 0.5 * (1 - level);
+		double a = alpha[category];
+		double b = total - a;
+		return new double[]{
+			SpecialFunctions.inverseRegularizedBeta(tail, a, b),
+			SpecialFunctions.inverseRegularizedBeta(1 - tail, a, b)};
+	}
+	
+	/**
+	 * Posterior predictive of a future batch of draws
+	 * 
+	 * P(c) = n! Gamma(alpha_0) / Gamma(n + alpha_0) prod Gamma(c_i + alpha_i) / (c_i! Gamma(alpha_i))
+	 * 
+	 * @param counts per category
+	 * @return log P(counts | data)
+	 */
+	public double logPredictive(long [] counts)
+	{
+		if (counts.length != alpha.length)
+		{
+			throw new IllegalArgumentException("Need a count per category");
+		}
+		long n = 0;
+		double logP = SpecialFunctions.logGamma(total);
+		for (int i = 0; i < counts.length; i++)
+		{
+			n += counts[i];
+			logP += SpecialFunctions.logGamma(counts[i] + alpha[i]) 
+				- SpecialFunctions.logGamma(alpha[i]) - LogFactorial.logFactorial(counts[i]);
+		}
+		return logP + LogFactorial.logFactorial(n) - SpecialFunctions.logGamma(n + total);
+	}
+	
+	/**
+	 * @param counts per category
+	 * @return P(counts | data)
+	 */
+	public double predictive(long [] counts)
+	{
+		return Math.exp(logPredictive(counts));
+	}
+}
@@ -0,0 +1,101 @@
+package prob;
+
+/**
+ * A proportion estimated from simulated trials, with confidence bounds
+ * 
+ * Bounds are Wilson score intervals, which behave at proportions near 0 or 1 
+ * where the plain normal interval does not.
+ * 
+ * http://en.wikipedia.org/wiki/Binomial_proportion_confidence_interval#Wilson_score_interval
+ */
+public class Estimate
+{
+	/**
+	 * z for a two sided 95% interval
+	 */
+	public final static double Z95 = 1.959963984540054;
+	
+	protected final long hits;
+	protected final long trials;
+	
+	/**
+	 * @param hits trials in which the event occurred
+	 * @param trials trials counted
+	 */
+	public Estimate(long hits, long trials)
+	{
+		this.hits = hits;
+		this.trials = trials;
+	}
+	
+	public long hits()
+	{
+		return hits;
+	}
+	
+	public long trials()
+	{
+		return trials;
+	}
+	
+	/**
+	 * @return hits / trials
+	 */
+	public double mean()
+	{
+		return Bayes.observationToProbability(hits, trials);
+	}
+	
+	/**
+	 * @return sqrt(p (1 - p) / n)
+	 */
+	public double standardError()
+	{
+		double p = mean();
+		return Math.sqrt(p * (1.0-p) / trials);
+	}
+	
+	/**
+	 * @param z standard normal quantile, e.g. {@link #Z95}
+	 * @return lower Wilson bound
+	 */
+	public double lower(double z)
+	{
+		return wilson(z, -1);
+	}
+	
+	/**
+	 * @param z standard normal quantile, e.g. {@link #Z95}
+	 * @return upper Wilson bound
+	 */
+	public double upper(double z)
+	{
+		return wilson(z, 1);
+	}
+	
+	protected double wilson(double z, int sign)
+	{
+		double n = trials;
+		double p = mean();
+		double z2 = z*z;
+		double centre = p + z2/(2*n);
+		double spread = z * Math.sqrt(p*(1.0-p)/n + z2/(4*n*n));
+		return (centre + sign*spread) / (1.0 + z2/n);
+	}
+	
+	/**
+	 * @param value
+	 * @param z
+	 * @return true if value lies within the interval
+	 */
+	public boolean contains(double value, double z)
+	{
+		return value >= lower(z) && value <= upper(z);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return mean() + " [" + lower(Z95) + ", " + upper(Z95) + "] (" + hits + "/" + trials + ")";
+	}
+}
@@ -0,0 +1,125 @@
+package prob;
+
+/**
+ * Accumulates independent pieces of evidence about a binary hypothesis
+ * 
+ * In odds form Bayes is a product of likelihood ratios
+ * 
+ * O(A | B1..Bn) = O(A) * p(B1 | A)/p(B1 | ~A) * ... * p(Bn | A)/p(Bn | ~A)
+ * 
+ * which is held here as a running sum of logs, so hundreds of weak signals 
+ * can be applied to a one in a million prior without underflow and without 
+ * normalizing after each step. The posterior is only formed when asked for.
+ * 
+ * http://en.wikipedia.org/wiki/Bayes'_theorem#Bayes.27_rule
+ */
+public class Evidence
+{
+	protected double logOdds;
+	
+	/**
+	 * @param prior p(A)
+	 */
+	public Evidence(double prior)
+	{
+		reset(prior);
+	}
+	
+	/**
+	 * Start again from a prior
+	 * 
+	 * @param prior p(A)
+	 * @return this
+	 */
+	public Evidence reset(double prior)
+	{
+		logOdds = LogSpace.logit(prior);
+		return this;
+	}
+	
+	/**
+	 * @param lr p(B | A) / p(B | ~A)
+	 * @return this
+	 */
+	public Evidence addLikelihoodRatio(double lr)
+	{
+		logOdds += Math.log(lr);
+		return this;
+	}
+	
+	/**
+	 * @param logLr log(p(B | A) / p(B | ~A))
+	 * @return this
+	 */
+	public Evidence addLogLikelihoodRatio(double logLr)
+	{
+		logOdds += logLr;
+		return this;
+	}
+	
+	/**
+	 * @param likelihood p(B | A)
+	 * @param falsePositive p(B | ~A)
+	 * @return this
+	 */
+	public Evidence addObservation(double likelihood, double falsePositive)
+	{
+		logOdds += Math.log(likelihood) - Math.log(falsePositive);
+		return this;
+	}
+	
+	/**
+	 * Apply a run of log likelihood ratios
+	 * 
+	 * @param logLrs
+	 * @param offset
+	 * @param length
+	 * @return this
+	 */
+	public Evidence addLogLikelihoodRatios(double [] logLrs, int offset, int length)
+	{
+		Bayes.checkRange(logLrs, offset, length);
+		
+		double sum = 0;
+		for (int i = offset; i < offset+length; i++)
+		{
+			sum += logLrs[i];
+		}
+		logOdds += sum;
+		return this;
+	}
+	
+	/**
+	 * @return log O(A | evidence)
+	 */
+	public double logOdds()
+	{
+		return logOdds;
+	}
+	
+	/**
+	 * @return p(A | evidence)
+	 */
+	public double posterior()
+	{
+		return LogSpace.logistic(logOdds);
+	}
+	
+	/**
+	 * Stays finite long after {@link #posterior()} has underflowed to zero
+	 * 
+	 * @return log p(A | evidence)
+	 */
+	public double logPosterior()
+	{
+		return -LogSpace.log1pExp(-logOdds);
+	}
+	
+	/**
+	 * @return log p(~A | evidence)
+	 */
+	public double logComplement()
+	{
+		return -LogSpace.log1pExp(logOdds);
+	}
+}
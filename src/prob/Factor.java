@@ -0,0 +1,235 @@
+package prob;
+
+/**
+ * A table over a set of variables, the working unit of variable elimination
+ * 
+ * Values are flat and row-major in the order the variables are listed, the 
+ * last varying fastest, as in {@link JointDistribution}. Variables are 
+ * identified by their id in a {@link BayesianNetwork}.
+ * 
+ * Factors are never modified once built, every operation returns a new one.
+ */
+public class Factor
+{
+	protected final int [] variables;
+	protected final int [] cardinalities;
+	protected final int [] strides;
+	protected final double [] values;
+	
+	/**
+	 * @param variables variable ids
+	 * @param cardinalities values taken by each variable
+	 * @param values row-major, the last variable varying fastest, not copied
+	 */
+	public Factor(int [] variables, int [] cardinalities, double [] values)
+	{
+		if (variables.length != cardinalities.length)
+		{
+			throw new IllegalArgumentException("Need one cardinality per variable");
+		}
+		if (values.length != JointDistribution.size(cardinalities))
+		{
+			throw new IllegalArgumentException("Factor has " + values.length 
+					+ " values, expected " + JointDistribution.size(cardinalities));
+		}
+		this.variables = variables;
+		this.cardinalities = cardinalities;
+		this.values = values;
+		this.strides = new int[variables.length];
+		int stride = 1;
+		for (int i = variables.length-1; i >= 0; i--)
+		{
+			strides[i] = stride;
+			stride *= cardinalities[i];
+		}
+	}
+	
+	public int [] variables()
+	{
+		return variables;
+	}
+	
+	public double [] values()
+	{
+		return values;
+	}
+	
+	/**
+	 * @param variable
+	 * @return position of the variable in this factor, -1 if absent
+	 */
+	public int indexOf(int variable)
+	{
+		for (int i = 0; i < variables.length; i++)
+		{
+			if (variables[i] == variable)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param variable
+	 * @return true if this factor mentions the variable
+	 */
+	public boolean contains(int variable)
+	{
+		return indexOf(variable) >= 0;
+	}
+	
+	/**
+	 * Pointwise product over the union of both factors' variables
+	 * 
+	 * @param other
+	 * @return
+	 */
+	public Factor product(Factor other)
+	{
+		int n = variables.length;
+		for (int v : other.variables)
+		{
+			if (!contains(v))
+			{
+				n++;
+			}
+		}
+		int [] vars = new int[n];
+		int [] cards = new int[n];
+		System.arraycopy(variables, 0, vars, 0, variables.length);
+		System.arraycopy(cardinalities, 0, cards, 0, variables.length);
+		for (int i = 0, j = variables.length; i < other.variables.length; i++)
+		{
+			if (!contains(other.variables[i]))
+			{
+				vars[j] = other.variables[i];
+				cards[j++] = other.cardinalities[i];
+			}
+		}
+		
+		// stride of each result variable within each input, zero if absent
+		int [] sa = new int[n];
+		int [] sb = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			int a = indexOf(vars[i]);
+			int b = other.indexOf(vars[i]);
+			sa[i] = (a < 0) ? 0 : strides[a];
+			sb[i] = (b < 0) ? 0 : other.strides[b];
+		}
+		
+		double [] out = new double[JointDistribution.size(cards)];
+		double [] av = values;
+		double [] bv = other.values;
+		int [] counter = new int[n];
+		int ia = 0, ib = 0;
+		for (int i = 0; i < out.length; i++)
+		{
+			out[i] = av[ia] * bv[ib];
+			for (int v = n-1; v >= 0; v--)
+			{
+				ia += sa[v];
+				ib += sb[v];
+				if (++counter[v] < cards[v])
+				{
+					break;
+				}
+				ia -= sa[v] * cards[v];
+				ib -= sb[v] * cards[v];
+				counter[v] = 0;
+			}
+		}
+		return new Factor(vars, cards, out);
+	}
+	
+	/**
+	 * Sum a variable out
+	 * 
+	 * @param variable
+	 * @return a factor without the variable
+	 */
+	public Factor sumOut(int variable)
+	{
+		int k = indexOf(variable);
+		if (k < 0)
+		{
+			return this;
+		}
+		int [] vars = remove(variables, k);
+		int [] cards = remove(cardinalities, k);
+		double [] out = new double[values.length / cardinalities[k]];
+		
+		// sum over the variable's values, blocks of stride cells apart
+		int stride = strides[k];
+		int block = stride * cardinalities[k];
+		for (int start = 0, o = 0; start < values.length; start += block, o += stride)
+		{
+			for (int from = start; from < start+block; from += stride)
+			{
+				for (int i = 0; i < stride; i++)
+				{
+					out[o+i] += values[from+i];
+				}
+			}
+		}
+		return new Factor(vars, cards, out);
+	}
+	
+	/**
+	 * Fix an observed variable, keeping the matching slice unnormalized
+	 * 
+	 * @param variable
+	 * @param value
+	 * @return a factor without the variable
+	 */
+	public Factor reduce(int variable, int value)
+	{
+		int k = indexOf(variable);
+		if (k < 0)
+		{
+			return this;
+		}
+		if (value < 0 || value >= cardinalities[k])
+		{
+			throw new IndexOutOfBoundsException("Variable " + variable + " value " + value);
+		}
+		int [] vars = remove(variables, k);
+		int [] cards = remove(cardinalities, k);
+		double [] out = new double[values.length / cardinalities[k]];
+		
+		int stride = strides[k];
+		int block = stride * cardinalities[k];
+		for (int start = value*stride, o = 0; start < values.length; start += block, o += stride)
+		{
+			System.arraycopy(values, start, out, o, stride);
+		}
+		return new Factor(vars, cards, out);
+	}
+	
+	/**
+	 * @return values scaled to sum to one
+	 */
+	public double [] normalized()
+	{
+		double sum = 0;
+		for (double v : values)
+		{
+			sum += v;
+		}
+		double [] out = new double[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			out[i] = values[i] / sum;
+		}
+		return out;
+	}
+	
+	protected final static int [] remove(int [] array, int k)
+	{
+		int [] out = new int[array.length-1];
+		System.arraycopy(array, 0, out, 0, k);
+		System.arraycopy(array, k+1, out, k, array.length-k-1);
+		return out;
+	}
+}
@@ -0,0 +1,124 @@
+package prob;
+
+/**
+ * Gamma posterior over an event rate, updated from Poisson counts
+ * 
+ * Gamma(shape, rate) prior + k events over exposure t 
+ * = Gamma(shape + k, rate + t) posterior
+ * 
+ * http://en.wikipedia.org/wiki/Conjugate_prior
+ * http://en.wikipedia.org/wiki/Negative_binomial_distribution#Gamma.E2.80.93Poisson_mixture
+ */
+public class GammaPoisson
+{
+	protected double shape;
+	protected double rate;
+	
+	/**
+	 * @param shape prior pseudo-count of events, > 0
+	 * @param rate prior pseudo-exposure, > 0
+	 */
+	public GammaPoisson(double shape, double rate)
+	{
+		if (!(shape > 0 && rate > 0))
+		{
+			throw new IllegalArgumentException("Need shape, rate > 0: " + shape + ", " + rate);
+		}
+		this.shape = shape;
+		this.rate = rate;
+	}
+	
+	/**
+	 * @param events observed
+	 * @param exposure time or population over which they were observed
+	 * @return this
+	 */
+	public GammaPoisson update(long events, double exposure)
+	{
+		if (events < 0 || exposure < 0)
+		{
+			throw new IllegalArgumentException("Events and exposure must be non-negative");
+		}
+		shape += events;
+		rate += exposure;
+		return this;
+	}
+	
+	public double shape()
+	{
+		return shape;
+	}
+	
+	public double rate()
+	{
+		return rate;
+	}
+	
+	/**
+	 * @return shape / rate
+	 */
+	public double mean()
+	{
+		return shape / rate;
+	}
+	
+	/**
+	 * @return shape / rate^2
+	 */
+	public double variance()
+	{
+		return shape / (rate * rate);
+	}
+	
+	/**
+	 * @param p
+	 * @return the event rate below which the posterior puts probability p
+	 */
+	public double quantile(double p)
+	{
+		return SpecialFunctions.inverseRegularizedGammaP(p, shape) / rate;
+	}
+	
+	/**
+	 * Equal tailed credible interval
+	 * 
+	 * @param level e.g. 0.95
+	 * @return {lower, upper}
+	 */
+	public double [] credibleInterval(double level)
+	{
+		double tail = 0.5 * (1 - level);
+		return new double[]{quantile(tail), quantile(1 - tail)};
+	}
+	
+	/**
+	 * Posterior predictive, negative binomial
+	 * 
+	 * P(k | t) = Gamma(k + shape) / (k! Gamma(shape)) (rate/(rate+t))^shape (t/(rate+t))^k
+	 * 
+	 * @param k future events
+	 * @param exposure future exposure
+	 * @return log P(k events | data)
+	 */
+	public double logPredictive(long k, double exposure)
+	{
+		if (k < 0)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+		double total = rate + exposure;
+		return SpecialFunctions.logGamma(k + shape) - LogFactorial.logFactorial(k) 
+			- SpecialFunctions.logGamma(shape) 
+			+ shape * Math.log(rate / total) + ((k == 0) ? 0 : k * Math.log(exposure / total));
+	}
+	
+	/**
+	 * @param k future events
+	 * @param exposure future exposure
+	 * @return P(k events | data)
+	 */
+	public double predictive(long k, double exposure)
+	{
+		return Math.exp(logPredictive(k, exposure));
+	}
+}
@@ -0,0 +1,54 @@
+package prob;
+
+import java.util.SplittableRandom;
+
+/**
+ * Gibbs sampling, each coordinate drawn in turn from its full conditional
+ * 
+ * p(theta_d | theta_-d, data)
+ * 
+ * which the model supplies. Every move is accepted, there is nothing to tune.
+ * 
+ * http://en.wikipedia.org/wiki/Gibbs_sampling
+ */
+public class GibbsSampler extends McmcSampler
+{
+	/**
+	 * Draws from each coordinate's full conditional
+	 */
+	public interface FullConditionals
+	{
+		/**
+		 * @param d coordinate to draw
+		 * @param theta current state, theta[d] to be replaced
+		 * @param random
+		 * @return a draw from p(theta_d | theta_-d, data)
+		 */
+		double sample(int d, double [] theta, SplittableRandom random);
+	}
+	
+	protected final FullConditionals conditionals;
+	
+	/**
+	 * @param target the joint, only used to report the log density
+	 * @param conditionals
+	 * @param initial
+	 */
+	public GibbsSampler(LogDensity target, FullConditionals conditionals, double [] initial)
+	{
+		super(target, initial);
+		this.conditionals = conditionals;
+	}
+	
+	@Override
+	public void step(SplittableRandom random)
+	{
+		for (int d = 0; d < state.length; d++)
+		{
+			state[d] = conditionals.sample(d, state, random);
+		}
+		proposed += state.length;
+		accepted += state.length;
+		logDensity = target.logDensity(state);
+	}
+}
@@ -0,0 +1,686 @@
+package prob;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Discrete hidden Markov model: a hidden state, e.g. healthy or diseased,
+ * that moves between steps, seen only through noisy observations such as
+ * test results
+ *
+ * p(s_1) = initial, p(s_t+1 | s_t) = transition, p(o_t | s_t) = emission
+ *
+ * The forward pass is DiseaseTestCase's repeated Bayes update with a
+ * transition step between tests. It is scaled to sum to one at every step
+ * and the log likelihood is the sum of the log scales (Rabiner 1989), so
+ * long sequences do not underflow. Viterbi works with log probabilities.
+ *
+ * Matrices are flat row-major arrays, transition[from * states + to] and
+ * emission[state * symbols + symbol]. Per-sequence buffers live in a
+ * {@link Workspace} that grows to the longest sequence and is reused, and
+ * batches of sequences are split over the fork-join pool with one
+ * workspace per leaf.
+ *
+ * http://en.wikipedia.org/wiki/Hidden_Markov_model
+ * http://en.wikipedia.org/wiki/Forward%E2%80%93backward_algorithm
+ * http://en.wikipedia.org/wiki/Viterbi_algorithm
+ * http://en.wikipedia.org/wiki/Baum%E2%80%93Welch_algorithm
+ */
+public class HiddenMarkovModel
+{
+	/**
+	 * sequences per leaf task in batch operations
+	 */
+	protected final static int LEAF_SEQUENCES = 64;
+	
+	protected final int numStates;
+	protected final int numSymbols;
+	protected final double [] initial;
+	protected final double [] transition;
+	protected final double [] emission;
+	protected final double [] logInitial;
+	protected final double [] logTransition;
+	protected final double [] logEmission;
+	
+	/**
+	 * @param initial p(s_1), one per state
+	 * @param transition p(to | from), row-major by from
+	 * @param emission p(symbol | state), row-major by state
+	 * @param numSymbols observable symbols
+	 */
+	public HiddenMarkovModel(double [] initial, double [] transition, double [] emission, int numSymbols)
+	{
+		this.numStates = initial.length;
+		this.numSymbols = numSymbols;
+		if (transition.length != numStates * numStates || emission.length != numStates * numSymbols)
+		{
+			throw new IllegalArgumentException("Need a " + numStates + "x" + numStates
+					+ " transition and a " + numStates + "x" + numSymbols + " emission matrix");
+		}
+		checkRows(initial, 1, numStates);
+		checkRows(transition, numStates, numStates);
+		checkRows(emission, numStates, numSymbols);
+		this.initial = initial.clone();
+		this.transition = transition.clone();
+		this.emission = emission.clone();
+		this.logInitial = log(initial);
+		this.logTransition = log(transition);
+		this.logEmission = log(emission);
+	}
+	
+	protected final static void checkRows(double [] matrix, int rows, int columns)
+	{
+		for (int r = 0; r < rows; r++)
+		{
+			double sum = 0;
+			for (int c = 0; c < columns; c++)
+			{
+				double p = matrix[r * columns + c];
+				if (!(p >= 0 && p <= 1))
+				{
+					throw new IllegalArgumentException("Not a probability: " + p);
+				}
+				sum += p;
+			}
+			if (Math.abs(sum - 1.0) > 1.0E-9)
+			{
+				throw new IllegalArgumentException("Row " + r + " sums to " + sum);
+			}
+		}
+	}
+	
+	protected final static double [] log(double [] p)
+	{
+		double [] logP = new double[p.length];
+		for (int i = 0; i < p.length; i++)
+		{
+			logP[i] = Math.log(p[i]);
+		}
+		return logP;
+	}
+	
+	public int numStates()
+	{
+		return numStates;
+	}
+	
+	public int numSymbols()
+	{
+		return numSymbols;
+	}
+	
+	/**
+	 * @param from
+	 * @param to
+	 * @return p(to | from)
+	 */
+	public double transition(int from, int to)
+	{
+		return transition[from * numStates + to];
+	}
+	
+	/**
+	 * @param state
+	 * @param symbol
+	 * @return p(symbol | state)
+	 */
+	public double emission(int state, int symbol)
+	{
+		return emission[state * numSymbols + symbol];
+	}
+	
+	/**
+	 * @param state
+	 * @return p(s_1 = state)
+	 */
+	public double initial(int state)
+	{
+		return initial[state];
+	}
+	
+	/**
+	 * Buffers for one sequence at a time, not thread safe
+	 */
+	public static class Workspace
+	{
+		protected double [] alpha = new double[0];
+		protected double [] beta = new double[0];
+		protected double [] scale = new double[0];
+		protected int [] backPointer = new int[0];
+		protected double [] delta = new double[0];
+		protected double [] next = new double[0];
+		
+		protected void ensure(int length, int numStates)
+		{
+			int cells = length * numStates;
+			if (alpha.length < cells)
+			{
+				alpha = new double[cells];
+				beta = new double[cells];
+				backPointer = new int[cells];
+			}
+			if (scale.length < length)
+			{
+				scale = new double[length];
+			}
+			if (delta.length < numStates)
+			{
+				delta = new double[numStates];
+				next = new double[numStates];
+			}
+		}
+	}
+	
+	protected void checkObservations(int [] observations)
+	{
+		if (observations.length == 0)
+		{
+			throw new IllegalArgumentException("Empty sequence");
+		}
+		for (int o : observations)
+		{
+			if (o < 0 || o >= numSymbols)
+			{
+				throw new IllegalArgumentException("No symbol " + o);
+			}
+		}
+	}
+	
+	/**
+	 * Scaled forward pass into the workspace's alpha and scale
+	 *
+	 * @return log p(observations)
+	 */
+	protected double forward(int [] observations, Workspace work)
+	{
+		checkObservations(observations);
+		int n = numStates;
+		int length = observations.length;
+		work.ensure(length, n);
+		double [] alpha = work.alpha;
+		double [] scale = work.scale;
+		
+		double sum = 0;
+		int o = observations[0];
+		for (int i = 0; i < n; i++)
+		{
+			double a = initial[i] * emission[i * numSymbols + o];
+			alpha[i] = a;
+			sum += a;
+		}
+		double logLikelihood = normalize(alpha, 0, n, sum, scale, 0);
+		for (int t = 1; t < length; t++)
+		{
+			int previous = (t - 1) * n;
+			int current = t * n;
+			o = observations[t];
+			sum = 0;
+			for (int j = 0; j < n; j++)
+			{
+				double a = 0;
+				for (int i = 0; i < n; i++)
+				{
+					a += alpha[previous + i] * transition[i * n + j];
+				}
+				a *= emission[j * numSymbols + o];
+				alpha[current + j] = a;
+				sum += a;
+			}
+			logLikelihood += normalize(alpha, current, n, sum, scale, t);
+		}
+		return logLikelihood;
+	}
+	
+	/**
+	 * @return log of the scale, or -infinity for an impossible sequence
+	 */
+	protected final static double normalize(double [] alpha, int offset, int n, double sum, double [] scale, int t)
+	{
+		scale[t] = sum;
+		if (sum == 0)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+		double inverse = 1.0 / sum;
+		for (int i = offset; i < offset + n; i++)
+		{
+			alpha[i] *= inverse;
+		}
+		return Math.log(sum);
+	}
+	
+	/**
+	 * Scaled backward pass, after {@link #forward(int[], Workspace)}
+	 */
+	protected void backward(int [] observations, Workspace work)
+	{
+		int n = numStates;
+		int length = observations.length;
+		double [] beta = work.beta;
+		double [] scale = work.scale;
+		int last = (length - 1) * n;
+		for (int i = 0; i < n; i++)
+		{
+			beta[last + i] = 1;
+		}
+		for (int t = length - 2; t >= 0; t--)
+		{
+			int current = t * n;
+			int following = current + n;
+			int o = observations[t + 1];
+			double inverse = 1.0 / scale[t + 1];
+			for (int i = 0; i < n; i++)
+			{
+				double b = 0;
+				for (int j = 0; j < n; j++)
+				{
+					b += transition[i * n + j] * emission[j * numSymbols + o] * beta[following + j];
+				}
+				beta[current + i] = b * inverse;
+			}
+		}
+	}
+	
+	/**
+	 * @param observations symbols, one per step
+	 * @param work
+	 * @return log p(observations)
+	 */
+	public double logLikelihood(int [] observations, Workspace work)
+	{
+		return forward(observations, work);
+	}
+	
+	/**
+	 * Smoothed state probabilities, p(s_t | all observations)
+	 *
+	 * @param observations symbols, one per step
+	 * @param work
+	 * @param out receives length x states, row-major by step
+	 * @return log p(observations)
+	 */
+	public double posteriors(int [] observations, Workspace work, double [] out)
+	{
+		double logLikelihood = forward(observations, work);
+		if (logLikelihood == Double.NEGATIVE_INFINITY)
+		{
+			throw new IllegalArgumentException("Sequence is impossible under the model");
+		}
+		backward(observations, work);
+		int cells = observations.length * numStates;
+		double [] alpha = work.alpha;
+		double [] beta = work.beta;
+		for (int k = 0; k < cells; k++)
+		{
+			out[k] = alpha[k] * beta[k];
+		}
+		return logLikelihood;
+	}
+	
+	/**
+	 * Most likely hidden path
+	 *
+	 * @param observations symbols, one per step
+	 * @param work
+	 * @param path receives a state per step
+	 * @return log p(path, observations)
+	 */
+	public double viterbi(int [] observations, Workspace work, int [] path)
+	{
+		checkObservations(observations);
+		int n = numStates;
+		int length = observations.length;
+		work.ensure(length, n);
+		double [] delta = work.delta;
+		double [] next = work.next;
+		int [] backPointer = work.backPointer;
+		
+		for (int i = 0; i < n; i++)
+		{
+			delta[i] = logInitial[i] + logEmission[i * numSymbols + observations[0]];
+		}
+		for (int t = 1; t < length; t++)
+		{
+			int o = observations[t];
+			for (int j = 0; j < n; j++)
+			{
+				double best = Double.NEGATIVE_INFINITY;
+				int argBest = 0;
+				for (int i = 0; i < n; i++)
+				{
+					double score = delta[i] + logTransition[i * n + j];
+					if (score > best)
+					{
+						best = score;
+						argBest = i;
+					}
+				}
+				next[j] = best + logEmission[j * numSymbols + o];
+				backPointer[t * n + j] = argBest;
+			}
+			double [] swap = delta;
+			delta = next;
+			next = swap;
+		}
+		double best = Double.NEGATIVE_INFINITY;
+		int state = 0;
+		for (int i = 0; i < n; i++)
+		{
+			if (delta[i] > best)
+			{
+				best = delta[i];
+				state = i;
+			}
+		}
+		for (int t = length - 1; t >= 0; t--)
+		{
+			path[t] = state;
+			state = backPointer[t * n + state];
+		}
+		return best;
+	}
+	
+	/**
+	 * @param length steps
+	 * @param random
+	 * @param states receives hidden states, may be null
+	 * @param observations receives symbols
+	 */
+	public void sample(int length, SplittableRandom random, int [] states, int [] observations)
+	{
+		int state = draw(initial, 0, numStates, random);
+		for (int t = 0; t < length; t++)
+		{
+			if (states != null)
+			{
+				states[t] = state;
+			}
+			observations[t] = draw(emission, state * numSymbols, numSymbols, random);
+			state = draw(transition, state * numStates, numStates, random);
+		}
+	}
+	
+	protected final static int draw(double [] p, int offset, int n, SplittableRandom random)
+	{
+		double u = random.nextDouble();
+		for (int i = 0; i < n - 1; i++)
+		{
+			u -= p[offset + i];
+			if (u < 0)
+			{
+				return i;
+			}
+		}
+		return n - 1;
+	}
+	
+	/**
+	 * Score many independent sequences on the common pool
+	 *
+	 * @param sequences
+	 * @param out receives log p(sequence) per sequence
+	 */
+	public void logLikelihoods(int [][] sequences, double [] out)
+	{
+		logLikelihoods(sequences, out, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param sequences
+	 * @param out receives log p(sequence) per sequence
+	 * @param pool
+	 */
+	public void logLikelihoods(int [][] sequences, double [] out, ForkJoinPool pool)
+	{
+		if (out.length < sequences.length)
+		{
+			throw new IllegalArgumentException("Need an output per sequence");
+		}
+		long start = Metrics.start();
+		pool.invoke(new ScoreTask(sequences, out, 0, sequences.length));
+		Metrics.stop(Metrics.POSTERIOR, start);
+	}
+	
+	protected final class ScoreTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final int [][] sequences;
+		protected final double [] out;
+		protected final int from;
+		protected final int to;
+		
+		protected ScoreTask(int [][] sequences, double [] out, int from, int to)
+		{
+			this.sequences = sequences;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from > LEAF_SEQUENCES)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new ScoreTask(sequences, out, from, middle), new ScoreTask(sequences, out, middle, to));
+				return;
+			}
+			Workspace work = new Workspace();
+			for (int s = from; s < to; s++)
+			{
+				out[s] = forward(sequences[s], work);
+			}
+		}
+	}
+	
+	/**
+	 * One Baum-Welch step: expected initial, transition and emission counts
+	 * over every sequence, in parallel on the common pool, then renormalized
+	 *
+	 * @param sequences training sequences, each possible under this model
+	 * @return the re-estimated model, and its log likelihood before the step
+	 * in {@link Fit#logLikelihood}
+	 */
+	public Fit reestimate(int [][] sequences)
+	{
+		return reestimate(sequences, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param sequences training sequences, each possible under this model
+	 * @param pool
+	 * @return the re-estimated model, and its log likelihood before the step
+	 * in {@link Fit#logLikelihood}
+	 */
+	public Fit reestimate(int [][] sequences, ForkJoinPool pool)
+	{
+		long start = Metrics.start();
+		double [] totals = pool.invoke(new ExpectationTask(sequences, 0, sequences.length));
+		int n = numStates;
+		int m = numSymbols;
+		int transitionOffset = n;
+		int emissionOffset = n + n * n;
+		
+		double [] newInitial = new double[n];
+		double [] newTransition = new double[n * n];
+		double [] newEmission = new double[n * m];
+		normalizeRows(totals, 0, newInitial, 1, n, initial);
+		normalizeRows(totals, transitionOffset, newTransition, n, n, transition);
+		normalizeRows(totals, emissionOffset, newEmission, n, m, emission);
+		Metrics.stop(Metrics.POSTERIOR, start);
+		return new Fit(new HiddenMarkovModel(newInitial, newTransition, newEmission, m), totals[totals.length - 1]);
+	}
+	
+	/**
+	 * Rows of expected counts to probabilities, keeping the old row where a
+	 * state was never visited
+	 */
+	protected final static void normalizeRows(double [] counts, int offset, double [] out,
+			int rows, int columns, double [] old)
+	{
+		for (int r = 0; r < rows; r++)
+		{
+			double sum = 0;
+			for (int c = 0; c < columns; c++)
+			{
+				sum += counts[offset + r * columns + c];
+			}
+			for (int c = 0; c < columns; c++)
+			{
+				out[r * columns + c] = (sum > 0) ? counts[offset + r * columns + c] / sum : old[r * columns + c];
+			}
+		}
+	}
+	
+	/**
+	 * Baum-Welch on the common pool until the log likelihood improves by less
+	 * than tolerance
+	 *
+	 * @param sequences training sequences
+	 * @param maxIterations
+	 * @param tolerance e.g. 1e-6
+	 * @return the fitted model and its final log likelihood
+	 */
+	public Fit baumWelch(int [][] sequences, int maxIterations, double tolerance)
+	{
+		return baumWelch(sequences, maxIterations, tolerance, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param sequences training sequences
+	 * @param maxIterations
+	 * @param tolerance e.g. 1e-6
+	 * @param pool
+	 * @return the fitted model and its final log likelihood
+	 */
+	public Fit baumWelch(int [][] sequences, int maxIterations, double tolerance, ForkJoinPool pool)
+	{
+		HiddenMarkovModel model = this;
+		double previous = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < maxIterations; i++)
+		{
+			Fit fit = model.reestimate(sequences, pool);
+			if (fit.logLikelihood - previous < tolerance)
+			{
+				return new Fit(model, fit.logLikelihood);
+			}
+			previous = fit.logLikelihood;
+			model = fit.model;
+		}
+		double [] scores = new double[sequences.length];
+		model.logLikelihoods(sequences, scores, pool);
+		double total = 0;
+		for (double s : scores)
+		{
+			total += s;
+		}
+		return new Fit(model, total);
+	}
+	
+	/**
+	 * A model with the total log likelihood of its training sequences
+	 */
+	public static class Fit
+	{
+		public final HiddenMarkovModel model;
+		public final double logLikelihood;
+		
+		protected Fit(HiddenMarkovModel model, double logLikelihood)
+		{
+			this.model = model;
+			this.logLikelihood = logLikelihood;
+		}
+	}
+	
+	/**
+	 * Expected counts {initial[n], transition[n*n], emission[n*m], log likelihood}
+	 * summed over sequences [from, to)
+	 */
+	protected final class ExpectationTask extends RecursiveTask<double[]>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final int [][] sequences;
+		protected final int from;
+		protected final int to;
+		
+		protected ExpectationTask(int [][] sequences, int from, int to)
+		{
+			this.sequences = sequences;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected double[] compute()
+		{
+			if (to - from > LEAF_SEQUENCES)
+			{
+				int middle = (from + to) >>> 1;
+				ExpectationTask left = new ExpectationTask(sequences, from, middle);
+				left.fork();
+				double [] r = new ExpectationTask(sequences, middle, to).compute();
+				double [] l = left.join();
+				for (int i = 0; i < r.length; i++)
+				{
+					r[i] += l[i];
+				}
+				return r;
+			}
+			int n = numStates;
+			int m = numSymbols;
+			int transitionOffset = n;
+			int emissionOffset = n + n * n;
+			double [] totals = new double[n + n * n + n * m + 1];
+			Workspace work = new Workspace();
+			for (int s = from; s < to; s++)
+			{
+				int [] observations = sequences[s];
+				double logLikelihood = forward(observations, work);
+				if (logLikelihood == Double.NEGATIVE_INFINITY)
+				{
+					throw new IllegalArgumentException("Sequence " + s + " is impossible under the model");
+				}
+				backward(observations, work);
+				totals[totals.length - 1] += logLikelihood;
+				double [] alpha = work.alpha;
+				double [] beta = work.beta;
+				double [] scale = work.scale;
+				int length = observations.length;
+				for (int i = 0; i < n; i++)
+				{
+					totals[i] += alpha[i] * beta[i];
+				}
+				for (int t = 0; t < length; t++)
+				{
+					int o = observations[t];
+					for (int i = 0; i < n; i++)
+					{
+						totals[emissionOffset + i * m + o] += alpha[t * n + i] * beta[t * n + i];
+					}
+					if (t + 1 == length)
+					{
+						continue;
+					}
+					// xi_t(i, j) = alpha_t(i) a_ij b_j(o_t+1) beta_t+1(j) / c_t+1
+					int following = observations[t + 1];
+					double inverse = 1.0 / scale[t + 1];
+					for (int i = 0; i < n; i++)
+					{
+						double a = alpha[t * n + i] * inverse;
+						for (int j = 0; j < n; j++)
+						{
+							totals[transitionOffset + i * n + j] += a * transition[i * n + j]
+									* emission[j * m + following] * beta[(t + 1) * n + j];
+						}
+					}
+				}
+			}
+			return totals;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+package prob;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Rare event probabilities by importance sampling
+ * 
+ * Plain simulation of DiseaseTestCase needs around a million trials to see a 
+ * single diseased subject. Instead, chosen variables are drawn from a tilted 
+ * proposal q that makes the event common, and each sample is weighted by the 
+ * likelihood ratio of the nominal model to the proposal
+ * 
+ * P(E) = E_q[ I(E) p(x)/q(x) ]
+ * 
+ * which stays unbiased. The proposal can be tuned by the cross-entropy 
+ * method: refit each tilted probability to the weighted frequency with which 
+ * the variable is set in samples where the event occurs.
+ * 
+ * http://en.wikipedia.org/wiki/Importance_sampling
+ * http://en.wikipedia.org/wiki/Cross-entropy_method
+ */
+public class ImportanceSampler
+{
+	/**
+	 * A model of up to 64 binary variables, drawn in order, each of which may 
+	 * depend on those drawn before it
+	 */
+	public interface Model
+	{
+		/**
+		 * @return number of variables
+		 */
+		int size();
+		
+		/**
+		 * @param variable
+		 * @param bits values of variables 0..variable-1, bit i for variable i
+		 * @return nominal probability that the variable is set
+		 */
+		double probability(int variable, long bits);
+		
+		/**
+		 * @param bits every variable
+		 * @return true if the rare event occurred
+		 */
+		boolean event(long bits);
+	}
+	
+	/**
+	 * Estimate of P(E) with its diagnostics
+	 */
+	public static class Result
+	{
+		public final double estimate;
+		/**
+		 * variance of the estimate, not of a single weight
+		 */
+		public final double variance;
+		public final long samples;
+		public final long hits;
+		/**
+		 * (sum w)^2 / sum w^2 over samples in which the event occurred
+		 */
+		public final double effectiveSampleSize;
+		
+		protected Result(double estimate, double variance, long samples, long hits, double effectiveSampleSize)
+		{
+			this.estimate = estimate;
+			this.variance = variance;
+			this.samples = samples;
+			this.hits = hits;
+			this.effectiveSampleSize = effectiveSampleSize;
+		}
+		
+		/**
+		 * @return standard error / estimate
+		 */
+		public double relativeError()
+		{
+			return Math.sqrt(variance) / estimate;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return estimate + " +- " + Math.sqrt(variance) + " (" + hits + "/" + samples 
+				+ " hits, ess " + effectiveSampleSize + ")";
+		}
+	}
+	
+	/**
+	 * samples drawn between checks of the stopping rule
+	 */
+	protected final static int BATCH = 1024;
+	
+	protected final Model model;
+	/**
+	 * tilted probability per variable, NaN to draw from the nominal model
+	 */
+	protected final double [] proposal;
+	
+	/**
+	 * @param model
+	 */
+	public ImportanceSampler(Model model)
+	{
+		if (model.size() > 64)
+		{
+			throw new IllegalArgumentException("At most 64 variables: " + model.size());
+		}
+		this.model = model;
+		this.proposal = new double[model.size()];
+		Arrays.fill(proposal, Double.NaN);
+	}
+	
+	/**
+	 * Draw a variable from a fixed probability rather than the model
+	 * 
+	 * @param variable
+	 * @param q in (0, 1), so every outcome keeps a finite weight
+	 */
+	public void setProposal(int variable, double q)
+	{
+		if (!(q > 0 && q < 1))
+		{
+			throw new IllegalArgumentException("Proposal must be in (0, 1): " + q);
+		}
+		proposal[variable] = q;
+	}
+	
+	/**
+	 * Draw a variable from the model again
+	 * 
+	 * @param variable
+	 */
+	public void clearProposal(int variable)
+	{
+		proposal[variable] = Double.NaN;
+	}
+	
+	/**
+	 * @param variable
+	 * @return the tilted probability, NaN if drawn from the model
+	 */
+	public double proposal(int variable)
+	{
+		return proposal[variable];
+	}
+	
+	/**
+	 * Sample until the relative error reaches the target
+	 * 
+	 * @param targetRelativeError e.g. 0.01
+	 * @param maxSamples give up after this many
+	 * @param random
+	 * @return
+	 */
+	public Result estimate(double targetRelativeError, long maxSamples, SplittableRandom random)
+	{
+		long start = Metrics.start();
+		double sum = 0, sumSquares = 0;
+		long n = 0, hits = 0;
+		while (n < maxSamples)
+		{
+			long batch = Math.min(BATCH, maxSamples - n);
+			for (long i = 0; i < batch; i++)
+			{
+				double w = sample(random);
+				if (w > 0)
+				{
+					sum += w;
+					sumSquares += w * w;
+					hits++;
+				}
+			}
+			n += batch;
+			if (hits > 10 && relativeError(sum, sumSquares, n) <= targetRelativeError)
+			{
+				break;
+			}
+		}
+		double mean = sum / n;
+		double variance = Math.max(0, sumSquares / n - mean * mean) / n;
+		double ess = (sumSquares > 0) ? sum * sum / sumSquares : 0;
+		Metrics.stop(Metrics.SAMPLING, start);
+		return new Result(mean, variance, n, hits, ess);
+	}
+	
+	protected final static double relativeError(double sum, double sumSquares, long n)
+	{
+		double mean = sum / n;
+		double variance = Math.max(0, sumSquares / n - mean * mean) / n;
+		return Math.sqrt(variance) / mean;
+	}
+	
+	/**
+	 * Draw one sample from the proposal
+	 * 
+	 * @return its weight if the event occurred, otherwise 0
+	 */
+	protected double sample(SplittableRandom random)
+	{
+		return sample(random, null);
+	}
+	
+	/**
+	 * @param bitsOut receives the drawn variables in element 0, may be null
+	 */
+	protected double sample(SplittableRandom random, long [] bitsOut)
+	{
+		long bits = 0;
+		double w = 1;
+		int size = proposal.length;
+		for (int v = 0; v < size; v++)
+		{
+			double p = model.probability(v, bits);
+			double q = proposal[v];
+			if (Double.isNaN(q))
+			{
+				if (random.nextDouble() < p)
+				{
+					bits |= 1L << v;
+				}
+			}
+			else if (random.nextDouble() < q)
+			{
+				bits |= 1L << v;
+				w *= p / q;
+			}
+			else
+			{
+				w *= (1 - p) / (1 - q);
+			}
+		}
+		if (bitsOut != null)
+		{
+			bitsOut[0] = bits;
+		}
+		return model.event(bits) ? w : 0;
+	}
+	
+	/**
+	 * Refit the tilted variables by the cross-entropy method
+	 * 
+	 * q_v = sum(w I(E) x_v) / sum(w I(E)), smoothed against the previous q_v
+	 * 
+	 * Only variables that already have a proposal are refit, and the starting 
+	 * proposal must make the event occur at least occasionally.
+	 * 
+	 * @param iterations rounds of refitting
+	 * @param samples samples per round
+	 * @param smoothing weight of the new fit, in (0, 1]
+	 * @param random
+	 */
+	public void crossEntropy(int iterations, int samples, double smoothing, SplittableRandom random)
+	{
+		int size = proposal.length;
+		double [] weightSet = new double[size];
+		long [] bits = new long[1];
+		for (int it = 0; it < iterations; it++)
+		{
+			Arrays.fill(weightSet, 0);
+			double total = 0;
+			for (int i = 0; i < samples; i++)
+			{
+				double w = sample(random, bits);
+				if (w > 0)
+				{
+					total += w;
+					for (int v = 0; v < size; v++)
+					{
+						if ((bits[0] & (1L << v)) != 0)
+						{
+							weightSet[v] += w;
+						}
+					}
+				}
+			}
+			if (total == 0)
+			{
+				continue;
+			}
+			for (int v = 0; v < size; v++)
+			{
+				if (!Double.isNaN(proposal[v]))
+				{
+					// keep away from 0 and 1 so no outcome becomes impossible
+					double fit = Math.min(1 - 1.0E-6, Math.max(1.0E-6, weightSet[v] / total));
+					proposal[v] = smoothing * fit + (1 - smoothing) * proposal[v];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package prob;
+
+import java.util.Arrays;
+
+/**
+ * A discrete joint distribution over N variables
+ * 
+ * The table is one flat array in row-major order, the last variable varying 
+ * fastest, so the cell for (x0, x1, ..., xn-1) is at 
+ * 
+ * x0*stride[0] + x1*stride[1] + ... + xn-1*stride[n-1]
+ * 
+ * Single variable marginals, e.g. P(Green) summed over brand, are cached and 
+ * only recomputed after the table is changed.
+ * 
+ * Not thread safe while being modified.
+ */
+public class JointDistribution
+{
+	protected final int [] cardinalities;
+	protected final int [] strides;
+	protected final double [] table;
+	
+	protected final double [][] marginals;
+	protected double total = Double.NaN;
+	
+	/**
+	 * An all zero table
+	 * 
+	 * @param cardinalities number of values each variable takes
+	 */
+	public JointDistribution(int... cardinalities)
+	{
+		this(cardinalities, new double[size(cardinalities)]);
+	}
+	
+	/**
+	 * Wrap an existing table, which is not copied
+	 * 
+	 * @param cardinalities number of values each variable takes
+	 * @param table row-major cells, the last variable varying fastest
+	 */
+	public JointDistribution(int [] cardinalities, double [] table)
+	{
+		if (table.length != size(cardinalities))
+		{
+			throw new IllegalArgumentException("Table has " + table.length 
+					+ " cells, expected " + size(cardinalities));
+		}
+		this.cardinalities = cardinalities.clone();
+		this.table = table;
+		this.strides = new int[cardinalities.length];
+		int stride = 1;
+		for (int i = cardinalities.length-1; i >= 0; i--)
+		{
+			strides[i] = stride;
+			stride *= cardinalities[i];
+		}
+		this.marginals = new double[cardinalities.length][];
+	}
+	
+	/**
+	 * Joint of two variables from p(A) and p(B | A), e.g. brand then colour
+	 * 
+	 * p(A=i, B=j) = p(A=i) p(B=j | A=i)
+	 * 
+	 * @param prior p(A)
+	 * @param conditional p(B | A), one row per value of A
+	 * @return
+	 */
+	public final static JointDistribution fromConditional(double [] prior, double [][] conditional)
+	{
+		if (conditional.length != prior.length)
+		{
+			throw new IllegalArgumentException("Need one conditional row per prior value");
+		}
+		int cols = conditional[0].length;
+		JointDistribution joint = new JointDistribution(prior.length, cols);
+		for (int i = 0; i < prior.length; i++)
+		{
+			if (conditional[i].length != cols)
+			{
+				throw new IllegalArgumentException("Conditional rows differ in length");
+			}
+			for (int j = 0; j < cols; j++)
+			{
+				joint.table[i*cols + j] = prior[i] * conditional[i][j];
+			}
+		}
+		return joint;
+	}
+	
+	protected final static int size(int [] cardinalities)
+	{
+		long size = 1;
+		for (int c : cardinalities)
+		{
+			if (c <= 0)
+			{
+				throw new IllegalArgumentException("Cardinality must be positive: " + c);
+			}
+			size *= c;
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("Table too large");
+			}
+		}
+		return (int) size;
+	}
+	
+	/**
+	 * @param values one value per variable
+	 * @return offset of that cell in the flat table
+	 */
+	public int index(int... values)
+	{
+		if (values.length != cardinalities.length)
+		{
+			throw new IllegalArgumentException("Expected " + cardinalities.length + " values");
+		}
+		int index = 0;
+		for (int i = 0; i < values.length; i++)
+		{
+			if (values[i] < 0 || values[i] >= cardinalities[i])
+			{
+				throw new IndexOutOfBoundsException("Variable " + i + " value " + values[i]);
+			}
+			index += values[i] * strides[i];
+		}
+		return index;
+	}
+	
+	/**
+	 * @param index flat offset
+	 * @return
+	 */
+	public double get(int index)
+	{
+		return table[index];
+	}
+	
+	/**
+	 * @param values one value per variable
+	 * @return
+	 */
+	public double get(int... values)
+	{
+		return table[index(values)];
+	}
+	
+	/**
+	 * @param index flat offset
+	 * @param p
+	 */
+	public void set(int index, double p)
+	{
+		table[index] = p;
+		invalidate();
+	}
+	
+	/**
+	 * Call after writing to {@link #table()} directly
+	 */
+	public void invalidate()
+	{
+		Arrays.fill(marginals, null);
+		total = Double.NaN;
+	}
+	
+	/**
+	 * @return the backing table
+	 */
+	public double [] table()
+	{
+		return table;
+	}
+	
+	/**
+	 * @return number of variables
+	 */
+	public int numVariables()
+	{
+		return cardinalities.length;
+	}
+	
+	/**
+	 * @param variable
+	 * @return number of values it takes
+	 */
+	public int cardinality(int variable)
+	{
+		return cardinalities[variable];
+	}
+	
+	/**
+	 * @param variable
+	 * @return distance between consecutive values of the variable in the table
+	 */
+	public int stride(int variable)
+	{
+		return strides[variable];
+	}
+	
+	/**
+	 * @return sum of all cells, 1.0 once normalized
+	 */
+	public double total()
+	{
+		if (Double.isNaN(total))
+		{
+			double sum = 0;
+			for (int i = 0; i < table.length; i++)
+			{
+				sum += table[i];
+			}
+			total = sum;
+		}
+		return total;
+	}
+	
+	/**
+	 * Scale the table to sum to one
+	 * 
+	 * @return this
+	 */
+	public JointDistribution normalize()
+	{
+		double sum = total();
+		if (sum == 0)
+		{
+			throw new IllegalArgumentException("Cannot normalize an all zero table");
+		}
+		if (sum != 1.0)
+		{
+			double scale = 1.0 / sum;
+			for (int i = 0; i < table.length; i++)
+			{
+				table[i] *= scale;
+			}
+			// scaled copies, arrays already handed out keep their values
+			for (int v = 0; v < marginals.length; v++)
+			{
+				double [] marginal = marginals[v];
+				if (marginal != null)
+				{
+					double [] scaled = new double[marginal.length];
+					for (int i = 0; i < marginal.length; i++)
+					{
+						scaled[i] = marginal[i] * scale;
+					}
+					marginals[v] = scaled;
+				}
+			}
+			total = 1.0;
+		}
+		return this;
+	}
+	
+	/**
+	 * Marginal of one variable, e.g. P(Green) summed over brand
+	 * 
+	 * The result is cached and shared, do not modify it.
+	 * 
+	 * @param variable
+	 * @return p(variable = v) for each v, unnormalized if the table is
+	 */
+	public double [] marginal(int variable)
+	{
+		double [] marginal = marginals[variable];
+		if (marginal == null)
+		{
+			marginal = new double[cardinalities[variable]];
+			int stride = strides[variable];
+			int card = cardinalities[variable];
+			int block = stride * card;
+			// blocks of the table in which the variable runs through all its values
+			for (int start = 0; start < table.length; start += block)
+			{
+				for (int v = 0; v < card; v++)
+				{
+					int from = start + v*stride;
+					double sum = 0;
+					for (int i = from; i < from+stride; i++)
+					{
+						sum += table[i];
+					}
+					marginal[v] += sum;
+				}
+			}
+			marginals[variable] = marginal;
+		}
+		return marginal;
+	}
+	
+	/**
+	 * @param variable
+	 * @param value
+	 * @return p(variable = value)
+	 */
+	public double marginal(int variable, int value)
+	{
+		return marginal(variable)[value];
+	}
+	
+	/**
+	 * Sum out every variable not kept
+	 * 
+	 * @param keep variables to keep, in the order they appear in the result
+	 * @return a new joint over the kept variables
+	 */
+	public JointDistribution marginalize(int... keep)
+	{
+		long start = Metrics.start();
+		int [] keptCards = new int[keep.length];
+		for (int i = 0; i < keep.length; i++)
+		{
+			keptCards[i] = cardinalities[keep[i]];
+		}
+		JointDistribution result = new JointDistribution(keptCards);
+		
+		// stride in the result of each of our variables, zero if summed out
+		int [] resultStrides = new int[cardinalities.length];
+		for (int i = 0; i < keep.length; i++)
+		{
+			if (resultStrides[keep[i]] != 0)
+			{
+				throw new IllegalArgumentException("Variable kept twice: " + keep[i]);
+			}
+			resultStrides[keep[i]] = result.strides[i];
+		}
+		
+		// walk the table once with an odometer over all variables
+		int [] counter = new int[cardinalities.length];
+		int target = 0;
+		double [] out = result.table;
+		for (int i = 0; i < table.length; i++)
+		{
+			out[target] += table[i];
+			for (int v = cardinalities.length-1; v >= 0; v--)
+			{
+				target += resultStrides[v];
+				if (++counter[v] < cardinalities[v])
+				{
+					break;
+				}
+				target -= resultStrides[v] * cardinalities[v];
+				counter[v] = 0;
+			}
+		}
+		Metrics.stop(Metrics.MARGINALIZATION, start);
+		return result;
+	}
+	
+	/**
+	 * Condition on an observed value, e.g. brand given green
+	 * 
+	 * p(rest | variable = value) = p(rest, variable = value) / p(variable = value)
+	 * 
+	 * @param variable the observed variable, removed from the result
+	 * @param value its observed value, with non-zero probability
+	 * @return a new normalized joint over the remaining variables
+	 */
+	public JointDistribution condition(int variable, int value)
+	{
+		if (value < 0 || value >= cardinalities[variable])
+		{
+			throw new IndexOutOfBoundsException("Variable " + variable + " value " + value);
+		}
+		int [] restCards = new int[cardinalities.length-1];
+		for (int i = 0, j = 0; i < cardinalities.length; i++)
+		{
+			if (i != variable)
+			{
+				restCards[j++] = cardinalities[i];
+			}
+		}
+		JointDistribution result = new JointDistribution(restCards);
+		
+		int stride = strides[variable];
+		int block = stride * cardinalities[variable];
+		double [] out = result.table;
+		int o = 0;
+		for (int start = value*stride; start < table.length; start += block)
+		{
+			System.arraycopy(table, start, out, o, stride);
+			o += stride;
+		}
+		
+		double evidence = marginal(variable)[value];
+		if (evidence == 0)
+		{
+			throw new IllegalArgumentException("Variable " + variable + " = " + value + " has probability 0");
+		}
+		double scale = 1.0 / evidence;
+		for (int i = 0; i < out.length; i++)
+		{
+			out[i] *= scale;
+		}
+		result.total = 1.0;
+		return result;
+	}
+}
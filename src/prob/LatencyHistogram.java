@@ -0,0 +1,132 @@
+package prob;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds with log-linear buckets, 
+ * in the manner of HdrHistogram
+ * 
+ * Each power of two range is split into 2^SUB_BITS equal buckets, so any 
+ * recorded value is known to within 1 / 2^SUB_BITS, 6%, from 1ns to the 
+ * longest possible run, in a fixed thousand counters. Recording is a 
+ * couple of shifts and one atomic increment.
+ * 
+ * http://hdrhistogram.org/
+ */
+public class LatencyHistogram
+{
+	/**
+	 * log2 of the buckets per power of two
+	 */
+	protected final static int SUB_BITS = 4;
+	protected final static int SUB_BUCKETS = 1 << SUB_BITS;
+	protected final static int BUCKETS = (64 - SUB_BITS + 1) << SUB_BITS;
+	
+	protected final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	
+	/**
+	 * @param nanos >= 0
+	 * @return bucket index
+	 */
+	protected final static int bucket(long nanos)
+	{
+		if (nanos < SUB_BUCKETS)
+		{
+			return (int) Math.max(0, nanos);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int shift = exponent - SUB_BITS;
+		// the leading one bit is implicit, keep the next SUB_BITS bits
+		return ((shift + 1) << SUB_BITS) + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+	}
+	
+	/**
+	 * @param bucket
+	 * @return the smallest value that falls in the bucket
+	 */
+	protected final static long lowerBound(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		int shift = (bucket >>> SUB_BITS) - 1;
+		return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+	}
+	
+	/**
+	 * @param nanos
+	 */
+	public void record(long nanos)
+	{
+		counts.incrementAndGet(bucket(nanos));
+	}
+	
+	/**
+	 * @return values recorded
+	 */
+	public long count()
+	{
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			total += counts.get(i);
+		}
+		return total;
+	}
+	
+	/**
+	 * Taken bucket by bucket, so not a consistent snapshot while others record
+	 * 
+	 * @param q in [0, 1], e.g. 0.99
+	 * @return lower bound of the bucket holding the q quantile, 0 if empty
+	 */
+	public long quantile(double q)
+	{
+		long [] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(q * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += snapshot[i];
+			if (seen >= rank)
+			{
+				return lowerBound(i);
+			}
+		}
+		return lowerBound(BUCKETS - 1);
+	}
+	
+	/**
+	 * @return lower bound of the highest occupied bucket, 0 if empty
+	 */
+	public long max()
+	{
+		for (int i = BUCKETS - 1; i >= 0; i--)
+		{
+			if (counts.get(i) != 0)
+			{
+				return lowerBound(i);
+			}
+		}
+		return 0;
+	}
+	
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts.set(i, 0);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package prob;
+
+/**
+ * log(n!) from a shared table, so repeated queries are a single array read
+ * 
+ * The table is extended lazily, doubling up to {@link #MAX_TABLE} entries. 
+ * Small entries are exact sums of logs, the rest and anything beyond the 
+ * table come from the Stirling series, which is accurate to double precision 
+ * at that size.
+ * 
+ * http://en.wikipedia.org/wiki/Stirling's_approximation
+ */
+public class LogFactorial
+{
+	/**
+	 * largest table kept, 8MB
+	 */
+	public final static int MAX_TABLE = 1 << 20;
+	
+	/**
+	 * the Stirling series below is exact to double precision from here on
+	 */
+	protected final static int STIRLING_FROM = 256;
+	
+	protected final static double HALF_LOG_2PI = 0.5 * Math.log(2*Math.PI);
+	
+	/**
+	 * replaced, never modified, once published
+	 */
+	protected static volatile double [] table = {0.0, 0.0};
+	
+	/**
+	 * @param n >= 0
+	 * @return log(n!)
+	 */
+	public final static double logFactorial(long n)
+	{
+		double [] t = table;
+		if (n < t.length)
+		{
+			if (n < 0)
+			{
+				throw new IllegalArgumentException("n must be non-negative: " + n);
+			}
+			return t[(int) n];
+		}
+		if (n < MAX_TABLE)
+		{
+			return extend((int) n)[(int) n];
+		}
+		return stirling(n);
+	}
+	
+	/**
+	 * @param n
+	 * @param k
+	 * @return log(n choose k), negative infinity if k is out of range
+	 */
+	public final static double logChoose(long n, long k)
+	{
+		if (k < 0 || k > n)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+		return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+	}
+	
+	protected final static synchronized double [] extend(int n)
+	{
+		double [] old = table;
+		if (n < old.length)
+		{
+			return old;
+		}
+		int size = (int) Math.min(MAX_TABLE, Math.max(n + 1L, 2L * old.length));
+		double [] t = new double[size];
+		System.arraycopy(old, 0, t, 0, old.length);
+		for (int i = old.length; i < size; i++)
+		{
+			// a running sum would accumulate rounding error over a million terms
+			t[i] = (i < STIRLING_FROM) ? t[i-1] + Math.log(i) : stirling(i);
+		}
+		table = t;
+		return t;
+	}
+	
+	/**
+	 * log(n!) = n log(n) - n + log(2 pi n)/2 + 1/12n - 1/360n^3 + 1/1260n^5
+	 */
+	protected final static double stirling(long n)
+	{
+		double x = n;
+		double r = 1.0 / x;
+		double r2 = r * r;
+		return x * Math.log(x) - x + HALF_LOG_2PI + 0.5 * Math.log(x) 
+			+ r * (1.0/12.0 - r2 * (1.0/360.0 - r2 / 1260.0));
+	}
+}
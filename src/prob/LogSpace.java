@@ -0,0 +1,128 @@
+package prob;
+
+/**
+ * Numerically stable helpers for working with probabilities as logarithms
+ * 
+ * log-odds(p) = log(p / (1 - p))
+ * log(e^a + e^b) = max(a, b) + log(1 + e^-|a - b|)
+ * 
+ * Products of many small probabilities underflow long before their logs 
+ * lose precision, so chained evidence is accumulated here as sums.
+ * 
+ * http://en.wikipedia.org/wiki/LogSumExp
+ */
+public class LogSpace
+{
+	/**
+	 * Probability to log-odds
+	 * 
+	 * @param p
+	 * @return log(p / (1 - p))
+	 */
+	public final static double logit(double p)
+	{
+		return Math.log(p) - Math.log1p(-p);
+	}
+	
+	/**
+	 * Log-odds to probability, without overflow at either extreme
+	 * 
+	 * @param logOdds
+	 * @return 1 / (1 + e^-logOdds)
+	 */
+	public final static double logistic(double logOdds)
+	{
+		if (logOdds >= 0)
+		{
+			return 1.0 / (1.0 + Math.exp(-logOdds));
+		}
+		double e = Math.exp(logOdds);
+		return e / (1.0 + e);
+	}
+	
+	/**
+	 * log(1 + e^x)
+	 * 
+	 * @param x
+	 * @return
+	 */
+	public final static double log1pExp(double x)
+	{
+		if (x > 36.0)
+		{
+			return x + Math.exp(-x);
+		}
+		if (x < -36.0)
+		{
+			return Math.exp(x);
+		}
+		return Math.log1p(Math.exp(x));
+	}
+	
+	/**
+	 * log(e^a + e^b)
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public final static double logSumExp(double a, double b)
+	{
+		if (a == Double.NEGATIVE_INFINITY)
+		{
+			return b;
+		}
+		if (b == Double.NEGATIVE_INFINITY)
+		{
+			return a;
+		}
+		return (a > b) ? a + log1pExp(b - a) : b + log1pExp(a - b);
+	}
+	
+	/**
+	 * log(sum(e^x[i]))
+	 * 
+	 * @param x
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	public final static double logSumExp(double [] x, int offset, int length)
+	{
+		Bayes.checkRange(x, offset, length);
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = offset; i < offset+length; i++)
+		{
+			max = Math.max(max, x[i]);
+		}
+		if (max == Double.NEGATIVE_INFINITY || max == Double.POSITIVE_INFINITY)
+		{
+			return max;
+		}
+		double sum = 0;
+		for (int i = offset; i < offset+length; i++)
+		{
+			sum += Math.exp(x[i] - max);
+		}
+		return max + Math.log(sum);
+	}
+	
+	/**
+	 * Convert unnormalized log weights to probabilities in place
+	 * 
+	 * @param logWeights log p(Data | Hi) + log p(Hi), replaced by p(Hi | Data)
+	 * @param offset
+	 * @param length
+	 * @return log p(Data), the log normalizing constant
+	 */
+	public final static double normalize(double [] logWeights, int offset, int length)
+	{
+		double logTotal = logSumExp(logWeights, offset, length);
+		for (int i = offset; i < offset+length; i++)
+		{
+			logWeights[i] = Math.exp(logWeights[i] - logTotal);
+		}
+		return logTotal;
+	}
+}
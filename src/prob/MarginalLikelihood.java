@@ -0,0 +1,395 @@
+package prob;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Marginal likelihood and posterior over a large discrete hypothesis space
+ *
+ * p(B) = sum p(B | H_i) p(H_i)
+ * p(H_i | B) = p(B | H_i) p(H_i) / p(B)
+ *
+ * the denominator of Bayes with millions of terms in place of two. A plain
+ * running sum loses about log2(n) bits, so the sum is compensated: each
+ * product's rounding error comes from a fused multiply-add, each addition's
+ * from TwoSum, and the errors are added back at the end (Ogita, Rump and
+ * Oishi's Dot2). The result is as accurate as if summed in twice the
+ * precision, then rounded once.
+ *
+ * The arrays are cut into chunks on the fork-join pool, the common pool
+ * unless one is passed, and partial sums are combined pairwise up the task
+ * tree. Within a chunk four independent accumulators keep the floating
+ * point units busy. The JIT will not reorder a floating point sum into SIMD
+ * lanes itself.
+ *
+ * The log forms take log priors and log likelihoods, for spaces where the
+ * products underflow, and sum exp(x - max) the same way.
+ *
+ * http://en.wikipedia.org/wiki/Marginal_likelihood
+ * http://en.wikipedia.org/wiki/2Sum
+ * Ogita, Rump, Oishi, Accurate sum and dot product (2005)
+ */
+public class MarginalLikelihood
+{
+	/**
+	 * hypotheses per leaf task
+	 */
+	protected final static int LEAF = 1 << 15;
+	
+	/**
+	 * p(B)
+	 *
+	 * @param priors p(H_i)
+	 * @param likelihoods p(B | H_i)
+	 * @return sum p(B | H_i) p(H_i)
+	 */
+	public final static double evidence(double [] priors, double [] likelihoods)
+	{
+		return evidence(priors, likelihoods, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param priors p(H_i)
+	 * @param likelihoods p(B | H_i)
+	 * @param pool
+	 * @return sum p(B | H_i) p(H_i)
+	 */
+	public final static double evidence(double [] priors, double [] likelihoods, ForkJoinPool pool)
+	{
+		checkLengths(priors, likelihoods);
+		long start = Metrics.start();
+		double [] sum = pool.invoke(new SumTask(priors, likelihoods, false, 0, 0, priors.length));
+		Metrics.stop(Metrics.MARGINALIZATION, start);
+		return sum[0] + sum[1];
+	}
+	
+	/**
+	 * Posterior vector and its normalizer
+	 *
+	 * @param priors p(H_i)
+	 * @param likelihoods p(B | H_i)
+	 * @param out receives p(H_i | B), may be priors or likelihoods
+	 * @return p(B), which must be positive
+	 */
+	public final static double posteriors(double [] priors, double [] likelihoods, double [] out)
+	{
+		return posteriors(priors, likelihoods, out, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param priors p(H_i)
+	 * @param likelihoods p(B | H_i)
+	 * @param out receives p(H_i | B), may be priors or likelihoods
+	 * @param pool
+	 * @return p(B), which must be positive
+	 */
+	public final static double posteriors(double [] priors, double [] likelihoods, double [] out, ForkJoinPool pool)
+	{
+		double evidence = evidence(priors, likelihoods, pool);
+		if (!(evidence > 0))
+		{
+			throw new IllegalArgumentException("Observation is impossible, cannot normalize by p(B) = " + evidence);
+		}
+		checkLengths(priors, out);
+		pool.invoke(new ScaleTask(priors, likelihoods, evidence, out, 0, out.length, false));
+		return evidence;
+	}
+	
+	/**
+	 * log p(B)
+	 *
+	 * @param logPriors log p(H_i)
+	 * @param logLikelihoods log p(B | H_i)
+	 * @return log sum exp(log p(B | H_i) + log p(H_i))
+	 */
+	public final static double logEvidence(double [] logPriors, double [] logLikelihoods)
+	{
+		return logEvidence(logPriors, logLikelihoods, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param logPriors log p(H_i)
+	 * @param logLikelihoods log p(B | H_i)
+	 * @param pool
+	 * @return log sum exp(log p(B | H_i) + log p(H_i))
+	 */
+	public final static double logEvidence(double [] logPriors, double [] logLikelihoods, ForkJoinPool pool)
+	{
+		checkLengths(logPriors, logLikelihoods);
+		long start = Metrics.start();
+		double max = pool.invoke(new MaxTask(logPriors, logLikelihoods, 0, logPriors.length));
+		double result = max;
+		if (max != Double.NEGATIVE_INFINITY && max != Double.POSITIVE_INFINITY)
+		{
+			double [] sum = pool.invoke(new SumTask(logPriors, logLikelihoods, true, max, 0, logPriors.length));
+			result = max + Math.log(sum[0] + sum[1]);
+		}
+		Metrics.stop(Metrics.MARGINALIZATION, start);
+		return result;
+	}
+	
+	/**
+	 * @param logPriors log p(H_i)
+	 * @param logLikelihoods log p(B | H_i)
+	 * @param out receives log p(H_i | B), may be either input
+	 * @return log p(B), which must be finite
+	 */
+	public final static double logPosteriors(double [] logPriors, double [] logLikelihoods, double [] out)
+	{
+		return logPosteriors(logPriors, logLikelihoods, out, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param logPriors log p(H_i)
+	 * @param logLikelihoods log p(B | H_i)
+	 * @param out receives log p(H_i | B), may be either input
+	 * @param pool
+	 * @return log p(B), which must be finite
+	 */
+	public final static double logPosteriors(double [] logPriors, double [] logLikelihoods, double [] out, 
+			ForkJoinPool pool)
+	{
+		double logEvidence = logEvidence(logPriors, logLikelihoods, pool);
+		if (Double.isInfinite(logEvidence) || Double.isNaN(logEvidence))
+		{
+			throw new IllegalArgumentException("Cannot normalize by log p(B) = " + logEvidence);
+		}
+		checkLengths(logPriors, out);
+		pool.invoke(new ScaleTask(logPriors, logLikelihoods, logEvidence, out, 0, out.length, true));
+		return logEvidence;
+	}
+	
+	protected final static void checkLengths(double [] a, double [] b)
+	{
+		if (a.length != b.length)
+		{
+			throw new IllegalArgumentException("Lengths differ: " + a.length + ", " + b.length);
+		}
+	}
+	
+	/**
+	 * Compensated sum of a[i] b[i], or of exp(a[i] + b[i] - shift) as logs
+	 *
+	 * @return {sum, error}
+	 */
+	protected final static class SumTask extends RecursiveTask<double[]>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final double [] a;
+		protected final double [] b;
+		protected final boolean log;
+		protected final double shift;
+		protected final int from;
+		protected final int to;
+		
+		protected SumTask(double [] a, double [] b, boolean log, double shift, int from, int to)
+		{
+			this.a = a;
+			this.b = b;
+			this.log = log;
+			this.shift = shift;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected double[] compute()
+		{
+			if (to - from > LEAF)
+			{
+				int middle = (from + to) >>> 1;
+				SumTask left = new SumTask(a, b, log, shift, from, middle);
+				left.fork();
+				double [] r = new SumTask(a, b, log, shift, middle, to).compute();
+				double [] l = left.join();
+				return combine(l, r);
+			}
+			return log ? sumExp() : dot();
+		}
+		
+		/**
+		 * Dot2, four lanes
+		 */
+		protected double[] dot()
+		{
+			double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			double c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+			int i = from;
+			for (; i + 3 < to; i += 4)
+			{
+				double p, t, z;
+				p = a[i] * b[i];
+				c0 += Math.fma(a[i], b[i], -p);
+				t = s0 + p; z = t - s0; c0 += (s0 - (t - z)) + (p - z); s0 = t;
+				p = a[i+1] * b[i+1];
+				c1 += Math.fma(a[i+1], b[i+1], -p);
+				t = s1 + p; z = t - s1; c1 += (s1 - (t - z)) + (p - z); s1 = t;
+				p = a[i+2] * b[i+2];
+				c2 += Math.fma(a[i+2], b[i+2], -p);
+				t = s2 + p; z = t - s2; c2 += (s2 - (t - z)) + (p - z); s2 = t;
+				p = a[i+3] * b[i+3];
+				c3 += Math.fma(a[i+3], b[i+3], -p);
+				t = s3 + p; z = t - s3; c3 += (s3 - (t - z)) + (p - z); s3 = t;
+			}
+			for (; i < to; i++)
+			{
+				double p = a[i] * b[i];
+				c0 += Math.fma(a[i], b[i], -p);
+				double t = s0 + p, z = t - s0;
+				c0 += (s0 - (t - z)) + (p - z);
+				s0 = t;
+			}
+			return lanes(s0, s1, s2, s3, c0 + c1 + c2 + c3);
+		}
+		
+		/**
+		 * Neumaier-style sum of exp(a + b - shift), every term in (0, 1]
+		 */
+		protected double[] sumExp()
+		{
+			double s0 = 0, s1 = 0;
+			double c0 = 0, c1 = 0;
+			int i = from;
+			for (; i + 1 < to; i += 2)
+			{
+				double p, t, z;
+				p = Math.exp(a[i] + b[i] - shift);
+				t = s0 + p; z = t - s0; c0 += (s0 - (t - z)) + (p - z); s0 = t;
+				p = Math.exp(a[i+1] + b[i+1] - shift);
+				t = s1 + p; z = t - s1; c1 += (s1 - (t - z)) + (p - z); s1 = t;
+			}
+			if (i < to)
+			{
+				double p = Math.exp(a[i] + b[i] - shift);
+				double t = s0 + p, z = t - s0;
+				c0 += (s0 - (t - z)) + (p - z);
+				s0 = t;
+			}
+			return combine(new double[]{s0, c0}, new double[]{s1, c1});
+		}
+	}
+	
+	/**
+	 * Fold four lane sums and the accumulated error into {sum, error}
+	 */
+	protected final static double[] lanes(double s0, double s1, double s2, double s3, double error)
+	{
+		double [] left = combine(new double[]{s0, 0}, new double[]{s1, 0});
+		double [] right = combine(new double[]{s2, 0}, new double[]{s3, 0});
+		double [] sum = combine(left, right);
+		sum[1] += error;
+		return sum;
+	}
+	
+	/**
+	 * TwoSum of the partial sums, errors carried along
+	 *
+	 * @param l {sum, error}, reused for the result
+	 * @param r {sum, error}
+	 * @return l
+	 */
+	protected final static double[] combine(double [] l, double [] r)
+	{
+		double s = l[0] + r[0];
+		double z = s - l[0];
+		double e = (l[0] - (s - z)) + (r[0] - z);
+		l[0] = s;
+		l[1] += r[1] + e;
+		return l;
+	}
+	
+	protected final static class MaxTask extends RecursiveTask<Double>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final double [] a;
+		protected final double [] b;
+		protected final int from;
+		protected final int to;
+		
+		protected MaxTask(double [] a, double [] b, int from, int to)
+		{
+			this.a = a;
+			this.b = b;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Double compute()
+		{
+			if (to - from > LEAF)
+			{
+				int middle = (from + to) >>> 1;
+				MaxTask left = new MaxTask(a, b, from, middle);
+				left.fork();
+				double r = new MaxTask(a, b, middle, to).compute();
+				return Math.max(left.join(), r);
+			}
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++)
+			{
+				max = Math.max(max, a[i] + b[i]);
+			}
+			return max;
+		}
+	}
+	
+	/**
+	 * out[i] = a[i] b[i] / evidence, or a[i] + b[i] - evidence as logs
+	 *
+	 * Dividing rather than multiplying by 1 / evidence, which overflows for 
+	 * a subnormal evidence, where tiny likelihoods are most likely to land.
+	 */
+	protected final static class ScaleTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final double [] a;
+		protected final double [] b;
+		protected final double evidence;
+		protected final double [] out;
+		protected final int from;
+		protected final int to;
+		protected final boolean log;
+		
+		protected ScaleTask(double [] a, double [] b, double evidence, double [] out, int from, int to, boolean log)
+		{
+			this.a = a;
+			this.b = b;
+			this.evidence = evidence;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+			this.log = log;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from > LEAF)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new ScaleTask(a, b, evidence, out, from, middle, log),
+						new ScaleTask(a, b, evidence, out, middle, to, log));
+				return;
+			}
+			if (log)
+			{
+				for (int i = from; i < to; i++)
+				{
+					out[i] = a[i] + b[i] - evidence;
+				}
+			}
+			else
+			{
+				for (int i = from; i < to; i++)
+				{
+					out[i] = a[i] * b[i] / evidence;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package prob;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs several Markov chains in parallel and diagnoses them together
+ * 
+ * Each chain has its own sampler, random stream, trace ring and running 
+ * statistics, and runs as its own fork-join task, so chains share nothing 
+ * while running. Burn-in steps adapt the samplers and are discarded. Chains 
+ * should start from dispersed points for the R-hat diagnostic to mean much.
+ */
+public class Mcmc
+{
+	/**
+	 * Builds the sampler for each chain
+	 */
+	public interface Factory
+	{
+		/**
+		 * @param chain index of the chain, for choosing a starting point
+		 * @return a new sampler
+		 */
+		McmcSampler create(int chain);
+	}
+	
+	/**
+	 * Chains after a run
+	 */
+	public static class Result
+	{
+		public final McmcSampler [] samplers;
+		public final Trace [] traces;
+		public final ChainStatistics [] statistics;
+		
+		protected Result(McmcSampler [] samplers, Trace [] traces, ChainStatistics [] statistics)
+		{
+			this.samplers = samplers;
+			this.traces = traces;
+			this.statistics = statistics;
+		}
+		
+		/**
+		 * @param d
+		 * @return posterior mean over every chain
+		 */
+		public double mean(int d)
+		{
+			double sum = 0;
+			long n = 0;
+			for (ChainStatistics chain : statistics)
+			{
+				sum += chain.mean(d) * chain.count();
+				n += chain.count();
+			}
+			return sum / n;
+		}
+		
+		/**
+		 * @param d
+		 * @return summed effective sample size over every chain
+		 */
+		public double effectiveSampleSize(int d)
+		{
+			double sum = 0;
+			for (ChainStatistics chain : statistics)
+			{
+				sum += chain.effectiveSampleSize(d);
+			}
+			return sum;
+		}
+		
+		/**
+		 * @param d
+		 * @return Gelman-Rubin R-hat, under 1.01 or so once converged
+		 */
+		public double rHat(int d)
+		{
+			return ChainStatistics.rHat(statistics, d);
+		}
+	}
+	
+	protected final ForkJoinPool pool;
+	
+	public Mcmc()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public Mcmc(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * @param factory
+	 * @param chains number of chains
+	 * @param burnIn adapting steps discarded per chain
+	 * @param samples steps kept per chain
+	 * @param traceCapacity most recent samples held per chain
+	 * @param seed
+	 * @return
+	 */
+	public Result run(Factory factory, int chains, final long burnIn, final long samples, 
+			int traceCapacity, long seed)
+	{
+		long start = Metrics.start();
+		final McmcSampler [] samplers = new McmcSampler[chains];
+		final Trace [] traces = new Trace[chains];
+		final ChainStatistics [] statistics = new ChainStatistics[chains];
+		int batchSize = (int) Math.max(1, Math.sqrt(samples));
+		SplittableRandom root = new SplittableRandom(seed);
+		
+		final RecursiveAction [] tasks = new RecursiveAction[chains];
+		for (int c = 0; c < chains; c++)
+		{
+			final McmcSampler sampler = factory.create(c);
+			final Trace trace = new Trace(sampler.dimension(), traceCapacity);
+			final ChainStatistics stats = new ChainStatistics(sampler.dimension(), batchSize);
+			final SplittableRandom random = root.split();
+			samplers[c] = sampler;
+			traces[c] = trace;
+			statistics[c] = stats;
+			tasks[c] = new RecursiveAction()
+			{
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected void compute()
+				{
+					sampler.setAdapting(true);
+					for (long i = 0; i < burnIn; i++)
+					{
+						sampler.step(random);
+					}
+					sampler.setAdapting(false);
+					double [] state = sampler.state();
+					for (long i = 0; i < samples; i++)
+					{
+						sampler.step(random);
+						trace.add(state);
+						stats.add(state);
+					}
+				}
+			};
+		}
+		pool.invoke(new RecursiveAction()
+		{
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected void compute()
+			{
+				invokeAll(tasks);
+			}
+		});
+		Metrics.stop(Metrics.SAMPLING, start);
+		return new Result(samplers, traces, statistics);
+	}
+}
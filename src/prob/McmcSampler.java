@@ -0,0 +1,95 @@
+package prob;
+
+import java.util.SplittableRandom;
+
+/**
+ * One Markov chain targeting an unnormalized posterior
+ * 
+ * p(theta | data) is proportional to p(data | theta) p(theta)
+ * 
+ * which is all a sampler needs: the normalizing p(data) cancels in every 
+ * move. Subclasses implement a move, the chain's state is updated in place.
+ * 
+ * Not thread safe, each chain gets its own sampler.
+ */
+public abstract class McmcSampler
+{
+	/**
+	 * log p(data | theta) + log p(theta), up to a constant
+	 */
+	public interface LogDensity
+	{
+		/**
+		 * @param theta
+		 * @return log density, negative infinity outside the support
+		 */
+		double logDensity(double [] theta);
+	}
+	
+	protected final LogDensity target;
+	protected final double [] state;
+	protected double logDensity;
+	protected boolean adapting;
+	
+	protected long proposed;
+	protected long accepted;
+	
+	/**
+	 * @param target
+	 * @param initial starting point, inside the support
+	 */
+	protected McmcSampler(LogDensity target, double [] initial)
+	{
+		this.target = target;
+		this.state = initial.clone();
+		this.logDensity = target.logDensity(state);
+		if (Double.isNaN(logDensity) || logDensity == Double.NEGATIVE_INFINITY)
+		{
+			throw new IllegalArgumentException("Initial state is outside the support");
+		}
+	}
+	
+	/**
+	 * Make one move
+	 * 
+	 * @param random
+	 */
+	public abstract void step(SplittableRandom random);
+	
+	/**
+	 * Tune step sizes while true, during burn-in only, as adapting breaks 
+	 * the chain's detailed balance
+	 * 
+	 * @param adapting
+	 */
+	public void setAdapting(boolean adapting)
+	{
+		this.adapting = adapting;
+	}
+	
+	/**
+	 * @return the current state, updated in place by each step
+	 */
+	public double [] state()
+	{
+		return state;
+	}
+	
+	public double logDensity()
+	{
+		return logDensity;
+	}
+	
+	public int dimension()
+	{
+		return state.length;
+	}
+	
+	/**
+	 * @return accepted / proposed moves, 1 for samplers that always move
+	 */
+	public double acceptanceRate()
+	{
+		return (proposed == 0) ? Double.NaN : accepted / (double) proposed;
+	}
+}
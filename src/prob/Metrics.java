@@ -0,0 +1,182 @@
+package prob;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts and latency histograms for the coarse computation entry 
+ * points: network queries, marginalization and the samplers
+ * 
+ * Off unless the JVM starts with -Dprob.metrics=true. {@link #ENABLED} is a 
+ * static final, so when it is false the JIT folds every 
+ * 
+ * long start = Metrics.start();
+ * ...
+ * Metrics.stop(Metrics.POSTERIOR, start);
+ * 
+ * down to nothing. Operations slower than -Dprob.metrics.slowMillis, 100 by 
+ * default, are also committed as {@link SlowQueryEvent}s for the flight 
+ * recorder. While the event is enabled each operation begins one, kept on a 
+ * per-thread stack, so the event spans the operation itself. Scalar primitives like {@link Bayes#posterior(double, double, double)} 
+ * take nanoseconds and are not instrumented, timing them would cost more 
+ * than they do.
+ */
+public class Metrics
+{
+	public final static boolean ENABLED = Boolean.getBoolean("prob.metrics");
+	
+	public final static long SLOW_NANOS = Long.getLong("prob.metrics.slowMillis", 100) * 1000000L;
+	
+	public final static int POSTERIOR = 0, MARGINALIZATION = 1, SAMPLING = 2;
+	
+	protected final static String [] NAMES = {"posterior", "marginalization", "sampling"};
+	
+	/**
+	 * events begun by operations in progress on this thread, innermost first
+	 */
+	protected final static ThreadLocal<ArrayDeque<SlowQueryEvent>> OPEN = new ThreadLocal<ArrayDeque<SlowQueryEvent>>()
+	{
+		@Override
+		protected ArrayDeque<SlowQueryEvent> initialValue()
+		{
+			return new ArrayDeque<SlowQueryEvent>();
+		}
+	};
+	
+	protected final static LongAdder [] CALLS = new LongAdder[NAMES.length];
+	protected final static LatencyHistogram [] LATENCIES = new LatencyHistogram[NAMES.length];
+	static
+	{
+		for (int i = 0; i < NAMES.length; i++)
+		{
+			CALLS[i] = new LongAdder();
+			LATENCIES[i] = new LatencyHistogram();
+		}
+	}
+	
+	/**
+	 * Receives each operation's metrics, e.g. to push them to a monitoring 
+	 * system on a schedule
+	 */
+	public interface Exporter
+	{
+		/**
+		 * @param operation name of the operation
+		 * @param calls completed calls since start
+		 * @param latencies nanoseconds per call, live, do not reset
+		 */
+		void export(String operation, long calls, LatencyHistogram latencies);
+	}
+	
+	/**
+	 * @return a start time for {@link #stop(int, long)}, 0 when disabled
+	 */
+	public final static long start()
+	{
+		return ENABLED ? begin() : 0;
+	}
+	
+	/**
+	 * @param operation {@link #POSTERIOR}, {@link #MARGINALIZATION} or {@link #SAMPLING}
+	 * @param start from {@link #start()}
+	 */
+	public final static void stop(int operation, long start)
+	{
+		if (ENABLED)
+		{
+			end(operation, start);
+		}
+	}
+	
+	/**
+	 * Start timing an operation whatever {@link #ENABLED} says, beginning a 
+	 * {@link SlowQueryEvent} if it is enabled
+	 * 
+	 * @return a start time for {@link #end(int, long)}
+	 */
+	public final static long begin()
+	{
+		long start = System.nanoTime();
+		SlowQueryEvent event = new SlowQueryEvent();
+		if (event.isEnabled())
+		{
+			event.start = start;
+			event.begin();
+			OPEN.get().push(event);
+		}
+		return start;
+	}
+	
+	/**
+	 * Finish timing an operation whatever {@link #ENABLED} says, committing 
+	 * its event if it was slow
+	 * 
+	 * @param operation
+	 * @param start from {@link #begin()}
+	 */
+	public final static void end(int operation, long start)
+	{
+		long nanos = System.nanoTime() - start;
+		record(operation, nanos);
+		ArrayDeque<SlowQueryEvent> open = OPEN.get();
+		// inner operations that threw never ended, drop their events
+		while (!open.isEmpty() && open.peek().start - start > 0)
+		{
+			open.pop();
+		}
+		if (!open.isEmpty() && open.peek().start == start)
+		{
+			SlowQueryEvent event = open.pop();
+			event.end();
+			if (nanos >= SLOW_NANOS)
+			{
+				event.operation = NAMES[operation];
+				event.latency = nanos;
+				event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Record a call whatever {@link #ENABLED} says. Only counts and 
+	 * latencies, a {@link SlowQueryEvent} needs {@link #begin()} to mark 
+	 * when the operation started.
+	 * 
+	 * @param operation
+	 * @param nanos
+	 */
+	public final static void record(int operation, long nanos)
+	{
+		CALLS[operation].increment();
+		LATENCIES[operation].record(nanos);
+	}
+	
+	/**
+	 * @param operation
+	 * @return calls recorded
+	 */
+	public final static long calls(int operation)
+	{
+		return CALLS[operation].sum();
+	}
+	
+	/**
+	 * @param operation
+	 * @return the operation's live histogram
+	 */
+	public final static LatencyHistogram latencies(int operation)
+	{
+		return LATENCIES[operation];
+	}
+	
+	/**
+	 * @param exporter called once per operation
+	 */
+	public final static void export(Exporter exporter)
+	{
+		for (int i = 0; i < NAMES.length; i++)
+		{
+			exporter.export(NAMES[i], CALLS[i].sum(), LATENCIES[i]);
+		}
+	}
+}
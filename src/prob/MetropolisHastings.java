@@ -0,0 +1,72 @@
+package prob;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Random walk Metropolis, one coordinate at a time
+ * 
+ * Each coordinate gets a Gaussian proposal, accepted with probability 
+ * min(1, p(theta') / p(theta)). While adapting, each coordinate's step size 
+ * follows a Robbins-Monro schedule towards the 0.44 acceptance rate that is 
+ * efficient for one dimensional moves.
+ * 
+ * http://en.wikipedia.org/wiki/Metropolis-Hastings_algorithm
+ */
+public class MetropolisHastings extends McmcSampler
+{
+	protected final static double TARGET_ACCEPTANCE = 0.44;
+	
+	protected final double [] logScale;
+	protected final long [] adaptations;
+	
+	/**
+	 * @param target
+	 * @param initial
+	 * @param scale initial proposal standard deviation, all coordinates
+	 */
+	public MetropolisHastings(LogDensity target, double [] initial, double scale)
+	{
+		super(target, initial);
+		this.logScale = new double[initial.length];
+		this.adaptations = new long[initial.length];
+		Arrays.fill(logScale, Math.log(scale));
+	}
+	
+	@Override
+	public void step(SplittableRandom random)
+	{
+		for (int d = 0; d < state.length; d++)
+		{
+			double old = state[d];
+			state[d] = old + Math.exp(logScale[d]) * random.nextGaussian();
+			double proposal = target.logDensity(state);
+			double logU = Math.log(random.nextDouble());
+			boolean accept = logU < proposal - logDensity;
+			proposed++;
+			if (accept)
+			{
+				logDensity = proposal;
+				accepted++;
+			}
+			else
+			{
+				state[d] = old;
+			}
+			if (adapting)
+			{
+				double rate = 1.0 / Math.sqrt(++adaptations[d]);
+				logScale[d] += rate * ((accept ? 1.0 : 0.0) - TARGET_ACCEPTANCE);
+			}
+		}
+	}
+	
+	/**
+	 * @param d
+	 * @return the current proposal standard deviation for a coordinate
+	 */
+	public double scale(int d)
+	{
+		return Math.exp(logScale[d]);
+	}
+}
@@ -0,0 +1,101 @@
+package prob;
+
+import java.util.SplittableRandom;
+
+/**
+ * Probability of a partition of n independent draws over k categories
+ * 
+ * P(c1, ..., ck) = n! / (c1! ... ck!) p1^c1 ... pk^ck
+ * 
+ * Draws are k conditional binomials, c_i ~ Bin(n - c1 - ... - c(i-1), 
+ * p_i / (p_i + ... + p_k)), so a sample costs O(k) and not O(n).
+ * 
+ * http://en.wikipedia.org/wiki/Multinomial_distribution
+ */
+public class Multinomial
+{
+	/**
+	 * @param counts draws in each category
+	 * @return log(n! / (c1! ... ck!)), the log number of orderings
+	 */
+	public final static double logCoefficient(long [] counts)
+	{
+		long n = 0;
+		double logDenominator = 0;
+		for (long c : counts)
+		{
+			if (c < 0)
+			{
+				throw new IllegalArgumentException("Negative count: " + c);
+			}
+			n += c;
+			logDenominator += LogFactorial.logFactorial(c);
+		}
+		return LogFactorial.logFactorial(n) - logDenominator;
+	}
+	
+	/**
+	 * @param counts draws in each category
+	 * @param probs probability of each category, summing to one
+	 * @return log P(counts)
+	 */
+	public final static double logPmf(long [] counts, double [] probs)
+	{
+		if (counts.length != probs.length)
+		{
+			throw new IllegalArgumentException("Need one probability per count");
+		}
+		double logP = logCoefficient(counts);
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (counts[i] > 0)
+			{
+				logP += counts[i] * Math.log(probs[i]);
+			}
+		}
+		return logP;
+	}
+	
+	/**
+	 * @param counts draws in each category
+	 * @param probs probability of each category, summing to one
+	 * @return P(counts)
+	 */
+	public final static double pmf(long [] counts, double [] probs)
+	{
+		return Math.exp(logPmf(counts, probs));
+	}
+	
+	/**
+	 * @param n draws
+	 * @param probs probability of each category, summing to one
+	 * @param random
+	 * @param counts receives draws per category, the same length as probs
+	 */
+	public final static void sample(long n, double [] probs, SplittableRandom random, long [] counts)
+	{
+		if (counts.length != probs.length)
+		{
+			throw new IllegalArgumentException("Need one probability per count");
+		}
+		double remaining = 0;
+		for (double p : probs)
+		{
+			remaining += p;
+		}
+		int last = probs.length - 1;
+		for (int i = 0; i < last; i++)
+		{
+			long c = 0;
+			if (n > 0 && probs[i] > 0)
+			{
+				// rounding can leave remaining a hair under probs[i]
+				c = Binomial.sample(n, probs[i] / Math.max(remaining, probs[i]), random);
+			}
+			counts[i] = c;
+			n -= c;
+			remaining -= probs[i];
+		}
+		counts[last] = n;
+	}
+}
@@ -0,0 +1,327 @@
+package prob;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An online Naive Bayes classifier over discrete features, trained 
+ * concurrently
+ * 
+ * p(C | x1..xn) is proportional to p(C) p(x1 | C) ... p(xn | C)
+ * 
+ * with each probability an {@link Bayes#observationToProbability(double, double)} 
+ * of counts, Laplace smoothed
+ * 
+ * p(xi = v | C) = (count(C, xi = v) + alpha) / (count(C) + alpha |xi|)
+ * 
+ * Training threads count into a fixed number of striped primitive arrays, 
+ * picked by thread id, so training rarely contends however many threads 
+ * come and go. Stripes are merged when a {@link Model} is taken, which 
+ * holds the smoothed log probabilities for fast classification in log space.
+ * 
+ * http://en.wikipedia.org/wiki/Naive_Bayes_classifier
+ */
+public class NaiveBayes
+{
+	/**
+	 * feature value to skip, in training and classification
+	 */
+	public final static int MISSING = -1;
+	
+	protected final int numClasses;
+	protected final int [] cardinalities;
+	/**
+	 * offset of each feature's counts within a class's block
+	 */
+	protected final int [] offsets;
+	protected final int classCells;
+	protected final double alpha;
+	
+	/**
+	 * count stripes, a power of two, at least two per core
+	 */
+	protected final static int STRIPES = Integer.highestOneBit(
+			Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+	
+	/**
+	 * striped counts: class totals, then one block per class, each stripe 
+	 * allocated by the first thread to use it
+	 */
+	protected final AtomicReferenceArray<AtomicLongArray> shards = 
+			new AtomicReferenceArray<AtomicLongArray>(STRIPES);
+	
+	/**
+	 * @param numClasses
+	 * @param cardinalities values taken by each feature
+	 * @param alpha Laplace smoothing pseudo-count, 1 for add-one, 0 for raw 
+	 * frequencies with an untrained class or feature taken as uniform
+	 */
+	public NaiveBayes(int numClasses, int [] cardinalities, double alpha)
+	{
+		if (numClasses <= 0 || !(alpha >= 0))
+		{
+			throw new IllegalArgumentException("Need classes and a non-negative alpha");
+		}
+		this.numClasses = numClasses;
+		this.cardinalities = cardinalities.clone();
+		this.offsets = new int[cardinalities.length];
+		long cells = 0;
+		for (int f = 0; f < cardinalities.length; f++)
+		{
+			if (cardinalities[f] <= 0)
+			{
+				throw new IllegalArgumentException("Feature " + f + " cardinality must be positive: " 
+						+ cardinalities[f]);
+			}
+			offsets[f] = (int) cells;
+			cells += cardinalities[f];
+		}
+		if ((cells + 1) * numClasses > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Count table too large");
+		}
+		this.classCells = (int) cells;
+		this.alpha = alpha;
+	}
+	
+	/**
+	 * Count one labelled example, safe to call from any number of threads
+	 * 
+	 * @param label class of the example
+	 * @param features one value per feature, or {@link #MISSING}
+	 */
+	public void train(int label, int [] features)
+	{
+		if (label < 0 || label >= numClasses)
+		{
+			throw new IllegalArgumentException("Bad example for class " + label);
+		}
+		checkFeatures(cardinalities, features);
+		
+		// threads whose ids collide share a stripe, so increments are atomic
+		AtomicLongArray counts = shard();
+		counts.getAndIncrement(label);
+		int base = numClasses + label * classCells;
+		for (int f = 0; f < features.length; f++)
+		{
+			if (features[f] != MISSING)
+			{
+				counts.getAndIncrement(base + offsets[f] + features[f]);
+			}
+		}
+	}
+	
+	/**
+	 * @return the calling thread's stripe
+	 */
+	protected AtomicLongArray shard()
+	{
+		int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		AtomicLongArray counts = shards.get(stripe);
+		if (counts == null)
+		{
+			shards.compareAndSet(stripe, null, new AtomicLongArray(numClasses + numClasses * classCells));
+			counts = shards.get(stripe);
+		}
+		return counts;
+	}
+	
+	/**
+	 * @param cardinalities values taken by each feature
+	 * @param features one value per feature, or {@link #MISSING}
+	 */
+	protected final static void checkFeatures(int [] cardinalities, int [] features)
+	{
+		if (features.length != cardinalities.length)
+		{
+			throw new IllegalArgumentException("Expected " + cardinalities.length 
+					+ " features, got " + features.length);
+		}
+		for (int f = 0; f < features.length; f++)
+		{
+			if (features[f] != MISSING && (features[f] < 0 || features[f] >= cardinalities[f]))
+			{
+				throw new IllegalArgumentException("Feature " + f + " value " + features[f]);
+			}
+		}
+	}
+	
+	/**
+	 * @return merged counts: class totals, then one block per class
+	 */
+	protected long [] counts()
+	{
+		long [] merged = new long[numClasses + numClasses * classCells];
+		for (int s = 0; s < STRIPES; s++)
+		{
+			AtomicLongArray counts = shards.get(s);
+			if (counts == null)
+			{
+				continue;
+			}
+			for (int i = 0; i < merged.length; i++)
+			{
+				merged[i] += counts.get(i);
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * @param label
+	 * @return examples trained with this class so far
+	 */
+	public long count(int label)
+	{
+		long sum = 0;
+		for (int s = 0; s < STRIPES; s++)
+		{
+			AtomicLongArray counts = shards.get(s);
+			if (counts != null)
+			{
+				sum += counts.get(label);
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * Snapshot of everything trained so far
+	 * 
+	 * @return
+	 */
+	public Model model()
+	{
+		long [] counts = counts();
+		long total = 0;
+		for (int c = 0; c < numClasses; c++)
+		{
+			total += counts[c];
+		}
+		double [] logPrior = new double[numClasses];
+		double [] logLikelihood = new double[numClasses * classCells];
+		for (int c = 0; c < numClasses; c++)
+		{
+			logPrior[c] = logSmoothed(counts[c], total, numClasses);
+			for (int f = 0; f < cardinalities.length; f++)
+			{
+				// examples of the class with this feature present
+				int from = c * classCells + offsets[f];
+				long present = 0;
+				for (int v = 0; v < cardinalities[f]; v++)
+				{
+					present += counts[numClasses + from + v];
+				}
+				for (int v = 0; v < cardinalities[f]; v++)
+				{
+					logLikelihood[from + v] = logSmoothed(counts[numClasses + from + v], present, cardinalities[f]);
+				}
+			}
+		}
+		return new Model(numClasses, classCells, cardinalities, offsets, logPrior, logLikelihood);
+	}
+	
+	/**
+	 * log (count + alpha) / (total + alpha k), and with no counts at all and 
+	 * no smoothing the limit as alpha goes to zero, log 1/k, rather than 0/0
+	 * 
+	 * @param count
+	 * @param total
+	 * @param k number of values
+	 * @return
+	 */
+	protected double logSmoothed(long count, long total, int k)
+	{
+		if (total == 0 && alpha == 0)
+		{
+			return -Math.log(k);
+		}
+		return Math.log(Bayes.observationToProbability(count + alpha, total + alpha * k));
+	}
+	
+	/**
+	 * Smoothed log probabilities at a point in training, immutable
+	 */
+	public static class Model
+	{
+		protected final int numClasses;
+		protected final int classCells;
+		protected final int [] cardinalities;
+		protected final int [] offsets;
+		protected final double [] logPrior;
+		protected final double [] logLikelihood;
+		
+		protected Model(int numClasses, int classCells, int [] cardinalities, int [] offsets, 
+				double [] logPrior, double [] logLikelihood)
+		{
+			this.numClasses = numClasses;
+			this.classCells = classCells;
+			this.cardinalities = cardinalities;
+			this.offsets = offsets;
+			this.logPrior = logPrior;
+			this.logLikelihood = logLikelihood;
+		}
+		
+		/**
+		 * @param features one value per feature, or {@link NaiveBayes#MISSING}
+		 * @param out receives log p(C | features) for each class
+		 * @throws IllegalArgumentException if no class gives the features a 
+		 * non-zero probability, possible only without smoothing
+		 */
+		public void logPosterior(int [] features, double [] out)
+		{
+			checkFeatures(cardinalities, features);
+			for (int c = 0; c < numClasses; c++)
+			{
+				out[c] = logJoint(c, features);
+			}
+			double logEvidence = LogSpace.logSumExp(out, 0, numClasses);
+			if (logEvidence == Double.NEGATIVE_INFINITY)
+			{
+				throw new IllegalArgumentException("Features have zero probability in every class");
+			}
+			for (int c = 0; c < numClasses; c++)
+			{
+				out[c] -= logEvidence;
+			}
+		}
+		
+		/**
+		 * @param features one value per feature, or {@link NaiveBayes#MISSING}
+		 * @return the most probable class
+		 */
+		public int classify(int [] features)
+		{
+			checkFeatures(cardinalities, features);
+			int best = 0;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for (int c = 0; c < numClasses; c++)
+			{
+				double score = logJoint(c, features);
+				if (score > bestScore)
+				{
+					best = c;
+					bestScore = score;
+				}
+			}
+			return best;
+		}
+		
+		/**
+		 * @return log p(C) + sum log p(xi | C)
+		 */
+		protected double logJoint(int c, int [] features)
+		{
+			double score = logPrior[c];
+			int base = c * classCells;
+			for (int f = 0; f < features.length; f++)
+			{
+				if (features[f] != MISSING)
+				{
+					score += logLikelihood[base + offsets[f] + features[f]];
+				}
+			}
+			return score;
+		}
+	}
+}
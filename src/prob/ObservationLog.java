@@ -0,0 +1,474 @@
+package prob;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts of categorical observations read from delimited text logs, the
+ * inputs to {@link Bayes#observationToProbability(double, double)}
+ *
+ * Each selected column has a fixed list of values, e.g. brand in {M&M,
+ * Smartie} and colour in {red, yellow, orange, green}, and each line adds one
+ * to the cell of its value combination in a row-major long table, the layout
+ * of {@link TableFile#writeCounts(Path, int[], long[])}. Lines with a missing
+ * column or a value not in the list are counted as rejected.
+ *
+ * The file is cut into chunks that end on line boundaries and each chunk is
+ * memory-mapped and parsed on the fork-join pool into its own table, the
+ * tables summed pairwise as tasks join. Fields are matched as bytes against
+ * an open-addressed hash of the encoded values, so nothing is allocated per
+ * line or field. Quoted fields with embedded delimiters are not supported.
+ */
+public class ObservationLog
+{
+	/**
+	 * default bytes per parse task
+	 */
+	protected final static int CHUNK_BYTES = 1 << 24;
+	/**
+	 * largest nominal chunk, leaving room below the 2 GB map limit for the
+	 * chunk to be extended to the end of its last line
+	 */
+	protected final static int MAX_CHUNK_BYTES = 1 << 30;
+	
+	protected final byte delimiter;
+	protected final int [] columns;
+	protected final int [] dimensions;
+	protected final int [] strides;
+	protected final int maxColumn;
+	/**
+	 * per selected column, open-addressed table of value index + 1, 0 empty
+	 */
+	protected final int [][] slots;
+	protected final byte [][][] values;
+	protected int chunkBytes = CHUNK_BYTES;
+	
+	/**
+	 * @param delimiter e.g. ',' or '\t'
+	 * @param columns zero based field numbers to count, in table order
+	 * @param values the accepted values of each selected column
+	 */
+	public ObservationLog(char delimiter, int [] columns, String [][] values)
+	{
+		if (columns.length != values.length || columns.length == 0)
+		{
+			throw new IllegalArgumentException("Need values for each of at least one column");
+		}
+		if (delimiter > 127)
+		{
+			throw new IllegalArgumentException("Delimiter must be ASCII: " + delimiter);
+		}
+		this.delimiter = (byte) delimiter;
+		this.columns = columns.clone();
+		this.dimensions = new int[columns.length];
+		this.strides = new int[columns.length];
+		this.slots = new int[columns.length][];
+		this.values = new byte[columns.length][][];
+		int max = 0;
+		for (int c = 0; c < columns.length; c++)
+		{
+			if (columns[c] < 0)
+			{
+				throw new IllegalArgumentException("Negative column: " + columns[c]);
+			}
+			for (int d = 0; d < c; d++)
+			{
+				if (columns[d] == columns[c])
+				{
+					throw new IllegalArgumentException("Column selected twice: " + columns[c]);
+				}
+			}
+			max = Math.max(max, columns[c]);
+			dimensions[c] = values[c].length;
+			this.values[c] = new byte[values[c].length][];
+			int size = Integer.highestOneBit(Math.max(1, values[c].length) * 4 - 1) << 1;
+			slots[c] = new int[size];
+			for (int v = 0; v < values[c].length; v++)
+			{
+				byte [] bytes = values[c][v].getBytes(StandardCharsets.UTF_8);
+				this.values[c][v] = bytes;
+				int slot = hash(bytes, 0, bytes.length) & (size - 1);
+				while (slots[c][slot] != 0)
+				{
+					if (Arrays.equals(this.values[c][slots[c][slot] - 1], bytes))
+					{
+						throw new IllegalArgumentException("Duplicate value: " + values[c][v]);
+					}
+					slot = (slot + 1) & (size - 1);
+				}
+				slots[c][slot] = v + 1;
+			}
+		}
+		this.maxColumn = max;
+		long stride = 1;
+		for (int c = columns.length - 1; c >= 0; c--)
+		{
+			strides[c] = (int) stride;
+			stride *= dimensions[c];
+			if (stride > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("Count table too large");
+			}
+		}
+	}
+	
+	/**
+	 * @param chunkBytes nominal bytes per parse task, at most
+	 * {@link #MAX_CHUNK_BYTES}, lines are never split
+	 */
+	public void setChunkBytes(int chunkBytes)
+	{
+		if (chunkBytes < 1 || chunkBytes > MAX_CHUNK_BYTES)
+		{
+			throw new IllegalArgumentException("Chunk must be between 1 and " + MAX_CHUNK_BYTES + " bytes: " + chunkBytes);
+		}
+		this.chunkBytes = chunkBytes;
+	}
+	
+	/**
+	 * FNV-1a
+	 */
+	protected final static int hash(byte [] bytes, int from, int to)
+	{
+		int h = 0x811C9DC5;
+		for (int i = from; i < to; i++)
+		{
+			h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+		}
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * Count a log on the common pool
+	 *
+	 * @param path
+	 * @param header true to skip the first line
+	 * @return
+	 * @throws IOException
+	 */
+	public Counts read(Path path, boolean header) throws IOException
+	{
+		return read(path, header, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param path
+	 * @param header true to skip the first line
+	 * @param pool
+	 * @return
+	 * @throws IOException also if a line is too long to fit in one mapping
+	 */
+	public Counts read(Path path, boolean header, ForkJoinPool pool) throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try
+		{
+			long size = channel.size();
+			long start = header ? nextLine(channel, 0, size) : 0;
+			// chunk boundaries, each just after a newline
+			int numChunks = (int) Math.max(1, (size - start + chunkBytes - 1) / chunkBytes);
+			long [] bounds = new long[numChunks + 1];
+			bounds[0] = start;
+			for (int i = 1; i < numChunks; i++)
+			{
+				bounds[i] = Math.max(bounds[i-1], nextLine(channel, start + (long) i * chunkBytes - 1, size));
+			}
+			bounds[numChunks] = size;
+			for (int i = 0; i < numChunks; i++)
+			{
+				// only a line of a gigabyte or more stretches a chunk this far
+				if (bounds[i+1] - bounds[i] > Integer.MAX_VALUE)
+				{
+					throw new IOException("Line after offset " + bounds[i] + " runs past the 2 GB map limit");
+				}
+			}
+			long [] result = pool.invoke(new ParseTask(channel, bounds, 0, numChunks));
+			int cells = result.length - 2;
+			long [] counts = new long[cells];
+			System.arraycopy(result, 0, counts, 0, cells);
+			return new Counts(dimensions.clone(), counts, result[cells], result[cells + 1]);
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * @return position after the first newline at or after from, or size
+	 */
+	protected final static long nextLine(FileChannel channel, long from, long size) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+		long position = from;
+		while (position < size)
+		{
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			if (n <= 0)
+			{
+				break;
+			}
+			for (int i = 0; i < n; i++)
+			{
+				if (buffer.get(i) == '\n')
+				{
+					return position + i + 1;
+				}
+			}
+			position += n;
+		}
+		return size;
+	}
+	
+	/**
+	 * Parses chunks [from, to) and returns counts followed by {lines, rejected}
+	 */
+	protected final class ParseTask extends RecursiveTask<long[]>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final FileChannel channel;
+		protected final long [] bounds;
+		protected final int from;
+		protected final int to;
+		
+		protected ParseTask(FileChannel channel, long [] bounds, int from, int to)
+		{
+			this.channel = channel;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected long[] compute()
+		{
+			if (to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				ParseTask left = new ParseTask(channel, bounds, from, middle);
+				left.fork();
+				long [] r = new ParseTask(channel, bounds, middle, to).compute();
+				long [] l = left.join();
+				for (int i = 0; i < r.length; i++)
+				{
+					r[i] += l[i];
+				}
+				return r;
+			}
+			long [] counts = new long[strides[0] * dimensions[0] + 2];
+			long length = bounds[to] - bounds[from];
+			if (length > 0)
+			{
+				try
+				{
+					parse(channel.map(FileChannel.MapMode.READ_ONLY, bounds[from], length), counts);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+			return counts;
+		}
+	}
+	
+	/**
+	 * One pass over whole lines, counts then {lines, rejected} into counts
+	 */
+	protected void parse(MappedByteBuffer buffer, long [] counts)
+	{
+		int cells = counts.length - 2;
+		int numSelected = columns.length;
+		// selected index of each field number, -1 if ignored
+		int [] selected = new int[maxColumn + 1];
+		Arrays.fill(selected, -1);
+		for (int c = 0; c < numSelected; c++)
+		{
+			selected[columns[c]] = c;
+		}
+		long lines = 0, rejected = 0;
+		int limit = buffer.limit();
+		// only the file's last line can lack a newline, supply one
+		int stop = (limit > 0 && buffer.get(limit - 1) != '\n') ? limit + 1 : limit;
+		int field = 0, found = 0, cell = 0;
+		boolean bad = false;
+		int fieldStart = 0;
+		int h = 0x811C9DC5;
+		for (int i = 0; i < stop; i++)
+		{
+			byte b = (i < limit) ? buffer.get(i) : (byte) '\n';
+			if (b != delimiter && b != '\n')
+			{
+				// a carriage return never matches, as no value contains one
+				if (b != '\r')
+				{
+					h = (h ^ (b & 0xFF)) * 0x01000193;
+				}
+				continue;
+			}
+			int fieldEnd = i;
+			if (b == '\n' && fieldEnd > fieldStart && buffer.get(fieldEnd - 1) == '\r')
+			{
+				fieldEnd--;
+			}
+			int c = (field <= maxColumn) ? selected[field] : -1;
+			if (c >= 0 && !bad)
+			{
+				int v = lookup(c, buffer, fieldStart, fieldEnd, h ^ (h >>> 16));
+				if (v < 0)
+				{
+					bad = true;
+				}
+				else
+				{
+					cell += v * strides[c];
+					found++;
+				}
+			}
+			field++;
+			fieldStart = i + 1;
+			h = 0x811C9DC5;
+			if (b == '\n')
+			{
+				lines++;
+				if (bad || found != numSelected)
+				{
+					rejected++;
+				}
+				else
+				{
+					counts[cell]++;
+				}
+				field = 0;
+				found = 0;
+				cell = 0;
+				bad = false;
+			}
+		}
+		counts[cells] += lines;
+		counts[cells + 1] += rejected;
+	}
+	
+	/**
+	 * @return value index of the field's bytes, -1 if not a known value
+	 */
+	protected int lookup(int column, MappedByteBuffer buffer, int from, int to, int hash)
+	{
+		int [] table = slots[column];
+		int mask = table.length - 1;
+		int length = to - from;
+		for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask)
+		{
+			byte [] value = values[column][table[slot] - 1];
+			if (value.length != length)
+			{
+				continue;
+			}
+			int k = 0;
+			while (k < length && value[k] == buffer.get(from + k))
+			{
+				k++;
+			}
+			if (k == length)
+			{
+				return table[slot] - 1;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Counts over the selected columns' values
+	 */
+	public static class Counts
+	{
+		protected final int [] dimensions;
+		protected final long [] counts;
+		protected final long lines;
+		protected final long rejected;
+		
+		protected Counts(int [] dimensions, long [] counts, long lines, long rejected)
+		{
+			this.dimensions = dimensions;
+			this.counts = counts;
+			this.lines = lines;
+			this.rejected = rejected;
+		}
+		
+		/**
+		 * @return values per selected column
+		 */
+		public int [] dimensions()
+		{
+			return dimensions.clone();
+		}
+		
+		/**
+		 * @return row-major counts, shared so do not modify
+		 */
+		public long [] counts()
+		{
+			return counts;
+		}
+		
+		/**
+		 * @return lines read, header excluded
+		 */
+		public long lines()
+		{
+			return lines;
+		}
+		
+		/**
+		 * @return lines with a missing column or unknown value
+		 */
+		public long rejected()
+		{
+			return rejected;
+		}
+		
+		/**
+		 * @param values value index per selected column
+		 * @return lines with exactly these values
+		 */
+		public long count(int... values)
+		{
+			int index = 0;
+			int stride = 1;
+			for (int c = dimensions.length - 1; c >= 0; c--)
+			{
+				if (values[c] < 0 || values[c] >= dimensions[c])
+				{
+					throw new IndexOutOfBoundsException("Column " + c + " value " + values[c]);
+				}
+				index += values[c] * stride;
+				stride *= dimensions[c];
+			}
+			return counts[index];
+		}
+		
+		/**
+		 * @param values value index per selected column
+		 * @return count / accepted lines
+		 */
+		public double probability(int... values)
+		{
+			return Bayes.observationToProbability(count(values), lines - rejected);
+		}
+	}
+}
@@ -0,0 +1,524 @@
+package prob;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sequential Monte Carlo for state space models that are not discrete or
+ * linear enough for {@link HiddenMarkovModel}
+ *
+ * Each particle is a guess at the hidden state, carried forward by the
+ * model's dynamics and weighted by the likelihood of each observation, the
+ * Bayes update of {@link Bayes#posterior(double, double, double)} applied
+ * to a cloud of hypotheses:
+ *
+ * w_t(i) = w_t-1(i) p(y_t | x_t(i)) / sum_j w_t-1(j) p(y_t | x_t(j))
+ *
+ * When the effective sample size (sum w)^2 / sum w^2 drops below a fraction
+ * of the particle count the cloud is resampled, systematically or
+ * stratified, so the particles gather where the posterior is.
+ *
+ * Particles are stored as structure of arrays, one double [] per state
+ * dimension, so the model works on whole columns. The particles are cut
+ * into fixed chunks, each with its own random stream split from the seed,
+ * and propagation, weighting and resampling run chunk by chunk on the
+ * fork-join pool. Resampling walks the cumulative weights from the prefix
+ * sums of the chunks' totals, so each chunk of new particles finds its
+ * ancestors on its own. Results do not depend on the number of workers.
+ * Every buffer is allocated up front, a step allocates only its tasks.
+ *
+ * Particles are propagated into a second buffer that replaces the current
+ * one only once the observation is accepted, so a step that throws leaves
+ * the particles and weights as they were.
+ *
+ * http://en.wikipedia.org/wiki/Particle_filter
+ * Douc, Cappe, Moulines, Comparison of resampling schemes for particle filtering (2005)
+ */
+public class ParticleFilter
+{
+	public final static int SYSTEMATIC = 0, STRATIFIED = 1;
+	
+	/**
+	 * particles per chunk, one leaf task and one random stream each
+	 */
+	protected final static int CHUNK = 1 << 14;
+	
+	/**
+	 * A state space model over columns of particles [from, to)
+	 *
+	 * The pool calls every method from several threads at once, each on its
+	 * own disjoint range of particles, so implementations must be thread
+	 * safe: write only to the given range and keep no scratch state in the
+	 * instance, which the calls would race on.
+	 */
+	public interface Model
+	{
+		/**
+		 * Draw particles from the prior p(x_0)
+		 *
+		 * @param state state[dimension][particle]
+		 * @param from
+		 * @param to
+		 * @param random
+		 */
+		void initialize(double [][] state, int from, int to, SplittableRandom random);
+		
+		/**
+		 * Move particles one step through p(x_t | x_t-1), in place
+		 *
+		 * @param state state[dimension][particle]
+		 * @param from
+		 * @param to
+		 * @param random
+		 */
+		void propagate(double [][] state, int from, int to, SplittableRandom random);
+		
+		/**
+		 * @param state state[dimension][particle]
+		 * @param observation y_t
+		 * @param out receives log p(y_t | x_t) per particle
+		 * @param from
+		 * @param to
+		 */
+		void logLikelihood(double [][] state, double [] observation, double [] out, int from, int to);
+	}
+	
+	protected final ForkJoinPool pool;
+	protected final Model model;
+	protected final int numParticles;
+	protected final int numChunks;
+	
+	protected double [][] state;
+	protected double [][] scratch;
+	protected final double [] weights;
+	protected final double [] logLikelihoods;
+	protected final int [] ancestors;
+	protected final SplittableRandom [] randoms;
+	protected final SplittableRandom random;
+	protected final double [] chunkMax;
+	/**
+	 * sum of each chunk's weights, always current
+	 */
+	protected final double [] chunkSum;
+	/**
+	 * chunkPrefix[c] = sum of chunkSum[0..c)
+	 */
+	protected final double [] chunkPrefix;
+	protected final double [] chunkSquares;
+	
+	protected int resampling = SYSTEMATIC;
+	protected double threshold = 0.5;
+	protected double total;
+	protected double squares;
+	protected double logEvidence;
+	protected int resamplings;
+	
+	/**
+	 * Use the common pool, one worker per core
+	 *
+	 * @param model
+	 * @param dimensions state variables per particle
+	 * @param numParticles
+	 * @param seed
+	 */
+	public ParticleFilter(Model model, int dimensions, int numParticles, long seed)
+	{
+		this(model, dimensions, numParticles, seed, ForkJoinPool.commonPool());
+	}
+	
+	public ParticleFilter(Model model, int dimensions, int numParticles, long seed, ForkJoinPool pool)
+	{
+		if (dimensions < 1 || numParticles < 1)
+		{
+			throw new IllegalArgumentException("Need dimensions and particles: " + dimensions + ", " + numParticles);
+		}
+		this.pool = pool;
+		this.model = model;
+		this.numParticles = numParticles;
+		this.numChunks = (numParticles + CHUNK - 1) / CHUNK;
+		this.state = new double[dimensions][numParticles];
+		this.scratch = new double[dimensions][numParticles];
+		this.weights = new double[numParticles];
+		this.logLikelihoods = new double[numParticles];
+		this.ancestors = new int[numParticles];
+		this.random = new SplittableRandom(seed);
+		this.randoms = new SplittableRandom[numChunks];
+		for (int c = 0; c < numChunks; c++)
+		{
+			randoms[c] = random.split();
+		}
+		this.chunkMax = new double[numChunks];
+		this.chunkSum = new double[numChunks];
+		this.chunkPrefix = new double[numChunks + 1];
+		this.chunkSquares = new double[numChunks];
+		reset();
+	}
+	
+	/**
+	 * @param scheme {@link #SYSTEMATIC} or {@link #STRATIFIED}
+	 */
+	public void setResampling(int scheme)
+	{
+		if (scheme != SYSTEMATIC && scheme != STRATIFIED)
+		{
+			throw new IllegalArgumentException("Unknown resampling scheme: " + scheme);
+		}
+		this.resampling = scheme;
+	}
+	
+	/**
+	 * @param fraction resample when the effective sample size falls below
+	 * this fraction of the particles, 0 never, 1 every step
+	 */
+	public void setThreshold(double fraction)
+	{
+		if (!(fraction >= 0 && fraction <= 1))
+		{
+			throw new IllegalArgumentException("Not a fraction: " + fraction);
+		}
+		this.threshold = fraction;
+	}
+	
+	/**
+	 * Draw fresh particles from the prior with equal weights
+	 */
+	public void reset()
+	{
+		pool.invoke(new ChunkTask(ChunkTask.INITIALIZE, null, 0, numChunks));
+		resetWeights();
+		logEvidence = 0;
+		resamplings = 0;
+	}
+	
+	/**
+	 * Propagate, weight by the observation, and resample if the effective
+	 * sample size is too low
+	 *
+	 * @param observation y_t
+	 * @return log p(y_t | y_1..y_t-1)
+	 * @throws IllegalArgumentException if no particle can explain the
+	 * observation, the filter is then unchanged but for its random streams
+	 */
+	public double step(double [] observation)
+	{
+		long start = Metrics.start();
+		pool.invoke(new ChunkTask(ChunkTask.PROPAGATE, observation, 0, numChunks));
+		double max = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < numChunks; c++)
+		{
+			max = Math.max(max, chunkMax[c]);
+		}
+		if (max == Double.NEGATIVE_INFINITY || Double.isNaN(max))
+		{
+			throw new IllegalArgumentException("Observation is impossible for every particle");
+		}
+		double [][] swap = state;
+		state = scratch;
+		scratch = swap;
+		// weights are renormalized as they are updated, so they never drift
+		pool.invoke(new ChunkTask(ChunkTask.WEIGHT, observation, 0, numChunks, max, 1.0 / total));
+		total = 0;
+		squares = 0;
+		for (int c = 0; c < numChunks; c++)
+		{
+			total += chunkSum[c];
+			squares += chunkSquares[c];
+		}
+		double increment = max + Math.log(total);
+		logEvidence += increment;
+		if (effectiveSampleSize() < threshold * numParticles)
+		{
+			resample();
+		}
+		Metrics.stop(Metrics.SAMPLING, start);
+		return increment;
+	}
+	
+	/**
+	 * Resample now, whatever the effective sample size
+	 */
+	public void resample()
+	{
+		for (int c = 0; c < numChunks; c++)
+		{
+			chunkPrefix[c + 1] = chunkPrefix[c] + chunkSum[c];
+		}
+		// one offset for systematic, stratified draws from each chunk's stream
+		double u = random.nextDouble();
+		pool.invoke(new ChunkTask(ChunkTask.ANCESTORS, null, 0, numChunks, u, chunkPrefix[numChunks] / numParticles));
+		pool.invoke(new ChunkTask(ChunkTask.GATHER, null, 0, numChunks));
+		double [][] swap = state;
+		state = scratch;
+		scratch = swap;
+		resetWeights();
+		resamplings++;
+	}
+	
+	protected void resetWeights()
+	{
+		Arrays.fill(weights, 1.0);
+		for (int c = 0; c < numChunks; c++)
+		{
+			chunkSum[c] = Math.min(numParticles, (c + 1) * CHUNK) - c * CHUNK;
+		}
+		total = numParticles;
+		squares = numParticles;
+	}
+	
+	/**
+	 * Ancestor of each new particle, as many copies of particle i as its
+	 * share of the total weight, give or take one for systematic
+	 *
+	 * systematic: one u ~ U[0, 1), points (i + u) / n
+	 * stratified: points (i + u_i) / n, a fresh u_i for each
+	 *
+	 * This is the serial walk, the filter runs it chunk by chunk.
+	 *
+	 * @param weights unnormalized
+	 * @param total sum of the weights
+	 * @param scheme {@link #SYSTEMATIC} or {@link #STRATIFIED}
+	 * @param random
+	 * @param ancestors receives one index per particle, in increasing order
+	 */
+	public final static void resample(double [] weights, double total, int scheme,
+			SplittableRandom random, int [] ancestors)
+	{
+		int n = ancestors.length;
+		int last = weights.length - 1;
+		double step = total / n;
+		double u = random.nextDouble();
+		double cumulative = weights[0];
+		int j = 0;
+		for (int i = 0; i < n; i++)
+		{
+			if (scheme == STRATIFIED)
+			{
+				u = random.nextDouble();
+			}
+			double point = (i + u) * step;
+			while (point >= cumulative && j < last)
+			{
+				cumulative += weights[++j];
+			}
+			ancestors[i] = j;
+		}
+	}
+	
+	/**
+	 * @return (sum w)^2 / sum w^2, between 1 and the number of particles
+	 */
+	public double effectiveSampleSize()
+	{
+		return total * total / squares;
+	}
+	
+	/**
+	 * @return log p(y_1..y_t), summed over steps since {@link #reset()}
+	 */
+	public double logLikelihood()
+	{
+		return logEvidence;
+	}
+	
+	/**
+	 * @param dimension
+	 * @return weighted posterior mean of a state variable
+	 */
+	public double mean(int dimension)
+	{
+		double [] column = state[dimension];
+		double sum = 0;
+		for (int i = 0; i < numParticles; i++)
+		{
+			sum += weights[i] * column[i];
+		}
+		return sum / total;
+	}
+	
+	/**
+	 * @param dimension
+	 * @return the particles' values of a state variable, valid until the
+	 * next step
+	 */
+	public double [] state(int dimension)
+	{
+		return state[dimension];
+	}
+	
+	/**
+	 * @return unnormalized weights, valid until the next step
+	 */
+	public double [] weights()
+	{
+		return weights;
+	}
+	
+	public int numParticles()
+	{
+		return numParticles;
+	}
+	
+	/**
+	 * @return times the particles were resampled since {@link #reset()}
+	 */
+	public int resamplings()
+	{
+		return resamplings;
+	}
+	
+	/**
+	 * One phase of a step over chunks [from, to)
+	 */
+	protected final class ChunkTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final static int INITIALIZE = 0, PROPAGATE = 1, WEIGHT = 2, ANCESTORS = 3, GATHER = 4;
+		
+		protected final int phase;
+		protected final double [] observation;
+		protected final int from;
+		protected final int to;
+		/**
+		 * the largest log likelihood for WEIGHT, the systematic offset u
+		 * for ANCESTORS
+		 */
+		protected final double max;
+		/**
+		 * 1 / the previous total for WEIGHT, total / n for ANCESTORS
+		 */
+		protected final double scale;
+		
+		protected ChunkTask(int phase, double [] observation, int from, int to)
+		{
+			this(phase, observation, from, to, 0, 1);
+		}
+		
+		protected ChunkTask(int phase, double [] observation, int from, int to, double max, double scale)
+		{
+			this.phase = phase;
+			this.observation = observation;
+			this.from = from;
+			this.to = to;
+			this.max = max;
+			this.scale = scale;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(phase, observation, from, middle, max, scale),
+						new ChunkTask(phase, observation, middle, to, max, scale));
+				return;
+			}
+			int first = from * CHUNK;
+			int end = Math.min(numParticles, first + CHUNK);
+			switch (phase)
+			{
+			case INITIALIZE:
+				model.initialize(state, first, end, randoms[from]);
+				break;
+			case PROPAGATE:
+				for (int d = 0; d < state.length; d++)
+				{
+					System.arraycopy(state[d], first, scratch[d], first, end - first);
+				}
+				model.propagate(scratch, first, end, randoms[from]);
+				model.logLikelihood(scratch, observation, logLikelihoods, first, end);
+				double m = Double.NEGATIVE_INFINITY;
+				for (int i = first; i < end; i++)
+				{
+					m = Math.max(m, logLikelihoods[i]);
+				}
+				chunkMax[from] = m;
+				break;
+			case WEIGHT:
+				double sum = 0, sumSquares = 0;
+				for (int i = first; i < end; i++)
+				{
+					double w = weights[i] * scale * Math.exp(logLikelihoods[i] - max);
+					weights[i] = w;
+					sum += w;
+					sumSquares += w * w;
+				}
+				chunkSum[from] = sum;
+				chunkSquares[from] = sumSquares;
+				break;
+			case ANCESTORS:
+				ancestors(first, end, randoms[from]);
+				break;
+			case GATHER:
+				for (int d = 0; d < state.length; d++)
+				{
+					double [] source = state[d];
+					double [] target = scratch[d];
+					for (int i = first; i < end; i++)
+					{
+						target[i] = source[ancestors[i]];
+					}
+				}
+				break;
+			}
+		}
+		
+		/**
+		 * The walk of {@link ParticleFilter#resample(double[], double, int,
+		 * SplittableRandom, int[])} for new particles [first, end), entering
+		 * the weights at the chunk the first point falls in
+		 */
+		protected void ancestors(int first, int end, SplittableRandom random)
+		{
+			double u = max;
+			double step = scale;
+			int chunk = -1;
+			int j = 0, last = 0;
+			double cumulative = 0;
+			for (int i = first; i < end; i++)
+			{
+				if (resampling == STRATIFIED)
+				{
+					u = random.nextDouble();
+				}
+				double point = (i + u) * step;
+				if (chunk < 0 || (chunk < numChunks - 1 && point >= chunkPrefix[chunk + 1]))
+				{
+					chunk = chunkOf(point);
+					j = chunk * CHUNK;
+					last = Math.min(numParticles, j + CHUNK) - 1;
+					cumulative = chunkPrefix[chunk] + weights[j];
+				}
+				while (point >= cumulative && j < last)
+				{
+					cumulative += weights[++j];
+				}
+				ancestors[i] = j;
+			}
+		}
+		
+		/**
+		 * @return the last chunk whose prefix sum is at most point
+		 */
+		protected int chunkOf(double point)
+		{
+			int low = 0, high = numChunks - 1;
+			while (low < high)
+			{
+				int middle = (low + high + 1) >>> 1;
+				if (chunkPrefix[middle] <= point)
+				{
+					low = middle;
+				}
+				else
+				{
+					high = middle - 1;
+				}
+			}
+			return low;
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package prob;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread safe memo of posteriors keyed by 
+ * (prior, sensitivity, specificity)
+ * 
+ * Keys are held as the raw bits of the three doubles in primitive arrays, so 
+ * lookups do not box. The cache is split into segments, each behind its own 
+ * lock, holding a chained hash table and a least recently used list threaded 
+ * through int arrays. When a segment is full its least recently used entry is 
+ * evicted and its slot reused, so a warm cache allocates nothing.
+ * 
+ * Misses are computed outside the lock. Hits, misses and evictions are 
+ * counted with striped counters for sizing the cache.
+ */
+public class PosteriorCache
+{
+	/**
+	 * The computation being memoized
+	 */
+	public interface Computation
+	{
+		double compute(double prior, double sensitivity, double specificity);
+	}
+	
+	/**
+	 * p(A | +) from prevalence, sensitivity p(+ | A) and specificity p(- | ~A)
+	 */
+	public final static Computation POSITIVE_PREDICTIVE_VALUE = new Computation()
+	{
+		public double compute(double prior, double sensitivity, double specificity)
+		{
+			return Bayes.posterior(prior, sensitivity, 1.0 - specificity);
+		}
+	};
+	
+	protected final Computation computation;
+	protected final Segment [] segments;
+	protected final int segmentShift;
+	
+	protected final LongAdder hits = new LongAdder();
+	protected final LongAdder misses = new LongAdder();
+	protected final LongAdder evictions = new LongAdder();
+	
+	/**
+	 * Cache {@link #POSITIVE_PREDICTIVE_VALUE}
+	 * 
+	 * @param capacity
+	 */
+	public PosteriorCache(int capacity)
+	{
+		this(capacity, 16, POSITIVE_PREDICTIVE_VALUE);
+	}
+	
+	/**
+	 * @param capacity entries kept, rounded up to a multiple of the segments
+	 * @param segments number of independently locked segments, rounded up to a power of two
+	 * @param computation
+	 */
+	public PosteriorCache(int capacity, int segments, Computation computation)
+	{
+		if (capacity <= 0 || segments <= 0)
+		{
+			throw new IllegalArgumentException("Capacity and segments must be positive");
+		}
+		int n = Integer.highestOneBit(Math.max(1, segments - 1)) << ((segments > 1) ? 1 : 0);
+		this.computation = computation;
+		this.segments = new Segment[n];
+		this.segmentShift = 32 - Integer.numberOfTrailingZeros(n);
+		int perSegment = (capacity + n - 1) / n;
+		for (int i = 0; i < n; i++)
+		{
+			this.segments[i] = new Segment(perSegment);
+		}
+	}
+	
+	/**
+	 * @param prior
+	 * @param sensitivity
+	 * @param specificity
+	 * @return the cached or newly computed value
+	 */
+	public double posterior(double prior, double sensitivity, double specificity)
+	{
+		// + 0.0 folds -0.0 into 0.0 so they share an entry
+		long a = Double.doubleToLongBits(prior + 0.0);
+		long b = Double.doubleToLongBits(sensitivity + 0.0);
+		long c = Double.doubleToLongBits(specificity + 0.0);
+		int hash = hash(a, b, c);
+		Segment segment = segments[(segmentShift == 32) ? 0 : hash >>> segmentShift];
+		
+		synchronized (segment)
+		{
+			int e = segment.find(hash, a, b, c);
+			if (e >= 0)
+			{
+				segment.touch(e);
+				hits.increment();
+				return segment.values[e];
+			}
+		}
+		misses.increment();
+		double value = computation.compute(prior, sensitivity, specificity);
+		synchronized (segment)
+		{
+			if (segment.find(hash, a, b, c) < 0 && segment.insert(hash, a, b, c, value))
+			{
+				evictions.increment();
+			}
+		}
+		return value;
+	}
+	
+	protected final static int hash(long a, long b, long c)
+	{
+		long h = a * 0x9E3779B97F4A7C15L;
+		h = (h ^ b) * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ c) * 0x165667B19E3779F9L;
+		h ^= h >>> 29;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	public long hits()
+	{
+		return hits.sum();
+	}
+	
+	public long misses()
+	{
+		return misses.sum();
+	}
+	
+	public long evictions()
+	{
+		return evictions.sum();
+	}
+	
+	/**
+	 * @return entries currently held
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (Segment segment : segments)
+		{
+			synchronized (segment)
+			{
+				size += segment.size;
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Drop every entry, counters are kept
+	 */
+	public void clear()
+	{
+		for (Segment segment : segments)
+		{
+			synchronized (segment)
+			{
+				segment.clear();
+			}
+		}
+	}
+	
+	/**
+	 * One locked region, a fixed pool of entries
+	 */
+	protected final static class Segment
+	{
+		protected final static int NONE = -1;
+		
+		protected final long [] keyA, keyB, keyC;
+		protected final double [] values;
+		protected final int [] hashes;
+		// hash chains
+		protected final int [] buckets;
+		protected final int [] chain;
+		// least recently used list, head is most recent
+		protected final int [] newer, older;
+		protected int head = NONE, tail = NONE;
+		protected int size;
+		
+		protected Segment(int capacity)
+		{
+			keyA = new long[capacity];
+			keyB = new long[capacity];
+			keyC = new long[capacity];
+			values = new double[capacity];
+			hashes = new int[capacity];
+			chain = new int[capacity];
+			newer = new int[capacity];
+			older = new int[capacity];
+			buckets = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+			clear();
+		}
+		
+		protected void clear()
+		{
+			Arrays.fill(buckets, NONE);
+			head = tail = NONE;
+			size = 0;
+		}
+		
+		protected int bucket(int hash)
+		{
+			return hash & (buckets.length - 1);
+		}
+		
+		protected int find(int hash, long a, long b, long c)
+		{
+			for (int e = buckets[bucket(hash)]; e != NONE; e = chain[e])
+			{
+				if (hashes[e] == hash && keyA[e] == a && keyB[e] == b && keyC[e] == c)
+				{
+					return e;
+				}
+			}
+			return NONE;
+		}
+		
+		/**
+		 * @return true if an entry was evicted to make room
+		 */
+		protected boolean insert(int hash, long a, long b, long c, double value)
+		{
+			int e;
+			boolean evicted = false;
+			if (size < values.length)
+			{
+				e = size++;
+			}
+			else
+			{
+				e = tail;
+				unlink(e);
+				unchain(e);
+				evicted = true;
+			}
+			keyA[e] = a;
+			keyB[e] = b;
+			keyC[e] = c;
+			values[e] = value;
+			hashes[e] = hash;
+			int bucket = bucket(hash);
+			chain[e] = buckets[bucket];
+			buckets[bucket] = e;
+			pushHead(e);
+			return evicted;
+		}
+		
+		protected void touch(int e)
+		{
+			if (e != head)
+			{
+				unlink(e);
+				pushHead(e);
+			}
+		}
+		
+		protected void pushHead(int e)
+		{
+			newer[e] = NONE;
+			older[e] = head;
+			if (head != NONE)
+			{
+				newer[head] = e;
+			}
+			head = e;
+			if (tail == NONE)
+			{
+				tail = e;
+			}
+		}
+		
+		protected void unlink(int e)
+		{
+			if (newer[e] != NONE)
+			{
+				older[newer[e]] = older[e];
+			}
+			else
+			{
+				head = older[e];
+			}
+			if (older[e] != NONE)
+			{
+				newer[older[e]] = newer[e];
+			}
+			else
+			{
+				tail = newer[e];
+			}
+		}
+		
+		protected void unchain(int e)
+		{
+			int bucket = bucket(hashes[e]);
+			if (buckets[bucket] == e)
+			{
+				buckets[bucket] = chain[e];
+				return;
+			}
+			for (int p = buckets[bucket]; p != NONE; p = chain[p])
+			{
+				if (chain[p] == e)
+				{
+					chain[p] = chain[e];
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,452 @@
+package prob;
+
+import java.math.BigInteger;
+
+/**
+ * Exact probability as a fraction numerator / denominator, always kept in
+ * lowest terms with a positive denominator
+ *
+ * Probabilities built from counts, like 40 of 100 or 1/3, are held in two
+ * longs. Arithmetic cross-reduces before multiplying so the terms stay small,
+ * and only when a result would overflow a long does it move to BigInteger.
+ * Results that fit a long again drop back to the fast path.
+ *
+ * p(Girl | Trousers) = (1/2 . 2/5) / 4/5 = 1/4, exactly
+ *
+ * http://en.wikipedia.org/wiki/Rational_number
+ * http://en.wikipedia.org/wiki/Binary_GCD_algorithm
+ */
+public class Rational extends Number implements Comparable<Rational>
+{
+	private static final long serialVersionUID = 1L;
+	
+	public final static Rational ZERO = new Rational(0, 1);
+	public final static Rational ONE = new Rational(1, 1);
+	
+	/**
+	 * 2^53, below which a long converts to a double without rounding
+	 */
+	protected final static long EXACT_DOUBLE = 1L << 53;
+	
+	protected final static BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+	protected final static BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+	
+	/**
+	 * terms when small, bigNumerator is null
+	 */
+	protected final long numerator;
+	protected final long denominator;
+	
+	/**
+	 * terms once promoted, both non null
+	 */
+	protected final BigInteger bigNumerator;
+	protected final BigInteger bigDenominator;
+	
+	protected Rational(long numerator, long denominator)
+	{
+		this.numerator = numerator;
+		this.denominator = denominator;
+		this.bigNumerator = null;
+		this.bigDenominator = null;
+	}
+	
+	protected Rational(BigInteger numerator, BigInteger denominator)
+	{
+		this.numerator = 0;
+		this.denominator = 0;
+		this.bigNumerator = numerator;
+		this.bigDenominator = denominator;
+	}
+	
+	/**
+	 * @param value
+	 * @return value / 1
+	 */
+	public final static Rational valueOf(long value)
+	{
+		return small(value, 1);
+	}
+	
+	/**
+	 * @param numerator
+	 * @param denominator non zero
+	 * @return numerator / denominator in lowest terms
+	 */
+	public final static Rational valueOf(long numerator, long denominator)
+	{
+		if (denominator == 0)
+		{
+			throw new ArithmeticException("Zero denominator");
+		}
+		if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE)
+		{
+			return valueOf(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+		}
+		if (denominator < 0)
+		{
+			numerator = -numerator;
+			denominator = -denominator;
+		}
+		long g = gcd(Math.abs(numerator), denominator);
+		return new Rational(numerator / g, denominator / g);
+	}
+	
+	/**
+	 * @param numerator
+	 * @param denominator non zero
+	 * @return numerator / denominator in lowest terms, on the long path if it fits
+	 */
+	public final static Rational valueOf(BigInteger numerator, BigInteger denominator)
+	{
+		if (denominator.signum() == 0)
+		{
+			throw new ArithmeticException("Zero denominator");
+		}
+		if (denominator.signum() < 0)
+		{
+			numerator = numerator.negate();
+			denominator = denominator.negate();
+		}
+		BigInteger g = numerator.gcd(denominator);
+		if (!g.equals(BigInteger.ONE))
+		{
+			numerator = numerator.divide(g);
+			denominator = denominator.divide(g);
+		}
+		return reduced(numerator, denominator);
+	}
+	
+	/**
+	 * Terms already in lowest terms, demoted to longs where they fit
+	 */
+	protected final static Rational reduced(BigInteger numerator, BigInteger denominator)
+	{
+		if (fitsLong(numerator) && fitsLong(denominator))
+		{
+			return new Rational(numerator.longValue(), denominator.longValue());
+		}
+		return new Rational(numerator, denominator);
+	}
+	
+	/**
+	 * Terms already in lowest terms from the long path
+	 */
+	protected final static Rational small(long numerator, long denominator)
+	{
+		if (numerator == Long.MIN_VALUE)
+		{
+			return new Rational(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+		}
+		return new Rational(numerator, denominator);
+	}
+	
+	/**
+	 * Excludes Long.MIN_VALUE so a small numerator can always be negated
+	 */
+	protected final static boolean fitsLong(BigInteger value)
+	{
+		return value.compareTo(MIN_LONG) > 0 && value.compareTo(MAX_LONG) <= 0;
+	}
+	
+	/**
+	 * Binary GCD, shifts and subtractions only
+	 *
+	 * @param a >= 0
+	 * @param b >= 0
+	 * @return gcd(a, b), with gcd(0, b) = b
+	 */
+	final static long gcd(long a, long b)
+	{
+		if (a == 0)
+		{
+			return b;
+		}
+		if (b == 0)
+		{
+			return a;
+		}
+		int shift = Long.numberOfTrailingZeros(a | b);
+		a >>= Long.numberOfTrailingZeros(a);
+		while (b != 0)
+		{
+			b >>= Long.numberOfTrailingZeros(b);
+			if (a > b)
+			{
+				long t = b;
+				b = a;
+				a = t;
+			}
+			b -= a;
+		}
+		return a << shift;
+	}
+	
+	public boolean isBig()
+	{
+		return bigNumerator != null;
+	}
+	
+	public BigInteger numerator()
+	{
+		return isBig() ? bigNumerator : BigInteger.valueOf(numerator);
+	}
+	
+	public BigInteger denominator()
+	{
+		return isBig() ? bigDenominator : BigInteger.valueOf(denominator);
+	}
+	
+	public int signum()
+	{
+		return isBig() ? bigNumerator.signum() : Long.signum(numerator);
+	}
+	
+	/**
+	 * a/b + c/d = (a (d/g) + c (b/g)) / (b/g) d, g = gcd(b, d)
+	 *
+	 * The only common factor left is then in gcd(numerator, g), so the
+	 * reduction works on small numbers (Knuth, TAOCP 4.5.1).
+	 *
+	 * @param other
+	 * @return this + other
+	 */
+	public Rational add(Rational other)
+	{
+		if (!isBig() && !other.isBig())
+		{
+			try
+			{
+				long g = gcd(denominator, other.denominator);
+				if (g == 1)
+				{
+					return small(
+							Math.addExact(
+									Math.multiplyExact(numerator, other.denominator),
+									Math.multiplyExact(other.numerator, denominator)),
+							Math.multiplyExact(denominator, other.denominator));
+				}
+				long sum = Math.addExact(
+						Math.multiplyExact(numerator, other.denominator / g),
+						Math.multiplyExact(other.numerator, denominator / g));
+				long h = gcd(Math.abs(sum), g);
+				return small(sum / h,
+						Math.multiplyExact(denominator / g, other.denominator / h));
+			}
+			catch (ArithmeticException overflow)
+			{
+				// fall through to BigInteger
+			}
+		}
+		return valueOf(
+				numerator().multiply(other.denominator()).add(other.numerator().multiply(denominator())),
+				denominator().multiply(other.denominator()));
+	}
+	
+	/**
+	 * @param other
+	 * @return this - other
+	 */
+	public Rational subtract(Rational other)
+	{
+		return add(other.negate());
+	}
+	
+	/**
+	 * a/b . c/d = (a/g1 . c/g2) / (b/g2 . d/g1), g1 = gcd(a, d), g2 = gcd(c, b)
+	 *
+	 * and the result needs no further reduction.
+	 *
+	 * @param other
+	 * @return this . other
+	 */
+	public Rational multiply(Rational other)
+	{
+		if (!isBig() && !other.isBig())
+		{
+			long g1 = gcd(Math.abs(numerator), other.denominator);
+			long g2 = gcd(Math.abs(other.numerator), denominator);
+			try
+			{
+				return small(
+						Math.multiplyExact(numerator / g1, other.numerator / g2),
+						Math.multiplyExact(denominator / g2, other.denominator / g1));
+			}
+			catch (ArithmeticException overflow)
+			{
+				// fall through to BigInteger
+			}
+		}
+		return valueOf(
+				numerator().multiply(other.numerator()),
+				denominator().multiply(other.denominator()));
+	}
+	
+	/**
+	 * @param other non zero
+	 * @return this / other
+	 */
+	public Rational divide(Rational other)
+	{
+		return multiply(other.reciprocal());
+	}
+	
+	/**
+	 * @return -this
+	 */
+	public Rational negate()
+	{
+		return isBig() ? new Rational(bigNumerator.negate(), bigDenominator)
+				: new Rational(-numerator, denominator);
+	}
+	
+	/**
+	 * @return 1 / this
+	 */
+	public Rational reciprocal()
+	{
+		if (signum() == 0)
+		{
+			throw new ArithmeticException("Reciprocal of zero");
+		}
+		if (isBig())
+		{
+			return bigNumerator.signum() < 0
+					? new Rational(bigDenominator.negate(), bigNumerator.negate())
+					: new Rational(bigDenominator, bigNumerator);
+		}
+		return numerator < 0
+				? new Rational(-denominator, -numerator)
+				: new Rational(denominator, numerator);
+	}
+	
+	/**
+	 * @return 1 - this, p(~A) from p(A)
+	 */
+	public Rational complement()
+	{
+		if (!isBig() && numerator >= 0)
+		{
+			// (b - a) / b keeps lowest terms
+			return new Rational(denominator - numerator, denominator);
+		}
+		return ONE.subtract(this);
+	}
+	
+	@Override
+	public int compareTo(Rational other)
+	{
+		if (!isBig() && !other.isBig())
+		{
+			if (denominator == other.denominator)
+			{
+				return Long.compare(numerator, other.numerator);
+			}
+			// 128 bit cross products
+			long leftHigh = Math.multiplyHigh(numerator, other.denominator);
+			long rightHigh = Math.multiplyHigh(other.numerator, denominator);
+			if (leftHigh != rightHigh)
+			{
+				return Long.compare(leftHigh, rightHigh);
+			}
+			return Long.compareUnsigned(numerator * other.denominator, other.numerator * denominator);
+		}
+		return numerator().multiply(other.denominator()).compareTo(
+				other.numerator().multiply(denominator()));
+	}
+	
+	/**
+	 * Nearest double, ties to even. Terms under 2^53 are exact as doubles, so
+	 * one division rounds correctly. Otherwise the quotient is taken to 55 or
+	 * 56 bits with the remainder as a sticky bit, then rounded once to the
+	 * bits a double keeps at that exponent, fewer when it is subnormal.
+	 */
+	@Override
+	public double doubleValue()
+	{
+		if (!isBig() && Math.abs(numerator) < EXACT_DOUBLE && denominator < EXACT_DOUBLE)
+		{
+			return (double) numerator / (double) denominator;
+		}
+		int sign = signum();
+		if (sign == 0)
+		{
+			return 0.0;
+		}
+		BigInteger a = numerator().abs();
+		BigInteger b = denominator();
+		// scale so a / b . 2^shift has 55 or 56 integer bits
+		int shift = 55 - (a.bitLength() - b.bitLength());
+		BigInteger [] qr = (shift >= 0)
+				? a.shiftLeft(shift).divideAndRemainder(b)
+				: a.divideAndRemainder(b.shiftLeft(-shift));
+		BigInteger q = qr[0];
+		int length = q.bitLength();
+		// bits below the last one the double keeps, 2^-1074 at the least
+		long drop = Math.max(length - 53, (long) shift - 1074);
+		if (drop > length)
+		{
+			return sign * 0.0;
+		}
+		BigInteger kept = q.shiftRight((int) drop);
+		int half = q.testBit((int) drop - 1) ? 1 : 0;
+		boolean below = q.getLowestSetBit() < drop - 1 || qr[1].signum() != 0;
+		if (half == 1 && (below || kept.testBit(0)))
+		{
+			kept = kept.add(BigInteger.ONE);
+		}
+		return sign * Math.scalb(kept.doubleValue(), (int) (drop - shift));
+	}
+	
+	@Override
+	public float floatValue()
+	{
+		return (float) doubleValue();
+	}
+	
+	@Override
+	public long longValue()
+	{
+		return isBig() ? bigNumerator.divide(bigDenominator).longValue() : numerator / denominator;
+	}
+	
+	@Override
+	public int intValue()
+	{
+		return (int) longValue();
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		if (isBig())
+		{
+			return 31 * bigNumerator.hashCode() + bigDenominator.hashCode();
+		}
+		return 31 * Long.hashCode(numerator) + Long.hashCode(denominator);
+	}
+	
+	@Override
+	public boolean equals(Object o)
+	{
+		if (!(o instanceof Rational))
+		{
+			return false;
+		}
+		Rational other = (Rational) o;
+		if (isBig() != other.isBig())
+		{
+			// lowest terms are unique and demotion is eager
+			return false;
+		}
+		return isBig()
+				? bigNumerator.equals(other.bigNumerator) && bigDenominator.equals(other.bigDenominator)
+				: numerator == other.numerator && denominator == other.denominator;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return isBig() ? bigNumerator + "/" + bigDenominator : numerator + "/" + denominator;
+	}
+}
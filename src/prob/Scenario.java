@@ -0,0 +1,526 @@
+package prob;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative form of the worked examples: a set of exclusive hypotheses with
+ * priors, and evidence variables with a likelihood for each outcome under
+ * each hypothesis
+ *
+ * p(H | E) = p(H) prod p(E_j | H) / sum_H' p(H') prod p(E_j | H')
+ *
+ * Priors and likelihoods are {@link Term}s, either constants or named
+ * parameters supplied at evaluation, such as a prevalence that varies by
+ * subject while the test's sensitivity is fixed.
+ *
+ * {@link #posterior(double[], int[], double[])} walks the model on every call.
+ * For repeated evaluation {@link #compile(int[])} specializes the model to one
+ * observation. Constant factors are multiplied out once per hypothesis and
+ * hypotheses with a zero constant drop to 0. Each remaining weight is a tree
+ * of small final classes, one per term shape, such as c p[slot] or
+ * c (1 - p[slot]), joined by products. Two hypothesis scenarios skip the
+ * loop over hypotheses and fully constant ones are answered up front.
+ * Nothing is decoded at evaluation, but the tree is still walked by virtual
+ * calls: with one scenario live the JIT inlines it, with many the product
+ * call sites see every shape and stay virtual calls. Generating a class per
+ * scenario was measured slower still with a thousand live scenarios, as each
+ * needs its own JIT warm-up and code. The evidence p(E), e.g. P(Green), is
+ * summed once and shared by every posterior.
+ *
+ * http://en.wikipedia.org/wiki/Bayes'_theorem#Extended_form
+ * http://en.wikipedia.org/wiki/Constant_folding
+ */
+public class Scenario
+{
+	/**
+	 * A prior or likelihood, value or 1 - value where value is a constant
+	 * or a parameter
+	 */
+	public final static class Term
+	{
+		/**
+		 * parameter slot, or -1 for a constant
+		 */
+		protected final int parameter;
+		protected final double constant;
+		protected final boolean complement;
+		
+		protected Term(int parameter, double constant, boolean complement)
+		{
+			this.parameter = parameter;
+			this.constant = constant;
+			this.complement = complement;
+		}
+		
+		/**
+		 * @return 1 - this, e.g. p(~A) from p(A) or a false positive rate
+		 * from a specificity
+		 */
+		public Term complement()
+		{
+			return parameter < 0 ? constant(1.0 - constant) : new Term(parameter, 0, !complement);
+		}
+		
+		public boolean isConstant()
+		{
+			return parameter < 0;
+		}
+		
+		protected double value(double [] parameters)
+		{
+			if (parameter < 0)
+			{
+				return constant;
+			}
+			double p = parameters[parameter];
+			return complement ? 1.0 - p : p;
+		}
+	}
+	
+	/**
+	 * @param value
+	 * @return a term with a fixed value
+	 */
+	public final static Term constant(double value)
+	{
+		return new Term(-1, value, false);
+	}
+	
+	protected final String [] hypotheses;
+	protected final Term [] priors;
+	protected final List<String> parameters = new ArrayList<String>();
+	protected final List<String> evidence = new ArrayList<String>();
+	protected final List<String []> outcomes = new ArrayList<String []>();
+	/**
+	 * per evidence variable, terms indexed [hypothesis * outcomes + outcome]
+	 */
+	protected final List<Term []> likelihoods = new ArrayList<Term []>();
+	
+	/**
+	 * @param hypotheses names of the exclusive and exhaustive hypotheses
+	 */
+	public Scenario(String... hypotheses)
+	{
+		if (hypotheses.length < 2)
+		{
+			throw new IllegalArgumentException("Need at least two hypotheses");
+		}
+		this.hypotheses = hypotheses.clone();
+		this.priors = new Term[hypotheses.length];
+	}
+	
+	/**
+	 * @param name
+	 * @return the term for a named parameter, its slot in the parameter array
+	 * being the order of first use
+	 */
+	public Term parameter(String name)
+	{
+		int slot = parameters.indexOf(name);
+		if (slot < 0)
+		{
+			slot = parameters.size();
+			parameters.add(name);
+		}
+		return new Term(slot, 0, false);
+	}
+	
+	/**
+	 * @param priors p(H) per hypothesis, summing to 1
+	 * @return this
+	 */
+	public Scenario prior(Term... priors)
+	{
+		if (priors.length != hypotheses.length)
+		{
+			throw new IllegalArgumentException("Need a prior for each of " + hypotheses.length + " hypotheses");
+		}
+		System.arraycopy(priors, 0, this.priors, 0, priors.length);
+		return this;
+	}
+	
+	/**
+	 * @param name
+	 * @param outcomes names of the observable outcomes
+	 * @return index of the evidence variable
+	 */
+	public int evidence(String name, String... outcomes)
+	{
+		if (outcomes.length < 2)
+		{
+			throw new IllegalArgumentException("Need at least two outcomes: " + name);
+		}
+		evidence.add(name);
+		this.outcomes.add(outcomes.clone());
+		likelihoods.add(new Term[hypotheses.length * outcomes.length]);
+		return evidence.size() - 1;
+	}
+	
+	/**
+	 * @param evidence index from {@link #evidence(String, String...)}
+	 * @param hypothesis
+	 * @param likelihoods p(outcome | hypothesis) per outcome
+	 * @return this
+	 */
+	public Scenario likelihood(int evidence, int hypothesis, Term... likelihoods)
+	{
+		int numOutcomes = outcomes.get(evidence).length;
+		if (likelihoods.length != numOutcomes)
+		{
+			throw new IllegalArgumentException("Need a likelihood for each of " + numOutcomes + " outcomes");
+		}
+		System.arraycopy(likelihoods, 0, this.likelihoods.get(evidence), hypothesis * numOutcomes, numOutcomes);
+		return this;
+	}
+	
+	public int numHypotheses()
+	{
+		return hypotheses.length;
+	}
+	
+	public int numParameters()
+	{
+		return parameters.size();
+	}
+	
+	public String hypothesis(int h)
+	{
+		return hypotheses[h];
+	}
+	
+	/**
+	 * Evaluate by walking the model
+	 *
+	 * @param parameters values by slot
+	 * @param observed outcome per evidence variable, or
+	 * {@link BayesianNetwork#UNOBSERVED}
+	 * @param out receives p(H | observed) per hypothesis
+	 * @return p(observed)
+	 */
+	public double posterior(double [] parameters, int [] observed, double [] out)
+	{
+		check(observed);
+		double total = 0;
+		for (int h = 0; h < hypotheses.length; h++)
+		{
+			double weight = priors[h].value(parameters);
+			for (int e = 0; e < observed.length; e++)
+			{
+				if (observed[e] != BayesianNetwork.UNOBSERVED)
+				{
+					weight *= likelihoods.get(e)[h * outcomes.get(e).length + observed[e]].value(parameters);
+				}
+			}
+			out[h] = weight;
+			total += weight;
+		}
+		for (int h = 0; h < hypotheses.length; h++)
+		{
+			out[h] /= total;
+		}
+		return total;
+	}
+	
+	/**
+	 * @param observed outcome per evidence variable, or
+	 * {@link BayesianNetwork#UNOBSERVED}
+	 * @return an evaluator specialized to the observation
+	 */
+	public Evaluator compile(int [] observed)
+	{
+		check(observed);
+		int numHypotheses = hypotheses.length;
+		Weight [] weights = new Weight[numHypotheses];
+		boolean constant = true;
+		for (int h = 0; h < numHypotheses; h++)
+		{
+			weights[h] = weight(h, observed);
+			constant &= weights[h] instanceof Constant;
+		}
+		if (constant)
+		{
+			double [] values = new double[numHypotheses];
+			double total = General.evaluate(weights, null, values);
+			return new Folded(values, total);
+		}
+		if (numHypotheses == 2)
+		{
+			return new Binary(weights[0], weights[1]);
+		}
+		return new General(weights);
+	}
+	
+	/**
+	 * Fold a hypothesis's constant terms into one factor, then chain its
+	 * parameter terms onto it
+	 */
+	protected Weight weight(int h, int [] observed)
+	{
+		double constant = 1.0;
+		List<Term> terms = new ArrayList<Term>();
+		for (int e = -1; e < observed.length; e++)
+		{
+			Term term;
+			if (e < 0)
+			{
+				term = priors[h];
+			}
+			else if (observed[e] == BayesianNetwork.UNOBSERVED)
+			{
+				continue;
+			}
+			else
+			{
+				term = likelihoods.get(e)[h * outcomes.get(e).length + observed[e]];
+			}
+			if (term.isConstant())
+			{
+				constant *= term.constant;
+			}
+			else
+			{
+				terms.add(term);
+			}
+		}
+		if (terms.isEmpty() || constant == 0)
+		{
+			// a zero constant is never possible, whatever the parameters
+			return new Constant(constant);
+		}
+		Weight weight = null;
+		for (Term term : terms)
+		{
+			double scale = (weight == null) ? constant : 1.0;
+			Weight factor = term.complement
+					? new ScaledComplement(scale, term.parameter)
+					: new Scaled(scale, term.parameter);
+			weight = (weight == null) ? factor : new Product(weight, factor);
+		}
+		return weight;
+	}
+	
+	protected void check(int [] observed)
+	{
+		if (observed.length != evidence.size())
+		{
+			throw new IllegalArgumentException("Need an outcome for each of " + evidence.size() + " evidence variables");
+		}
+		for (int h = 0; h < hypotheses.length; h++)
+		{
+			if (priors[h] == null)
+			{
+				throw new IllegalStateException("No prior for " + hypotheses[h]);
+			}
+		}
+		for (int e = 0; e < observed.length; e++)
+		{
+			if (observed[e] == BayesianNetwork.UNOBSERVED)
+			{
+				continue;
+			}
+			int numOutcomes = outcomes.get(e).length;
+			if (observed[e] < 0 || observed[e] >= numOutcomes)
+			{
+				throw new IllegalArgumentException("No outcome " + observed[e] + " for " + evidence.get(e));
+			}
+			for (int h = 0; h < hypotheses.length; h++)
+			{
+				if (likelihoods.get(e)[h * numOutcomes + observed[e]] == null)
+				{
+					throw new IllegalStateException(
+							"No likelihood for " + evidence.get(e) + " given " + hypotheses[h]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A scenario specialized to one observation, immutable and safe to share
+	 */
+	public abstract static class Evaluator
+	{
+		/**
+		 * @return true if no parameter is left and results are precomputed
+		 */
+		public boolean isConstant()
+		{
+			return false;
+		}
+		
+		/**
+		 * @param parameters values by slot, unused when {@link #isConstant()}
+		 * @param out receives p(H | observed) per hypothesis
+		 * @return p(observed)
+		 */
+		public abstract double evaluate(double [] parameters, double [] out);
+	}
+	
+	/**
+	 * Every term constant, the answer computed at compile time
+	 */
+	protected final static class Folded extends Evaluator
+	{
+		protected final double [] posterior;
+		protected final double evidence;
+		
+		protected Folded(double [] posterior, double evidence)
+		{
+			this.posterior = posterior;
+			this.evidence = evidence;
+		}
+		
+		@Override
+		public boolean isConstant()
+		{
+			return true;
+		}
+		
+		@Override
+		public double evaluate(double [] parameters, double [] out)
+		{
+			System.arraycopy(posterior, 0, out, 0, posterior.length);
+			return evidence;
+		}
+	}
+	
+	/**
+	 * A hypothesis and its complement, e.g. user and non-user, without the
+	 * loop over hypotheses
+	 */
+	protected final static class Binary extends Evaluator
+	{
+		protected final Weight first;
+		protected final Weight second;
+		
+		protected Binary(Weight first, Weight second)
+		{
+			this.first = first;
+			this.second = second;
+		}
+		
+		@Override
+		public double evaluate(double [] parameters, double [] out)
+		{
+			double a = first.value(parameters);
+			double b = second.value(parameters);
+			double total = a + b;
+			double scale = 1.0 / total;
+			out[0] = a * scale;
+			out[1] = b * scale;
+			return total;
+		}
+	}
+	
+	protected final static class General extends Evaluator
+	{
+		protected final Weight [] weights;
+		
+		protected General(Weight [] weights)
+		{
+			this.weights = weights;
+		}
+		
+		@Override
+		public double evaluate(double [] parameters, double [] out)
+		{
+			return evaluate(weights, parameters, out);
+		}
+		
+		protected final static double evaluate(Weight [] weights, double [] parameters, double [] out)
+		{
+			double total = 0;
+			for (int h = 0; h < weights.length; h++)
+			{
+				out[h] = weights[h].value(parameters);
+				total += out[h];
+			}
+			double scale = 1.0 / total;
+			for (int h = 0; h < weights.length; h++)
+			{
+				out[h] *= scale;
+			}
+			return total;
+		}
+	}
+	
+	/**
+	 * p(H) prod p(E_j | H) for one hypothesis, as a function of the parameters
+	 */
+	protected interface Weight
+	{
+		double value(double [] parameters);
+	}
+	
+	protected final static class Constant implements Weight
+	{
+		protected final double constant;
+		
+		protected Constant(double constant)
+		{
+			this.constant = constant;
+		}
+		
+		public double value(double [] parameters)
+		{
+			return constant;
+		}
+	}
+	
+	/**
+	 * c p[slot]
+	 */
+	protected final static class Scaled implements Weight
+	{
+		protected final double scale;
+		protected final int slot;
+		
+		protected Scaled(double scale, int slot)
+		{
+			this.scale = scale;
+			this.slot = slot;
+		}
+		
+		public double value(double [] parameters)
+		{
+			return scale * parameters[slot];
+		}
+	}
+	
+	/**
+	 * c (1 - p[slot])
+	 */
+	protected final static class ScaledComplement implements Weight
+	{
+		protected final double scale;
+		protected final int slot;
+		
+		protected ScaledComplement(double scale, int slot)
+		{
+			this.scale = scale;
+			this.slot = slot;
+		}
+		
+		public double value(double [] parameters)
+		{
+			return scale * (1.0 - parameters[slot]);
+		}
+	}
+	
+	protected final static class Product implements Weight
+	{
+		protected final Weight left;
+		protected final Weight right;
+		
+		protected Product(Weight left, Weight right)
+		{
+			this.left = left;
+			this.right = right;
+		}
+		
+		public double value(double [] parameters)
+		{
+			return left.value(parameters) * right.value(parameters);
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package prob;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Positive and negative predictive values of a test over a grid of
+ * prevalence x sensitivity x specificity
+ *
+ * PPV = p(A | +) = s p / (s p + (1 - c)(1 - p))
+ * NPV = p(~A | -) = c (1 - p) / (c (1 - p) + (1 - s) p)
+ *
+ * with prevalence p, sensitivity s and specificity c. The grid is split into
+ * slabs of consecutive points on the fork-join pool. Each slab is computed
+ * into its own buffer and written straight to its place in a
+ * {@link TableFile} with a positional write, so the whole surface is never
+ * held in memory and slabs finish in any order. The file has dimensions
+ * (prevalence, sensitivity, specificity, 2) holding {PPV, NPV}, and reads
+ * back with {@link TableFile#open(Path)}.
+ *
+ * Contours need no grid, the prevalence at which a predictive value reaches
+ * a target has a closed form, see {@link #ppvThreshold(double, double, double)}.
+ *
+ * http://en.wikipedia.org/wiki/Positive_and_negative_predictive_values
+ */
+public class SensitivitySweep
+{
+	public final static int PPV = 0, NPV = 1;
+	
+	/**
+	 * grid points per leaf task, 1MB of output
+	 */
+	protected final static int LEAF_POINTS = 1 << 16;
+	
+	protected final ForkJoinPool pool;
+	
+	/**
+	 * Use the common pool, one worker per core
+	 */
+	public SensitivitySweep()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public SensitivitySweep(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * @param from
+	 * @param to
+	 * @param n at least 2
+	 * @return n evenly spaced points from from to to inclusive
+	 */
+	public final static double [] grid(double from, double to, int n)
+	{
+		if (n < 2)
+		{
+			throw new IllegalArgumentException("Need at least 2 points: " + n);
+		}
+		double [] points = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			points[i] = from + (to - from) * i / (n - 1);
+		}
+		return points;
+	}
+	
+	/**
+	 * Sweep the grid into a table file
+	 *
+	 * @param path
+	 * @param prevalences p(A)
+	 * @param sensitivities p(+ | A)
+	 * @param specificities p(- | ~A)
+	 * @throws IOException
+	 */
+	public void write(Path path, double [] prevalences, double [] sensitivities, double [] specificities)
+			throws IOException
+	{
+		int [] dimensions = {prevalences.length, sensitivities.length, specificities.length, 2};
+		FileChannel channel = TableFile.create(path, TableFile.PROBABILITIES, dimensions);
+		try
+		{
+			long points = (long) prevalences.length * sensitivities.length * specificities.length;
+			pool.invoke(new SweepTask(channel, TableFile.headerBytes(dimensions.length),
+					prevalences, sensitivities, specificities, 0, points));
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+	
+	protected final static class SweepTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final FileChannel channel;
+		protected final long dataStart;
+		protected final double [] prevalences;
+		protected final double [] sensitivities;
+		protected final double [] specificities;
+		protected final long from;
+		protected final long to;
+		
+		protected SweepTask(FileChannel channel, long dataStart,
+				double [] prevalences, double [] sensitivities, double [] specificities,
+				long from, long to)
+		{
+			this.channel = channel;
+			this.dataStart = dataStart;
+			this.prevalences = prevalences;
+			this.sensitivities = sensitivities;
+			this.specificities = specificities;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from > LEAF_POINTS)
+			{
+				long middle = (from + to) >>> 1;
+				invokeAll(
+						new SweepTask(channel, dataStart, prevalences, sensitivities, specificities, from, middle),
+						new SweepTask(channel, dataStart, prevalences, sensitivities, specificities, middle, to));
+				return;
+			}
+			int numSpecificities = specificities.length;
+			int numSensitivities = sensitivities.length;
+			// decode the first point, then step through the grid like an odometer
+			int c = (int) (from % numSpecificities);
+			long row = from / numSpecificities;
+			int s = (int) (row % numSensitivities);
+			int p = (int) (row / numSensitivities);
+			
+			ByteBuffer buffer = ByteBuffer.allocate((int) (to - from) * 16).order(ByteOrder.LITTLE_ENDIAN);
+			for (long i = from; i < to; i++)
+			{
+				double prevalence = prevalences[p];
+				double sensitivity = sensitivities[s];
+				double specificity = specificities[c];
+				// NPV is the same update for ~A, whose prior is 1 - p
+				buffer.putDouble(Bayes.posterior(prevalence, sensitivity, 1.0-specificity));
+				buffer.putDouble(Bayes.posterior(1.0-prevalence, specificity, 1.0-sensitivity));
+				if (++c == numSpecificities)
+				{
+					c = 0;
+					if (++s == numSensitivities)
+					{
+						s = 0;
+						p++;
+					}
+				}
+			}
+			buffer.flip();
+			try
+			{
+				long position = dataStart + from * 16;
+				while (buffer.hasRemaining())
+				{
+					position += channel.write(buffer, position);
+				}
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Lowest prevalence at which a positive result is at least target likely
+	 * to be a true positive
+	 *
+	 * PPV >= t  <=>  p >= t (1 - c) / (s (1 - t) + t (1 - c))
+	 *
+	 * @param target PPV wanted, in (0, 1)
+	 * @param sensitivity
+	 * @param specificity
+	 * @return prevalence threshold, in [0, 1], where 1 means only certain
+	 * disease reaches the target, NaN if the test is never positive
+	 */
+	public final static double ppvThreshold(double target, double sensitivity, double specificity)
+	{
+		double falsePositive = target * (1.0-specificity);
+		return falsePositive / (sensitivity * (1.0-target) + falsePositive);
+	}
+	
+	/**
+	 * Highest prevalence at which a negative result is at least target likely
+	 * to be a true negative
+	 *
+	 * NPV >= t  <=>  p <= c (1 - t) / (c (1 - t) + t (1 - s))
+	 *
+	 * @param target NPV wanted, in (0, 1)
+	 * @param sensitivity
+	 * @param specificity
+	 * @return prevalence threshold
+	 */
+	public final static double npvThreshold(double target, double sensitivity, double specificity)
+	{
+		double trueNegative = specificity * (1.0-target);
+		return trueNegative / (trueNegative + target * (1.0-sensitivity));
+	}
+	
+	/**
+	 * Contour of {@link #ppvThreshold(double, double, double)} or
+	 * {@link #npvThreshold(double, double, double)} over a sensitivity x
+	 * specificity grid
+	 *
+	 * @param value {@link #PPV} or {@link #NPV}
+	 * @param target
+	 * @param sensitivities
+	 * @param specificities
+	 * @return prevalence thresholds, row-major by sensitivity then specificity
+	 */
+	public final static double [] contour(int value, double target,
+			double [] sensitivities, double [] specificities)
+	{
+		if (value != PPV && value != NPV)
+		{
+			throw new IllegalArgumentException("Expected PPV or NPV: " + value);
+		}
+		double [] thresholds = new double[sensitivities.length * specificities.length];
+		int k = 0;
+		for (double sensitivity : sensitivities)
+		{
+			for (double specificity : specificities)
+			{
+				thresholds[k++] = value == PPV
+						? ppvThreshold(target, sensitivity, specificity)
+						: npvThreshold(target, sensitivity, specificity);
+			}
+		}
+		return thresholds;
+	}
+}
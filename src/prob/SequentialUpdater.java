@@ -0,0 +1,156 @@
+package prob;
+
+import java.util.Arrays;
+
+/**
+ * Streaming posterior for many entities, each a binary hypothesis such as 
+ * "is a drug user", updated one test result at a time
+ * 
+ * Each entity's state is its log-odds in a primitive array indexed by entity 
+ * id, so an observation is a single add:
+ * 
+ * log O(A | B1..Bn) = log O(A | B1..Bn-1) + log(p(Bn | A) / p(Bn | ~A))
+ * 
+ * The log likelihood ratios of each registered test are computed once, when 
+ * the test is added. Observing allocates nothing and boxes nothing.
+ * 
+ * Not thread safe, partition entities across updaters to ingest in parallel.
+ */
+public class SequentialUpdater
+{
+	protected final double [] logOdds;
+	protected final double priorLogOdds;
+	
+	protected double [] positiveLogLr = new double[0];
+	protected double [] negativeLogLr = new double[0];
+	
+	/**
+	 * @param numEntities entity ids run from 0 to numEntities-1
+	 * @param prior p(A), shared by all entities until they are observed
+	 */
+	public SequentialUpdater(int numEntities, double prior)
+	{
+		logOdds = new double[numEntities];
+		priorLogOdds = LogSpace.logit(prior);
+		Arrays.fill(logOdds, priorLogOdds);
+	}
+	
+	/**
+	 * Register a test
+	 * 
+	 * @param sensitivity p(+ | A)
+	 * @param specificity p(- | ~A)
+	 * @return the test id to observe results with
+	 */
+	public int addTest(double sensitivity, double specificity)
+	{
+		int id = positiveLogLr.length;
+		positiveLogLr = Arrays.copyOf(positiveLogLr, id+1);
+		negativeLogLr = Arrays.copyOf(negativeLogLr, id+1);
+		// p(+ | A) / p(+ | ~A)
+		positiveLogLr[id] = Math.log(sensitivity) - Math.log1p(-specificity);
+		// p(- | A) / p(- | ~A)
+		negativeLogLr[id] = Math.log1p(-sensitivity) - Math.log(specificity);
+		return id;
+	}
+	
+	/**
+	 * @param entity
+	 * @param test a test id from {@link #addTest(double, double)}
+	 * @param positive the test result
+	 */
+	public void observe(int entity, int test, boolean positive)
+	{
+		logOdds[entity] += positive ? positiveLogLr[test] : negativeLogLr[test];
+	}
+	
+	/**
+	 * @param entity
+	 * @param logLr log(p(B | A) / p(B | ~A)) of an arbitrary observation
+	 */
+	public void observe(int entity, double logLr)
+	{
+		logOdds[entity] += logLr;
+	}
+	
+	/**
+	 * Apply a batch of events, all parallel arrays
+	 * 
+	 * @param entities
+	 * @param tests
+	 * @param positives
+	 * @param offset
+	 * @param length
+	 */
+	public void observe(int [] entities, int [] tests, boolean [] positives, int offset, int length)
+	{
+		if (offset < 0 || length < 0 
+				|| offset > entities.length - length 
+				|| offset > tests.length - length 
+				|| offset > positives.length - length)
+		{
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+		}
+		
+		for (int i = offset; i < offset+length; i++)
+		{
+			int test = tests[i];
+			logOdds[entities[i]] += positives[i] ? positiveLogLr[test] : negativeLogLr[test];
+		}
+	}
+	
+	/**
+	 * @param entity
+	 * @return p(A | results so far)
+	 */
+	public double posterior(int entity)
+	{
+		return LogSpace.logistic(logOdds[entity]);
+	}
+	
+	/**
+	 * @param entity
+	 * @return log O(A | results so far)
+	 */
+	public double logOdds(int entity)
+	{
+		return logOdds[entity];
+	}
+	
+	/**
+	 * Copy posteriors for a range of entities
+	 * 
+	 * @param fromEntity
+	 * @param out
+	 * @param outOffset
+	 * @param length
+	 */
+	public void posteriors(int fromEntity, double [] out, int outOffset, int length)
+	{
+		Bayes.checkRange(logOdds, fromEntity, length);
+		Bayes.checkRange(out, outOffset, length);
+		
+		for (int i = 0; i < length; i++)
+		{
+			out[outOffset+i] = LogSpace.logistic(logOdds[fromEntity+i]);
+		}
+	}
+	
+	/**
+	 * Forget everything observed about an entity
+	 * 
+	 * @param entity
+	 */
+	public void reset(int entity)
+	{
+		logOdds[entity] = priorLogOdds;
+	}
+	
+	/**
+	 * @return number of entities
+	 */
+	public int size()
+	{
+		return logOdds.length;
+	}
+}
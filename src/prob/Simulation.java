@@ -0,0 +1,179 @@
+package prob;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo estimates of a probability, to cross-check analytic answers
+ * 
+ * Trials are split across a fork-join pool. Each leaf task gets its own 
+ * SplittableRandom, split from its parent when forked, and counts into local 
+ * variables; partial counts only meet when tasks join. A run is reproducible 
+ * for a given seed regardless of the number of cores.
+ * 
+ * Conditional probabilities such as P(D|+) are estimated by rejection: trials 
+ * in which the evidence was not observed are discarded.
+ */
+public class Simulation
+{
+	/**
+	 * Outcome of a single trial
+	 */
+	public final static int MISS = 0, HIT = 1, DISCARD = -1;
+	
+	/**
+	 * A single simulated trial of a scenario
+	 */
+	public interface Trial
+	{
+		/**
+		 * @param random the only source of randomness to use
+		 * @return {@link #HIT}, {@link #MISS} or {@link #DISCARD}
+		 */
+		int run(SplittableRandom random);
+	}
+	
+	/**
+	 * trials per leaf task, large enough to amortize forking
+	 */
+	protected final static long LEAF_TRIALS = 1L << 16;
+	
+	protected final ForkJoinPool pool;
+	
+	/**
+	 * Use the common pool, one worker per core
+	 */
+	public Simulation()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public Simulation(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * @param trial scenario to simulate
+	 * @param trials number of trials, including any discarded
+	 * @param seed
+	 * @return the proportion of counted trials that were hits
+	 */
+	public Estimate run(Trial trial, long trials, long seed)
+	{
+		long start = Metrics.start();
+		long [] counts = pool.invoke(new TrialTask(trial, trials, new SplittableRandom(seed)));
+		Metrics.stop(Metrics.SAMPLING, start);
+		return new Estimate(counts[0], counts[1]);
+	}
+	
+	protected final static class TrialTask extends RecursiveTask<long[]>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		protected final Trial trial;
+		protected final long trials;
+		protected final SplittableRandom random;
+		
+		protected TrialTask(Trial trial, long trials, SplittableRandom random)
+		{
+			this.trial = trial;
+			this.trials = trials;
+			this.random = random;
+		}
+		
+		@Override
+		protected long[] compute()
+		{
+			if (trials <= LEAF_TRIALS)
+			{
+				long hits = 0, counted = 0;
+				for (long i = 0; i < trials; i++)
+				{
+					int outcome = trial.run(random);
+					if (outcome != DISCARD)
+					{
+						counted++;
+						hits += outcome;
+					}
+				}
+				return new long[]{hits, counted};
+			}
+			long half = trials >>> 1;
+			TrialTask left = new TrialTask(trial, half, random.split());
+			TrialTask right = new TrialTask(trial, trials-half, random);
+			left.fork();
+			long [] r = right.compute();
+			long [] l = left.join();
+			r[0] += l[0];
+			r[1] += l[1];
+			return r;
+		}
+	}
+	
+	/**
+	 * n-door Monty Hall: pick a door, the host opens all but one of the other 
+	 * doors, never the prize, then the player sticks or switches
+	 * 
+	 * P(win | stick) = 1/n, P(win | switch) = (n-1)/n
+	 * 
+	 * @param doors at least 3
+	 * @param switchDoor
+	 * @return hit when the player wins the prize
+	 */
+	public final static Trial montyHall(final int doors, final boolean switchDoor)
+	{
+		if (doors < 3)
+		{
+			throw new IllegalArgumentException("Need at least 3 doors: " + doors);
+		}
+		return new Trial()
+		{
+			public int run(SplittableRandom random)
+			{
+				int prize = random.nextInt(doors);
+				int choice = random.nextInt(doors);
+				// the one door the host leaves shut
+				int closed = prize;
+				if (prize == choice)
+				{
+					closed = random.nextInt(doors-1);
+					if (closed >= choice)
+					{
+						closed++;
+					}
+				}
+				int finalChoice = switchDoor ? closed : choice;
+				return (finalChoice == prize) ? HIT : MISS;
+			}
+		};
+	}
+	
+	/**
+	 * Screening, see DrugTestingTestCase: estimate p(A | +) by drawing a 
+	 * subject from the prior, testing them, and discarding negative tests
+	 * 
+	 * @param prior p(A)
+	 * @param likelihood p(+ | A)
+	 * @param falsePositive p(+ | ~A)
+	 * @return hit when a subject who tested positive has A
+	 */
+	public final static Trial screening(
+			final double prior, final double likelihood, final double falsePositive)
+	{
+		return new Trial()
+		{
+			public int run(SplittableRandom random)
+			{
+				boolean a = random.nextDouble() < prior;
+				boolean positive = random.nextDouble() < (a ? likelihood : falsePositive);
+				if (!positive)
+				{
+					return DISCARD;
+				}
+				return a ? HIT : MISS;
+			}
+		};
+	}
+}
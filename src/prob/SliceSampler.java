@@ -0,0 +1,103 @@
+package prob;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Univariate slice sampling, one coordinate at a time
+ * 
+ * Draw a height under the density at the current point, step an interval of 
+ * width w out until both ends are outside the slice, then sample within it, 
+ * shrinking towards the current point on each rejection. Every move is 
+ * accepted. While adapting, w tracks the average width of the slices found.
+ * 
+ * http://en.wikipedia.org/wiki/Slice_sampling
+ */
+public class SliceSampler extends McmcSampler
+{
+	protected final static int MAX_STEPS_OUT = 64;
+	
+	protected final double [] width;
+	protected final long [] adaptations;
+	
+	/**
+	 * @param target
+	 * @param initial
+	 * @param width initial interval width, all coordinates
+	 */
+	public SliceSampler(LogDensity target, double [] initial, double width)
+	{
+		super(target, initial);
+		this.width = new double[initial.length];
+		this.adaptations = new long[initial.length];
+		Arrays.fill(this.width, width);
+	}
+	
+	@Override
+	public void step(SplittableRandom random)
+	{
+		for (int d = 0; d < state.length; d++)
+		{
+			double x0 = state[d];
+			double logY = logDensity + Math.log(random.nextDouble());
+			double w = width[d];
+			
+			double left = x0 - w * random.nextDouble();
+			double right = left + w;
+			int stepsLeft = random.nextInt(MAX_STEPS_OUT);
+			int stepsRight = MAX_STEPS_OUT - 1 - stepsLeft;
+			while (stepsLeft-- > 0 && logDensityAt(d, left) > logY)
+			{
+				left -= w;
+			}
+			while (stepsRight-- > 0 && logDensityAt(d, right) > logY)
+			{
+				right += w;
+			}
+			
+			double lower = left, upper = right;
+			while (true)
+			{
+				double x1 = lower + (upper - lower) * random.nextDouble();
+				state[d] = x1;
+				double logP = target.logDensity(state);
+				if (logP > logY)
+				{
+					logDensity = logP;
+					break;
+				}
+				if (x1 < x0)
+				{
+					lower = x1;
+				}
+				else
+				{
+					upper = x1;
+				}
+			}
+			proposed++;
+			accepted++;
+			
+			if (adapting)
+			{
+				long k = ++adaptations[d];
+				width[d] += ((right - left) / 2 - width[d]) / k;
+				width[d] = Math.max(width[d], 1.0E-12);
+			}
+		}
+	}
+	
+	protected double logDensityAt(int d, double x)
+	{
+		double old = state[d];
+		state[d] = x;
+		double logP = target.logDensity(state);
+		state[d] = old;
+		return logP;
+	}
+	
+	public double width(int d)
+	{
+		return width[d];
+	}
+}
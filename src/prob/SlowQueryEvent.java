@@ -0,0 +1,33 @@
+package prob;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for an operation slower than 
+ * {@link Metrics#SLOW_NANOS}, committed only when metrics are enabled. It 
+ * begins and ends with the operation, so its duration is the latency.
+ * 
+ * jcmd <pid> JFR.start settings=profile, then look for prob.SlowQuery
+ */
+@Name("prob.SlowQuery")
+@Label("Slow Query")
+@Category("Probability")
+@Description("An inference operation that exceeded the slow query threshold")
+public class SlowQueryEvent extends jdk.jfr.Event
+{
+	@Label("Operation")
+	public String operation;
+	
+	@Label("Latency")
+	@Timespan(Timespan.NANOSECONDS)
+	public long latency;
+	
+	/**
+	 * System.nanoTime at {@link Metrics#begin()}, not recorded
+	 */
+	transient long start;
+}
@@ -0,0 +1,437 @@
+package prob;
+
+/**
+ * Special functions needed by the distributions
+ * 
+ * http://en.wikipedia.org/wiki/Lanczos_approximation
+ * http://en.wikipedia.org/wiki/Beta_function#Incomplete_beta_function
+ * http://en.wikipedia.org/wiki/Incomplete_gamma_function
+ */
+public class SpecialFunctions
+{
+	protected final static double EPSILON = 1.0E-15;
+	protected final static double TINY = 1.0E-300;
+	protected final static int MAX_ITERATIONS = 100000;
+	
+	protected final static double HALF_LOG_2PI = 0.5 * Math.log(2*Math.PI);
+	
+	/**
+	 * Lanczos coefficients, g = 7, n = 9
+	 */
+	protected final static double [] LANCZOS = 
+	{
+		0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+		771.32342877765313, -176.61502916214059, 12.507343278686905,
+		-0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7
+	};
+	
+	/**
+	 * @param x > 0
+	 * @return log(Gamma(x))
+	 */
+	public final static double logGamma(double x)
+	{
+		if (x <= 0)
+		{
+			throw new IllegalArgumentException("logGamma needs x > 0: " + x);
+		}
+		if (x < 0.5)
+		{
+			// reflection, Gamma(x) Gamma(1 - x) = pi / sin(pi x)
+			return Math.log(Math.PI / Math.sin(Math.PI * x)) - logGamma(1.0 - x);
+		}
+		x -= 1.0;
+		double a = LANCZOS[0];
+		double t = x + 7.5;
+		for (int i = 1; i < LANCZOS.length; i++)
+		{
+			a += LANCZOS[i] / (x + i);
+		}
+		return HALF_LOG_2PI + (x + 0.5) * Math.log(t) - t + Math.log(a);
+	}
+	
+	/**
+	 * @param a > 0
+	 * @param b > 0
+	 * @return log(B(a, b)) = log(Gamma(a) Gamma(b) / Gamma(a + b))
+	 */
+	public final static double logBeta(double a, double b)
+	{
+		return logGamma(a) + logGamma(b) - logGamma(a + b);
+	}
+	
+	/**
+	 * Regularized incomplete beta function, evaluated by continued fraction
+	 * 
+	 * @param x in [0, 1]
+	 * @param a > 0
+	 * @param b > 0
+	 * @return I_x(a, b)
+	 */
+	public final static double regularizedBeta(double x, double a, double b)
+	{
+		if (x < 0 || x > 1 || Double.isNaN(x))
+		{
+			throw new IllegalArgumentException("x must be in [0, 1]: " + x);
+		}
+		if (x == 0)
+		{
+			return 0;
+		}
+		if (x == 1)
+		{
+			return 1;
+		}
+		double logFront = a * Math.log(x) + b * Math.log1p(-x) - logBeta(a, b);
+		// the continued fraction converges quickly only below the mean
+		if (x < (a + 1) / (a + b + 2))
+		{
+			return Math.exp(logFront) * betaFraction(x, a, b) / a;
+		}
+		return 1.0 - Math.exp(logFront) * betaFraction(1.0 - x, b, a) / b;
+	}
+	
+	/**
+	 * Continued fraction for the incomplete beta, modified Lentz method
+	 */
+	protected final static double betaFraction(double x, double a, double b)
+	{
+		double qab = a + b;
+		double qap = a + 1;
+		double qam = a - 1;
+		double c = 1;
+		double d = 1 - qab * x / qap;
+		if (Math.abs(d) < TINY)
+		{
+			d = TINY;
+		}
+		d = 1 / d;
+		double h = d;
+		for (int m = 1; m <= MAX_ITERATIONS; m++)
+		{
+			int m2 = 2 * m;
+			double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+			d = 1 + aa * d;
+			if (Math.abs(d) < TINY)
+			{
+				d = TINY;
+			}
+			c = 1 + aa / c;
+			if (Math.abs(c) < TINY)
+			{
+				c = TINY;
+			}
+			d = 1 / d;
+			h *= d * c;
+			aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+			d = 1 + aa * d;
+			if (Math.abs(d) < TINY)
+			{
+				d = TINY;
+			}
+			c = 1 + aa / c;
+			if (Math.abs(c) < TINY)
+			{
+				c = TINY;
+			}
+			d = 1 / d;
+			double delta = d * c;
+			h *= delta;
+			if (Math.abs(delta - 1) < EPSILON)
+			{
+				return h;
+			}
+		}
+		throw new ArithmeticException("Incomplete beta did not converge, a=" + a + " b=" + b + " x=" + x);
+	}
+	
+	/**
+	 * Inverse of {@link #regularizedBeta(double, double, double)} in x, by 
+	 * Newton's method kept inside a shrinking bracket
+	 * 
+	 * @param p in [0, 1]
+	 * @param a > 0
+	 * @param b > 0
+	 * @return x such that I_x(a, b) = p
+	 */
+	public final static double inverseRegularizedBeta(double p, double a, double b)
+	{
+		if (p < 0 || p > 1 || Double.isNaN(p))
+		{
+			throw new IllegalArgumentException("p must be in [0, 1]: " + p);
+		}
+		if (p == 0 || p == 1)
+		{
+			return p;
+		}
+		double lo = 0, hi = 1;
+		double x = a / (a + b);
+		double logB = logBeta(a, b);
+		for (int i = 0; i < 200; i++)
+		{
+			double f = regularizedBeta(x, a, b) - p;
+			if (f < 0)
+			{
+				lo = x;
+			}
+			else
+			{
+				hi = x;
+			}
+			double density = Math.exp((a - 1) * Math.log(x) + (b - 1) * Math.log1p(-x) - logB);
+			double next = x - f / density;
+			if (!(next > lo && next < hi))
+			{
+				next = 0.5 * (lo + hi);
+			}
+			if (Math.abs(next - x) <= 1.0E-15 * Math.max(x, 1.0E-300) || hi - lo < 1.0E-300)
+			{
+				return next;
+			}
+			x = next;
+		}
+		return x;
+	}
+	
+	/**
+	 * Regularized lower incomplete gamma function
+	 * 
+	 * @param a > 0
+	 * @param x >= 0
+	 * @return P(a, x) = gamma(a, x) / Gamma(a)
+	 */
+	public final static double regularizedGammaP(double a, double x)
+	{
+		if (x < 0 || a <= 0)
+		{
+			throw new IllegalArgumentException("Need a > 0 and x >= 0: a=" + a + " x=" + x);
+		}
+		if (x == 0)
+		{
+			return 0;
+		}
+		if (x < a + 1)
+		{
+			return gammaSeries(a, x);
+		}
+		return 1.0 - gammaFraction(a, x);
+	}
+	
+	/**
+	 * Regularized upper incomplete gamma function
+	 * 
+	 * @param a > 0
+	 * @param x >= 0
+	 * @return Q(a, x) = 1 - P(a, x)
+	 */
+	public final static double regularizedGammaQ(double a, double x)
+	{
+		if (x < 0 || a <= 0)
+		{
+			throw new IllegalArgumentException("Need a > 0 and x >= 0: a=" + a + " x=" + x);
+		}
+		if (x == 0)
+		{
+			return 1;
+		}
+		if (x < a + 1)
+		{
+			return 1.0 - gammaSeries(a, x);
+		}
+		return gammaFraction(a, x);
+	}
+	
+	protected final static double gammaSeries(double a, double x)
+	{
+		double ap = a;
+		double term = 1.0 / a;
+		double sum = term;
+		for (int n = 0; n < MAX_ITERATIONS; n++)
+		{
+			ap += 1;
+			term *= x / ap;
+			sum += term;
+			if (Math.abs(term) < Math.abs(sum) * EPSILON)
+			{
+				return sum * Math.exp(-x + a * Math.log(x) - logGamma(a));
+			}
+		}
+		throw new ArithmeticException("Incomplete gamma series did not converge, a=" + a + " x=" + x);
+	}
+	
+	protected final static double gammaFraction(double a, double x)
+	{
+		double b = x + 1 - a;
+		double c = 1 / TINY;
+		double d = 1 / b;
+		double h = d;
+		for (int i = 1; i <= MAX_ITERATIONS; i++)
+		{
+			double an = -i * (i - a);
+			b += 2;
+			d = an * d + b;
+			if (Math.abs(d) < TINY)
+			{
+				d = TINY;
+			}
+			c = b + an / c;
+			if (Math.abs(c) < TINY)
+			{
+				c = TINY;
+			}
+			d = 1 / d;
+			double delta = d * c;
+			h *= delta;
+			if (Math.abs(delta - 1) < EPSILON)
+			{
+				return Math.exp(-x + a * Math.log(x) - logGamma(a)) * h;
+			}
+		}
+		throw new ArithmeticException("Incomplete gamma fraction did not converge, a=" + a + " x=" + x);
+	}
+	
+	/**
+	 * Inverse of {@link #regularizedGammaP(double, double)} in x
+	 * 
+	 * @param p in [0, 1]
+	 * @param a > 0
+	 * @return x such that P(a, x) = p
+	 */
+	public final static double inverseRegularizedGammaP(double p, double a)
+	{
+		if (p < 0 || p > 1 || Double.isNaN(p))
+		{
+			throw new IllegalArgumentException("p must be in [0, 1]: " + p);
+		}
+		if (p == 0)
+		{
+			return 0;
+		}
+		if (p == 1)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		// Wilson-Hilferty start, then bracket
+		double z = normalQuantile(p);
+		double x = a * Math.pow(Math.max(1.0E-3, 1 - 1 / (9 * a) + z / (3 * Math.sqrt(a))), 3);
+		double lo = 0, hi = Math.max(1, 2 * x);
+		while (regularizedGammaP(a, hi) < p)
+		{
+			lo = hi;
+			hi *= 2;
+		}
+		if (!(x > lo && x < hi))
+		{
+			x = 0.5 * (lo + hi);
+		}
+		double logGammaA = logGamma(a);
+		for (int i = 0; i < 200; i++)
+		{
+			double f = regularizedGammaP(a, x) - p;
+			if (f < 0)
+			{
+				lo = x;
+			}
+			else
+			{
+				hi = x;
+			}
+			double density = Math.exp((a - 1) * Math.log(x) - x - logGammaA);
+			double next = x - f / density;
+			if (!(next > lo && next < hi))
+			{
+				next = 0.5 * (lo + hi);
+			}
+			if (Math.abs(next - x) <= 1.0E-15 * x || hi - lo <= 1.0E-15 * hi)
+			{
+				return next;
+			}
+			x = next;
+		}
+		return x;
+	}
+	
+	/**
+	 * @param z
+	 * @return standard normal P(Z <= z)
+	 */
+	public final static double normalCdf(double z)
+	{
+		if (Double.isNaN(z))
+		{
+			return z;
+		}
+		double tail = 0.5 * regularizedGammaQ(0.5, 0.5 * z * z);
+		return (z < 0) ? tail : 1.0 - tail;
+	}
+	
+	protected final static double [] QA = 
+	{
+		-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+		1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00
+	};
+	protected final static double [] QB = 
+	{
+		-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+		6.680131188771972e+01, -1.328068155288572e+01
+	};
+	protected final static double [] QC = 
+	{
+		-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+		-2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00
+	};
+	protected final static double [] QD = 
+	{
+		7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+		3.754408661907416e+00
+	};
+	
+	/**
+	 * Standard normal quantile, Acklam's rational approximation with one 
+	 * Halley refinement
+	 * 
+	 * http://en.wikipedia.org/wiki/Normal_distribution#Generating_values_from_normal_distribution
+	 * 
+	 * @param p in (0, 1)
+	 * @return z such that P(Z <= z) = p
+	 */
+	public final static double normalQuantile(double p)
+	{
+		if (p <= 0 || p >= 1 || Double.isNaN(p))
+		{
+			if (p == 0)
+			{
+				return Double.NEGATIVE_INFINITY;
+			}
+			if (p == 1)
+			{
+				return Double.POSITIVE_INFINITY;
+			}
+			throw new IllegalArgumentException("p must be in [0, 1]: " + p);
+		}
+		double x;
+		if (p < 0.02425)
+		{
+			double q = Math.sqrt(-2 * Math.log(p));
+			x = (((((QC[0]*q + QC[1])*q + QC[2])*q + QC[3])*q + QC[4])*q + QC[5]) 
+				/ ((((QD[0]*q + QD[1])*q + QD[2])*q + QD[3])*q + 1);
+		}
+		else if (p <= 1 - 0.02425)
+		{
+			double q = p - 0.5;
+			double r = q * q;
+			x = (((((QA[0]*r + QA[1])*r + QA[2])*r + QA[3])*r + QA[4])*r + QA[5]) * q 
+				/ (((((QB[0]*r + QB[1])*r + QB[2])*r + QB[3])*r + QB[4])*r + 1);
+		}
+		else
+		{
+			double q = Math.sqrt(-2 * Math.log1p(-p));
+			x = -(((((QC[0]*q + QC[1])*q + QC[2])*q + QC[3])*q + QC[4])*q + QC[5]) 
+				/ ((((QD[0]*q + QD[1])*q + QD[2])*q + QD[3])*q + 1);
+		}
+		// e = P(Z <= x) - p, using the smaller tail for accuracy
+		double e = (x < 0) ? normalCdf(x) - p : (1 - p) - normalCdf(-x);
+		double u = e * Math.sqrt(2 * Math.PI) * Math.exp(0.5 * x * x);
+		return x - u / (1 + 0.5 * x * u);
+	}
+}
@@ -0,0 +1,370 @@
+package prob;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary files of count and probability tables, read back as memory-mapped, 
+ * off-heap views
+ * 
+ * Layout, little endian:
+ * 
+ * int magic 'PROB', int version, int type, int rank, int[rank] dimensions, 
+ * zero padding to a multiple of 8 bytes, then one 8 byte cell per entry, 
+ * row-major with the last dimension varying fastest
+ * 
+ * Counts are longs, probabilities are doubles. Reading maps the file and 
+ * serves cells straight from the mapping, there is no deserialization and 
+ * the table never enters the heap.
+ */
+public class TableFile
+{
+	public final static int MAGIC = 0x50524F42;
+	public final static int VERSION = 1;
+	
+	public final static int COUNTS = 1;
+	public final static int PROBABILITIES = 2;
+	
+	/**
+	 * cells per mapped segment, 1GB, as a single mapping is limited to 2GB
+	 */
+	protected final static int SEGMENT_SHIFT = 27;
+	
+	/**
+	 * @param path
+	 * @param dimensions
+	 * @param counts row-major cells
+	 * @throws IOException
+	 */
+	public final static void writeCounts(Path path, int [] dimensions, long [] counts) throws IOException
+	{
+		checkSize(dimensions, counts.length);
+		FileChannel channel = create(path, COUNTS, dimensions);
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < counts.length; i++)
+			{
+				if (!buffer.hasRemaining())
+				{
+					drain(channel, buffer);
+				}
+				buffer.putLong(counts[i]);
+			}
+			drain(channel, buffer);
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * @param path
+	 * @param dimensions
+	 * @param probabilities row-major cells
+	 * @throws IOException
+	 */
+	public final static void writeProbabilities(Path path, int [] dimensions, double [] probabilities) throws IOException
+	{
+		checkSize(dimensions, probabilities.length);
+		FileChannel channel = create(path, PROBABILITIES, dimensions);
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < probabilities.length; i++)
+			{
+				if (!buffer.hasRemaining())
+				{
+					drain(channel, buffer);
+				}
+				buffer.putDouble(probabilities[i]);
+			}
+			drain(channel, buffer);
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * @param path
+	 * @param joint
+	 * @throws IOException
+	 */
+	public final static void write(Path path, JointDistribution joint) throws IOException
+	{
+		int [] dimensions = new int[joint.numVariables()];
+		for (int i = 0; i < dimensions.length; i++)
+		{
+			dimensions[i] = joint.cardinality(i);
+		}
+		writeProbabilities(path, dimensions, joint.table());
+	}
+	
+	/**
+	 * A CPT, dimensions are the factor's (parents..., variable)
+	 * 
+	 * @param path
+	 * @param factor
+	 * @throws IOException
+	 */
+	public final static void write(Path path, Factor factor) throws IOException
+	{
+		writeProbabilities(path, factor.cardinalities, factor.values);
+	}
+	
+	protected final static void checkSize(int [] dimensions, long cells)
+	{
+		if (dimensions.length == 0)
+		{
+			throw new IllegalArgumentException("Need at least one dimension");
+		}
+		long size = 1;
+		for (int d : dimensions)
+		{
+			if (d <= 0)
+			{
+				throw new IllegalArgumentException("Dimension must be positive: " + d);
+			}
+			size *= d;
+		}
+		if (size != cells)
+		{
+			throw new IllegalArgumentException("Table has " + cells + " cells, dimensions give " + size);
+		}
+	}
+	
+	/**
+	 * in long, a corrupt rank can be anything
+	 */
+	protected final static long headerBytes(int rank)
+	{
+		return ((16 + 4L*rank) + 7) & ~7L;
+	}
+	
+	protected final static FileChannel create(Path path, int type, int [] dimensions) throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		boolean written = false;
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate((int) headerBytes(dimensions.length)).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(type).putInt(dimensions.length);
+			for (int d : dimensions)
+			{
+				header.putInt(d);
+			}
+			header.position(header.capacity());
+			drain(channel, header);
+			written = true;
+			return channel;
+		}
+		finally
+		{
+			if (!written)
+			{
+				channel.close();
+			}
+		}
+	}
+	
+	protected final static void drain(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Map a table file read-only
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException if the file is not a table of a supported version
+	 */
+	public final static Mapped open(Path path) throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try
+		{
+			long fileSize = channel.size();
+			ByteBuffer fixed = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, fixed, 0);
+			if (fixed.getInt(0) != MAGIC)
+			{
+				throw new IOException("Not a table file: " + path);
+			}
+			if (fixed.getInt(4) != VERSION)
+			{
+				throw new IOException("Unsupported table version " + fixed.getInt(4) + ": " + path);
+			}
+			int type = fixed.getInt(8);
+			int rank = fixed.getInt(12);
+			if ((type != COUNTS && type != PROBABILITIES) || rank < 1 || headerBytes(rank) > fileSize)
+			{
+				throw new IOException("Corrupt table header: " + path);
+			}
+			ByteBuffer dims = ByteBuffer.allocate(4*rank).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, dims, 16);
+			int [] dimensions = new int[rank];
+			long cells = 1;
+			for (int i = 0; i < rank; i++)
+			{
+				dimensions[i] = dims.getInt(4*i);
+				// stop before the product can overflow, no file holds more cells
+				if (dimensions[i] < 1 || cells > fileSize / 8 / dimensions[i])
+				{
+					throw new IOException("Corrupt table header: " + path);
+				}
+				cells *= dimensions[i];
+			}
+			long dataStart = headerBytes(rank);
+			if (dataStart + cells * 8 != fileSize)
+			{
+				throw new IOException("Table is " + fileSize + " bytes, header describes " 
+						+ (dataStart + cells * 8) + ": " + path);
+			}
+			
+			long segmentCells = 1L << SEGMENT_SHIFT;
+			int numSegments = (int) ((cells + segmentCells - 1) >>> SEGMENT_SHIFT);
+			MappedByteBuffer [] segments = new MappedByteBuffer[numSegments];
+			for (int s = 0; s < numSegments; s++)
+			{
+				long first = s * segmentCells;
+				long length = Math.min(segmentCells, cells - first) * 8;
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + first * 8, length);
+				segments[s].order(ByteOrder.LITTLE_ENDIAN);
+			}
+			return new Mapped(type, dimensions, cells, segments);
+		}
+		finally
+		{
+			// the mapping outlives the channel
+			channel.close();
+		}
+	}
+	
+	protected final static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, position + buffer.position()) < 0)
+			{
+				throw new IOException("Truncated table file");
+			}
+		}
+	}
+	
+	/**
+	 * A read-only table served from mapped memory
+	 * 
+	 * Cell accessors do not check the table type, use {@link #getLong(long)} 
+	 * on counts and {@link #getDouble(long)} on probabilities.
+	 */
+	public static class Mapped
+	{
+		protected final static long CELL_MASK = (1L << SEGMENT_SHIFT) - 1;
+		
+		protected final int type;
+		protected final int [] dimensions;
+		protected final long [] strides;
+		protected final long cells;
+		protected final MappedByteBuffer [] segments;
+		
+		protected Mapped(int type, int [] dimensions, long cells, MappedByteBuffer [] segments)
+		{
+			this.type = type;
+			this.dimensions = dimensions;
+			this.cells = cells;
+			this.segments = segments;
+			this.strides = new long[dimensions.length];
+			long stride = 1;
+			for (int i = dimensions.length-1; i >= 0; i--)
+			{
+				strides[i] = stride;
+				stride *= dimensions[i];
+			}
+		}
+		
+		/**
+		 * @return {@link TableFile#COUNTS} or {@link TableFile#PROBABILITIES}
+		 */
+		public int type()
+		{
+			return type;
+		}
+		
+		public int [] dimensions()
+		{
+			return dimensions.clone();
+		}
+		
+		public long size()
+		{
+			return cells;
+		}
+		
+		/**
+		 * @param values one per dimension
+		 * @return flat cell index
+		 */
+		public long index(int... values)
+		{
+			if (values.length != dimensions.length)
+			{
+				throw new IllegalArgumentException("Expected " + dimensions.length + " values");
+			}
+			long index = 0;
+			for (int i = 0; i < values.length; i++)
+			{
+				if (values[i] < 0 || values[i] >= dimensions[i])
+				{
+					throw new IndexOutOfBoundsException("Dimension " + i + " value " + values[i]);
+				}
+				index += values[i] * strides[i];
+			}
+			return index;
+		}
+		
+		/**
+		 * @param index flat cell index
+		 * @return a count
+		 */
+		public long getLong(long index)
+		{
+			return segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & CELL_MASK) << 3);
+		}
+		
+		/**
+		 * @param index flat cell index
+		 * @return a probability
+		 */
+		public double getDouble(long index)
+		{
+			return segments[(int) (index >>> SEGMENT_SHIFT)].getDouble((int) (index & CELL_MASK) << 3);
+		}
+		
+		/**
+		 * Ratio of two counts, see {@link Bayes#observationToProbability(double, double)}
+		 * 
+		 * @param numIndex cell counting occurrences
+		 * @param totalIndex cell counting all observations
+		 * @return
+		 */
+		public double observationToProbability(long numIndex, long totalIndex)
+		{
+			return Bayes.observationToProbability(getLong(numIndex), getLong(totalIndex));
+		}
+	}
+}
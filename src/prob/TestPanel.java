@@ -0,0 +1,217 @@
+package prob;
+
+import java.util.Arrays;
+
+/**
+ * Combined posterior from a panel of diagnostic tests, e.g. retesting the 
+ * positives of DiseaseTestCase with further assays
+ * 
+ * Assuming results are conditionally independent given the condition
+ * 
+ * log O(A | results) = log O(A) + sum log(p(result_j | A) / p(result_j | ~A))
+ * 
+ * Tests run on the same sample are rarely that independent. With a pairwise 
+ * correlation rho the m tests performed carry the information of roughly 
+ * m / (1 + (m - 1) rho) independent ones, so the summed evidence is scaled by 
+ * 1 / (1 + (m - 1) rho). This is a heuristic discount, not an exact model.
+ * 
+ * Outcomes are column oriented, one byte array per test indexed by subject, 
+ * and subjects are processed in blocks so each test's column is swept with a 
+ * table lookup and no branches.
+ * 
+ * http://en.wikipedia.org/wiki/Design_effect
+ */
+public class TestPanel
+{
+	public final static byte NEGATIVE = 0, POSITIVE = 1, NOT_DONE = -1;
+	
+	/**
+	 * subjects per block, sized to keep the block's state in L1
+	 */
+	protected final static int BLOCK = 1024;
+	
+	/**
+	 * per test: log LR of {not done, negative, positive}, indexed by outcome + 1
+	 */
+	protected final double [] logLr;
+	protected final int numTests;
+	protected final double correlation;
+	
+	/**
+	 * Conditionally independent tests
+	 * 
+	 * @param sensitivities p(+ | A) per test
+	 * @param specificities p(- | ~A) per test
+	 */
+	public TestPanel(double [] sensitivities, double [] specificities)
+	{
+		this(sensitivities, specificities, 0);
+	}
+	
+	/**
+	 * @param sensitivities p(+ | A) per test
+	 * @param specificities p(- | ~A) per test
+	 * @param correlation pairwise correlation between results, in [0, 1]
+	 */
+	public TestPanel(double [] sensitivities, double [] specificities, double correlation)
+	{
+		if (sensitivities.length != specificities.length)
+		{
+			throw new IllegalArgumentException("Need a specificity for each sensitivity");
+		}
+		if (correlation < 0 || correlation > 1)
+		{
+			throw new IllegalArgumentException("Correlation must be in [0, 1]: " + correlation);
+		}
+		this.numTests = sensitivities.length;
+		this.correlation = correlation;
+		this.logLr = new double[3 * numTests];
+		for (int t = 0; t < numTests; t++)
+		{
+			logLr[3*t + NEGATIVE + 1] = Math.log1p(-sensitivities[t]) - Math.log(specificities[t]);
+			logLr[3*t + POSITIVE + 1] = Math.log(sensitivities[t]) - Math.log1p(-specificities[t]);
+		}
+	}
+	
+	public int numTests()
+	{
+		return numTests;
+	}
+	
+	/**
+	 * One subject
+	 * 
+	 * @param prior p(A)
+	 * @param outcomes one per test
+	 * @return p(A | outcomes)
+	 */
+	public double posterior(double prior, byte [] outcomes)
+	{
+		if (outcomes.length != numTests)
+		{
+			throw new IllegalArgumentException("Need an outcome for each of " + numTests + " tests");
+		}
+		double sum = 0;
+		int done = 0;
+		for (int t = 0; t < numTests; t++)
+		{
+			checkOutcome(outcomes[t], t);
+			sum += logLr[3*t + outcomes[t] + 1];
+			done += (outcomes[t] != NOT_DONE) ? 1 : 0;
+		}
+		return LogSpace.logistic(LogSpace.logit(prior) + sum * weight(done));
+	}
+	
+	/**
+	 * A batch of subjects with a shared prior
+	 * 
+	 * @param prior p(A)
+	 * @param outcomes outcomes[test][subject]
+	 * @param offset first subject in outcomes
+	 * @param out receives p(A | outcomes) per subject
+	 * @param outOffset
+	 * @param length number of subjects
+	 */
+	public void posteriors(double prior, byte [][] outcomes, int offset, 
+			double [] out, int outOffset, int length)
+	{
+		posteriors(null, prior, outcomes, offset, out, outOffset, length);
+	}
+	
+	/**
+	 * A batch of subjects with their own priors
+	 * 
+	 * @param priors p(A) per subject, indexed like the outcomes
+	 * @param outcomes outcomes[test][subject]
+	 * @param offset first subject, in both priors and outcomes
+	 * @param out receives p(A | outcomes) per subject
+	 * @param outOffset
+	 * @param length number of subjects
+	 */
+	public void posteriors(double [] priors, byte [][] outcomes, int offset, 
+			double [] out, int outOffset, int length)
+	{
+		Bayes.checkRange(priors, offset, length);
+		posteriors(priors, 0, outcomes, offset, out, outOffset, length);
+	}
+	
+	protected void posteriors(double [] priors, double prior, byte [][] outcomes, 
+			int offset, double [] out, int outOffset, int length)
+	{
+		if (outcomes.length != numTests)
+		{
+			throw new IllegalArgumentException("Need an outcome column for each of " + numTests + " tests");
+		}
+		for (byte [] column : outcomes)
+		{
+			if (offset < 0 || length < 0 || offset > column.length - length)
+			{
+				throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+			}
+		}
+		Bayes.checkRange(out, outOffset, length);
+		
+		boolean correlated = correlation > 0;
+		double priorLogOdds = LogSpace.logit(prior);
+		double [] sum = new double[Math.min(BLOCK, length)];
+		int [] done = correlated ? new int[sum.length] : null;
+		
+		for (int start = 0; start < length; start += BLOCK)
+		{
+			int n = Math.min(BLOCK, length - start);
+			Arrays.fill(sum, 0, n, 0.0);
+			if (correlated)
+			{
+				Arrays.fill(done, 0, n, 0);
+			}
+			
+			for (int t = 0; t < numTests; t++)
+			{
+				byte [] column = outcomes[t];
+				int base = 3*t + 1;
+				int from = offset + start;
+				// validated first so a bad byte cannot read another test's entries
+				for (int i = 0; i < n; i++)
+				{
+					checkOutcome(column[from+i], t);
+				}
+				for (int i = 0; i < n; i++)
+				{
+					sum[i] += logLr[base + column[from+i]];
+				}
+				if (correlated)
+				{
+					for (int i = 0; i < n; i++)
+					{
+						done[i] += (column[from+i] != NOT_DONE) ? 1 : 0;
+					}
+				}
+			}
+			
+			for (int i = 0; i < n; i++)
+			{
+				double logOdds = (priors == null) ? priorLogOdds : LogSpace.logit(priors[offset+start+i]);
+				double evidence = correlated ? sum[i] * weight(done[i]) : sum[i];
+				out[outOffset+start+i] = LogSpace.logistic(logOdds + evidence);
+			}
+		}
+	}
+	
+	protected final static void checkOutcome(byte outcome, int test)
+	{
+		if (outcome < NOT_DONE || outcome > POSITIVE)
+		{
+			throw new IllegalArgumentException("Test " + test + " outcome " + outcome 
+					+ ", expected NEGATIVE, POSITIVE or NOT_DONE");
+		}
+	}
+	
+	/**
+	 * @param done tests performed
+	 * @return 1 / (1 + (done - 1) rho)
+	 */
+	protected double weight(int done)
+	{
+		return (done <= 1) ? 1.0 : 1.0 / (1.0 + (done - 1) * correlation);
+	}
+}
@@ -0,0 +1,77 @@
+package prob;
+
+/**
+ * The most recent samples of a Markov chain, in a fixed primitive ring
+ * 
+ * Once full, each new sample overwrites the oldest, so a long run keeps a 
+ * bounded window of history and never allocates after construction.
+ */
+public class Trace
+{
+	protected final int dimension;
+	protected final int capacity;
+	protected final double [] samples;
+	protected long count;
+	
+	/**
+	 * @param dimension values per sample
+	 * @param capacity samples kept
+	 */
+	public Trace(int dimension, int capacity)
+	{
+		if (dimension <= 0 || capacity <= 0)
+		{
+			throw new IllegalArgumentException("Dimension and capacity must be positive");
+		}
+		this.dimension = dimension;
+		this.capacity = capacity;
+		this.samples = new double[dimension * capacity];
+	}
+	
+	/**
+	 * @param x one sample, copied in
+	 */
+	public void add(double [] x)
+	{
+		int slot = (int) (count % capacity);
+		System.arraycopy(x, 0, samples, slot * dimension, dimension);
+		count++;
+	}
+	
+	/**
+	 * @return samples held, at most the capacity
+	 */
+	public int size()
+	{
+		return (int) Math.min(count, capacity);
+	}
+	
+	/**
+	 * @return samples ever added
+	 */
+	public long count()
+	{
+		return count;
+	}
+	
+	public int dimension()
+	{
+		return dimension;
+	}
+	
+	/**
+	 * @param i 0 for the oldest sample held, size()-1 for the newest
+	 * @param d
+	 * @return
+	 */
+	public double get(int i, int d)
+	{
+		if (i < 0 || i >= size())
+		{
+			throw new IndexOutOfBoundsException("Sample " + i + " of " + size());
+		}
+		long first = count - size();
+		int slot = (int) ((first + i) % capacity);
+		return samples[slot * dimension + d];
+	}
+}
@@ -0,0 +1,505 @@
+package prob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact posterior marginals of a {@link BayesianNetwork} by variable 
+ * elimination
+ * 
+ * p(Q | e) is proportional to the sum over hidden H of the product of every 
+ * CPT, reduced by the evidence e. Hidden variables are summed out one at a 
+ * time, each time multiplying only the factors that mention it, in a greedy 
+ * min-fill order.
+ * 
+ * Work is reused between queries at three levels:
+ * - per evidence pattern (which variables are queried and observed): the 
+ *   relevant variables, after pruning barren nodes, and the elimination order
+ * - per evidence assignment: the CPTs reduced by the evidence, and each 
+ *   posterior answered
+ * - per elimination step: the factor left by summing out a hidden variable, 
+ *   keyed by the CPTs multiplied into it, the variables it still mentions 
+ *   and the evidence on those CPTs. Queries for different variables under 
+ *   the same evidence share these intermediate factors, and a hit skips the 
+ *   product as well as the sum.
+ * All are bounded LRU caches, cleared whenever the network changes.
+ * 
+ * http://en.wikipedia.org/wiki/Variable_elimination
+ * 
+ * Not thread safe.
+ */
+public class VariableElimination
+{
+	/**
+	 * marks a variable pruned from a query in a cache key
+	 */
+	protected final static int IRRELEVANT = -2;
+	
+	protected final BayesianNetwork network;
+	protected int version;
+	
+	protected final Map<Key, int[][]> plans;
+	protected final Map<Key, Factor[]> reduced;
+	protected final Map<Key, double[]> posteriors;
+	protected final Map<Key, Factor> messages;
+	
+	public VariableElimination(BayesianNetwork network)
+	{
+		this(network, 1024);
+	}
+	
+	/**
+	 * @param network
+	 * @param cacheSize entries kept in each cache
+	 */
+	public VariableElimination(BayesianNetwork network, int cacheSize)
+	{
+		this.network = network;
+		this.version = network.version();
+		this.plans = lru(cacheSize);
+		this.reduced = lru(cacheSize);
+		this.posteriors = lru(cacheSize);
+		this.messages = lru(cacheSize);
+	}
+	
+	protected final static <V> Map<Key, V> lru(final int size)
+	{
+		return new LinkedHashMap<Key, V>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, V> eldest)
+			{
+				return size() > size;
+			}
+		};
+	}
+	
+	/**
+	 * @param variable the query variable
+	 * @param evidence observed value per variable, or {@link BayesianNetwork#UNOBSERVED}
+	 * @return p(variable | evidence), shared with the cache so do not modify
+	 * @throws IllegalArgumentException if the evidence has zero probability
+	 */
+	public double [] query(int variable, int [] evidence)
+	{
+		if (evidence.length != network.numVariables())
+		{
+			throw new IllegalArgumentException("Need evidence for each of " 
+					+ network.numVariables() + " variables");
+		}
+		long start = Metrics.start();
+		if (version != network.version())
+		{
+			plans.clear();
+			reduced.clear();
+			posteriors.clear();
+			messages.clear();
+			version = network.version();
+		}
+		
+		Key key = new Key(variable, evidence);
+		double [] posterior = posteriors.get(key);
+		if (posterior == null)
+		{
+			posterior = compute(variable, evidence);
+			posteriors.put(key, posterior);
+		}
+		Metrics.stop(Metrics.POSTERIOR, start);
+		return posterior;
+	}
+	
+	/**
+	 * @param variable
+	 * @param value
+	 * @param evidence observed value per variable, or {@link BayesianNetwork#UNOBSERVED}
+	 * @return p(variable = value | evidence)
+	 */
+	public double probability(int variable, int value, int [] evidence)
+	{
+		return query(variable, evidence)[value];
+	}
+	
+	protected double [] compute(int variable, int [] evidence)
+	{
+		if (evidence[variable] != BayesianNetwork.UNOBSERVED)
+		{
+			double [] certain = new double[network.cardinality(variable)];
+			certain[evidence[variable]] = 1.0;
+			return certain;
+		}
+		
+		// relevant variables and the order to eliminate the hidden ones
+		Key pattern = new Key(variable, pattern(evidence));
+		int [][] plan = plans.get(pattern);
+		if (plan == null)
+		{
+			plan = plan(variable, evidence);
+			plans.put(pattern, plan);
+		}
+		int [] relevant = plan[0];
+		int [] order = plan[1];
+		
+		// relevant CPTs with the evidence applied
+		Key assignment = new Key(-1, relevantEvidence(evidence, relevant));
+		Factor [] factors = reduced.get(assignment);
+		if (factors == null)
+		{
+			factors = new Factor[relevant.length];
+			for (int i = 0; i < relevant.length; i++)
+			{
+				Factor f = network.cpt(relevant[i]);
+				for (int v : f.variables())
+				{
+					if (evidence[v] != BayesianNetwork.UNOBSERVED)
+					{
+						f = f.reduce(v, evidence[v]);
+					}
+				}
+				factors[i] = f;
+			}
+			reduced.put(assignment, factors);
+		}
+		
+		// each factor in the pool with the sorted ids of the CPTs multiplied into it
+		List<Factor> pool = new ArrayList<Factor>(Arrays.asList(factors));
+		List<int[]> absorbed = new ArrayList<int[]>();
+		for (int v : relevant)
+		{
+			absorbed.add(new int[]{v});
+		}
+		for (int hidden : order)
+		{
+			int [] cpts = null;
+			boolean [] scope = new boolean[evidence.length];
+			for (int i = pool.size()-1; i >= 0; i--)
+			{
+				if (pool.get(i).contains(hidden))
+				{
+					cpts = (cpts == null) ? absorbed.get(i) : union(cpts, absorbed.get(i));
+					for (int v : pool.get(i).variables())
+					{
+						scope[v] = true;
+					}
+				}
+			}
+			if (cpts == null)
+			{
+				continue;
+			}
+			scope[hidden] = false;
+			Key message = messageKey(hidden, cpts, scope, evidence);
+			Factor summed = messages.get(message);
+			Factor product = null;
+			for (int i = pool.size()-1; i >= 0; i--)
+			{
+				if (pool.get(i).contains(hidden))
+				{
+					Factor f = pool.remove(i);
+					absorbed.remove(i);
+					if (summed == null)
+					{
+						product = (product == null) ? f : product.product(f);
+					}
+				}
+			}
+			if (summed == null)
+			{
+				summed = product.sumOut(hidden);
+				messages.put(message, summed);
+			}
+			pool.add(summed);
+			absorbed.add(cpts);
+		}
+		
+		Factor result = pool.get(0);
+		for (int i = 1; i < pool.size(); i++)
+		{
+			result = result.product(pool.get(i));
+		}
+		double sum = 0;
+		for (double v : result.values())
+		{
+			sum += v;
+		}
+		if (sum == 0)
+		{
+			throw new IllegalArgumentException("Evidence has zero probability");
+		}
+		return result.normalized();
+	}
+	
+	/**
+	 * A factor left by summing out hidden is fixed by the CPTs multiplied into 
+	 * it, the variables it still mentions and the evidence on those CPTs, 
+	 * whatever the query or the order the other variables went in
+	 * 
+	 * @return {cpt ids, -1, remaining variables, -1, observed variable and value pairs}
+	 */
+	protected Key messageKey(int hidden, int [] cpts, boolean [] scope, int [] evidence)
+	{
+		boolean [] observed = new boolean[evidence.length];
+		for (int c : cpts)
+		{
+			for (int v : network.cpt(c).variables())
+			{
+				observed[v] = evidence[v] != BayesianNetwork.UNOBSERVED;
+			}
+		}
+		int length = cpts.length + 2;
+		for (int v = 0; v < evidence.length; v++)
+		{
+			length += (scope[v] ? 1 : 0) + (observed[v] ? 2 : 0);
+		}
+		int [] values = new int[length];
+		System.arraycopy(cpts, 0, values, 0, cpts.length);
+		int k = cpts.length;
+		values[k++] = -1;
+		for (int v = 0; v < evidence.length; v++)
+		{
+			if (scope[v])
+			{
+				values[k++] = v;
+			}
+		}
+		values[k++] = -1;
+		for (int v = 0; v < evidence.length; v++)
+		{
+			if (observed[v])
+			{
+				values[k++] = v;
+				values[k++] = evidence[v];
+			}
+		}
+		return new Key(hidden, values);
+	}
+	
+	/**
+	 * @return sorted union of two sorted, disjoint id arrays
+	 */
+	protected final static int [] union(int [] a, int [] b)
+	{
+		int [] merged = new int[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while (i < a.length && j < b.length)
+		{
+			merged[k++] = (a[i] < b[j]) ? a[i++] : b[j++];
+		}
+		while (i < a.length)
+		{
+			merged[k++] = a[i++];
+		}
+		while (j < b.length)
+		{
+			merged[k++] = b[j++];
+		}
+		return merged;
+	}
+	
+	/**
+	 * Evidence as observed (0) or not (UNOBSERVED) per variable
+	 */
+	protected final static int [] pattern(int [] evidence)
+	{
+		int [] pattern = new int[evidence.length];
+		for (int i = 0; i < evidence.length; i++)
+		{
+			pattern[i] = (evidence[i] == BayesianNetwork.UNOBSERVED) ? BayesianNetwork.UNOBSERVED : 0;
+		}
+		return pattern;
+	}
+	
+	/**
+	 * Evidence with irrelevant variables masked, so assignments that only 
+	 * differ there share reduced factors
+	 */
+	protected final static int [] relevantEvidence(int [] evidence, int [] relevant)
+	{
+		int [] masked = new int[evidence.length];
+		Arrays.fill(masked, IRRELEVANT);
+		for (int v : relevant)
+		{
+			masked[v] = evidence[v];
+		}
+		return masked;
+	}
+	
+	/**
+	 * @return {relevant variables, elimination order}
+	 */
+	protected int [][] plan(int variable, int [] evidence)
+	{
+		int n = network.numVariables();
+		
+		// only ancestors of the query and evidence matter, the rest sum to one
+		boolean [] relevant = new boolean[n];
+		relevant[variable] = true;
+		for (int v = 0; v < n; v++)
+		{
+			if (evidence[v] != BayesianNetwork.UNOBSERVED)
+			{
+				relevant[v] = true;
+			}
+		}
+		// parents always have lower ids, so one backward sweep closes the set
+		for (int v = n-1; v >= 0; v--)
+		{
+			if (relevant[v])
+			{
+				for (int p : network.parents(v))
+				{
+					relevant[p] = true;
+				}
+			}
+		}
+		
+		int count = 0;
+		for (boolean r : relevant)
+		{
+			count += r ? 1 : 0;
+		}
+		int [] relevantIds = new int[count];
+		for (int v = 0, j = 0; v < n; v++)
+		{
+			if (relevant[v])
+			{
+				relevantIds[j++] = v;
+			}
+		}
+		
+		// interaction graph of the hidden variables, via the reduced CPTs
+		boolean [] hidden = new boolean[n];
+		int numHidden = 0;
+		for (int v : relevantIds)
+		{
+			if (v != variable && evidence[v] == BayesianNetwork.UNOBSERVED)
+			{
+				hidden[v] = true;
+				numHidden++;
+			}
+		}
+		boolean [][] adjacent = new boolean[n][n];
+		for (int v : relevantIds)
+		{
+			int [] scope = network.cpt(v).variables();
+			for (int a : scope)
+			{
+				for (int b : scope)
+				{
+					if (a != b && evidence[a] == BayesianNetwork.UNOBSERVED 
+							&& evidence[b] == BayesianNetwork.UNOBSERVED)
+					{
+						adjacent[a][b] = true;
+					}
+				}
+			}
+		}
+		
+		return new int[][]{relevantIds, minFillOrder(adjacent, hidden, numHidden)};
+	}
+	
+	/**
+	 * Greedily eliminate the variable whose removal adds the fewest edges 
+	 * between its neighbours, ties broken by fewest neighbours
+	 */
+	protected final static int [] minFillOrder(boolean [][] adjacent, boolean [] hidden, int numHidden)
+	{
+		int n = adjacent.length;
+		boolean [] remaining = hidden.clone();
+		boolean [] eliminated = new boolean[n];
+		int [] order = new int[numHidden];
+		for (int step = 0; step < numHidden; step++)
+		{
+			int best = -1;
+			int bestFill = Integer.MAX_VALUE;
+			int bestDegree = Integer.MAX_VALUE;
+			for (int v = 0; v < n; v++)
+			{
+				if (!remaining[v])
+				{
+					continue;
+				}
+				int fill = 0, degree = 0;
+				for (int a = 0; a < n; a++)
+				{
+					if (!adjacent[v][a] || eliminated[a])
+					{
+						continue;
+					}
+					degree++;
+					for (int b = a+1; b < n; b++)
+					{
+						if (adjacent[v][b] && !eliminated[b] && !adjacent[a][b])
+						{
+							fill++;
+						}
+					}
+				}
+				if (fill < bestFill || (fill == bestFill && degree < bestDegree))
+				{
+					best = v;
+					bestFill = fill;
+					bestDegree = degree;
+				}
+			}
+			
+			// connect the neighbours, as the product over them will
+			for (int a = 0; a < n; a++)
+			{
+				if (!adjacent[best][a] || eliminated[a])
+				{
+					continue;
+				}
+				for (int b = 0; b < n; b++)
+				{
+					if (a != b && adjacent[best][b] && !eliminated[b])
+					{
+						adjacent[a][b] = true;
+					}
+				}
+			}
+			order[step] = best;
+			remaining[best] = false;
+			eliminated[best] = true;
+		}
+		return order;
+	}
+	
+	/**
+	 * Cache key of a query variable and an int array
+	 */
+	protected final static class Key
+	{
+		protected final int variable;
+		protected final int [] values;
+		protected final int hash;
+		
+		protected Key(int variable, int [] values)
+		{
+			this.variable = variable;
+			this.values = values.clone();
+			this.hash = 31 * variable + Arrays.hashCode(values);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) o;
+			return variable == other.variable && Arrays.equals(values, other.values);
+		}
+	}
+}
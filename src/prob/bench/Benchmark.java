@@ -0,0 +1,191 @@
+package prob.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single micro-benchmark and the harness that measures it
+ * 
+ * Each invocation of {@link #run()} performs {@link #operations()} operations 
+ * and returns a value which is consumed so the work cannot be eliminated. 
+ * A benchmark is run for a number of timed warmup iterations, which are 
+ * discarded, then measured iterations, reporting operations per second and 
+ * bytes allocated per operation on the calling thread.
+ * 
+ * Benchmarks that fan out to a fork-join pool only report the allocation of 
+ * the calling thread.
+ */
+public abstract class Benchmark
+{
+	protected final String name;
+	
+	/**
+	 * consumed results, read at the end so the JIT must compute them
+	 */
+	protected static volatile double sink;
+	
+	protected Benchmark(String name)
+	{
+		this.name = name;
+	}
+	
+	public String name()
+	{
+		return name;
+	}
+	
+	/**
+	 * @return operations performed by each call to {@link #run()}
+	 */
+	protected long operations()
+	{
+		return 1;
+	}
+	
+	/**
+	 * Perform {@link #operations()} operations
+	 * 
+	 * @return any value that depends on the work done
+	 */
+	protected abstract double run();
+	
+	/**
+	 * Measured result of a benchmark
+	 */
+	public static class Result
+	{
+		public final String name;
+		public final double opsPerSecond;
+		public final double opsPerSecondError;
+		public final double bytesPerOp;
+		
+		public Result(String name, double opsPerSecond, double opsPerSecondError, double bytesPerOp)
+		{
+			this.name = name;
+			this.opsPerSecond = opsPerSecond;
+			this.opsPerSecondError = opsPerSecondError;
+			this.bytesPerOp = bytesPerOp;
+		}
+		
+		/**
+		 * @return tab separated name, ops/s, error, bytes/op
+		 */
+		@Override
+		public String toString()
+		{
+			return String.format("%-40s\t%.4e\t%.2e\t%.2f", name, opsPerSecond, opsPerSecondError, bytesPerOp);
+		}
+	}
+	
+	/**
+	 * Warm up then measure
+	 * 
+	 * @param warmups iterations discarded
+	 * @param iterations iterations measured
+	 * @param iterationMillis duration of each iteration
+	 * @return
+	 */
+	public Result measure(int warmups, int iterations, long iterationMillis)
+	{
+		for (int i = 0; i < warmups; i++)
+		{
+			iteration(iterationMillis);
+		}
+		
+		double [] rates = new double[iterations];
+		long bytesBefore = allocatedBytes();
+		long opsTotal = 0;
+		for (int i = 0; i < iterations; i++)
+		{
+			long start = System.nanoTime();
+			long ops = iteration(iterationMillis);
+			long elapsed = System.nanoTime() - start;
+			rates[i] = ops * 1.0E9 / elapsed;
+			opsTotal += ops;
+		}
+		long bytesAfter = allocatedBytes();
+		
+		double mean = 0;
+		for (double rate : rates)
+		{
+			mean += rate;
+		}
+		mean /= iterations;
+		double var = 0;
+		for (double rate : rates)
+		{
+			var += (rate - mean) * (rate - mean);
+		}
+		double error = (iterations > 1) ? Math.sqrt(var / (iterations-1)) : 0;
+		double bytesPerOp = (bytesBefore < 0) ? Double.NaN : (bytesAfter - bytesBefore) / (double) opsTotal;
+		return new Result(name, mean, error, bytesPerOp);
+	}
+	
+	protected long iteration(long millis)
+	{
+		long deadline = System.nanoTime() + millis * 1000000L;
+		long calls = 0;
+		double acc = 0;
+		int batch = 1;
+		do
+		{
+			// grow the batch so cheap operations are not dominated by the clock
+			long start = System.nanoTime();
+			for (int i = 0; i < batch; i++)
+			{
+				acc += run();
+			}
+			calls += batch;
+			if (batch < (1 << 20) && System.nanoTime() - start < 1000000L)
+			{
+				batch <<= 1;
+			}
+		}
+		while (System.nanoTime() < deadline);
+		sink = acc;
+		return calls * operations();
+	}
+	
+	/**
+	 * @return bytes allocated by this thread so far, -1 if unsupported
+	 */
+	protected final static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+			if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled())
+			{
+				return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Parse results previously printed by {@link Result#toString()}, with or 
+	 * without the comparison a run against a baseline appends
+	 * 
+	 * @param lines
+	 * @return
+	 */
+	public final static List<Result> parse(List<String> lines)
+	{
+		List<Result> results = new ArrayList<Result>();
+		for (String line : lines)
+		{
+			String [] fields = line.split("\t");
+			if (fields.length < 4 || line.startsWith("#"))
+			{
+				continue;
+			}
+			results.add(new Result(fields[0].trim(), 
+					Double.parseDouble(fields[1]), 
+					Double.parseDouble(fields[2]), 
+					Double.parseDouble(fields[3])));
+		}
+		return results;
+	}
+}
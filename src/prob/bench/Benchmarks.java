@@ -0,0 +1,765 @@
+package prob.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import prob.AliasSampler;
+import prob.Bayes;
+import prob.BayesianNetwork;
+import prob.BetaBinomial;
+import prob.Binomial;
+import prob.Bootstrap;
+import prob.Evidence;
+import prob.HiddenMarkovModel;
+import prob.JointDistribution;
+import prob.MarginalLikelihood;
+import prob.McmcSampler;
+import prob.Metrics;
+import prob.MetropolisHastings;
+import prob.NaiveBayes;
+import prob.ParticleFilter;
+import prob.PosteriorCache;
+import prob.Rational;
+import prob.Scenario;
+import prob.SequentialUpdater;
+import prob.Simulation;
+import prob.SliceSampler;
+import prob.TestPanel;
+import prob.VariableElimination;
+
+/**
+ * Benchmarks for every probability primitive and test case scenario
+ * 
+ * java -cp bin prob.bench.Benchmarks [-w warmups] [-i iterations] [-t millis] 
+ *     [-baseline file] [filter...]
+ * 
+ * Prints one tab separated line per benchmark: name, ops/s, ops/s error and 
+ * bytes allocated per op. Saved output can be passed back with -baseline to 
+ * print the change in ops/s against it. Filters select benchmarks whose name 
+ * contains any of them.
+ */
+public class Benchmarks
+{
+	/**
+	 * subjects per batch benchmark call
+	 */
+	protected final static int SUBJECTS = 1 << 16;
+	
+	protected final static double [] priors = new double[SUBJECTS];
+	protected final static double [] likelihoods = new double[SUBJECTS];
+	protected final static double [] falsePositives = new double[SUBJECTS];
+	protected final static double [] out = new double[SUBJECTS];
+	
+	static
+	{
+		SplittableRandom random = new SplittableRandom(1);
+		for (int i = 0; i < SUBJECTS; i++)
+		{
+			priors[i] = 1.0E-6 + random.nextDouble() * 0.01;
+			likelihoods[i] = 0.8 + random.nextDouble() * 0.19;
+			falsePositives[i] = 0.01 + random.nextDouble() * 0.09;
+		}
+	}
+	
+	/**
+	 * @return every benchmark, in report order
+	 */
+	public static List<Benchmark> all()
+	{
+		List<Benchmark> all = new ArrayList<Benchmark>();
+		
+		all.add(new Benchmark("Bayes.observationToProbability")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				double acc = 0;
+				for (int i = 0; i < SUBJECTS; i++)
+				{
+					acc += Bayes.observationToProbability(i, SUBJECTS);
+				}
+				return acc;
+			}
+		});
+		all.add(new Benchmark("Bayes.posterior.scalar")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				for (int i = 0; i < SUBJECTS; i++)
+				{
+					out[i] = Bayes.posterior(priors[i], likelihoods[i], falsePositives[i]);
+				}
+				return out[SUBJECTS-1];
+			}
+		});
+		all.add(new Benchmark("Bayes.posteriors.batch")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				Bayes.posteriors(priors, 0, likelihoods, 0, falsePositives, 0, out, 0, SUBJECTS);
+				return out[SUBJECTS-1];
+			}
+		});
+		all.add(new Benchmark("Bayes.posteriors.batchSharedTest")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				Bayes.posteriors(priors, 0, 0.99, 0.01, out, 0, SUBJECTS);
+				return out[SUBJECTS-1];
+			}
+		});
+		
+		// the worked examples in prob.test, scalar then batch
+		scenario(all, "Disease", 1.0E-6, 0.99, 0.01);
+		scenario(all, "DrugTesting", 0.005, 0.99, 0.01);
+		scenario(all, "BreastCancer", 0.01, 0.80, 0.096);
+		scenario(all, "StudentTrousers", 0.4, 0.5, 1.0);
+		scenario(all, "MontyHall", 1.0/3.0, 1.0, 0.25);
+		
+		final JointDistribution bowl = JointDistribution.fromConditional(
+				new double[]{5.0/9.0, 4.0/9.0}, 
+				new double[][]{{0.3, 0.4, 0.1, 0.2}, {0.25, 0.2, 0.3, 0.25}});
+		all.add(new Benchmark("SmartiesAndMandMs.smartieIfGreen")
+		{
+			protected double run()
+			{
+				return bowl.condition(1, 3).get(1);
+			}
+		});
+		all.add(new Benchmark("SmartiesAndMandMs.green.cached")
+		{
+			protected double run()
+			{
+				return bowl.marginal(1, 3);
+			}
+		});
+		
+		// inference engines
+		final int [] shape = {8, 16, 32, 64};
+		final JointDistribution joint = new JointDistribution(shape);
+		SplittableRandom random = new SplittableRandom(2);
+		for (int i = 0; i < joint.table().length; i++)
+		{
+			joint.table()[i] = random.nextDouble();
+		}
+		joint.normalize();
+		all.add(new Benchmark("JointDistribution.marginal.uncached")
+		{
+			protected long operations() { return joint.table().length; }
+			protected double run()
+			{
+				joint.invalidate();
+				return joint.marginal(2, 0);
+			}
+		});
+		all.add(new Benchmark("JointDistribution.marginalize")
+		{
+			protected long operations() { return joint.table().length; }
+			protected double run()
+			{
+				return joint.marginalize(3, 1).get(0, 0);
+			}
+		});
+		all.add(new Benchmark("JointDistribution.condition")
+		{
+			protected double run()
+			{
+				return joint.condition(1, 5).get(0, 0, 0);
+			}
+		});
+		
+		final double [] logLrs = new double[256];
+		for (int i = 0; i < logLrs.length; i++)
+		{
+			logLrs[i] = (i % 3 == 0) ? Math.log(0.99/0.01) : Math.log(0.01/0.99);
+		}
+		final Evidence evidence = new Evidence(1.0E-6);
+		all.add(new Benchmark("Evidence.addLogLikelihoodRatios")
+		{
+			protected long operations() { return logLrs.length; }
+			protected double run()
+			{
+				return evidence.reset(1.0E-6).addLogLikelihoodRatios(logLrs, 0, logLrs.length).logPosterior();
+			}
+		});
+		
+		final SequentialUpdater updater = new SequentialUpdater(SUBJECTS, 0.005);
+		final int test = updater.addTest(0.99, 0.99);
+		final int [] entities = new int[SUBJECTS];
+		final int [] tests = new int[SUBJECTS];
+		final boolean [] positives = new boolean[SUBJECTS];
+		for (int i = 0; i < SUBJECTS; i++)
+		{
+			entities[i] = random.nextInt(SUBJECTS);
+			tests[i] = test;
+			positives[i] = random.nextInt(100) == 0;
+		}
+		all.add(new Benchmark("SequentialUpdater.observe")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				for (int i = 0; i < SUBJECTS; i++)
+				{
+					updater.observe(entities[i], test, positives[i]);
+				}
+				return updater.logOdds(0);
+			}
+		});
+		all.add(new Benchmark("SequentialUpdater.observe.batch")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				updater.observe(entities, tests, positives, 0, SUBJECTS);
+				return updater.logOdds(0);
+			}
+		});
+		
+		final Simulation simulation = new Simulation();
+		final Simulation.Trial montyHall = Simulation.montyHall(3, true);
+		all.add(new Benchmark("Simulation.montyHall")
+		{
+			protected long operations() { return 1 << 22; }
+			protected double run()
+			{
+				return simulation.run(montyHall, 1 << 22, 1).mean();
+			}
+		});
+		
+		all.add(new Benchmark("Binomial.logPmf")
+		{
+			protected long operations() { return 1024; }
+			protected double run()
+			{
+				double acc = 0;
+				for (int k = 0; k < 1024; k++)
+				{
+					acc += Binomial.logPmf(500000 + k, 1000000, 0.5);
+				}
+				return acc;
+			}
+		});
+		all.add(new Benchmark("Binomial.cdf")
+		{
+			protected double run()
+			{
+				return Binomial.cdf(500000, 1000000, 0.5);
+			}
+		});
+		
+		final BayesianNetwork network = new BayesianNetwork();
+		int disease = network.addVariable("disease", 2);
+		network.setCpt(disease, 1-1.0E-6, 1.0E-6);
+		for (int i = 0; i < 24; i++)
+		{
+			int assay = network.addVariable("test" + i, 2, disease);
+			network.setCpt(assay, 0.99, 0.01, 0.05, 0.95);
+			int symptom = network.addVariable("symptom" + i, 3, assay);
+			network.setCpt(symptom, 0.6, 0.3, 0.1, 0.2, 0.3, 0.5);
+		}
+		final int [] networkEvidence = network.noEvidence();
+		for (int i = 0; i < 24; i += 2)
+		{
+			networkEvidence[network.variable("symptom" + i)] = 2;
+		}
+		final VariableElimination uncached = new VariableElimination(network, 0);
+		final VariableElimination cached = new VariableElimination(network);
+		all.add(new Benchmark("VariableElimination.query.uncached")
+		{
+			protected double run()
+			{
+				return uncached.probability(0, 1, networkEvidence);
+			}
+		});
+		all.add(new Benchmark("VariableElimination.query.cached")
+		{
+			protected double run()
+			{
+				return cached.probability(0, 1, networkEvidence);
+			}
+		});
+		
+		final PosteriorCache posteriorCache = new PosteriorCache(1024);
+		all.add(new Benchmark("PosteriorCache.posterior.hit")
+		{
+			protected long operations() { return 256; }
+			protected double run()
+			{
+				double acc = 0;
+				for (int i = 0; i < 256; i++)
+				{
+					acc += posteriorCache.posterior(priors[i], 0.99, 0.99);
+				}
+				return acc;
+			}
+		});
+		
+		final NaiveBayes naiveBayes = new NaiveBayes(4, new int[]{2, 3, 5, 8, 13}, 1);
+		final int [][] examples = new int[256][5];
+		for (int i = 0; i < examples.length; i++)
+		{
+			for (int f = 0; f < 5; f++)
+			{
+				examples[i][f] = random.nextInt(new int[]{2, 3, 5, 8, 13}[f]);
+			}
+		}
+		all.add(new Benchmark("NaiveBayes.train")
+		{
+			protected long operations() { return examples.length; }
+			protected double run()
+			{
+				for (int i = 0; i < examples.length; i++)
+				{
+					naiveBayes.train(i & 3, examples[i]);
+				}
+				return naiveBayes.count(0);
+			}
+		});
+		final NaiveBayes.Model naiveBayesModel = naiveBayes.model();
+		all.add(new Benchmark("NaiveBayes.classify")
+		{
+			protected long operations() { return examples.length; }
+			protected double run()
+			{
+				double acc = 0;
+				for (int i = 0; i < examples.length; i++)
+				{
+					acc += naiveBayesModel.classify(examples[i]);
+				}
+				return acc;
+			}
+		});
+		
+		final TestPanel panel = new TestPanel(
+				new double[]{0.99, 0.95, 0.90, 0.80}, new double[]{0.99, 0.999, 0.95, 0.90});
+		final byte [][] panelOutcomes = new byte[4][SUBJECTS];
+		for (int t = 0; t < 4; t++)
+		{
+			for (int i = 0; i < SUBJECTS; i++)
+			{
+				panelOutcomes[t][i] = (byte) (random.nextInt(3) - 1);
+			}
+		}
+		all.add(new Benchmark("TestPanel.posteriors")
+		{
+			protected long operations() { return 4L * SUBJECTS; }
+			protected double run()
+			{
+				panel.posteriors(0.01, panelOutcomes, 0, out, 0, SUBJECTS);
+				return out[SUBJECTS-1];
+			}
+		});
+		
+		final BetaBinomial prevalence = new BetaBinomial(1, 1).update(40, 60);
+		all.add(new Benchmark("BetaBinomial.update")
+		{
+			protected double run()
+			{
+				return prevalence.update(1, 1).mean();
+			}
+		});
+		final BetaBinomial girls = new BetaBinomial(1, 1).update(40, 60);
+		all.add(new Benchmark("BetaBinomial.credibleInterval")
+		{
+			protected double run()
+			{
+				return girls.credibleInterval(0.95)[0];
+			}
+		});
+		
+		final McmcSampler.LogDensity beta = new McmcSampler.LogDensity()
+		{
+			public double logDensity(double [] theta)
+			{
+				double p = theta[0];
+				return p <= 0 || p >= 1 ? Double.NEGATIVE_INFINITY : 40 * Math.log(p) + 60 * Math.log1p(-p);
+			}
+		};
+		final McmcSampler metropolis = new MetropolisHastings(beta, new double[]{0.4}, 0.05);
+		all.add(new Benchmark("MetropolisHastings.step")
+		{
+			protected double run()
+			{
+				metropolis.step(random);
+				return metropolis.state()[0];
+			}
+		});
+		final McmcSampler slice = new SliceSampler(beta, new double[]{0.4}, 0.05);
+		all.add(new Benchmark("SliceSampler.step")
+		{
+			protected double run()
+			{
+				slice.step(random);
+				return slice.state()[0];
+			}
+		});
+		
+		final Rational exactPrior = Rational.valueOf(1, 1000);
+		final Rational exactSensitivity = Rational.valueOf(99, 100);
+		final Rational exactFalsePositive = Rational.valueOf(1, 100);
+		all.add(new Benchmark("Rational.posterior")
+		{
+			protected double run()
+			{
+				return Bayes.posterior(exactPrior, exactSensitivity, exactFalsePositive).doubleValue();
+			}
+		});
+		
+		final Scenario drugTest = new Scenario("user", "non-user");
+		Scenario.Term drugPrevalence = drugTest.parameter("prevalence");
+		drugTest.prior(drugPrevalence, drugPrevalence.complement());
+		int positive = drugTest.evidence("test", "-", "+");
+		drugTest.likelihood(positive, 0, Scenario.constant(0.01), Scenario.constant(0.99));
+		drugTest.likelihood(positive, 1, Scenario.constant(0.99), Scenario.constant(0.01));
+		final int [] observedPositive = {1};
+		final double [] scenarioParameters = {0.005};
+		final double [] scenarioOut = new double[2];
+		all.add(new Benchmark("Scenario.interpreted")
+		{
+			protected double run()
+			{
+				return drugTest.posterior(scenarioParameters, observedPositive, scenarioOut);
+			}
+		});
+		final Scenario.Evaluator drugEvaluator = drugTest.compile(observedPositive);
+		all.add(new Benchmark("Scenario.compiled")
+		{
+			protected double run()
+			{
+				return drugEvaluator.evaluate(scenarioParameters, scenarioOut);
+			}
+		});
+		// a thousand live scenarios of differing shapes and constants, in turn
+		final Scenario.Evaluator [] scenarios = new Scenario.Evaluator[1000];
+		for (int i = 0; i < scenarios.length; i++)
+		{
+			String [] names = new String[2 + i % 3];
+			for (int h = 0; h < names.length; h++)
+			{
+				names[h] = "h" + h;
+			}
+			Scenario scenario = new Scenario(names);
+			Scenario.Term subjectPrevalence = scenario.parameter("prevalence");
+			Scenario.Term sensitivity = scenario.parameter("sensitivity");
+			Scenario.Term [] priors = new Scenario.Term[names.length];
+			priors[0] = subjectPrevalence;
+			for (int h = 1; h < names.length; h++)
+			{
+				priors[h] = (h % 2 == 1) ? subjectPrevalence.complement() : Scenario.constant(0.01 * h);
+			}
+			scenario.prior(priors);
+			int screen = scenario.evidence("test", "-", "+");
+			for (int h = 0; h < names.length; h++)
+			{
+				double falsePositive = 0.001 * (1 + (i + h) % 97);
+				if ((i + h) % 2 == 0)
+				{
+					scenario.likelihood(screen, h, sensitivity.complement(), sensitivity);
+				}
+				else
+				{
+					scenario.likelihood(screen, h, Scenario.constant(1 - falsePositive), Scenario.constant(falsePositive));
+				}
+			}
+			scenarios[i] = scenario.compile(observedPositive);
+		}
+		final double [] manyParameters = {0.005, 0.99};
+		final double [] manyOut = new double[4];
+		all.add(new Benchmark("Scenario.compiled.many")
+		{
+			int next;
+			
+			protected double run()
+			{
+				next = (next + 1 == scenarios.length) ? 0 : next + 1;
+				return scenarios[next].evaluate(manyParameters, manyOut);
+			}
+		});
+		
+		all.add(new Benchmark("Binomial.sample")
+		{
+			protected double run()
+			{
+				return Binomial.sample(1000000, 0.3, random);
+			}
+		});
+		final Bootstrap bootstrap = new Bootstrap();
+		final long [] records = {200000, 200000, 600000, 0};
+		all.add(new Benchmark("Bootstrap.resample")
+		{
+			protected long operations() { return 1000; }
+			protected double run()
+			{
+				return bootstrap.run(records, Bootstrap.proportion(0), 1000, 1).percentile(0.95)[0];
+			}
+		});
+		
+		all.add(new Benchmark("Metrics.record")
+		{
+			protected double run()
+			{
+				Metrics.record(Metrics.POSTERIOR, 1000);
+				return 0;
+			}
+		});
+		
+		final double [] sweets = {1.5, 2.0, 0.5, 1.0, 1.0, 0.8, 1.2, 1.0};
+		final double [] bowlCumulative = new double[sweets.length];
+		double bowlTotal = 0;
+		for (int i = 0; i < sweets.length; i++)
+		{
+			bowlTotal += sweets[i] / 9.0;
+			bowlCumulative[i] = bowlTotal;
+		}
+		final int [] draws = new int[SUBJECTS];
+		all.add(new Benchmark("CumulativeScan.sample")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				for (int k = 0; k < SUBJECTS; k++)
+				{
+					double u = random.nextDouble();
+					int c = 0;
+					while (c < bowlCumulative.length - 1 && u >= bowlCumulative[c])
+					{
+						c++;
+					}
+					draws[k] = c;
+				}
+				return draws[SUBJECTS-1];
+			}
+		});
+		final AliasSampler bowlSampler = new AliasSampler(sweets);
+		all.add(new Benchmark("AliasSampler.sample")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				bowlSampler.sample(draws, 0, SUBJECTS, random);
+				return draws[SUBJECTS-1];
+			}
+		});
+		
+		final double [] hypothesisPriors = new double[1 << 20];
+		final double [] hypothesisLikelihoods = new double[1 << 20];
+		for (int i = 0; i < hypothesisPriors.length; i++)
+		{
+			hypothesisPriors[i] = 1.0 / hypothesisPriors.length;
+			hypothesisLikelihoods[i] = random.nextDouble();
+		}
+		all.add(new Benchmark("MarginalLikelihood.naive")
+		{
+			protected long operations() { return hypothesisPriors.length; }
+			protected double run()
+			{
+				double sum = 0;
+				for (int i = 0; i < hypothesisPriors.length; i++)
+				{
+					sum += hypothesisPriors[i] * hypothesisLikelihoods[i];
+				}
+				return sum;
+			}
+		});
+		all.add(new Benchmark("MarginalLikelihood.evidence")
+		{
+			protected long operations() { return hypothesisPriors.length; }
+			protected double run()
+			{
+				return MarginalLikelihood.evidence(hypothesisPriors, hypothesisLikelihoods);
+			}
+		});
+		all.add(new Benchmark("MarginalLikelihood.logEvidence")
+		{
+			protected long operations() { return hypothesisPriors.length; }
+			protected double run()
+			{
+				return MarginalLikelihood.logEvidence(hypothesisPriors, hypothesisLikelihoods);
+			}
+		});
+		
+		final HiddenMarkovModel patient = new HiddenMarkovModel(
+				new double[]{0.99, 0.01},
+				new double[]{0.95, 0.05, 0.30, 0.70},
+				new double[]{0.90, 0.10, 0.20, 0.80}, 2);
+		final int [][] visits = new int[10000][50];
+		SplittableRandom visitRandom = new SplittableRandom(5);
+		for (int [] sequence : visits)
+		{
+			patient.sample(sequence.length, visitRandom, null, sequence);
+		}
+		final double [] visitScores = new double[visits.length];
+		all.add(new Benchmark("HiddenMarkovModel.logLikelihoods")
+		{
+			protected long operations() { return visits.length; }
+			protected double run()
+			{
+				patient.logLikelihoods(visits, visitScores);
+				return visitScores[visits.length-1];
+			}
+		});
+		all.add(new Benchmark("HiddenMarkovModel.reestimate")
+		{
+			protected long operations() { return visits.length; }
+			protected double run()
+			{
+				return patient.reestimate(visits).logLikelihood;
+			}
+		});
+		
+		final ParticleFilter drift = new ParticleFilter(new ParticleFilter.Model()
+		{
+			public void initialize(double [][] state, int from, int to, SplittableRandom r)
+			{
+				for (int i = from; i < to; i++)
+				{
+					state[0][i] = r.nextGaussian();
+				}
+			}
+			public void propagate(double [][] state, int from, int to, SplittableRandom r)
+			{
+				for (int i = from; i < to; i++)
+				{
+					state[0][i] += 0.3 * r.nextGaussian();
+				}
+			}
+			public void logLikelihood(double [][] state, double [] observation, double [] out, int from, int to)
+			{
+				for (int i = from; i < to; i++)
+				{
+					double d = observation[0] - state[0][i];
+					out[i] = -d * d;
+				}
+			}
+		}, 1, 1000000, 3);
+		final double [] driftObservation = {0.0};
+		all.add(new Benchmark("ParticleFilter.step")
+		{
+			protected long operations() { return drift.numParticles(); }
+			protected double run()
+			{
+				return drift.step(driftObservation);
+			}
+		});
+		
+		return all;
+	}
+	
+	/**
+	 * p(A | B) for a test case, per subject and as a batch
+	 */
+	protected final static void scenario(List<Benchmark> all, String name, 
+			final double prior, final double likelihood, final double falsePositive)
+	{
+		final double [] scenarioPriors = new double[SUBJECTS];
+		for (int i = 0; i < SUBJECTS; i++)
+		{
+			scenarioPriors[i] = prior * (1.0 - i * 1.0E-9);
+		}
+		all.add(new Benchmark(name + ".scalar")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				for (int i = 0; i < SUBJECTS; i++)
+				{
+					out[i] = Bayes.posterior(scenarioPriors[i], likelihood, falsePositive);
+				}
+				return out[SUBJECTS-1];
+			}
+		});
+		all.add(new Benchmark(name + ".batch")
+		{
+			protected long operations() { return SUBJECTS; }
+			protected double run()
+			{
+				Bayes.posteriors(scenarioPriors, 0, likelihood, falsePositive, out, 0, SUBJECTS);
+				return out[SUBJECTS-1];
+			}
+		});
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		int warmups = 3;
+		int iterations = 5;
+		long millis = 1000;
+		Map<String, Benchmark.Result> baseline = new HashMap<String, Benchmark.Result>();
+		List<String> filters = new ArrayList<String>();
+		
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-w"))
+			{
+				warmups = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-i"))
+			{
+				iterations = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-t"))
+			{
+				millis = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("-baseline"))
+			{
+				List<String> lines = Files.readAllLines(Paths.get(args[++i]), StandardCharsets.UTF_8);
+				for (Benchmark.Result result : Benchmark.parse(lines))
+				{
+					baseline.put(result.name, result);
+				}
+			}
+			else
+			{
+				filters.add(args[i]);
+			}
+		}
+		
+		System.out.println("# benchmark\tops/s\terror\tbytes/op");
+		for (Benchmark benchmark : all())
+		{
+			if (!selected(benchmark.name(), filters))
+			{
+				continue;
+			}
+			Benchmark.Result result = benchmark.measure(warmups, iterations, millis);
+			Benchmark.Result previous = baseline.get(result.name);
+			if (previous == null)
+			{
+				System.out.println(result);
+			}
+			else
+			{
+				double change = 100.0 * (result.opsPerSecond - previous.opsPerSecond) / previous.opsPerSecond;
+				System.out.println(result + String.format("\t# %+.1f%% vs baseline", change));
+			}
+		}
+	}
+	
+	protected final static boolean selected(String name, List<String> filters)
+	{
+		if (filters.isEmpty())
+		{
+			return true;
+		}
+		for (String filter : filters)
+		{
+			if (name.contains(filter))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,99 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import prob.AliasSampler;
+
+/**
+ * Drawing sweets from the SmartiesAndMandMsTestCase bowl
+ */
+public class AliasSamplerTestCase
+{
+	/**
+	 * brand x colour, M&M's then Smarties, red, yellow, orange, green
+	 */
+	final static double [] BOWL = {
+		5*0.3, 5*0.4, 5*0.1, 5*0.2, 
+		4*0.25, 4*0.2, 4*0.3, 4*0.25};
+	
+	/**
+	 * frequencies within 5 standard errors of the bowl's proportions
+	 */
+	@Test public void testBowl()
+	{
+		AliasSampler sampler = new AliasSampler(BOWL);
+		assertEquals(8, sampler.numCategories());
+		int draws = 1000000;
+		int [] out = new int[draws];
+		sampler.sample(out, 0, draws, new SplittableRandom(1));
+		int [] hits = new int[8];
+		for (int c : out)
+		{
+			hits[c]++;
+		}
+		for (int c = 0; c < 8; c++)
+		{
+			double p = BOWL[c] / 9.0;
+			assertEquals(p * draws, hits[c], 5 * Math.sqrt(draws * p * (1-p)));
+		}
+		// P(Smartie | green) = 0.5
+		assertEquals(0.5, hits[7] / (double) (hits[3] + hits[7]), 0.01);
+	}
+	
+	@Test public void testZeroWeights()
+	{
+		AliasSampler sampler = new AliasSampler(new double[]{0, 3, 0, 1, 0});
+		SplittableRandom random = new SplittableRandom(2);
+		int [] hits = new int[5];
+		for (int i = 0; i < 100000; i++)
+		{
+			hits[sampler.sample(random)]++;
+		}
+		assertEquals(0, hits[0] + hits[2] + hits[4]);
+		assertEquals(0.75, hits[1] / 100000.0, 0.01);
+		
+		AliasSampler certain = new AliasSampler(new double[]{2});
+		assertEquals(0, certain.sample(random));
+	}
+	
+	/**
+	 * the same draws from the same seed, and matching frequencies, however 
+	 * the pool splits the work
+	 */
+	@Test public void testParallel()
+	{
+		AliasSampler sampler = new AliasSampler(BOWL);
+		int [] first = new int[1 << 20];
+		int [] second = new int[1 << 20];
+		sampler.parallelSample(first, new SplittableRandom(3));
+		ForkJoinPool three = new ForkJoinPool(3);
+		try
+		{
+			sampler.parallelSample(second, new SplittableRandom(3), three);
+		}
+		finally
+		{
+			three.shutdown();
+		}
+		assertArrayEquals(first, second);
+		int green = 0;
+		for (int c : first)
+		{
+			if (c == 3 || c == 7)
+			{
+				green++;
+			}
+		}
+		assertEquals(2.0 / 9.0, green / (double) first.length, 0.002);
+	}
+	
+	@Test(expected = IllegalArgumentException.class) public void testNegativeWeight()
+	{
+		new AliasSampler(new double[]{0.5, -0.1});
+	}
+}
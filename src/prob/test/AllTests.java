@@ -11,7 +11,31 @@ import org.junit.runners.Suite;
 			StudentTrousersTestCase.class,
 			MontyHallTestCase.class,
 			SmartiesAndMandMsTestCase.class,
-			BreastCancerTestCase.class
+			BreastCancerTestCase.class,
+			BayesTestCase.class,
+			EvidenceTestCase.class,
+			SequentialUpdaterTestCase.class,
+			JointDistributionTestCase.class,
+			SimulationTestCase.class,
+			BinomialTestCase.class,
+			VariableEliminationTestCase.class,
+			PosteriorCacheTestCase.class,
+			NaiveBayesTestCase.class,
+			TableFileTestCase.class,
+			TestPanelTestCase.class,
+			ImportanceSamplerTestCase.class,
+			ConjugateTestCase.class,
+			McmcTestCase.class,
+			RationalTestCase.class,
+			ScenarioTestCase.class,
+			SensitivitySweepTestCase.class,
+			BootstrapTestCase.class,
+			MetricsTestCase.class,
+			AliasSamplerTestCase.class,
+			MarginalLikelihoodTestCase.class,
+			ObservationLogTestCase.class,
+			HiddenMarkovModelTestCase.class,
+			ParticleFilterTestCase.class
 			})
 public class AllTests {
 }
@@ -0,0 +1,72 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+
+/**
+ * Checks the reusable computations in Bayes against the worked examples in the 
+ * other test cases
+ */
+public class BayesTestCase
+{
+	/**
+	 * P(D|+) from DrugTestingTestCase
+	 */
+	@Test public void testPosteriorDrugTesting()
+	{
+		double userGivenPositive = Bayes.posterior(0.005, 0.99, 0.01);
+		assertEquals(0.3322, userGivenPositive, 1.0E-4);
+	}
+	
+	/**
+	 * P(Cancer|PositiveResult) from BreastCancerTestCase
+	 */
+	@Test public void testPosteriorBreastCancer()
+	{
+		double cancerGivenTest = Bayes.posterior(0.01, 0.80, 0.096);
+		assertEquals(0.078, cancerGivenTest, 0.001);
+	}
+	
+	/**
+	 * batch results must match the scalar computation, element for element
+	 */
+	@Test public void testPosteriorsBatch()
+	{
+		double [] priors = {0.005, 0.01, 1.0E-6, 0.4};
+		double [] likelihoods = {0.99, 0.80, 0.99, 0.5};
+		double [] falsePositives = {0.01, 0.096, 0.01, 1.0};
+		double [] out = new double[priors.length];
+		
+		Bayes.posteriors(priors, 0, likelihoods, 0, falsePositives, 0, out, 0, priors.length);
+		for (int i = 0; i < priors.length; i++)
+		{
+			assertEquals(Bayes.posterior(priors[i], likelihoods[i], falsePositives[i]), out[i], 0);
+		}
+		assertEquals(0.25, out[3], 1.0E-15);
+	}
+	
+	/**
+	 * one test applied to a window of subjects
+	 */
+	@Test public void testPosteriorsSharedTestWithOffsets()
+	{
+		double [] priors = {-1, 0.005, 0.01, -1};
+		double [] out = new double[5];
+		
+		Bayes.posteriors(priors, 1, 0.99, 0.01, out, 2, 2);
+		assertEquals(0, out[0], 0);
+		assertEquals(0, out[1], 0);
+		assertEquals(0.3322, out[2], 1.0E-4);
+		assertEquals(Bayes.posterior(0.01, 0.99, 0.01), out[3], 0);
+		assertEquals(0, out[4], 0);
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testPosteriorsRangeChecked()
+	{
+		Bayes.posteriors(new double[4], 2, 0.99, 0.01, new double[4], 0, 3);
+	}
+}
@@ -0,0 +1,82 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.Binomial;
+import prob.LogFactorial;
+import prob.Multinomial;
+import prob.SpecialFunctions;
+
+/**
+ * The general form of SmartiesAndMandMsTestCase.testBrandPartition, four 
+ * sweets drawn from a bowl of five M&M's to four Smarties
+ */
+public class BinomialTestCase
+{
+	/**
+	 * the "4 arrangements" of 3 and 1 is 4 choose 3
+	 */
+	@Test public void testChoose()
+	{
+		assertEquals(4, Math.exp(LogFactorial.logChoose(4, 3)), 1.0E-12);
+		assertEquals(Double.NEGATIVE_INFINITY, LogFactorial.logChoose(4, 5), 0);
+		assertEquals(Math.log(3628800), LogFactorial.logFactorial(10), 1.0E-12);
+	}
+	
+	/**
+	 * P(3 M&M's and 1 Smartie) + P(1 M&M and 3 Smarties)
+	 */
+	@Test public void testBrandPartition()
+	{
+		double probMandM = Bayes.observationToProbability(5, 9);
+		double prob3And1 = Binomial.pmf(3, 4, probMandM) + Binomial.pmf(1, 4, probMandM);
+		assertEquals(0.4999, prob3And1, 0.0001);
+		
+		double multinomial = Multinomial.pmf(new long[]{3, 1}, new double[]{5.0/9.0, 4.0/9.0});
+		assertEquals(Binomial.pmf(3, 4, probMandM), multinomial, 1.0E-15);
+	}
+	
+	/**
+	 * the cdf from the incomplete beta agrees with summing the pmf
+	 */
+	@Test public void testCdfMatchesSum()
+	{
+		long n = 60;
+		double p = 0.3;
+		double sum = 0;
+		for (long k = 0; k <= n; k++)
+		{
+			sum += Binomial.pmf(k, n, p);
+			assertEquals(sum, Binomial.cdf(k, n, p), 1.0E-12);
+			assertEquals(1.0 - sum, Binomial.survival(k, n, p), 1.0E-12);
+		}
+		assertEquals(1.0, sum, 1.0E-12);
+	}
+	
+	/**
+	 * a QA sample of millions, well past the end of the factorial table
+	 */
+	@Test public void testLargeN()
+	{
+		long n = 4000000;
+		// symmetric, P(X <= n/2) = 1/2 + P(X = n/2)/2
+		double centre = Binomial.pmf(n/2, n, 0.5);
+		assertEquals(1.0 / Math.sqrt(Math.PI * n / 2), centre, 1.0E-9);
+		assertEquals(0.5 + centre/2, Binomial.cdf(n/2, n, 0.5), 1.0E-8);
+		
+		// Stirling and the table meet without a step
+		long edge = LogFactorial.MAX_TABLE;
+		double step = LogFactorial.logFactorial(edge) - LogFactorial.logFactorial(edge - 1);
+		assertEquals(Math.log(edge), step, 1.0E-7);
+	}
+	
+	@Test public void testLogGamma()
+	{
+		assertEquals(Math.log(Math.sqrt(Math.PI)), SpecialFunctions.logGamma(0.5), 1.0E-14);
+		assertEquals(LogFactorial.logFactorial(20), SpecialFunctions.logGamma(21), 1.0E-12);
+		assertEquals(0.5, SpecialFunctions.regularizedBeta(0.5, 3, 3), 1.0E-15);
+	}
+}
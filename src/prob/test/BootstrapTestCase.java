@@ -0,0 +1,143 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import prob.Binomial;
+import prob.Bootstrap;
+import prob.Multinomial;
+
+/**
+ * Resampled intervals around the estimates of StudentTrousersTestCase
+ */
+public class BootstrapTestCase
+{
+	/**
+	 * girl/trousers, girl/skirt, boy/trousers, boy/skirt
+	 */
+	final static long [] STUDENTS = {20, 20, 60, 0};
+	
+	/**
+	 * sample moments and frequencies for both the inversion and rejection paths
+	 */
+	@Test public void testBinomialSample()
+	{
+		SplittableRandom random = new SplittableRandom(7);
+		long [][] cases = {{20, 0}, {100, 1}, {1000000, 2}, {1000, 3}};
+		double [] ps = {0.1, 0.4, 0.3, 0.97};
+		for (int c = 0; c < cases.length; c++)
+		{
+			long n = cases[c][0];
+			double p = ps[c];
+			int draws = 200000;
+			double sum = 0, squares = 0;
+			for (int i = 0; i < draws; i++)
+			{
+				long k = Binomial.sample(n, p, random);
+				assertTrue(k >= 0 && k <= n);
+				sum += k;
+				squares += (double) k * k;
+			}
+			double mean = sum / draws;
+			double variance = squares / draws - mean * mean;
+			double sd = Math.sqrt(n * p * (1-p));
+			assertEquals(n * p, mean, 5 * sd / Math.sqrt(draws));
+			assertEquals(n * p * (1-p), variance, 0.02 * n * p * (1-p));
+		}
+		
+		// frequencies near the mode of Bin(100, 0.4), rejection path
+		int draws = 400000;
+		int [] hits = new int[101];
+		for (int i = 0; i < draws; i++)
+		{
+			hits[(int) Binomial.sample(100, 0.4, random)]++;
+		}
+		for (int k = 30; k <= 50; k++)
+		{
+			double expected = draws * Binomial.pmf(k, 100, 0.4);
+			assertEquals(expected, hits[k], 5 * Math.sqrt(expected));
+		}
+		assertEquals(0, Binomial.sample(10, 0, random));
+		assertEquals(10, Binomial.sample(10, 1, random));
+	}
+	
+	@Test public void testMultinomialSample()
+	{
+		SplittableRandom random = new SplittableRandom(11);
+		double [] probs = {0.2, 0.2, 0.6, 0};
+		long [] counts = new long[4];
+		long [] totals = new long[4];
+		for (int i = 0; i < 10000; i++)
+		{
+			Multinomial.sample(1000000, probs, random, counts);
+			assertEquals(1000000, counts[0] + counts[1] + counts[2] + counts[3]);
+			assertEquals(0, counts[3]);
+			for (int k = 0; k < 4; k++)
+			{
+				totals[k] += counts[k];
+			}
+		}
+		assertEquals(0.6, totals[2] / 1.0E10, 1.0E-4);
+	}
+	
+	/**
+	 * 40 of 100 are girls, the percentile interval is close to the normal 
+	 * approximation 0.4 +/- 1.96 sqrt(0.24 / 100)
+	 */
+	@Test public void testProportion()
+	{
+		Bootstrap.Result result = new Bootstrap().run(new long[]{40, 60}, Bootstrap.proportion(0), 4000, 1);
+		assertEquals(0.4, result.estimate(), 0);
+		assertEquals(Math.sqrt(0.24 / 100), result.standardError(), 0.003);
+		double [] percentile = result.percentile(0.95);
+		assertEquals(0.304, percentile[0], 0.015);
+		assertEquals(0.496, percentile[1], 0.015);
+		double [] bca = result.bca(0.95);
+		assertEquals(percentile[0], bca[0], 0.02);
+		assertEquals(percentile[1], bca[1], 0.02);
+		
+		// same seed, same replicates, however the pool schedules them
+		assertArrayEquals(percentile, 
+				new Bootstrap().run(new long[]{40, 60}, Bootstrap.proportion(0), 4000, 1).percentile(0.95), 0);
+	}
+	
+	/**
+	 * P(Girl | Trousers) = 20 / 80 from the contingency table
+	 */
+	@Test public void testPosterior()
+	{
+		Bootstrap.Statistic girlGivenTrousers = new Bootstrap.Statistic()
+		{
+			public double evaluate(long [] counts)
+			{
+				return counts[0] / (double) (counts[0] + counts[2]);
+			}
+		};
+		Bootstrap.Result result = new Bootstrap().run(STUDENTS, girlGivenTrousers, 4000, 2);
+		assertEquals(0.25, result.estimate(), 0);
+		double [] bca = result.bca(0.95);
+		assertTrue(bca[0] < 0.25 && 0.25 < bca[1]);
+		assertTrue(bca[0] > 0.1 && bca[1] < 0.4);
+		
+		// a million records costs no more per resample
+		long [] many = {200000, 200000, 600000, 0};
+		double [] narrow = new Bootstrap().run(many, girlGivenTrousers, 2000, 3).percentile(0.95);
+		assertEquals(0.25, narrow[0], 0.002);
+		assertEquals(0.25, narrow[1], 0.002);
+	}
+	
+	/**
+	 * a proportion near 0 is skewed, giving a non zero acceleration
+	 */
+	@Test public void testAcceleration()
+	{
+		Bootstrap.Result result = new Bootstrap().run(new long[]{3, 97}, Bootstrap.proportion(0), 2000, 4);
+		assertTrue(result.acceleration() > 0);
+		double [] percentile = result.percentile(0.9);
+		double [] bca = result.bca(0.9);
+		assertTrue(bca[0] >= 0 && bca[1] > percentile[0]);
+	}
+}
@@ -0,0 +1,107 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.BetaBinomial;
+import prob.DirichletMultinomial;
+import prob.Estimate;
+import prob.GammaPoisson;
+import prob.SpecialFunctions;
+
+/**
+ * Uncertainty about the rates in the other test cases, rather than point 
+ * estimates of them
+ */
+public class ConjugateTestCase
+{
+	/**
+	 * StudentTrousersTestCase: 40 girls of 100 students seen, uniform prior
+	 */
+	@Test public void testBetaBinomial()
+	{
+		BetaBinomial girls = new BetaBinomial(1, 1).update(40, 60);
+		assertEquals(41.0/102.0, girls.mean(), 1.0E-15);
+		assertEquals(41.0*61.0/(102.0*102.0*103.0), girls.variance(), 1.0E-15);
+		
+		double [] interval = girls.credibleInterval(0.95);
+		assertTrue(interval[0] < 0.4 && interval[1] > 0.4);
+		assertEquals(0.025, SpecialFunctions.regularizedBeta(interval[0], 41, 61), 1.0E-12);
+		assertEquals(0.975, SpecialFunctions.regularizedBeta(interval[1], 41, 61), 1.0E-12);
+		
+		// the next student is a girl with the posterior mean
+		assertEquals(girls.mean(), girls.predictive(1, 1), 1.0E-12);
+		double sum = 0;
+		for (int k = 0; k <= 20; k++)
+		{
+			sum += girls.predictive(k, 20);
+		}
+		assertEquals(1.0, sum, 1.0E-12);
+	}
+	
+	/**
+	 * DiseaseTestCase prevalence: one case in a million people
+	 */
+	@Test public void testRarePrevalence()
+	{
+		BetaBinomial prevalence = new BetaBinomial(0.5, 0.5).update(1, 999999);
+		double [] interval = prevalence.credibleInterval(0.99);
+		assertTrue(interval[0] > 0 && interval[0] < 1.0E-6);
+		assertTrue(interval[1] > 1.0E-6 && interval[1] < 1.0E-5);
+		assertEquals(0.005, SpecialFunctions.regularizedBeta(interval[0], 1.5, 999999.5), 1.0E-10);
+	}
+	
+	/**
+	 * the colours of Smarties: 25 red, 20 yellow, 30 orange, 25 green
+	 */
+	@Test public void testDirichletMultinomial()
+	{
+		DirichletMultinomial colours = new DirichletMultinomial(1, 1, 1, 1);
+		colours.update(new long[]{25, 20, 30, 25});
+		assertEquals(26.0/104.0, colours.mean(3), 1.0E-15);
+		
+		// green's marginal is the Beta of green against the rest
+		BetaBinomial green = new BetaBinomial(1, 3).update(25, 75);
+		assertEquals(green.variance(), colours.variance(3), 1.0E-15);
+		assertArrayEquals(green.credibleInterval(0.9), colours.credibleInterval(3, 0.9), 1.0E-12);
+		
+		// two categories predict as the beta-binomial
+		DirichletMultinomial brands = new DirichletMultinomial(1, 1).update(new long[]{5, 4});
+		BetaBinomial mandms = new BetaBinomial(1, 1).update(5, 4);
+		assertEquals(mandms.predictive(3, 4), brands.predictive(new long[]{3, 1}), 1.0E-12);
+		
+		// a bowl of only Smarties
+		DirichletMultinomial smarties = new DirichletMultinomial(1).update(new long[]{9});
+		assertArrayEquals(new double[]{1, 1}, smarties.credibleInterval(0, 0.95), 0);
+	}
+	
+	/**
+	 * 12 adverse events over 4000 patient-days
+	 */
+	@Test public void testGammaPoisson()
+	{
+		GammaPoisson events = new GammaPoisson(1, 1).update(12, 4000);
+		assertEquals(13.0/4001.0, events.mean(), 1.0E-15);
+		assertEquals(13.0/(4001.0*4001.0), events.variance(), 1.0E-15);
+		
+		double [] interval = events.credibleInterval(0.95);
+		assertEquals(0.025, SpecialFunctions.regularizedGammaP(13, interval[0] * 4001), 1.0E-12);
+		assertEquals(0.975, SpecialFunctions.regularizedGammaP(13, interval[1] * 4001), 1.0E-12);
+		
+		double sum = 0;
+		for (int k = 0; k < 200; k++)
+		{
+			sum += events.predictive(k, 1000);
+		}
+		assertEquals(1.0, sum, 1.0E-10);
+	}
+	
+	@Test public void testNormalQuantile()
+	{
+		assertEquals(Estimate.Z95, SpecialFunctions.normalQuantile(0.975), 1.0E-14);
+		assertEquals(-Estimate.Z95, SpecialFunctions.normalQuantile(0.025), 1.0E-14);
+		assertEquals(0.3, SpecialFunctions.normalCdf(SpecialFunctions.normalQuantile(0.3)), 1.0E-15);
+		assertEquals(0.5, SpecialFunctions.normalCdf(0), 0);
+	}
+}
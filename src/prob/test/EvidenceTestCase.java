@@ -0,0 +1,92 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.Evidence;
+import prob.LogSpace;
+
+/**
+ * The rare disease from DiseaseTestCase, retested many times
+ * 
+ * prevalence 1 in 1,000,000, test 99% sensitive and 99% specific
+ */
+public class EvidenceTestCase
+{
+	/**
+	 * p(Disease | Test is positive) = p(Disease and Test is positive) / p(Test is positive)
+	 */
+	@Test public void testPAGivenB()
+	{
+		double diseaseAndTestPositive = 9.9E-7;
+		double testPositive = 9.9E-7 + 0.00999999;
+		assertEquals(1.0E-4, Bayes.pAGivenB(diseaseAndTestPositive, testPositive), 1.0E-5);
+	}
+	
+	/**
+	 * one positive test, same answer as the direct computation
+	 */
+	@Test public void testSinglePositive()
+	{
+		Evidence evidence = new Evidence(1.0E-6).addObservation(0.99, 0.01);
+		assertEquals(Bayes.posterior(1.0E-6, 0.99, 0.01), evidence.posterior(), 1.0E-15);
+	}
+	
+	/**
+	 * two positives, then a negative, cancels back to a single positive
+	 */
+	@Test public void testPositivesAndNegatives()
+	{
+		Evidence evidence = new Evidence(1.0E-6)
+			.addObservation(0.99, 0.01)
+			.addObservation(0.99, 0.01)
+			.addObservation(0.01, 0.99);
+		assertEquals(Bayes.posterior(1.0E-6, 0.99, 0.01), evidence.posterior(), 1.0E-12);
+	}
+	
+	/**
+	 * 200 negative tests: the direct product (0.01^200 * 1e-6) underflows, 
+	 * the log posterior does not
+	 */
+	@Test public void testManyNegativesDoNotUnderflow()
+	{
+		double [] logLrs = new double[200];
+		Arrays.fill(logLrs, Math.log(0.01/0.99));
+		Evidence evidence = new Evidence(1.0E-6).addLogLikelihoodRatios(logLrs, 0, logLrs.length);
+		
+		double naive = 1.0E-6;
+		for (int i = 0; i < 200; i++)
+		{
+			naive *= 0.01;
+		}
+		assertEquals(0, naive, 0);
+		
+		double expected = Math.log(1.0E-6) - Math.log1p(-1.0E-6) + 200*Math.log(0.01/0.99);
+		assertEquals(expected, evidence.logPosterior(), 1.0E-9);
+		assertEquals(0, evidence.logComplement(), 1.0E-300);
+	}
+	
+	/**
+	 * Smarties if green, normalized in log space
+	 */
+	@Test public void testNormalize()
+	{
+		double [] logWeights = {Math.log(4.0/9.0) + Math.log(0.25), Math.log(5.0/9.0) + Math.log(0.2)};
+		double logGreen = LogSpace.normalize(logWeights, 0, 2);
+		assertEquals(0.222, Math.exp(logGreen), 1.0E-3);
+		assertEquals(0.5, logWeights[0], 1.0E-15);
+		assertEquals(0.5, logWeights[1], 1.0E-15);
+	}
+	
+	@Test public void testLogistic()
+	{
+		assertEquals(0.25, LogSpace.logistic(LogSpace.logit(0.25)), 1.0E-15);
+		assertEquals(1.0, LogSpace.logistic(1000), 0);
+		assertEquals(0.0, LogSpace.logistic(-1000), 0);
+		assertEquals(Math.log(3), LogSpace.logSumExp(Math.log(1), Math.log(2)), 1.0E-15);
+	}
+}
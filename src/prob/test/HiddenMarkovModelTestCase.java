@@ -0,0 +1,212 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.HiddenMarkovModel;
+
+/**
+ * A patient who is healthy or sick from one visit to the next, seen only
+ * through an imperfect test at each visit
+ *
+ * states: 0 healthy, 1 sick; symbols: 0 negative, 1 positive
+ */
+public class HiddenMarkovModelTestCase
+{
+	static final double [] INITIAL = {0.99, 0.01};
+	static final double [] TRANSITION = {
+		0.95, 0.05,
+		0.30, 0.70};
+	static final double [] EMISSION = {
+		0.90, 0.10,
+		0.20, 0.80};
+	
+	static HiddenMarkovModel patient()
+	{
+		return new HiddenMarkovModel(INITIAL, TRANSITION, EMISSION, 2);
+	}
+	
+	/**
+	 * p(observations) and p(path, observations) by enumerating every path
+	 *
+	 * @return {sum, best path probability, best path as bits}
+	 */
+	static double [] enumerate(HiddenMarkovModel model, int [] observations)
+	{
+		int n = model.numStates();
+		int length = observations.length;
+		int paths = (int) Math.pow(n, length);
+		double sum = 0, best = -1, bestPath = 0;
+		for (int path = 0; path < paths; path++)
+		{
+			int code = path;
+			double p = 1;
+			int previous = -1;
+			for (int t = 0; t < length; t++)
+			{
+				int state = code % n;
+				code /= n;
+				p *= (previous < 0) ? model.initial(state) : model.transition(previous, state);
+				p *= model.emission(state, observations[t]);
+				previous = state;
+			}
+			sum += p;
+			if (p > best)
+			{
+				best = p;
+				bestPath = path;
+			}
+		}
+		return new double[]{sum, best, bestPath};
+	}
+	
+	/**
+	 * one step is a single test, Bayes with the initial prevalence
+	 */
+	@Test public void testSingleTest()
+	{
+		HiddenMarkovModel model = patient();
+		HiddenMarkovModel.Workspace work = new HiddenMarkovModel.Workspace();
+		double [] gamma = new double[2];
+		double logLikelihood = model.posteriors(new int[]{1}, work, gamma);
+		assertEquals(0.01 * 0.80 + 0.99 * 0.10, Math.exp(logLikelihood), 1.0E-15);
+		assertEquals(Bayes.posterior(0.01, 0.80, 0.10), gamma[1], 1.0E-15);
+	}
+	
+	@Test public void testForwardMatchesEnumeration()
+	{
+		HiddenMarkovModel model = patient();
+		HiddenMarkovModel.Workspace work = new HiddenMarkovModel.Workspace();
+		SplittableRandom random = new SplittableRandom(7);
+		for (int trial = 0; trial < 20; trial++)
+		{
+			int [] observations = new int[1 + random.nextInt(10)];
+			for (int t = 0; t < observations.length; t++)
+			{
+				observations[t] = random.nextInt(2);
+			}
+			double [] exact = enumerate(model, observations);
+			assertEquals(Math.log(exact[0]), model.logLikelihood(observations, work), 1.0E-12);
+			
+			int [] path = new int[observations.length];
+			double logBest = model.viterbi(observations, work, path);
+			assertEquals(Math.log(exact[1]), logBest, 1.0E-12);
+			int code = (int) exact[2];
+			for (int t = 0; t < path.length; t++)
+			{
+				assertEquals(code % 2, path[t]);
+				code /= 2;
+			}
+		}
+	}
+	
+	/**
+	 * smoothed state probabilities sum to one, and a run of positives
+	 * makes sickness likely in the middle of it
+	 */
+	@Test public void testPosteriors()
+	{
+		HiddenMarkovModel model = patient();
+		int [] observations = {0, 0, 1, 1, 1, 1, 0, 0};
+		double [] gamma = new double[observations.length * 2];
+		model.posteriors(observations, new HiddenMarkovModel.Workspace(), gamma);
+		for (int t = 0; t < observations.length; t++)
+		{
+			assertEquals(1.0, gamma[2 * t] + gamma[2 * t + 1], 1.0E-12);
+		}
+		assertTrue(gamma[2 * 3 + 1] > 0.9);
+		assertTrue(gamma[2 * 0 + 1] < 0.05);
+	}
+	
+	/**
+	 * thousands of steps, far past where unscaled probabilities underflow
+	 */
+	@Test public void testLongSequence()
+	{
+		HiddenMarkovModel model = patient();
+		int [] observations = new int[20000];
+		model.sample(observations.length, new SplittableRandom(1), null, observations);
+		double logLikelihood = model.logLikelihood(observations, new HiddenMarkovModel.Workspace());
+		assertTrue(logLikelihood < -1000);
+		assertFalse(Double.isInfinite(logLikelihood) || Double.isNaN(logLikelihood));
+	}
+	
+	@Test public void testBatchMatchesSequential()
+	{
+		HiddenMarkovModel model = patient();
+		int [][] sequences = sample(model, 1000, 30, 3);
+		double [] batch = new double[sequences.length];
+		model.logLikelihoods(sequences, batch);
+		HiddenMarkovModel.Workspace work = new HiddenMarkovModel.Workspace();
+		for (int s = 0; s < sequences.length; s++)
+		{
+			assertEquals(model.logLikelihood(sequences[s], work), batch[s], 0);
+		}
+		
+		// a pool of our own
+		ForkJoinPool two = new ForkJoinPool(2);
+		try
+		{
+			double [] own = new double[sequences.length];
+			model.logLikelihoods(sequences, own, two);
+			assertArrayEquals(batch, own, 0);
+			assertEquals(model.reestimate(sequences).logLikelihood, model.reestimate(sequences, two).logLikelihood, 1.0E-9);
+		}
+		finally
+		{
+			two.shutdown();
+		}
+	}
+	
+	/**
+	 * every step raises the likelihood, and the fit lands near the model
+	 * that generated the data
+	 */
+	@Test public void testBaumWelch()
+	{
+		int [][] sequences = sample(patient(), 2000, 50, 11);
+		HiddenMarkovModel guess = new HiddenMarkovModel(
+				new double[]{0.5, 0.5},
+				new double[]{0.8, 0.2, 0.4, 0.6},
+				new double[]{0.7, 0.3, 0.4, 0.6}, 2);
+		
+		HiddenMarkovModel model = guess;
+		double previous = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 5; i++)
+		{
+			HiddenMarkovModel.Fit fit = model.reestimate(sequences);
+			assertTrue(fit.logLikelihood >= previous - 1.0E-9);
+			previous = fit.logLikelihood;
+			model = fit.model;
+		}
+		
+		HiddenMarkovModel.Fit fit = guess.baumWelch(sequences, 500, 1.0E-6);
+		assertTrue(fit.logLikelihood > previous);
+		assertEquals(0.05, fit.model.transition(0, 1), 0.02);
+		assertEquals(0.70, fit.model.transition(1, 1), 0.05);
+		assertEquals(0.10, fit.model.emission(0, 1), 0.02);
+		assertEquals(0.80, fit.model.emission(1, 1), 0.05);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testRowsMustSumToOne()
+	{
+		new HiddenMarkovModel(INITIAL, new double[]{0.9, 0.2, 0.3, 0.7}, EMISSION, 2);
+	}
+	
+	static int [][] sample(HiddenMarkovModel model, int count, int length, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+		int [][] sequences = new int[count][length];
+		for (int [] sequence : sequences)
+		{
+			model.sample(length, random, null, sequence);
+		}
+		return sequences;
+	}
+}
@@ -0,0 +1,109 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import prob.ImportanceSampler;
+
+/**
+ * DiseaseTestCase by simulation: disease 1 in 1,000,000, test 99% accurate
+ * 
+ * variable 0 = disease, variable 1 = test positive
+ */
+public class ImportanceSamplerTestCase
+{
+	final static ImportanceSampler.Model DISEASE = new ImportanceSampler.Model()
+	{
+		public int size()
+		{
+			return 2;
+		}
+		
+		public double probability(int variable, long bits)
+		{
+			if (variable == 0)
+			{
+				return 1.0E-6;
+			}
+			return ((bits & 1) != 0) ? 0.99 : 0.01;
+		}
+		
+		public boolean event(long bits)
+		{
+			// diseased and tested positive
+			return bits == 3;
+		}
+	};
+	
+	/**
+	 * p(Disease and Test is positive) = 9.9E-7, to 1% from far fewer than 
+	 * the ~10^10 samples plain simulation would need
+	 */
+	@Test public void testTiltedDisease()
+	{
+		ImportanceSampler sampler = new ImportanceSampler(DISEASE);
+		sampler.setProposal(0, 0.5);
+		ImportanceSampler.Result result = sampler.estimate(0.01, 10000000, new SplittableRandom(1));
+		
+		assertTrue(result.toString(), result.relativeError() <= 0.01);
+		assertTrue(result.toString(), result.samples < 100000);
+		assertEquals(9.9E-7, result.estimate, 5 * Math.sqrt(result.variance));
+		assertTrue(result.effectiveSampleSize > 0.9 * result.hits);
+	}
+	
+	/**
+	 * cross-entropy pushes the proposal to where the event lives
+	 */
+	@Test public void testCrossEntropy()
+	{
+		ImportanceSampler sampler = new ImportanceSampler(DISEASE);
+		sampler.setProposal(0, 0.1);
+		sampler.setProposal(1, 0.5);
+		SplittableRandom random = new SplittableRandom(2);
+		sampler.crossEntropy(10, 2000, 0.7, random);
+		assertTrue(sampler.proposal(0) > 0.99);
+		assertTrue(sampler.proposal(1) > 0.99);
+		
+		// near zero variance, every sample's weight is close to the answer
+		ImportanceSampler.Result result = sampler.estimate(0.001, 1000000, random);
+		assertTrue(result.toString(), result.relativeError() <= 0.001);
+		assertTrue(result.toString(), result.samples < 10000);
+		assertEquals(9.9E-7, result.estimate, 9.9E-7 * 0.001);
+	}
+	
+	/**
+	 * without a proposal it is plain simulation, and sees nothing
+	 */
+	@Test public void testPlainSimulationMisses()
+	{
+		ImportanceSampler sampler = new ImportanceSampler(DISEASE);
+		ImportanceSampler.Result result = sampler.estimate(0.01, 100000, new SplittableRandom(3));
+		assertEquals(100000, result.samples);
+		assertTrue(result.hits <= 1);
+	}
+	
+	/**
+	 * a proposal of 0 or 1 gives outcomes infinite weight
+	 */
+	@Test public void testInvalidProposal()
+	{
+		ImportanceSampler sampler = new ImportanceSampler(DISEASE);
+		for (double q : new double[]{0, 1, 1.5, -0.1, Double.NaN})
+		{
+			try
+			{
+				sampler.setProposal(0, q);
+				fail("Accepted " + q);
+			}
+			catch (IllegalArgumentException e)
+			{
+			}
+		}
+		sampler.setProposal(0, 0.5);
+		sampler.clearProposal(0);
+		assertTrue(Double.isNaN(sampler.proposal(0)));
+	}
+}
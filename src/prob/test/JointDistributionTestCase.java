@@ -0,0 +1,150 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.JointDistribution;
+
+/**
+ * The bowl from SmartiesAndMandMsTestCase as a brand x colour joint
+ * 
+ * brand: 0 = M&M, 1 = Smartie
+ * colour: 0 = red, 1 = yellow, 2 = orange, 3 = green
+ */
+public class JointDistributionTestCase
+{
+	final static int BRAND = 0, COLOUR = 1;
+	final static int MANDM = 0, SMARTIE = 1;
+	final static int GREEN = 3;
+	
+	protected JointDistribution bowl()
+	{
+		double [] brand = {Bayes.observationToProbability(5, 9), Bayes.observationToProbability(4, 9)};
+		double [][] colourGivenBrand = 
+		{
+			{0.3, 0.4, 0.1, 0.2},
+			{0.25, 0.2, 0.3, 0.25}
+		};
+		return JointDistribution.fromConditional(brand, colourGivenBrand);
+	}
+	
+	/**
+	 * P(Green and Smartie)
+	 */
+	@Test public void testGreenSmartie()
+	{
+		JointDistribution bowl = bowl();
+		assertEquals(0.111, bowl.get(SMARTIE, GREEN), 1.0E-3);
+		assertEquals(bowl.get(SMARTIE, GREEN), bowl.get(bowl.index(SMARTIE, GREEN)), 0);
+	}
+	
+	/**
+	 * P(Green) and P(Smartie), computed once then served from cache
+	 */
+	@Test public void testMarginals()
+	{
+		JointDistribution bowl = bowl();
+		assertEquals(0.222, bowl.marginal(COLOUR, GREEN), 1.0E-3);
+		assertEquals(4.0/9.0, bowl.marginal(BRAND, SMARTIE), 1.0E-15);
+		assertSame(bowl.marginal(COLOUR), bowl.marginal(COLOUR));
+		assertEquals(1.0, bowl.total(), 1.0E-15);
+	}
+	
+	/**
+	 * P(Smartie | Green)
+	 */
+	@Test public void testCondition()
+	{
+		JointDistribution brandGivenGreen = bowl().condition(COLOUR, GREEN);
+		assertEquals(1, brandGivenGreen.numVariables());
+		assertEquals(0.5, brandGivenGreen.get(SMARTIE), 1.0E-15);
+		assertEquals(0.5, brandGivenGreen.get(MANDM), 1.0E-15);
+	}
+	
+	/**
+	 * no green sweets, so nothing can be conditioned on green
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testConditionOnImpossibleValue()
+	{
+		JointDistribution noGreen = new JointDistribution(new int[]{2, 2}, new double[]{0.5, 0, 0.5, 0});
+		noGreen.condition(1, 1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNormalizeZeroTable()
+	{
+		new JointDistribution(2, 2).normalize();
+	}
+	
+	/**
+	 * summing out brand gives the same colour marginal
+	 */
+	@Test public void testMarginalize()
+	{
+		JointDistribution bowl = bowl();
+		JointDistribution colour = bowl.marginalize(COLOUR);
+		for (int c = 0; c < 4; c++)
+		{
+			assertEquals(bowl.marginal(COLOUR, c), colour.get(c), 1.0E-15);
+		}
+		
+		// reordering keeps every cell
+		JointDistribution colourBrand = bowl.marginalize(COLOUR, BRAND);
+		assertEquals(bowl.get(SMARTIE, GREEN), colourBrand.get(GREEN, SMARTIE), 0);
+	}
+	
+	/**
+	 * counts rather than probabilities, marginals follow normalization without 
+	 * changing arrays already handed out, and
+	 * are recomputed once the table changes
+	 */
+	@Test public void testNormalizeAndInvalidate()
+	{
+		JointDistribution counts = new JointDistribution(2, 2);
+		counts.set(counts.index(0, 0), 30);
+		counts.set(counts.index(0, 1), 10);
+		counts.set(counts.index(1, 0), 40);
+		counts.set(counts.index(1, 1), 20);
+		double [] before = counts.marginal(0);
+		assertEquals(40, before[0], 0);
+		
+		counts.normalize();
+		assertEquals(0.4, counts.marginal(0, 0), 1.0E-15);
+		assertEquals(40, before[0], 0);
+		assertEquals(0.7, counts.marginal(1, 0), 1.0E-15);
+		
+		counts.set(counts.index(1, 1), 0.3);
+		assertEquals(0.7, counts.marginal(0, 1), 1.0E-15);
+		assertEquals(1.1, counts.total(), 1.0E-15);
+	}
+	
+	/**
+	 * three variables, marginalize and condition from the middle
+	 */
+	@Test public void testThreeVariables()
+	{
+		JointDistribution joint = new JointDistribution(2, 3, 2);
+		double [] table = joint.table();
+		for (int i = 0; i < table.length; i++)
+		{
+			table[i] = i + 1;
+		}
+		joint.invalidate();
+		joint.normalize();
+		
+		JointDistribution outer = joint.marginalize(0, 2);
+		double expected = 0;
+		for (int y = 0; y < 3; y++)
+		{
+			expected += joint.get(1, y, 0);
+		}
+		assertEquals(expected, outer.get(1, 0), 1.0E-15);
+		
+		JointDistribution given = joint.condition(1, 2);
+		assertEquals(joint.get(1, 2, 1) / joint.marginal(1, 2), given.get(1, 1), 1.0E-15);
+		assertEquals(1.0, given.total(), 1.0E-15);
+	}
+}
@@ -0,0 +1,154 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.MarginalLikelihood;
+
+/**
+ * p(B) over spaces far larger than the two hypotheses of BreastCancerTestCase
+ */
+public class MarginalLikelihoodTestCase
+{
+	/**
+	 * the two hypothesis case agrees with {@link Bayes#posterior(double, double, double)}
+	 */
+	@Test public void testBreastCancer()
+	{
+		double [] priors = {0.01, 0.99};
+		double [] likelihoods = {0.80, 0.096};
+		double [] posterior = new double[2];
+		double evidence = MarginalLikelihood.posteriors(priors, likelihoods, posterior);
+		// correctly rounded, where 0.01 * 0.80 + 0.99 * 0.096 gives 0.10303999999999999
+		double exact = new BigDecimal(0.01).multiply(new BigDecimal(0.80))
+				.add(new BigDecimal(0.99).multiply(new BigDecimal(0.096))).doubleValue();
+		assertEquals(exact, evidence, 0);
+		assertEquals(Bayes.posterior(0.01, 0.80, 0.096), posterior[0], 1.0E-15);
+		assertEquals(1.0, posterior[0] + posterior[1], 1.0E-15);
+	}
+	
+	/**
+	 * a million terms of mixed magnitude and an exact reference sum
+	 */
+	@Test public void testCompensated()
+	{
+		int n = 1000000;
+		SplittableRandom random = new SplittableRandom(5);
+		double [] priors = new double[n];
+		double [] likelihoods = new double[n];
+		BigDecimal exact = BigDecimal.ZERO;
+		double naive = 0;
+		for (int i = 0; i < n; i++)
+		{
+			priors[i] = random.nextDouble() * Math.pow(10, -random.nextInt(12));
+			likelihoods[i] = random.nextDouble();
+			exact = exact.add(new BigDecimal(priors[i]).multiply(new BigDecimal(likelihoods[i])));
+			naive += priors[i] * likelihoods[i];
+		}
+		double truth = exact.doubleValue();
+		double evidence = MarginalLikelihood.evidence(priors, likelihoods);
+		assertEquals(truth, evidence, Math.ulp(truth));
+		// and no worse than the running sum
+		assertTrue(Math.abs(evidence - truth) <= Math.abs(naive - truth));
+		
+		double [] posterior = new double[n];
+		assertEquals(evidence, MarginalLikelihood.posteriors(priors, likelihoods, posterior), 0);
+		assertEquals(priors[12345] * likelihoods[12345] / evidence, posterior[12345], 1.0E-15 * posterior[12345]);
+	}
+	
+	/**
+	 * likelihoods of e^-1000 underflow as doubles but not as logs
+	 */
+	@Test public void testLogForm()
+	{
+		int n = 300000;
+		double [] logPriors = new double[n];
+		double [] logLikelihoods = new double[n];
+		double [] priors = new double[n];
+		double [] likelihoods = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			priors[i] = 1.0 / n;
+			likelihoods[i] = (i % 3 + 1) / 3.0;
+			logPriors[i] = Math.log(priors[i]);
+			logLikelihoods[i] = Math.log(likelihoods[i]);
+		}
+		double evidence = MarginalLikelihood.evidence(priors, likelihoods);
+		assertEquals(Math.log(evidence), MarginalLikelihood.logEvidence(logPriors, logLikelihoods), 1.0E-14);
+		
+		for (int i = 0; i < n; i++)
+		{
+			logLikelihoods[i] -= 1000;
+		}
+		double [] logPosterior = new double[n];
+		double logEvidence = MarginalLikelihood.logPosteriors(logPriors, logLikelihoods, logPosterior);
+		assertEquals(Math.log(evidence) - 1000, logEvidence, 1.0E-11);
+		assertEquals(Math.log(priors[2] * likelihoods[2] / evidence), logPosterior[2], 1.0E-12);
+		
+		double [] impossible = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		assertEquals(Double.NEGATIVE_INFINITY, MarginalLikelihood.logEvidence(impossible, new double[2]), 0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testImpossiblePosteriors()
+	{
+		MarginalLikelihood.posteriors(new double[]{0.5, 0.5}, new double[]{0, 0}, new double[2]);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testImpossibleLogPosteriors()
+	{
+		double [] impossible = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		MarginalLikelihood.logPosteriors(new double[2], impossible, new double[2]);
+	}
+	
+	/**
+	 * a subnormal p(B), whose reciprocal overflows
+	 */
+	@Test public void testTinyEvidence()
+	{
+		double [] priors = {0.5, 0.5};
+		double [] likelihoods = {1.0E-310, 3.0E-310};
+		double [] out = new double[2];
+		double evidence = MarginalLikelihood.posteriors(priors, likelihoods, out);
+		assertEquals(2.0E-310, evidence, 1.0E-320);
+		assertEquals(0.25, out[0], 1.0E-9);
+		assertEquals(0.75, out[1], 1.0E-9);
+	}
+	
+	/**
+	 * a pool of our own gives the same sums as the common pool
+	 */
+	@Test public void testOwnPool()
+	{
+		SplittableRandom random = new SplittableRandom(5);
+		int n = 200000;
+		double [] priors = new double[n], likelihoods = new double[n];
+		for (int i = 0; i < n; i++)
+		{
+			priors[i] = 1.0 / n;
+			likelihoods[i] = random.nextDouble();
+		}
+		ForkJoinPool two = new ForkJoinPool(2);
+		try
+		{
+			double [] out = new double[n];
+			double [] expected = new double[n];
+			assertEquals(MarginalLikelihood.posteriors(priors, likelihoods, expected), 
+					MarginalLikelihood.posteriors(priors, likelihoods, out, two), 0);
+			assertArrayEquals(expected, out, 0);
+			assertEquals(MarginalLikelihood.logEvidence(priors, likelihoods), 
+					MarginalLikelihood.logEvidence(priors, likelihoods, two), 0);
+		}
+		finally
+		{
+			two.shutdown();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import prob.GibbsSampler;
+import prob.Mcmc;
+import prob.McmcSampler;
+import prob.MetropolisHastings;
+import prob.SliceSampler;
+import prob.Trace;
+
+/**
+ * Prevalence measured with an imperfect test, which has no closed form
+ * 
+ * 30 of 1000 screened people test positive on a test with 90% sensitivity and 
+ * 95% specificity. With a uniform prior on the prevalence pi
+ * 
+ * p(pi | data) is proportional to q^30 (1 - q)^970, q = 0.9 pi + 0.05 (1 - pi)
+ */
+public class McmcTestCase
+{
+	final static McmcSampler.LogDensity PREVALENCE = new McmcSampler.LogDensity()
+	{
+		public double logDensity(double [] theta)
+		{
+			double pi = theta[0];
+			if (pi <= 0 || pi >= 1)
+			{
+				return Double.NEGATIVE_INFINITY;
+			}
+			double q = 0.9 * pi + 0.05 * (1 - pi);
+			return 30 * Math.log(q) + 970 * Math.log1p(-q);
+		}
+	};
+	
+	/**
+	 * posterior mean by quadrature, for comparison
+	 */
+	protected double prevalenceMean()
+	{
+		double num = 0, den = 0;
+		int n = 200000;
+		for (int i = 1; i < n; i++)
+		{
+			double pi = i / (double) n;
+			double p = Math.exp(PREVALENCE.logDensity(new double[]{pi}) + 95);
+			num += pi * p;
+			den += p;
+		}
+		return num / den;
+	}
+	
+	@Test public void testMetropolisHastings()
+	{
+		Mcmc.Result result = new Mcmc().run(new Mcmc.Factory()
+		{
+			public McmcSampler create(int chain)
+			{
+				return new MetropolisHastings(PREVALENCE, new double[]{0.001 + 0.1 * chain}, 0.5);
+			}
+		}, 4, 2000, 20000, 1000, 1);
+		
+		assertEquals(prevalenceMean(), result.mean(0), 0.002);
+		assertEquals(1.0, result.rHat(0), 0.02);
+		assertTrue(result.effectiveSampleSize(0) > 2000);
+		// adapted away from the far too wide starting scale
+		assertTrue(((MetropolisHastings) result.samplers[0]).scale(0) < 0.1);
+		assertEquals(0.44, result.samplers[0].acceptanceRate(), 0.15);
+	}
+	
+	@Test public void testSliceSampler()
+	{
+		Mcmc.Result result = new Mcmc().run(new Mcmc.Factory()
+		{
+			public McmcSampler create(int chain)
+			{
+				return new SliceSampler(PREVALENCE, new double[]{0.5 - 0.1 * chain}, 0.5);
+			}
+		}, 4, 1000, 10000, 1000, 2);
+		
+		assertEquals(prevalenceMean(), result.mean(0), 0.002);
+		assertEquals(1.0, result.rHat(0), 0.02);
+		assertTrue(result.effectiveSampleSize(0) > 5000);
+	}
+	
+	/**
+	 * standard bivariate normal with correlation 0.8, conditionals known
+	 */
+	@Test public void testGibbs()
+	{
+		final double rho = 0.8;
+		final McmcSampler.LogDensity joint = new McmcSampler.LogDensity()
+		{
+			public double logDensity(double [] x)
+			{
+				return -(x[0]*x[0] - 2*rho*x[0]*x[1] + x[1]*x[1]) / (2 * (1 - rho*rho));
+			}
+		};
+		final GibbsSampler.FullConditionals conditionals = new GibbsSampler.FullConditionals()
+		{
+			public double sample(int d, double [] x, SplittableRandom random)
+			{
+				return rho * x[1-d] + Math.sqrt(1 - rho*rho) * random.nextGaussian();
+			}
+		};
+		Mcmc.Result result = new Mcmc().run(new Mcmc.Factory()
+		{
+			public McmcSampler create(int chain)
+			{
+				return new GibbsSampler(joint, conditionals, new double[]{chain - 2, 2 - chain});
+			}
+		}, 4, 100, 20000, 100, 3);
+		
+		for (int d = 0; d < 2; d++)
+		{
+			assertEquals(0, result.mean(d), 0.05);
+			assertEquals(1, result.statistics[0].variance(d), 0.1);
+			assertEquals(1.0, result.rHat(d), 0.02);
+		}
+	}
+	
+	/**
+	 * a trace keeps only its most recent samples
+	 */
+	@Test public void testTraceRing()
+	{
+		Trace trace = new Trace(1, 3);
+		for (int i = 0; i < 5; i++)
+		{
+			trace.add(new double[]{i});
+		}
+		assertEquals(5, trace.count());
+		assertEquals(3, trace.size());
+		assertEquals(2, trace.get(0, 0), 0);
+		assertEquals(4, trace.get(2, 0), 0);
+	}
+}
@@ -0,0 +1,109 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import prob.LatencyHistogram;
+import prob.Metrics;
+
+/**
+ * Histogram accuracy, exporting and slow query events. Uses 
+ * {@link Metrics#record(int, long)}, {@link Metrics#begin()} and 
+ * {@link Metrics#end(int, long)} directly, which work whether or not the JVM 
+ * enabled metrics.
+ */
+public class MetricsTestCase
+{
+	/**
+	 * quantiles land within one bucket, 1/16, of the true value
+	 */
+	@Test public void testHistogram()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.quantile(0.5));
+		for (long nanos = 1; nanos <= 100000; nanos++)
+		{
+			histogram.record(nanos);
+		}
+		assertEquals(100000, histogram.count());
+		assertEquals(50000, histogram.quantile(0.5), 50000 / 16.0);
+		assertEquals(99000, histogram.quantile(0.99), 99000 / 16.0);
+		assertTrue(histogram.quantile(0.5) <= 50000);
+		assertEquals(100000, histogram.max(), 100000 / 16.0);
+		assertEquals(1, histogram.quantile(0));
+		
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.max(), Long.MAX_VALUE / 16.0);
+		histogram.reset();
+		assertEquals(0, histogram.count());
+	}
+	
+	@Test public void testExport()
+	{
+		long before = Metrics.calls(Metrics.MARGINALIZATION);
+		Metrics.record(Metrics.MARGINALIZATION, 1000);
+		Metrics.record(Metrics.MARGINALIZATION, 2000);
+		assertEquals(before + 2, Metrics.calls(Metrics.MARGINALIZATION));
+		
+		final List<String> operations = new ArrayList<String>();
+		final long [] calls = new long[1];
+		Metrics.export(new Metrics.Exporter()
+		{
+			public void export(String operation, long n, LatencyHistogram latencies)
+			{
+				operations.add(operation);
+				if (operation.equals("marginalization"))
+				{
+					calls[0] = n;
+				}
+			}
+		});
+		assertEquals(3, operations.size());
+		assertEquals(before + 2, calls[0]);
+	}
+	
+	@Test public void testSlowQueryEvent() throws IOException, InterruptedException
+	{
+		Path path = Files.createTempFile("prob", ".jfr");
+		try
+		{
+			Recording recording = new Recording();
+			recording.enable("prob.SlowQuery");
+			recording.start();
+			Metrics.end(Metrics.POSTERIOR, Metrics.begin());
+			Metrics.record(Metrics.MARGINALIZATION, Metrics.SLOW_NANOS);
+			long outer = Metrics.begin();
+			// an inner operation that threw and never ended
+			Metrics.begin();
+			Thread.sleep(Metrics.SLOW_NANOS / 1000000 + 1);
+			Metrics.end(Metrics.SAMPLING, outer);
+			recording.stop();
+			recording.dump(path);
+			recording.close();
+			
+			List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+			assertEquals(1, events.size());
+			RecordedEvent event = events.get(0);
+			assertEquals("sampling", event.getString("operation"));
+			long latency = event.getLong("latency");
+			assertTrue(latency >= Metrics.SLOW_NANOS);
+			// the event's own clock, within a millisecond of System.nanoTime
+			assertEquals(latency, event.getDuration().toNanos(), 1000000);
+		}
+		finally
+		{
+			Files.deleteIfExists(path);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.NaiveBayes;
+
+/**
+ * StudentTrousersTestCase learned from examples rather than given
+ * 
+ * class: 0 = girl, 1 = boy
+ * feature 0, clothing: 0 = trousers, 1 = skirt
+ */
+public class NaiveBayesTestCase
+{
+	final static int GIRL = 0, BOY = 1;
+	final static int TROUSERS = 0, SKIRT = 1;
+	
+	protected void trainSchool(NaiveBayes classifier, int copies)
+	{
+		for (int i = 0; i < copies; i++)
+		{
+			for (int g = 0; g < 20; g++)
+			{
+				classifier.train(GIRL, new int[]{TROUSERS});
+				classifier.train(GIRL, new int[]{SKIRT});
+			}
+			for (int b = 0; b < 60; b++)
+			{
+				classifier.train(BOY, new int[]{TROUSERS});
+			}
+		}
+	}
+	
+	/**
+	 * p(Girl | Trousers) = 0.25 without smoothing
+	 */
+	@Test public void testGirlGivenTrousers()
+	{
+		NaiveBayes classifier = new NaiveBayes(2, new int[]{2}, 0);
+		trainSchool(classifier, 1);
+		NaiveBayes.Model model = classifier.model();
+		
+		double [] out = new double[2];
+		model.logPosterior(new int[]{TROUSERS}, out);
+		assertEquals(0.25, Math.exp(out[GIRL]), 1.0E-12);
+		assertEquals(BOY, model.classify(new int[]{TROUSERS}));
+		assertEquals(GIRL, model.classify(new int[]{SKIRT}));
+		
+		// nothing observed, the prior
+		model.logPosterior(new int[]{NaiveBayes.MISSING}, out);
+		assertEquals(0.4, Math.exp(out[GIRL]), 1.0E-12);
+	}
+	
+	/**
+	 * add-one smoothing keeps a boy in a skirt possible
+	 */
+	@Test public void testLaplaceSmoothing()
+	{
+		NaiveBayes classifier = new NaiveBayes(2, new int[]{2}, 1);
+		trainSchool(classifier, 1);
+		double [] out = new double[2];
+		classifier.model().logPosterior(new int[]{SKIRT}, out);
+		
+		// p(skirt | boy) = 1/62, p(skirt | girl) = 21/42, p(boy) = 61/102
+		double boy = (61.0/102.0) * (1.0/62.0);
+		double girl = (41.0/102.0) * (21.0/42.0);
+		assertEquals(boy / (boy + girl), Math.exp(out[BOY]), 1.0E-12);
+	}
+	
+	/**
+	 * concurrent training loses no counts
+	 */
+	@Test public void testConcurrentTraining() throws InterruptedException
+	{
+		final NaiveBayes classifier = new NaiveBayes(2, new int[]{2}, 0);
+		Thread [] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			threads[t] = new Thread()
+			{
+				public void run()
+				{
+					trainSchool(classifier, 500);
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertEquals(4 * 500 * 40, classifier.count(GIRL));
+		assertEquals(4 * 500 * 60, classifier.count(BOY));
+		
+		double [] out = new double[2];
+		classifier.model().logPosterior(new int[]{TROUSERS}, out);
+		assertEquals(0.25, Math.exp(out[GIRL]), 1.0E-12);
+	}
+	
+	/**
+	 * many more short lived threads than stripes, colliding threads share 
+	 * counts without losing any
+	 */
+	@Test public void testManyThreads() throws InterruptedException
+	{
+		final NaiveBayes classifier = new NaiveBayes(2, new int[]{2}, 0);
+		for (int round = 0; round < 8; round++)
+		{
+			Thread [] threads = new Thread[16];
+			for (int t = 0; t < threads.length; t++)
+			{
+				threads[t] = new Thread()
+				{
+					public void run()
+					{
+						trainSchool(classifier, 20);
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread thread : threads)
+			{
+				thread.join();
+			}
+		}
+		assertEquals(8 * 16 * 20 * 40, classifier.count(GIRL));
+		assertEquals(8 * 16 * 20 * 60, classifier.count(BOY));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testClassifyWrongLength()
+	{
+		NaiveBayes classifier = new NaiveBayes(2, new int[]{2}, 1);
+		trainSchool(classifier, 1);
+		classifier.model().classify(new int[]{SKIRT, TROUSERS});
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testClassifyValueOutOfRange()
+	{
+		NaiveBayes classifier = new NaiveBayes(2, new int[]{2, 3}, 1);
+		classifier.model().logPosterior(new int[]{2, 0}, new double[2]);
+	}
+	
+	/**
+	 * without smoothing a class never trained on is impossible rather than 
+	 * NaN, and a feature value never seen in any class cannot be explained
+	 */
+	@Test public void testUntrainedClassWithoutSmoothing()
+	{
+		NaiveBayes classifier = new NaiveBayes(2, new int[]{2}, 0);
+		classifier.train(BOY, new int[]{TROUSERS});
+		NaiveBayes.Model model = classifier.model();
+		double [] out = new double[2];
+		model.logPosterior(new int[]{TROUSERS}, out);
+		assertEquals(Double.NEGATIVE_INFINITY, out[GIRL], 0);
+		assertEquals(0.0, out[BOY], 0);
+		assertEquals(BOY, model.classify(new int[]{NaiveBayes.MISSING}));
+		try
+		{
+			model.logPosterior(new int[]{SKIRT}, out);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyFeature()
+	{
+		new NaiveBayes(2, new int[]{2, 0}, 1);
+	}
+}
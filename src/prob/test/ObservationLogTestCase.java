@@ -0,0 +1,123 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import prob.ObservationLog;
+
+/**
+ * Counting the SmartiesAndMandMsTestCase bowl from a log of draws
+ */
+public class ObservationLogTestCase
+{
+	final static String [] BRANDS = {"M&M", "Smartie"};
+	final static String [] COLOURS = {"red", "yellow", "orange", "green"};
+	
+	protected Path path;
+	
+	@Before public void setUp() throws IOException
+	{
+		path = Files.createTempFile("prob", ".csv");
+	}
+	
+	@After public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(path);
+	}
+	
+	/**
+	 * a bowl of 900 sweets, 5 M&M's to 4 Smarties, with the colour mix of 
+	 * each brand, and a few bad lines
+	 */
+	protected void writeBowl(String newline) throws IOException
+	{
+		double [][] mix = {{0.3, 0.4, 0.1, 0.2}, {0.25, 0.2, 0.3, 0.25}};
+		int [] sweets = {500, 400};
+		StringBuilder log = new StringBuilder("draw,brand,colour,weight" + newline);
+		int draw = 0;
+		for (int b = 0; b < 2; b++)
+		{
+			for (int c = 0; c < 4; c++)
+			{
+				for (int k = 0; k < Math.round(sweets[b] * mix[b][c]); k++)
+				{
+					log.append(draw++).append(',').append(BRANDS[b]).append(',')
+						.append(COLOURS[c]).append(",0.9").append(newline);
+				}
+			}
+		}
+		log.append(draw++).append(",Smartie,blue,0.9").append(newline);
+		log.append(draw++).append(",M&M").append(newline);
+		log.append(newline);
+		// last line without a newline
+		log.append(draw++).append(",Smartie,green");
+		Files.write(path, log.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	protected void checkBowl(ObservationLog.Counts counts)
+	{
+		assertArrayEquals(new int[]{2, 4}, counts.dimensions());
+		assertEquals(904, counts.lines());
+		assertEquals(3, counts.rejected());
+		assertEquals(150, counts.count(0, 0));
+		assertEquals(101, counts.count(1, 3));
+		// P(Smartie | green) = 101 / 201 with the extra green Smartie
+		double green = counts.probability(0, 3) + counts.probability(1, 3);
+		assertEquals(101.0 / 201.0, counts.probability(1, 3) / green, 1.0E-15);
+	}
+	
+	@Test public void testRead() throws IOException
+	{
+		writeBowl("\n");
+		ObservationLog log = new ObservationLog(',', new int[]{1, 2}, new String[][]{BRANDS, COLOURS});
+		checkBowl(log.read(path, true));
+	}
+	
+	/**
+	 * chunks of a few bytes split the file at nearly every line
+	 */
+	@Test public void testChunks() throws IOException
+	{
+		writeBowl("\r\n");
+		ObservationLog log = new ObservationLog(',', new int[]{1, 2}, new String[][]{BRANDS, COLOURS});
+		log.setChunkBytes(7);
+		checkBowl(log.read(path, true));
+		log.setChunkBytes(1000);
+		checkBowl(log.read(path, true));
+	}
+	
+	/**
+	 * columns in any order, tab separated
+	 */
+	@Test public void testColumnOrder() throws IOException
+	{
+		Files.write(path, "green\tSmartie\nred\tM&M\ngreen\tSmartie\n".getBytes(StandardCharsets.UTF_8));
+		ObservationLog log = new ObservationLog('\t', new int[]{1, 0}, new String[][]{BRANDS, COLOURS});
+		ObservationLog.Counts counts = log.read(path, false);
+		assertEquals(3, counts.lines());
+		assertEquals(0, counts.rejected());
+		assertEquals(2, counts.count(1, 3));
+		assertEquals(1, counts.count(0, 0));
+	}
+	
+	@Test public void testEmpty() throws IOException
+	{
+		ObservationLog log = new ObservationLog(',', new int[]{0}, new String[][]{BRANDS});
+		assertEquals(0, log.read(path, false).lines());
+		assertEquals(0, log.read(path, true).lines());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testChunkTooLarge()
+	{
+		new ObservationLog(',', new int[]{0}, new String[][]{BRANDS}).setChunkBytes(Integer.MAX_VALUE);
+	}
+}
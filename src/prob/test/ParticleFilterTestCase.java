@@ -0,0 +1,274 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import prob.ParticleFilter;
+
+/**
+ * A biomarker that drifts as a random walk, measured with noise at each
+ * visit. The model is linear and Gaussian, so the Kalman filter gives the
+ * exact posterior and likelihood to check the particles against.
+ *
+ * x_0 ~ N(0, 1), x_t = x_t-1 + N(0, q), y_t = x_t + N(0, r)
+ */
+public class ParticleFilterTestCase
+{
+	static final double Q = 0.1, R = 0.5;
+	
+	static class RandomWalk implements ParticleFilter.Model
+	{
+		public void initialize(double [][] state, int from, int to, SplittableRandom random)
+		{
+			double [] x = state[0];
+			for (int i = from; i < to; i++)
+			{
+				x[i] = random.nextGaussian();
+			}
+		}
+		
+		public void propagate(double [][] state, int from, int to, SplittableRandom random)
+		{
+			double [] x = state[0];
+			double sd = Math.sqrt(Q);
+			for (int i = from; i < to; i++)
+			{
+				x[i] += sd * random.nextGaussian();
+			}
+		}
+		
+		public void logLikelihood(double [][] state, double [] observation, double [] out, int from, int to)
+		{
+			double [] x = state[0];
+			double y = observation[0];
+			for (int i = from; i < to; i++)
+			{
+				double d = y - x[i];
+				out[i] = -0.5 * d * d / R - 0.5 * Math.log(2 * Math.PI * R);
+			}
+		}
+	}
+	
+	static double [] observations(int steps, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+		double x = random.nextGaussian();
+		double [] y = new double[steps];
+		for (int t = 0; t < steps; t++)
+		{
+			x += Math.sqrt(Q) * random.nextGaussian();
+			y[t] = x + Math.sqrt(R) * random.nextGaussian();
+		}
+		return y;
+	}
+	
+	@Test public void testKalman()
+	{
+		double [] y = observations(20, 3);
+		ParticleFilter filter = new ParticleFilter(new RandomWalk(), 1, 200000, 1);
+		double mean = 0, variance = 1, logLikelihood = 0;
+		for (int t = 0; t < y.length; t++)
+		{
+			variance += Q;
+			double innovation = variance + R;
+			logLikelihood += -0.5 * (y[t] - mean) * (y[t] - mean) / innovation - 0.5 * Math.log(2 * Math.PI * innovation);
+			double gain = variance / innovation;
+			mean += gain * (y[t] - mean);
+			variance *= 1 - gain;
+			
+			filter.step(new double[]{y[t]});
+			assertEquals(mean, filter.mean(0), 0.01);
+		}
+		assertEquals(logLikelihood, filter.logLikelihood(), 0.02);
+		assertTrue(filter.resamplings() > 0);
+	}
+	
+	/**
+	 * every chunk has its own random stream, so the worker count does not
+	 * change the answer
+	 */
+	@Test public void testDeterministicAcrossPools()
+	{
+		double [] y = observations(10, 5);
+		ForkJoinPool one = new ForkJoinPool(1);
+		ForkJoinPool four = new ForkJoinPool(4);
+		try
+		{
+			ParticleFilter a = new ParticleFilter(new RandomWalk(), 1, 50000, 9, one);
+			ParticleFilter b = new ParticleFilter(new RandomWalk(), 1, 50000, 9, four);
+			for (double observation : y)
+			{
+				a.step(new double[]{observation});
+				b.step(new double[]{observation});
+			}
+			assertEquals(a.logLikelihood(), b.logLikelihood(), 0);
+			assertArrayEquals(a.state(0), b.state(0), 0);
+		}
+		finally
+		{
+			one.shutdown();
+			four.shutdown();
+		}
+	}
+	
+	@Test public void testThreshold()
+	{
+		double [] y = observations(10, 7);
+		ParticleFilter never = new ParticleFilter(new RandomWalk(), 1, 1000, 2);
+		never.setThreshold(0);
+		ParticleFilter always = new ParticleFilter(new RandomWalk(), 1, 1000, 2);
+		always.setThreshold(1);
+		for (double observation : y)
+		{
+			never.step(new double[]{observation});
+			always.step(new double[]{observation});
+			assertEquals(always.numParticles(), always.effectiveSampleSize(), 1.0E-9);
+		}
+		assertEquals(0, never.resamplings());
+		assertEquals(y.length, always.resamplings());
+		assertTrue(never.effectiveSampleSize() < never.numParticles());
+	}
+	
+	/**
+	 * systematic resampling copies each particle floor or ceil of n w_i times
+	 */
+	@Test public void testSystematic()
+	{
+		double [] weights = {0.5, 2.0, 0.0, 1.25, 0.25};
+		int [] ancestors = new int[40];
+		SplittableRandom random = new SplittableRandom(4);
+		for (int trial = 0; trial < 100; trial++)
+		{
+			ParticleFilter.resample(weights, 4.0, ParticleFilter.SYSTEMATIC, random, ancestors);
+			int [] copies = new int[weights.length];
+			for (int i = 0; i < ancestors.length; i++)
+			{
+				copies[ancestors[i]]++;
+				assertTrue(i == 0 || ancestors[i] >= ancestors[i-1]);
+			}
+			for (int k = 0; k < weights.length; k++)
+			{
+				double expected = ancestors.length * weights[k] / 4.0;
+				assertTrue(copies[k] >= Math.floor(expected) && copies[k] <= Math.ceil(expected));
+			}
+		}
+	}
+	
+	/**
+	 * stratified resampling is unbiased, copies average n w_i
+	 */
+	@Test public void testStratified()
+	{
+		double [] weights = {0.3, 0.1, 0.6};
+		int [] ancestors = new int[10];
+		SplittableRandom random = new SplittableRandom(6);
+		double [] copies = new double[weights.length];
+		int trials = 100000;
+		for (int trial = 0; trial < trials; trial++)
+		{
+			ParticleFilter.resample(weights, 1.0, ParticleFilter.STRATIFIED, random, ancestors);
+			for (int a : ancestors)
+			{
+				copies[a]++;
+			}
+		}
+		for (int k = 0; k < weights.length; k++)
+		{
+			assertEquals(ancestors.length * weights[k], copies[k] / trials, 0.01);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testImpossibleObservation()
+	{
+		ParticleFilter filter = new ParticleFilter(new RandomWalk(), 1, 1000, 1);
+		filter.step(new double[]{Double.POSITIVE_INFINITY});
+	}
+	
+	@Test public void testImpossibleObservationKeepsParticles()
+	{
+		ParticleFilter filter = new ParticleFilter(new RandomWalk(), 1, 40000, 3);
+		filter.setThreshold(0);
+		filter.step(new double[]{0.5});
+		double [] state = filter.state(0).clone();
+		double [] weights = filter.weights().clone();
+		double logLikelihood = filter.logLikelihood();
+		try
+		{
+			filter.step(new double[]{Double.POSITIVE_INFINITY});
+			fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+		assertArrayEquals(state, filter.state(0), 0);
+		assertArrayEquals(weights, filter.weights(), 0);
+		assertEquals(logLikelihood, filter.logLikelihood(), 0);
+	}
+	
+	/**
+	 * Particles that remember their index, weighted so that whole chunks
+	 * are heavy, light or empty
+	 */
+	static class Indexed implements ParticleFilter.Model
+	{
+		public void initialize(double [][] state, int from, int to, SplittableRandom random)
+		{
+			for (int i = from; i < to; i++)
+			{
+				state[0][i] = i;
+			}
+		}
+		
+		public void propagate(double [][] state, int from, int to, SplittableRandom random)
+		{
+		}
+		
+		public void logLikelihood(double [][] state, double [] observation, double [] out, int from, int to)
+		{
+			for (int i = from; i < to; i++)
+			{
+				out[i] = Math.log(weight(i));
+			}
+		}
+		
+		static double weight(int i)
+		{
+			return i >= 20000 && i < 40000 ? 0 : 1 + (i % 7) * (i < 20000 ? 3 : 1);
+		}
+	}
+	
+	/**
+	 * the chunked walk of the filter copies each particle floor or ceil of
+	 * n w_i times, in order, across chunks
+	 */
+	@Test public void testChunkedSystematic()
+	{
+		int n = 70000;
+		ParticleFilter filter = new ParticleFilter(new Indexed(), 1, n, 5);
+		filter.setThreshold(0);
+		filter.step(new double[]{0});
+		double total = 0;
+		for (int i = 0; i < n; i++)
+		{
+			total += Indexed.weight(i);
+		}
+		filter.resample();
+		double [] x = filter.state(0);
+		int [] copies = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			copies[(int) x[i]]++;
+			assertTrue(i == 0 || x[i] >= x[i-1]);
+		}
+		for (int k = 0; k < n; k++)
+		{
+			double expected = n * Indexed.weight(k) / total;
+			assertTrue(copies[k] >= Math.floor(expected - 1e-9) && copies[k] <= Math.ceil(expected + 1e-9));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.PosteriorCache;
+
+/**
+ * Memoized DrugTestingTestCase posteriors
+ */
+public class PosteriorCacheTestCase
+{
+	/**
+	 * P(D|+) computed once, then served from the cache
+	 */
+	@Test public void testHitsAndMisses()
+	{
+		PosteriorCache cache = new PosteriorCache(64);
+		assertEquals(0.3322, cache.posterior(0.005, 0.99, 0.99), 1.0E-4);
+		assertEquals(0.3322, cache.posterior(0.005, 0.99, 0.99), 1.0E-4);
+		assertEquals(0.078, cache.posterior(0.01, 0.80, 1.0-0.096), 0.001);
+		
+		assertEquals(1, cache.hits());
+		assertEquals(2, cache.misses());
+		assertEquals(0, cache.evictions());
+		assertEquals(2, cache.size());
+	}
+	
+	/**
+	 * a single segment of two entries evicts the least recently used
+	 */
+	@Test public void testLeastRecentlyUsedEvicted()
+	{
+		PosteriorCache cache = new PosteriorCache(2, 1, PosteriorCache.POSITIVE_PREDICTIVE_VALUE);
+		cache.posterior(0.1, 0.9, 0.9);
+		cache.posterior(0.2, 0.9, 0.9);
+		// touch the first, so the second is oldest
+		cache.posterior(0.1, 0.9, 0.9);
+		cache.posterior(0.3, 0.9, 0.9);
+		assertEquals(1, cache.evictions());
+		assertEquals(2, cache.size());
+		
+		long misses = cache.misses();
+		cache.posterior(0.1, 0.9, 0.9);
+		assertEquals(misses, cache.misses());
+		cache.posterior(0.2, 0.9, 0.9);
+		assertEquals(misses+1, cache.misses());
+	}
+	
+	/**
+	 * many threads, many keys, a small cache: every answer still correct
+	 */
+	@Test public void testConcurrent() throws InterruptedException
+	{
+		final PosteriorCache cache = new PosteriorCache(100);
+		final boolean [] failed = new boolean[1];
+		Thread [] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int offset = t;
+			threads[t] = new Thread()
+			{
+				public void run()
+				{
+					for (int i = 0; i < 50000; i++)
+					{
+						double prior = ((i * 7 + offset) % 300) / 1000.0 + 0.001;
+						double expected = Bayes.posterior(prior, 0.99, 1.0-0.99);
+						if (cache.posterior(prior, 0.99, 0.99) != expected)
+						{
+							failed[0] = true;
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertFalse(failed[0]);
+		assertEquals(200000, cache.hits() + cache.misses());
+		assertTrue(cache.evictions() > 0);
+		assertTrue(cache.size() <= 112);
+		
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,185 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.Rational;
+
+/**
+ * Exact fractions, checked on the worked examples the double test cases 
+ * compare with a delta of 0
+ */
+public class RationalTestCase
+{
+	/**
+	 * p(Girl | Trousers) = p(Trousers | Girl) p(Girl) / p(Trousers) = 1/4
+	 */
+	@Test public void testStudentGirlWearingTrousers()
+	{
+		Rational trousersGivenGirl = Bayes.exactProbability(50, 100);
+		Rational girl = Bayes.exactProbability(40, 100);
+		Rational trousersGivenBoy = Bayes.exactProbability(100, 100);
+		
+		Rational trousers = trousersGivenGirl.multiply(girl)
+				.add(trousersGivenBoy.multiply(girl.complement()));
+		assertEquals(Rational.valueOf(4, 5), trousers);
+		assertEquals(Rational.valueOf(1, 4), 
+				Bayes.pAGivenB(trousersGivenGirl.multiply(girl), trousers));
+		assertEquals(Rational.valueOf(1, 4), 
+				Bayes.posterior(girl, trousersGivenGirl, trousersGivenBoy));
+	}
+	
+	/**
+	 * p(Ar | B) = 1/3 and p(Ag | B) = 2/3 when the host opens blue
+	 */
+	@Test public void testMontyHall()
+	{
+		Rational third = Rational.valueOf(1, 3);
+		Rational half = Rational.valueOf(1, 2);
+		Rational red = Bayes.pAGivenB(half.multiply(third), half);
+		Rational green = Bayes.pAGivenB(Rational.ONE.multiply(third), half);
+		assertEquals(third, red);
+		assertEquals(Rational.valueOf(2, 3), green);
+		assertEquals(Rational.ONE, red.add(green));
+		assertEquals(1.0/3.0, red.doubleValue(), 0);
+	}
+	
+	@Test public void testLowestTerms()
+	{
+		assertEquals("-2/5", Rational.valueOf(4, -10).toString());
+		assertEquals("0/1", Rational.valueOf(0, -7).toString());
+		assertEquals(Rational.valueOf(3, 4), Rational.valueOf(1, 4).add(Rational.valueOf(1, 2)));
+		assertEquals(Rational.valueOf(1, 12), Rational.valueOf(1, 4).subtract(Rational.valueOf(1, 6)));
+		assertEquals(Rational.valueOf(3, 2), Rational.valueOf(3, 4).divide(Rational.valueOf(1, 2)));
+		assertEquals(Rational.valueOf(-4, 3), Rational.valueOf(-3, 4).reciprocal());
+		assertEquals(Rational.valueOf(7, 4), Rational.valueOf(-3, 4).complement());
+		assertTrue(Rational.valueOf(1, 3).compareTo(Rational.valueOf(1, 2)) < 0);
+		assertTrue(Rational.valueOf(-1, 3).compareTo(Rational.valueOf(-1, 2)) > 0);
+	}
+	
+	/**
+	 * the product of many small chances overflows a long and comes back 
+	 * once it cancels
+	 */
+	@Test public void testPromotion()
+	{
+		Rational p = Rational.ONE;
+		BigInteger denominator = BigInteger.ONE;
+		for (int i = 0; i < 40; i++)
+		{
+			p = p.multiply(Rational.valueOf(1, 1000 + 2*i + 1));
+			denominator = denominator.multiply(BigInteger.valueOf(1000 + 2*i + 1));
+		}
+		assertTrue(p.isBig());
+		assertEquals(BigInteger.ONE, p.numerator());
+		assertEquals(denominator, p.denominator());
+		
+		Rational q = p;
+		for (int i = 0; i < 40; i++)
+		{
+			q = q.multiply(Rational.valueOf(1000 + 2*i + 1, 2));
+		}
+		assertFalse(q.isBig());
+		assertEquals(Rational.valueOf(1, 1L << 40), q);
+		
+		// overflowing sum
+		Rational big = Rational.valueOf(Long.MAX_VALUE, 3);
+		Rational sum = big.add(big).add(big);
+		assertEquals(Rational.valueOf(Long.MAX_VALUE), sum);
+		assertTrue(big.add(big).add(big).add(big).isBig());
+		assertEquals(Rational.valueOf(Long.MAX_VALUE, 3).doubleValue(), Long.MAX_VALUE / 3.0, 1);
+		assertTrue(p.compareTo(Rational.ZERO) > 0);
+		assertEquals(0, p.compareTo(Rational.valueOf(BigInteger.ONE, denominator)));
+	}
+	
+	/**
+	 * exact posterior agrees with the double form to rounding
+	 */
+	@Test public void testPosteriorMatchesDouble()
+	{
+		for (int prevalence = 1; prevalence < 1000; prevalence += 37)
+		{
+			Rational exact = Bayes.posterior(Rational.valueOf(prevalence, 10000), 
+					Rational.valueOf(99, 100), Rational.valueOf(1, 100));
+			double approximate = Bayes.posterior(prevalence / 10000.0, 0.99, 0.01);
+			assertEquals(approximate, exact.doubleValue(), 1e-15);
+		}
+	}
+	
+	/**
+	 * the one fraction form agrees with multiply, add and divide, also once 
+	 * its products overflow a long
+	 */
+	@Test public void testPosteriorMatchesStepByStep()
+	{
+		long [][] cases = {{1, 1000, 99, 100, 1, 100}, {2, 5, 1, 2, 3, 4}, {0, 1, 1, 2, 1, 3}, 
+				{1, 3, 1, 1, 0, 1}, {1, Long.MAX_VALUE - 1, 1, Long.MAX_VALUE - 2, 1, 1L << 40}};
+		for (long [] c : cases)
+		{
+			Rational prior = Rational.valueOf(c[0], c[1]);
+			Rational likelihood = Rational.valueOf(c[2], c[3]);
+			Rational falsePositive = Rational.valueOf(c[4], c[5]);
+			Rational truePositive = prior.multiply(likelihood);
+			Rational expected = truePositive.divide(
+					truePositive.add(prior.complement().multiply(falsePositive)));
+			assertEquals(expected, Bayes.posterior(prior, likelihood, falsePositive));
+		}
+	}
+	
+	/**
+	 * a test that is never positive, p(B) = 0
+	 */
+	@Test(expected = ArithmeticException.class)
+	public void testPosteriorOfImpossibleEvidence()
+	{
+		Bayes.posterior(Rational.valueOf(1, 2), Rational.ZERO, Rational.ZERO);
+	}
+	
+	/**
+	 * doubleValue rounds once to the nearest double, including just past a 
+	 * tie where rounding to 34 decimal digits first would land on the tie
+	 */
+	@Test public void testDoubleValueRoundsOnce()
+	{
+		// 1 + 2^-53 + 2^-200, just above halfway between 1 and the next double
+		BigInteger two200 = BigInteger.ONE.shiftLeft(200);
+		Rational pastTie = Rational.valueOf(two200.add(BigInteger.ONE.shiftLeft(147)).add(BigInteger.ONE), two200);
+		assertEquals(Math.nextUp(1.0), pastTie.doubleValue(), 0);
+		// exactly halfway rounds to even
+		Rational tie = Rational.valueOf(two200.add(BigInteger.ONE.shiftLeft(147)), two200);
+		assertEquals(1.0, tie.doubleValue(), 0);
+		
+		SplittableRandom random = new SplittableRandom(3);
+		for (int trial = 0; trial < 2000; trial++)
+		{
+			BigInteger numerator = new BigInteger(1 + random.nextInt(120), new Random(random.nextLong()));
+			BigInteger denominator = new BigInteger(1 + random.nextInt(1200), new Random(random.nextLong()))
+					.add(BigInteger.ONE);
+			assertNearest(numerator, denominator, Rational.valueOf(numerator, denominator).doubleValue());
+		}
+	}
+	
+	/**
+	 * n / d lies between the midpoints to the neighbouring doubles
+	 */
+	protected static void assertNearest(BigInteger n, BigInteger d, double value)
+	{
+		BigDecimal exact = new BigDecimal(n);
+		BigDecimal lower = new BigDecimal(value).add(new BigDecimal(Math.nextDown(value))).divide(BigDecimal.valueOf(2));
+		BigDecimal upper = new BigDecimal(value).add(new BigDecimal(Math.nextUp(value))).divide(BigDecimal.valueOf(2));
+		BigDecimal scaled = new BigDecimal(d);
+		if (value == 0)
+		{
+			lower = BigDecimal.ZERO;
+		}
+		assertTrue(n + "/" + d, exact.compareTo(lower.multiply(scaled)) >= 0);
+		assertTrue(n + "/" + d, exact.compareTo(upper.multiply(scaled)) <= 0);
+	}
+}
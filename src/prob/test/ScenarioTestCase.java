@@ -0,0 +1,149 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.BayesianNetwork;
+import prob.Scenario;
+
+/**
+ * The worked examples written as scenarios, compiled and interpreted
+ */
+public class ScenarioTestCase
+{
+	final static int MANDM = 0, SMARTIE = 1;
+	final static int RED = 0, YELLOW = 1, ORANGE = 2, GREEN = 3;
+	
+	protected Scenario smarties()
+	{
+		Scenario scenario = new Scenario("M&M", "Smartie");
+		scenario.prior(Scenario.constant(5.0/9.0), Scenario.constant(4.0/9.0));
+		int colour = scenario.evidence("colour", "red", "yellow", "orange", "green");
+		scenario.likelihood(colour, MANDM, Scenario.constant(0.3), Scenario.constant(0.4), 
+				Scenario.constant(0.1), Scenario.constant(0.2));
+		scenario.likelihood(colour, SMARTIE, Scenario.constant(0.25), Scenario.constant(0.2), 
+				Scenario.constant(0.3), Scenario.constant(0.25));
+		return scenario;
+	}
+	
+	/**
+	 * P(Smartie | Green) = 0.5, P(Green) = 0.222
+	 */
+	@Test public void testSmartieIfGreen()
+	{
+		Scenario scenario = smarties();
+		double [] posterior = new double[2];
+		
+		double green = scenario.posterior(new double[0], new int[]{GREEN}, posterior);
+		assertEquals(0.222, green, 1.0E-3);
+		assertEquals(0.5, posterior[SMARTIE], 1.0E-15);
+		
+		Scenario.Evaluator evaluator = scenario.compile(new int[]{GREEN});
+		assertTrue(evaluator.isConstant());
+		assertEquals(green, evaluator.evaluate(null, posterior), 1.0E-15);
+		assertEquals(0.5, posterior[SMARTIE], 1.0E-15);
+		
+		// nothing observed leaves the prior
+		assertEquals(1.0, scenario.compile(new int[]{BayesianNetwork.UNOBSERVED}).evaluate(null, posterior), 1.0E-15);
+		assertEquals(4.0/9.0, posterior[SMARTIE], 1.0E-15);
+	}
+	
+	/**
+	 * P(Girl | Trousers) = 0.25
+	 */
+	@Test public void testStudentTrousers()
+	{
+		Scenario scenario = new Scenario("girl", "boy");
+		scenario.prior(Scenario.constant(0.4), Scenario.constant(0.6));
+		int trousers = scenario.evidence("trousers", "skirt", "trousers");
+		scenario.likelihood(trousers, 0, Scenario.constant(0.5), Scenario.constant(0.5));
+		scenario.likelihood(trousers, 1, Scenario.constant(0), Scenario.constant(1));
+		
+		double [] posterior = new double[2];
+		assertEquals(0.8, scenario.compile(new int[]{1}).evaluate(null, posterior), 1.0E-15);
+		assertEquals(0.25, posterior[0], 1.0E-15);
+		
+		// boys never wear skirts, the hypothesis folds away
+		assertEquals(0.2, scenario.compile(new int[]{0}).evaluate(null, posterior), 1.0E-15);
+		assertEquals(1.0, posterior[0], 0);
+		assertEquals(0.0, posterior[1], 0);
+	}
+	
+	/**
+	 * P(D | +) with the prevalence as a parameter agrees with 
+	 * {@link Bayes#posterior(double, double, double)}
+	 */
+	@Test public void testDrugTestingParameters()
+	{
+		Scenario scenario = new Scenario("user", "non-user");
+		Scenario.Term prevalence = scenario.parameter("prevalence");
+		Scenario.Term specificity = scenario.parameter("specificity");
+		scenario.prior(prevalence, prevalence.complement());
+		int test = scenario.evidence("test", "-", "+");
+		scenario.likelihood(test, 0, Scenario.constant(0.01), Scenario.constant(0.99));
+		scenario.likelihood(test, 1, specificity, specificity.complement());
+		assertEquals(2, scenario.numParameters());
+		
+		Scenario.Evaluator evaluator = scenario.compile(new int[]{1});
+		assertFalse(evaluator.isConstant());
+		double [] compiled = new double[2];
+		double [] interpreted = new double[2];
+		for (int i = 1; i < 100; i++)
+		{
+			double [] parameters = {i / 1000.0, 0.99};
+			double positive = evaluator.evaluate(parameters, compiled);
+			assertEquals(scenario.posterior(parameters, new int[]{1}, interpreted), positive, 1.0E-15);
+			assertEquals(interpreted[0], compiled[0], 1.0E-15);
+			assertEquals(Bayes.posterior(i / 1000.0, 0.99, 0.01), compiled[0], 1.0E-15);
+		}
+		evaluator.evaluate(new double[]{0.005, 0.99}, compiled);
+		assertEquals(0.3322, compiled[0], 1.0E-4);
+	}
+	
+	/**
+	 * three hypotheses, two pieces of evidence and several parameters per 
+	 * hypothesis, compiled against interpreted
+	 */
+	@Test public void testThreeHypotheses()
+	{
+		Scenario scenario = new Scenario("healthy", "carrier", "sick");
+		Scenario.Term mild = scenario.parameter("mild");
+		Scenario.Term sensitivity = scenario.parameter("sensitivity");
+		scenario.prior(Scenario.constant(0.9), Scenario.constant(0.08), Scenario.constant(0.02));
+		int screen = scenario.evidence("screen", "-", "+");
+		int symptom = scenario.evidence("symptom", "no", "yes");
+		scenario.likelihood(screen, 0, Scenario.constant(0.95), Scenario.constant(0.05));
+		scenario.likelihood(screen, 1, sensitivity.complement(), sensitivity);
+		scenario.likelihood(screen, 2, sensitivity.complement(), sensitivity);
+		scenario.likelihood(symptom, 0, Scenario.constant(0.99), Scenario.constant(0.01));
+		scenario.likelihood(symptom, 1, Scenario.constant(0.9), Scenario.constant(0.1));
+		scenario.likelihood(symptom, 2, mild, mild.complement());
+		
+		double [] compiled = new double[3];
+		double [] interpreted = new double[3];
+		int [][] observations = {{1, 1}, {0, 1}, {1, BayesianNetwork.UNOBSERVED}, {0, 0}};
+		for (int [] observed : observations)
+		{
+			Scenario.Evaluator evaluator = scenario.compile(observed);
+			assertFalse(evaluator.isConstant());
+			for (int i = 1; i < 20; i++)
+			{
+				double [] parameters = {i / 40.0, 1 - i / 100.0};
+				double evidence = evaluator.evaluate(parameters, compiled);
+				assertEquals(scenario.posterior(parameters, observed, interpreted), evidence, 1.0E-15);
+				assertArrayEquals(interpreted, compiled, 1.0E-15);
+			}
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class) public void testMissingLikelihood()
+	{
+		Scenario scenario = new Scenario("a", "b");
+		scenario.prior(Scenario.constant(0.5), Scenario.constant(0.5));
+		int e = scenario.evidence("e", "no", "yes");
+		scenario.likelihood(e, 0, Scenario.constant(0.5), Scenario.constant(0.5));
+		scenario.compile(new int[]{1});
+	}
+}
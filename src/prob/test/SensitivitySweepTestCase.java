@@ -0,0 +1,91 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.SensitivitySweep;
+import prob.TableFile;
+
+/**
+ * PPV / NPV surfaces around DrugTestingTestCase's 99% sensitive, 99% specific 
+ * test at 0.5% prevalence
+ */
+public class SensitivitySweepTestCase
+{
+	protected Path path;
+	
+	@Before public void setUp() throws IOException
+	{
+		path = Files.createTempFile("prob", ".sweep");
+	}
+	
+	@After public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(path);
+	}
+	
+	/**
+	 * enough points to span several leaf tasks
+	 */
+	@Test public void testSweep() throws IOException
+	{
+		double [] prevalences = SensitivitySweep.grid(0.001, 0.1, 100);
+		double [] sensitivities = SensitivitySweep.grid(0.5, 0.999, 40);
+		double [] specificities = SensitivitySweep.grid(0.5, 0.999, 50);
+		new SensitivitySweep().write(path, prevalences, sensitivities, specificities);
+		
+		TableFile.Mapped table = TableFile.open(path);
+		assertEquals(TableFile.PROBABILITIES, table.type());
+		assertArrayEquals(new int[]{100, 40, 50, 2}, table.dimensions());
+		for (int p = 0; p < 100; p += 7)
+		{
+			for (int s = 0; s < 40; s += 3)
+			{
+				for (int c = 0; c < 50; c += 11)
+				{
+					double ppv = Bayes.posterior(prevalences[p], sensitivities[s], 1.0-specificities[c]);
+					double npv = Bayes.posterior(1.0-prevalences[p], specificities[c], 1.0-sensitivities[s]);
+					assertEquals(ppv, table.getDouble(table.index(p, s, c, SensitivitySweep.PPV)), 1.0E-15);
+					assertEquals(npv, table.getDouble(table.index(p, s, c, SensitivitySweep.NPV)), 1.0E-15);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * P(D | +) = 0.3322 at 0.5%, so 1/3 needs a little more prevalence
+	 */
+	@Test public void testThresholds()
+	{
+		double prevalence = SensitivitySweep.ppvThreshold(0.5, 0.99, 0.99);
+		assertEquals(0.01, prevalence, 1.0E-15);
+		assertEquals(0.5, Bayes.posterior(prevalence, 0.99, 0.01), 1.0E-12);
+		assertTrue(SensitivitySweep.ppvThreshold(0.3322, 0.99, 0.99) < 0.005);
+		assertTrue(SensitivitySweep.ppvThreshold(0.3323, 0.99, 0.99) > 0.005);
+		
+		prevalence = SensitivitySweep.npvThreshold(0.999, 0.99, 0.99);
+		assertEquals(0.999, Bayes.posterior(1.0-prevalence, 0.99, 0.01), 1.0E-12);
+		
+		double [] sensitivities = {0.9, 0.99};
+		double [] specificities = {0.95, 0.99, 0.999};
+		double [] contour = SensitivitySweep.contour(SensitivitySweep.PPV, 0.9, sensitivities, specificities);
+		assertEquals(6, contour.length);
+		for (int s = 0; s < 2; s++)
+		{
+			for (int c = 0; c < 3; c++)
+			{
+				assertEquals(0.9, Bayes.posterior(contour[3*s + c], sensitivities[s], 1.0-specificities[c]), 1.0E-12);
+			}
+		}
+		// better specificity, rarer conditions reach the target
+		assertTrue(contour[2] < contour[1] && contour[1] < contour[0]);
+	}
+}
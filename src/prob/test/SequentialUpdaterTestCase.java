@@ -0,0 +1,68 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.SequentialUpdater;
+
+/**
+ * Drug test results arriving one at a time, see DrugTestingTestCase
+ * 
+ * 0.5% of employees are users, the test is 99% sensitive and 99% specific
+ */
+public class SequentialUpdaterTestCase
+{
+	/**
+	 * P(D|+) after a single positive
+	 */
+	@Test public void testSinglePositive()
+	{
+		SequentialUpdater updater = new SequentialUpdater(3, 0.005);
+		int drugTest = updater.addTest(0.99, 0.99);
+		updater.observe(1, drugTest, true);
+		
+		assertEquals(0.005, updater.posterior(0), 1.0E-15);
+		assertEquals(0.3322, updater.posterior(1), 1.0E-4);
+		assertEquals(0.005, updater.posterior(2), 1.0E-15);
+	}
+	
+	/**
+	 * a second positive uses the first posterior as its prior
+	 */
+	@Test public void testRepeatedPositive()
+	{
+		SequentialUpdater updater = new SequentialUpdater(1, 0.005);
+		int drugTest = updater.addTest(0.99, 0.99);
+		updater.observe(0, drugTest, true);
+		updater.observe(0, drugTest, true);
+		
+		double once = Bayes.posterior(0.005, 0.99, 0.01);
+		double twice = Bayes.posterior(once, 0.99, 0.01);
+		assertEquals(twice, updater.posterior(0), 1.0E-12);
+	}
+	
+	/**
+	 * batch of events against two different tests, then a reset
+	 */
+	@Test public void testBatchAndReset()
+	{
+		SequentialUpdater updater = new SequentialUpdater(2, 0.01);
+		int mammogram = updater.addTest(0.80, 1.0-0.096);
+		int drugTest = updater.addTest(0.99, 0.99);
+		
+		int [] entities = {0, 1, 1};
+		int [] tests = {mammogram, drugTest, drugTest};
+		boolean [] positives = {true, true, false};
+		updater.observe(entities, tests, positives, 0, 3);
+		
+		double [] out = new double[2];
+		updater.posteriors(0, out, 0, 2);
+		assertEquals(0.078, out[0], 0.001);
+		assertEquals(0.01, out[1], 1.0E-12);
+		
+		updater.reset(0);
+		assertEquals(0.01, updater.posterior(0), 1.0E-15);
+	}
+}
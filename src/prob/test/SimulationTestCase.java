@@ -0,0 +1,74 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.Estimate;
+import prob.Simulation;
+
+/**
+ * Simulated answers must bracket the analytic answers in the other test cases
+ */
+public class SimulationTestCase
+{
+	/**
+	 * MontyHallTestCase: switching wins 2/3 of the time
+	 */
+	@Test public void testMontyHallSwitch()
+	{
+		Estimate estimate = new Simulation().run(Simulation.montyHall(3, true), 2000000, 1);
+		assertEquals(2000000, estimate.trials());
+		assertTrue(estimate.toString(), estimate.contains(2.0/3.0, 4));
+		assertEquals(2.0/3.0, estimate.mean(), 0.002);
+	}
+	
+	/**
+	 * MontyHallTestCase: staying wins 1/3 of the time
+	 */
+	@Test public void testMontyHallStick()
+	{
+		Estimate estimate = new Simulation().run(Simulation.montyHall(3, false), 2000000, 2);
+		assertTrue(estimate.toString(), estimate.contains(1.0/3.0, 4));
+	}
+	
+	/**
+	 * ten doors, switching wins 9/10
+	 */
+	@Test public void testMontyHallTenDoors()
+	{
+		Estimate estimate = new Simulation().run(Simulation.montyHall(10, true), 1000000, 3);
+		assertTrue(estimate.toString(), estimate.contains(0.9, 4));
+	}
+	
+	/**
+	 * DrugTestingTestCase: P(D|+) = 0.3322, by rejecting negative tests
+	 */
+	@Test public void testDrugScreening()
+	{
+		double expected = Bayes.posterior(0.005, 0.99, 0.01);
+		Estimate estimate = new Simulation().run(Simulation.screening(0.005, 0.99, 0.01), 4000000, 4);
+		// only ~1.5% of trials are positive
+		assertTrue(estimate.trials() < 100000);
+		assertTrue(estimate.toString(), estimate.contains(expected, 4));
+	}
+	
+	/**
+	 * same seed, same answer
+	 */
+	@Test public void testReproducible()
+	{
+		Simulation simulation = new Simulation();
+		Estimate a = simulation.run(Simulation.montyHall(3, true), 500000, 42);
+		Estimate b = simulation.run(Simulation.montyHall(3, true), 500000, 42);
+		assertEquals(a.hits(), b.hits());
+	}
+	
+	@Test public void testWilsonInterval()
+	{
+		Estimate estimate = new Estimate(0, 100);
+		assertEquals(0, estimate.lower(Estimate.Z95), 1.0E-15);
+		assertEquals(0.037, estimate.upper(Estimate.Z95), 0.001);
+	}
+}
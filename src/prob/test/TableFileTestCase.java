@@ -0,0 +1,133 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.JointDistribution;
+import prob.TableFile;
+
+/**
+ * Count and probability tables written out and mapped back in
+ */
+public class TableFileTestCase
+{
+	protected Path path;
+	
+	@Before public void setUp() throws IOException
+	{
+		path = Files.createTempFile("prob", ".table");
+	}
+	
+	@After public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(path);
+	}
+	
+	/**
+	 * the counts behind StudentTrousersTestCase, girls/boys x trousers/skirt
+	 */
+	@Test public void testCounts() throws IOException
+	{
+		long [] counts = {20, 20, 60, 0};
+		TableFile.writeCounts(path, new int[]{2, 2}, counts);
+		
+		TableFile.Mapped table = TableFile.open(path);
+		assertEquals(TableFile.COUNTS, table.type());
+		assertEquals(4, table.size());
+		assertEquals(60, table.getLong(table.index(1, 0)));
+		assertEquals(Bayes.observationToProbability(20, 20), 
+				table.observationToProbability(table.index(0, 0), table.index(0, 1)), 0);
+	}
+	
+	/**
+	 * the Smarties and M&M's bowl, cell for cell
+	 */
+	@Test public void testJointDistribution() throws IOException
+	{
+		JointDistribution bowl = JointDistribution.fromConditional(
+				new double[]{5.0/9.0, 4.0/9.0}, 
+				new double[][]{{0.3, 0.4, 0.1, 0.2}, {0.25, 0.2, 0.3, 0.25}});
+		TableFile.write(path, bowl);
+		
+		TableFile.Mapped table = TableFile.open(path);
+		assertEquals(TableFile.PROBABILITIES, table.type());
+		assertArrayEquals(new int[]{2, 4}, table.dimensions());
+		for (int b = 0; b < 2; b++)
+		{
+			for (int c = 0; c < 4; c++)
+			{
+				assertEquals(bowl.get(b, c), table.getDouble(table.index(b, c)), 0);
+			}
+		}
+	}
+	
+	@Test(expected=IOException.class)
+	public void testNotATable() throws IOException
+	{
+		Files.write(path, "red,yellow,orange,green\n".getBytes("UTF-8"));
+		TableFile.open(path);
+	}
+	
+	@Test(expected=IOException.class)
+	public void testTruncated() throws IOException
+	{
+		TableFile.writeCounts(path, new int[]{3}, new long[]{1, 2, 3});
+		byte [] bytes = Files.readAllBytes(path);
+		byte [] truncated = new byte[bytes.length - 8];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		Files.write(path, truncated);
+		TableFile.open(path);
+	}
+	
+	/**
+	 * a header with the given rank and dimensions and room for four cells
+	 */
+	protected void writeHeader(int rank, int... dimensions) throws IOException
+	{
+		int headerBytes = (16 + 4*dimensions.length + 7) & ~7;
+		ByteBuffer file = ByteBuffer.allocate(headerBytes + 4*8).order(ByteOrder.LITTLE_ENDIAN);
+		file.putInt(TableFile.MAGIC).putInt(TableFile.VERSION).putInt(TableFile.COUNTS).putInt(rank);
+		for (int d : dimensions)
+		{
+			file.putInt(d);
+		}
+		Files.write(path, file.array());
+	}
+	
+	/**
+	 * 4*rank overflows an int
+	 */
+	@Test(expected=IOException.class)
+	public void testHugeRank() throws IOException
+	{
+		writeHeader(Integer.MAX_VALUE);
+		TableFile.open(path);
+	}
+	
+	@Test(expected=IOException.class)
+	public void testZeroRank() throws IOException
+	{
+		writeHeader(0);
+		TableFile.open(path);
+	}
+	
+	/**
+	 * -1 x -4 gives the four cells the file holds
+	 */
+	@Test(expected=IOException.class)
+	public void testNegativeDimensions() throws IOException
+	{
+		writeHeader(2, -1, -4);
+		TableFile.open(path);
+	}
+}
@@ -0,0 +1,125 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.TestPanel;
+
+/**
+ * Retesting DiseaseTestCase's positives: prevalence 1 in 1,000,000, a 99% 
+ * accurate screen followed by a 95% sensitive, 99.9% specific confirmation
+ */
+public class TestPanelTestCase
+{
+	final static byte P = TestPanel.POSITIVE, N = TestPanel.NEGATIVE, X = TestPanel.NOT_DONE;
+	
+	protected TestPanel panel()
+	{
+		return new TestPanel(new double[]{0.99, 0.95}, new double[]{0.99, 0.999});
+	}
+	
+	/**
+	 * the screen alone, the confirmation skipped
+	 */
+	@Test public void testScreenOnly()
+	{
+		double expected = Bayes.posterior(1.0E-6, 0.99, 0.01);
+		assertEquals(expected, panel().posterior(1.0E-6, new byte[]{P, X}), 1.0E-15);
+	}
+	
+	/**
+	 * both positive, the same as chaining Bayes' rule
+	 */
+	@Test public void testBothPositive()
+	{
+		double screened = Bayes.posterior(1.0E-6, 0.99, 0.01);
+		double confirmed = Bayes.posterior(screened, 0.95, 0.001);
+		assertEquals(confirmed, panel().posterior(1.0E-6, new byte[]{P, P}), 1.0E-12);
+	}
+	
+	/**
+	 * column batches give the same answers as one subject at a time
+	 */
+	@Test public void testBatchMatchesSingle()
+	{
+		TestPanel panel = panel();
+		byte [][] outcomes = 
+		{
+			{X, P, P, N, P, X},
+			{X, X, P, P, N, N}
+		};
+		double [] out = new double[4];
+		panel.posteriors(1.0E-6, outcomes, 1, out, 0, 4);
+		for (int s = 0; s < 4; s++)
+		{
+			byte [] subject = {outcomes[0][s+1], outcomes[1][s+1]};
+			assertEquals(panel.posterior(1.0E-6, subject), out[s], 1.0E-15);
+		}
+		
+		// priors are indexed like the outcomes, from the same offset, and 
+		// out from its own
+		double [] priors = {0.9, 0.005, 0.01, 0.02, 0.5, 0.9};
+		double [] shifted = new double[6];
+		panel.posteriors(priors, outcomes, 1, shifted, 2, 4);
+		assertEquals(0, shifted[1], 0);
+		assertEquals(Bayes.posterior(0.005, 0.99, 0.01), shifted[2], 1.0E-15);
+		assertEquals(panel.posterior(0.5, new byte[]{P, N}), shifted[5], 1.0E-15);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidOutcome()
+	{
+		panel().posterior(1.0E-6, new byte[]{P, 2});
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidOutcomeInBatch()
+	{
+		byte [][] outcomes = {{P, N, P}, {N, -2, X}};
+		panel().posteriors(0.01, outcomes, 0, new double[3], 0, 3);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutputTooShort()
+	{
+		byte [][] outcomes = {{P, N, P}, {N, N, X}};
+		panel().posteriors(0.01, outcomes, 0, new double[3], 1, 3);
+	}
+	
+	/**
+	 * more subjects than fit in one block
+	 */
+	@Test public void testManyBlocks()
+	{
+		TestPanel panel = panel();
+		int subjects = 5000;
+		byte [][] outcomes = new byte[2][subjects];
+		for (int s = 0; s < subjects; s++)
+		{
+			outcomes[0][s] = (byte) (s % 3 - 1);
+			outcomes[1][s] = (byte) ((s / 3) % 3 - 1);
+		}
+		double [] out = new double[subjects];
+		panel.posteriors(0.01, outcomes, 0, out, 0, subjects);
+		for (int s = 0; s < subjects; s++)
+		{
+			assertEquals(panel.posterior(0.01, new byte[]{outcomes[0][s], outcomes[1][s]}), out[s], 1.0E-15);
+		}
+	}
+	
+	/**
+	 * a perfectly correlated repeat of the same test adds nothing
+	 */
+	@Test public void testCorrelationCorrection()
+	{
+		TestPanel repeated = new TestPanel(new double[]{0.99, 0.99}, new double[]{0.99, 0.99}, 1.0);
+		double once = Bayes.posterior(0.005, 0.99, 0.01);
+		assertEquals(once, repeated.posterior(0.005, new byte[]{P, P}), 1.0E-15);
+		
+		double [] out = new double[1];
+		repeated.posteriors(0.005, new byte[][]{{P}, {P}}, 0, out, 0, 1);
+		assertEquals(once, out[0], 1.0E-15);
+	}
+}
@@ -0,0 +1,241 @@
+package prob.test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import prob.Bayes;
+import prob.BayesianNetwork;
+import prob.Factor;
+import prob.VariableElimination;
+
+/**
+ * DiseaseTestCase as a network, disease -> two tests -> symptom, checked 
+ * against Bayes' rule and against brute force enumeration
+ */
+public class VariableEliminationTestCase
+{
+	final static int NO = 0, YES = 1;
+	
+	protected BayesianNetwork diseaseNetwork()
+	{
+		BayesianNetwork network = new BayesianNetwork();
+		int disease = network.addVariable("disease", 2);
+		int test1 = network.addVariable("test1", 2, disease);
+		int test2 = network.addVariable("test2", 2, disease);
+		network.addVariable("symptom", 2, disease, test1);
+		network.setCpt(disease, 1-1.0E-6, 1.0E-6);
+		// rows: no disease, disease
+		network.setCpt(test1, 0.99, 0.01, 0.01, 0.99);
+		network.setCpt(test2, 0.95, 0.05, 0.10, 0.90);
+		// rows: (disease, test1)
+		network.setCpt(network.variable("symptom"), 0.9, 0.1, 0.8, 0.2, 0.3, 0.7, 0.2, 0.8);
+		return network;
+	}
+	
+	/**
+	 * p(Disease | Test is positive), as in DiseaseTestCase
+	 */
+	@Test public void testSinglePositive()
+	{
+		BayesianNetwork network = diseaseNetwork();
+		VariableElimination ve = new VariableElimination(network);
+		int [] evidence = network.noEvidence();
+		evidence[network.variable("test1")] = YES;
+		
+		double expected = Bayes.posterior(1.0E-6, 0.99, 0.01);
+		assertEquals(expected, ve.probability(network.variable("disease"), YES, evidence), 1.0E-15);
+	}
+	
+	/**
+	 * two different positive tests, combined by chaining Bayes' rule
+	 */
+	@Test public void testTwoPositives()
+	{
+		BayesianNetwork network = diseaseNetwork();
+		VariableElimination ve = new VariableElimination(network);
+		int [] evidence = network.noEvidence();
+		evidence[network.variable("test1")] = YES;
+		evidence[network.variable("test2")] = YES;
+		
+		double expected = Bayes.posterior(Bayes.posterior(1.0E-6, 0.99, 0.01), 0.90, 0.05);
+		assertEquals(expected, ve.probability(network.variable("disease"), YES, evidence), 1.0E-15);
+	}
+	
+	/**
+	 * a test with no false positives cannot be positive in a population
+	 * without the disease, and the failure is not cached
+	 */
+	@Test public void testImpossibleEvidence()
+	{
+		BayesianNetwork network = new BayesianNetwork();
+		int disease = network.addVariable("disease", 2);
+		int test = network.addVariable("test", 2, disease);
+		network.setCpt(disease, 1.0, 0.0);
+		network.setCpt(test, 1.0, 0.0, 0.01, 0.99);
+		VariableElimination ve = new VariableElimination(network);
+		int [] evidence = network.noEvidence();
+		evidence[test] = YES;
+		for (int attempt = 0; attempt < 2; attempt++)
+		{
+			try
+			{
+				ve.query(disease, evidence);
+				fail("Expected IllegalArgumentException");
+			}
+			catch (IllegalArgumentException e)
+			{
+			}
+		}
+		evidence[test] = NO;
+		assertEquals(1.0, ve.probability(disease, NO, evidence), 0);
+	}
+	
+	/**
+	 * repeated queries are served from cache, until the network changes
+	 */
+	@Test public void testCacheInvalidatedOnChange()
+	{
+		BayesianNetwork network = diseaseNetwork();
+		VariableElimination ve = new VariableElimination(network);
+		int disease = network.variable("disease");
+		int [] evidence = network.noEvidence();
+		evidence[network.variable("test1")] = YES;
+		
+		double [] first = ve.query(disease, evidence);
+		assertSame(first, ve.query(disease, evidence));
+		
+		network.setCpt(disease, 0.995, 0.005);
+		double [] second = ve.query(disease, evidence);
+		assertNotSame(first, second);
+		assertEquals(Bayes.posterior(0.005, 0.99, 0.01), second[YES], 1.0E-15);
+	}
+	
+	/**
+	 * random networks, every query compared with the full joint
+	 */
+	@Test public void testMatchesEnumeration()
+	{
+		SplittableRandom random = new SplittableRandom(7);
+		for (int trial = 0; trial < 20; trial++)
+		{
+			BayesianNetwork network = randomNetwork(random, 7);
+			VariableElimination ve = new VariableElimination(network);
+			Factor joint = network.cpt(0);
+			for (int v = 1; v < network.numVariables(); v++)
+			{
+				joint = joint.product(network.cpt(v));
+			}
+			
+			int [] evidence = network.noEvidence();
+			for (int v = 0; v < evidence.length; v++)
+			{
+				if (random.nextInt(3) == 0)
+				{
+					evidence[v] = random.nextInt(network.cardinality(v));
+				}
+			}
+			for (int q = 0; q < network.numVariables(); q++)
+			{
+				Factor expected = joint;
+				for (int v = 0; v < evidence.length; v++)
+				{
+					if (v == q)
+					{
+						continue;
+					}
+					expected = (evidence[v] == BayesianNetwork.UNOBSERVED) 
+						? expected.sumOut(v) : expected.reduce(v, evidence[v]);
+				}
+				double [] exact = expected.normalized();
+				double [] actual = ve.query(q, evidence);
+				if (evidence[q] != BayesianNetwork.UNOBSERVED)
+				{
+					assertEquals(1.0, actual[evidence[q]], 0);
+					continue;
+				}
+				for (int i = 0; i < exact.length; i++)
+				{
+					assertEquals(exact[i], actual[i], 1.0E-12);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * intermediate factors shared between queries for different variables 
+	 * and evidence give the same answers as an engine that starts cold
+	 */
+	@Test public void testSharedFactorsMatchColdEngine()
+	{
+		SplittableRandom random = new SplittableRandom(11);
+		for (int trial = 0; trial < 10; trial++)
+		{
+			BayesianNetwork network = randomNetwork(random, 9);
+			VariableElimination warm = new VariableElimination(network);
+			for (int query = 0; query < 60; query++)
+			{
+				int [] evidence = network.noEvidence();
+				// few distinct assignments, so later queries hit cached factors
+				int observed = random.nextInt(network.numVariables());
+				evidence[observed] = random.nextInt(2);
+				int q = random.nextInt(network.numVariables());
+				double [] expected = new VariableElimination(network).query(q, evidence);
+				assertArrayEquals(expected, warm.query(q, evidence), 1.0E-12);
+			}
+		}
+	}
+	
+	protected BayesianNetwork randomNetwork(SplittableRandom random, int size)
+	{
+		BayesianNetwork network = new BayesianNetwork();
+		for (int v = 0; v < size; v++)
+		{
+			int numParents = Math.min(v, random.nextInt(3));
+			int [] parents = new int[numParents];
+			for (int i = 0; i < numParents; i++)
+			{
+				int p;
+				do
+				{
+					p = random.nextInt(v);
+				}
+				while (contains(parents, i, p));
+				parents[i] = p;
+			}
+			int card = 2 + random.nextInt(2);
+			network.addVariable("x" + v, card, parents);
+			
+			double [] cpt = network.cpt(v).values().clone();
+			for (int row = 0; row < cpt.length; row += card)
+			{
+				double sum = 0;
+				for (int i = row; i < row+card; i++)
+				{
+					cpt[i] = 0.05 + random.nextDouble();
+					sum += cpt[i];
+				}
+				for (int i = row; i < row+card; i++)
+				{
+					cpt[i] /= sum;
+				}
+			}
+			network.setCpt(v, cpt);
+		}
+		return network;
+	}
+	
+	protected final static boolean contains(int [] array, int length, int value)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			if (array[i] == value)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}